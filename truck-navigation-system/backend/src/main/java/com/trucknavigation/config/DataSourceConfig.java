@@ -0,0 +1,56 @@
+package com.trucknavigation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * The application database, and the job database next to it. Declaring a second data source
+ * turns off the one Spring Boot would configure, so the application database is declared here
+ * from the same {@code spring.datasource} properties and marked primary; JPA, SQL initialization
+ * and the H2 console keep using it.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${truck-navigation.jobs.store:./data/jobs}")
+    private String jobStore;
+
+    @Value("${truck-navigation.jobs.store-connections:4}")
+    private int jobStoreConnections;
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * H2 database file keeping jobs and their results across restarts, which the in-memory
+     * application database does not
+     */
+    @Bean
+    public DataSource jobDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("jobs");
+        dataSource.setJdbcUrl("jdbc:h2:file:" + jobStore);
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaximumPoolSize(Math.max(1, jobStoreConnections));
+        return dataSource;
+    }
+}
@@ -0,0 +1,71 @@
+package com.trucknavigation.config;
+
+import com.trucknavigation.importer.OsmPbfImporter;
+import com.trucknavigation.importer.RestrictionFile;
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.repository.RoadRestrictionRepository;
+import com.trucknavigation.service.RoadRestrictionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the restrictions written by the OSM importer into the restriction database. The restriction
+ * listener is suspended meanwhile, so the index and the vehicle classes are rebuilt once from the
+ * loaded data instead of following every batch.
+ */
+@Component
+public class RestrictionDataLoader implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestrictionDataLoader.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private RoadRestrictionRepository roadRestrictionRepository;
+
+    @Autowired
+    private RoadRestrictionListener roadRestrictionListener;
+
+    @Value("${truck-navigation.importer.restrictions-file:}")
+    private String restrictionsFile;
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!StringUtils.hasText(restrictionsFile)) {
+            return;
+        }
+        Path file = Path.of(restrictionsFile);
+        if (!Files.isRegularFile(file) || roadRestrictionRepository.countByDataSource(OsmPbfImporter.DATA_SOURCE) > 0) {
+            return;
+        }
+
+        List<RoadRestriction> batch = new ArrayList<>(BATCH_SIZE);
+        long[] loaded = new long[1];
+        roadRestrictionListener.suspend();
+        try {
+            RestrictionFile.read(file, restriction -> {
+                batch.add(restriction);
+                if (batch.size() == BATCH_SIZE) {
+                    roadRestrictionRepository.saveAll(batch);
+                    loaded[0] += batch.size();
+                    batch.clear();
+                }
+            });
+            roadRestrictionRepository.saveAll(batch);
+            loaded[0] += batch.size();
+        } finally {
+            roadRestrictionListener.resume();
+        }
+        logger.info("Loaded {} imported road restrictions from {}", loaded[0], file);
+    }
+}
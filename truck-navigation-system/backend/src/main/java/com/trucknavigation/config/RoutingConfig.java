@@ -0,0 +1,351 @@
+package com.trucknavigation.config;
+
+import com.trucknavigation.importer.OsmImport;
+import com.trucknavigation.importer.OsmPbfImporter;
+import com.trucknavigation.importer.RestrictionFile;
+import com.trucknavigation.routing.ContractionHierarchy;
+import com.trucknavigation.routing.ContractionHierarchyBuilder;
+import com.trucknavigation.routing.ContractionHierarchyRoutingEngine;
+import com.trucknavigation.routing.CustomizableRoutingEngine;
+import com.trucknavigation.routing.EdgeIndex;
+import com.trucknavigation.routing.EdgeWeighting;
+import com.trucknavigation.routing.GraphPartition;
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.routing.RoutingEngine;
+import com.trucknavigation.routing.SampleRoadNetwork;
+import com.trucknavigation.routing.SearchWorkspacePool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@Configuration
+public class RoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingConfig.class);
+
+    // Source label of a graph file holding the built-in sample network
+    private static final String SAMPLE_SOURCE = "sample";
+
+    @Value("${truck-navigation.routing.graph.file:}")
+    private String graphFile;
+
+    @Value("${truck-navigation.routing.graph.compressed:false}")
+    private boolean compressedGraph;
+
+    @Value("${truck-navigation.routing.graph.checksum-verification:BACKGROUND}")
+    private ChecksumVerification checksumVerification;
+
+    @Value("${truck-navigation.importer.pbf-file:}")
+    private String pbfFile;
+
+    @Value("${truck-navigation.importer.restrictions-file:}")
+    private String restrictionsFile;
+
+    @Value("${truck-navigation.importer.threads:0}")
+    private int importerThreads;
+
+    @Value("${truck-navigation.routing.contraction-hierarchies.metrics:FASTEST}")
+    private List<EdgeWeighting.Metric> hierarchyMetrics;
+
+    @Value("${truck-navigation.routing.contraction-hierarchies.directory:}")
+    private String hierarchyDirectory;
+
+    @Value("${truck-navigation.routing.partition.max-cell-size:256}")
+    private int maxCellSize;
+
+    @Value("${truck-navigation.routing.partition.file:}")
+    private String partitionFile;
+
+    @Value("${truck-navigation.routing.workspaces.max-idle:0}")
+    private int maxIdleWorkspaces;
+
+    /**
+     * When to check the payload checksums of mapped files. Header and directory checksums are
+     * always checked on open; reading every page of a multi-GB graph is what costs time.
+     */
+    public enum ChecksumVerification {
+        STARTUP, BACKGROUND, NONE
+    }
+
+    /**
+     * Map the binary graph file when present, importing it first from the configured OSM extract
+     * unless the file records that very extract as its source: same path, size and modification
+     * time. A file holding the sample network, an older import or another extract is therefore
+     * replaced as soon as an extract is configured. Without an extract fall back to the built-in
+     * sample network and write it out, so the next start maps it instead of building it again.
+     * A file in the other layout than the configured one is rewritten once. The graph is always
+     * served off the heap: mapped, or copied into direct memory when there is no file.
+     */
+    @Bean
+    public RoadGraph roadGraph() throws IOException {
+        Path file = StringUtils.hasText(graphFile) ? Path.of(graphFile) : null;
+        Path pbf = StringUtils.hasText(pbfFile) ? Path.of(pbfFile) : null;
+        if (pbf != null) {
+            String source = importSource(pbf);
+            String recorded = file != null ? recordedSource(file) : null;
+            if (!source.equals(recorded)) {
+                if (recorded != null) {
+                    logger.info("Road graph {} was built from {}, not from {}", file,
+                            recorded.isEmpty() ? "an unrecorded source" : recorded, source);
+                }
+                RoadGraph imported = importOsm(pbf, file, source);
+                if (file == null) {
+                    return imported.offHeap();
+                }
+            }
+        }
+        if (file != null && Files.isRegularFile(file)) {
+            long started = System.currentTimeMillis();
+            try {
+                RoadGraph graph = RoadGraph.open(file);
+                logger.info("Mapped {} road graph {} with {} nodes and {} edges in {} ms", layout(graph),
+                        file, graph.getNodeCount(), graph.getEdgeCount(), System.currentTimeMillis() - started);
+                if (SAMPLE_SOURCE.equals(graph.getSource())) {
+                    logger.warn("Road graph {} holds the built-in sample network; set OSM_PBF_FILE to import a real one",
+                            file);
+                }
+                if (graph.isCompressed() != compressedGraph) {
+                    graph = relayout(graph, file);
+                }
+                verifyChecksums("road graph " + file, graph::verifyChecksums);
+                return graph;
+            } catch (IOException e) {
+                // Keep the file: it may be a large import that must not be replaced by the sample
+                logger.error("Could not open road graph {}, falling back to the sample network", file, e);
+                file = null;
+            }
+        }
+
+        RoadGraph graph = SampleRoadNetwork.build().withSource(SAMPLE_SOURCE).withCompression(compressedGraph);
+        logger.info("Loaded sample road network with {} nodes and {} edges", graph.getNodeCount(), graph.getEdgeCount());
+        if (file != null) {
+            try {
+                graph.writeTo(file);
+                logger.info("Wrote road graph to {}", file);
+                return RoadGraph.open(file);
+            } catch (IOException e) {
+                logger.warn("Could not write road graph to {}", file, e);
+            }
+        }
+        return graph.offHeap();
+    }
+
+    /**
+     * Import the extract and write the graph and restriction files. A failed import stops the
+     * application rather than silently serving the sample network in place of the real one.
+     */
+    private RoadGraph importOsm(Path pbf, Path file, String source) throws IOException {
+        logger.info("Importing road graph from {}", pbf);
+        OsmImport result = new OsmPbfImporter(importerThreads).importFile(pbf);
+        if (StringUtils.hasText(restrictionsFile)) {
+            RestrictionFile.write(Path.of(restrictionsFile), result.restrictions());
+            logger.info("Wrote {} imported restrictions to {}", result.restrictions().size(), restrictionsFile);
+        }
+        RoadGraph graph = result.graph().withSource(source).withCompression(compressedGraph);
+        if (file != null) {
+            graph.writeTo(file);
+            logger.info("Wrote {} road graph to {}", layout(graph), file);
+        }
+        return graph;
+    }
+
+    /**
+     * Rewrite the mapped graph in the configured layout and map the new file. Ids stay the same,
+     * but derived files are rebuilt since the file fingerprint changes. Keeps the graph as it is
+     * if the file cannot be replaced.
+     */
+    private RoadGraph relayout(RoadGraph graph, Path file) {
+        long started = System.currentTimeMillis();
+        try {
+            graph.withCompression(compressedGraph).writeTo(file);
+            RoadGraph converted = RoadGraph.open(file);
+            logger.info("Rewrote road graph {} in the {} layout in {} ms", file, layout(converted),
+                    System.currentTimeMillis() - started);
+            return converted;
+        } catch (IOException e) {
+            logger.warn("Could not rewrite road graph {} in the {} layout, keeping it {}", file,
+                    compressedGraph ? "compressed" : "plain", layout(graph), e);
+            return graph;
+        }
+    }
+
+    private static String layout(RoadGraph graph) {
+        return graph.isCompressed() ? "compressed" : "plain";
+    }
+
+    /**
+     * Source label of a graph imported from the extract in its current state
+     */
+    private static String importSource(Path pbf) throws IOException {
+        if (!Files.isRegularFile(pbf)) {
+            throw new IOException("OSM extract " + pbf + " does not exist");
+        }
+        return "osm:" + pbf.toAbsolutePath().normalize() + ";size=" + Files.size(pbf)
+                + ";modified=" + Files.getLastModifiedTime(pbf).toMillis();
+    }
+
+    /**
+     * Source label recorded in the graph file, or null if there is no readable file
+     */
+    private static String recordedSource(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return RoadGraph.open(file).getSource();
+        } catch (IOException e) {
+            logger.warn("Could not read road graph {}, importing it again", file, e);
+            return null;
+        }
+    }
+
+    @Bean
+    public GraphPartition graphPartition(RoadGraph roadGraph) {
+        Path file = StringUtils.hasText(partitionFile) ? Path.of(partitionFile) : null;
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                GraphPartition partition = GraphPartition.readFrom(file, roadGraph, maxCellSize);
+                if (partition != null) {
+                    logger.info("Loaded graph partition with {} cells from {}", partition.getCellCount(), file);
+                    return partition;
+                }
+                logger.warn("Graph partition {} was built for a different graph, rebuilding", file);
+            } catch (IOException e) {
+                logger.warn("Could not read graph partition {}, rebuilding", file, e);
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        GraphPartition partition = GraphPartition.build(roadGraph, maxCellSize);
+        logger.info("Partitioned road network into {} cells with {} boundary nodes in {} ms",
+                partition.getCellCount(), partition.getBoundaryNodeCount(), System.currentTimeMillis() - started);
+        if (file != null) {
+            try {
+                partition.writeTo(file);
+                return GraphPartition.readFrom(file, roadGraph, maxCellSize);
+            } catch (IOException e) {
+                logger.warn("Could not persist graph partition to {}", file, e);
+            }
+        }
+        return partition.offHeap();
+    }
+
+    /**
+     * Grid over the road geometry that request coordinates and road restrictions are snapped onto
+     */
+    @Bean
+    public EdgeIndex edgeIndex(RoadGraph roadGraph) {
+        long started = System.currentTimeMillis();
+        EdgeIndex index = new EdgeIndex(roadGraph);
+        logger.info("Indexed road geometry in {} grid cells in {} ms", index.getCellCount(),
+                System.currentTimeMillis() - started);
+        return index;
+    }
+
+    /**
+     * Search state reused across queries, shared by the engines since each query holds one at a time
+     */
+    @Bean
+    public SearchWorkspacePool searchWorkspacePool(RoadGraph roadGraph) {
+        int maxIdle = maxIdleWorkspaces > 0 ? maxIdleWorkspaces : Runtime.getRuntime().availableProcessors();
+        return new SearchWorkspacePool(roadGraph.getNodeCount(), maxIdle);
+    }
+
+    @Bean
+    public CustomizableRoutingEngine customizableRoutingEngine(GraphPartition graphPartition,
+                                                               SearchWorkspacePool searchWorkspacePool) {
+        return new CustomizableRoutingEngine(graphPartition, searchWorkspacePool);
+    }
+
+    /**
+     * Contraction hierarchies answer queries whose path no restriction interferes with; the
+     * customizable engine handles every truck class the hierarchy path is closed for
+     */
+    @Bean
+    @Primary
+    public RoutingEngine routingEngine(RoadGraph roadGraph, CustomizableRoutingEngine customizableRoutingEngine,
+                                       SearchWorkspacePool searchWorkspacePool) {
+        Map<EdgeWeighting.Metric, ContractionHierarchy> hierarchies = new EnumMap<>(EdgeWeighting.Metric.class);
+        for (EdgeWeighting.Metric metric : hierarchyMetrics) {
+            hierarchies.put(metric, loadOrBuildHierarchy(roadGraph, metric));
+        }
+        return new ContractionHierarchyRoutingEngine(roadGraph, hierarchies, customizableRoutingEngine, searchWorkspacePool);
+    }
+
+    /**
+     * Reuse a persisted hierarchy when it was built for the current graph, otherwise contract
+     * the graph now and persist the result for the next start, serving it mapped from there
+     */
+    private ContractionHierarchy loadOrBuildHierarchy(RoadGraph graph, EdgeWeighting.Metric metric) {
+        Path file = StringUtils.hasText(hierarchyDirectory)
+                ? Path.of(hierarchyDirectory, "ch-" + metric.name().toLowerCase(Locale.ROOT) + ".bin")
+                : null;
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                ContractionHierarchy hierarchy = ContractionHierarchy.readFrom(file);
+                if (hierarchy.getMetric() == metric && hierarchy.matches(graph)) {
+                    logger.info("Loaded {} contraction hierarchy from {}", metric, file);
+                    verifyChecksums(metric + " contraction hierarchy " + file, hierarchy::verifyChecksums);
+                    return hierarchy;
+                }
+                logger.warn("Contraction hierarchy {} was built for a different graph, rebuilding", file);
+            } catch (IOException e) {
+                logger.warn("Could not read contraction hierarchy {}, rebuilding", file, e);
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, metric).build();
+        logger.info("Built {} contraction hierarchy with {} shortcuts in {} ms",
+                metric, hierarchy.getShortcutCount(), System.currentTimeMillis() - started);
+        if (file != null) {
+            try {
+                hierarchy.writeTo(file);
+                return ContractionHierarchy.readFrom(file);
+            } catch (IOException e) {
+                logger.warn("Could not persist contraction hierarchy to {}", file, e);
+            }
+        }
+        return hierarchy.offHeap();
+    }
+
+    /**
+     * Check payload checksums now or on a background thread, depending on configuration. A
+     * mismatch at startup refuses to serve from the file; in the background it is reported loudly.
+     */
+    private void verifyChecksums(String description, ChecksumCheck check) throws IOException {
+        if (checksumVerification == ChecksumVerification.STARTUP) {
+            check.run();
+        } else if (checksumVerification == ChecksumVerification.BACKGROUND) {
+            Thread verifier = new Thread(() -> {
+                long started = System.currentTimeMillis();
+                try {
+                    check.run();
+                    logger.info("Verified checksums of {} in {} ms", description, System.currentTimeMillis() - started);
+                } catch (IOException e) {
+                    logger.error("Checksum verification failed for {}, the file is corrupt and must be rebuilt",
+                            description, e);
+                }
+            }, "checksum-verifier");
+            verifier.setDaemon(true);
+            verifier.start();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChecksumCheck {
+        void run() throws IOException;
+    }
+}
@@ -64,6 +64,7 @@ public class SecurityConfig {
                 // Protected endpoints
                 .requestMatchers(new AntPathRequestMatcher("/api/v1/truck-profiles/**")).authenticated()
                 .requestMatchers(new AntPathRequestMatcher("/api/v1/routes/**")).authenticated()
+                .requestMatchers(new AntPathRequestMatcher("/api/v1/jobs/**")).authenticated()
                 
                 // Admin endpoints
                 .requestMatchers(new AntPathRequestMatcher("/api/v1/admin/**")).hasRole("ADMIN")
@@ -0,0 +1,148 @@
+package com.trucknavigation.controller;
+
+import com.trucknavigation.dto.JobDto;
+import com.trucknavigation.dto.JobResultsDto;
+import com.trucknavigation.dto.MatrixRequestDto;
+import com.trucknavigation.dto.RouteRequestDto;
+import com.trucknavigation.service.JobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+@RestController
+@RequestMapping("/api/v1/jobs")
+@Tag(name = "Jobs", description = "APIs for computing large matrices and route batches in the background")
+public class JobController {
+
+    @Autowired
+    private JobService jobService;
+
+    @PostMapping("/matrix")
+    @Operation(summary = "Submit a matrix job",
+               description = "Queues a travel time and distance matrix; the result holds one item per origin")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job queued"),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated"),
+        @ApiResponse(responseCode = "503", description = "Too many jobs queued")
+    })
+    public ResponseEntity<?> submitMatrix(
+            @Valid @RequestBody MatrixRequestDto matrixRequest,
+            @Parameter(description = "Queue priority") @RequestParam(defaultValue = "NORMAL") JobDto.Priority priority) {
+        return submit(() -> jobService.submitMatrix(matrixRequest, priority));
+    }
+
+    @PostMapping("/routes")
+    @Operation(summary = "Submit a route batch job",
+               description = "Queues route calculations, multi-stop routes included; the result holds one item per request, "
+                       + "its route or its error")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job queued"),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated"),
+        @ApiResponse(responseCode = "503", description = "Too many jobs queued")
+    })
+    public ResponseEntity<?> submitRoutes(
+            @RequestBody List<RouteRequestDto> routeRequests,
+            @Parameter(description = "Queue priority") @RequestParam(defaultValue = "NORMAL") JobDto.Priority priority) {
+        return submit(() -> jobService.submitRoutes(routeRequests, priority));
+    }
+
+    private ResponseEntity<?> submit(Supplier<JobDto> submission) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(submission.get());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    @Operation(summary = "Get jobs", description = "Lists the jobs of the authenticated user whose results have not expired")
+    public ResponseEntity<List<JobDto>> getJobs() {
+        return ResponseEntity.ok(jobService.getJobs());
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get job status", description = "Status and progress of a job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<?> getJob(@Parameter(description = "Job ID") @PathVariable String id) {
+        try {
+            return ResponseEntity.ok(jobService.getJob(id));
+        } catch (RuntimeException e) {
+            if (e.getMessage().contains("not found")) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/results")
+    @Operation(summary = "Get job results",
+               description = "A chunk of the job's result items in item order, available while the job is still running")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Results returned"),
+        @ApiResponse(responseCode = "400", description = "Invalid offset or limit"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<?> getResults(
+            @Parameter(description = "Job ID") @PathVariable String id,
+            @Parameter(description = "First item") @RequestParam(defaultValue = "0") int offset,
+            @Parameter(description = "Items per chunk, at most 1000") @RequestParam(defaultValue = "100") int limit) {
+        try {
+            JobResultsDto results = jobService.getResults(id, offset, limit);
+            return ResponseEntity.ok(results);
+
+        } catch (RuntimeException e) {
+            if (e.getMessage().contains("not found")) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Cancel or delete job",
+               description = "Cancels a queued or running job, keeping the results completed so far; "
+                       + "deletes a finished job and its results")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job cancelled"),
+        @ApiResponse(responseCode = "204", description = "Job deleted"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<?> cancelJob(@Parameter(description = "Job ID") @PathVariable String id) {
+        try {
+            JobDto job = jobService.cancelOrDelete(id);
+            return job != null ? ResponseEntity.ok(job) : ResponseEntity.noContent().build();
+
+        } catch (RuntimeException e) {
+            if (e.getMessage().contains("not found")) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
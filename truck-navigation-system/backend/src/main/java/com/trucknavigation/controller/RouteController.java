@@ -1,19 +1,32 @@
 package com.trucknavigation.controller;
 
+import com.trucknavigation.dto.DepartureProfileRequestDto;
+import com.trucknavigation.dto.DepartureProfileResponseDto;
+import com.trucknavigation.dto.IsochroneResponseDto;
+import com.trucknavigation.dto.MatrixRequestDto;
+import com.trucknavigation.dto.MatrixResponseDto;
 import com.trucknavigation.dto.RouteRequestDto;
 import com.trucknavigation.dto.RouteResponseDto;
+import com.trucknavigation.service.RouteAdmissionService;
+import com.trucknavigation.service.RouteBatchService;
 import com.trucknavigation.service.RouteCalculationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Map;
 
 @RestController
@@ -24,6 +37,12 @@ public class RouteController {
     @Autowired
     private RouteCalculationService routeCalculationService;
     
+    @Autowired
+    private RouteBatchService routeBatchService;
+    
+    @Autowired
+    private RouteAdmissionService routeAdmissionService;
+    
     @PostMapping("/calculate")
     @Operation(summary = "Calculate truck-optimized route", 
                description = "Calculates multiple route options considering truck restrictions and traffic")
@@ -31,11 +50,18 @@ public class RouteController {
         @ApiResponse(responseCode = "200", description = "Route calculated successfully"),
         @ApiResponse(responseCode = "400", description = "Invalid input data"),
         @ApiResponse(responseCode = "401", description = "User not authenticated"),
-        @ApiResponse(responseCode = "404", description = "Truck profile not found")
+        @ApiResponse(responseCode = "404", description = "Truck profile not found"),
+        @ApiResponse(responseCode = "429", description = "Route calculation at capacity, retry after the given seconds")
     })
     public ResponseEntity<?> calculateRoute(@Valid @RequestBody RouteRequestDto routeRequest) {
-        try {
-            RouteResponseDto response = routeCalculationService.calculateRoute(routeRequest);
+        RouteAdmissionService.Permit permit = routeAdmissionService.tryAcquire(routeAdmissionService.currentPriority());
+        if (permit == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(routeAdmissionService.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Route calculation is at capacity, please retry shortly"));
+        }
+        try (permit) {
+            RouteResponseDto response = routeCalculationService.calculateRoute(routeRequest, null, permit);
             return ResponseEntity.ok(response);
             
         } catch (RuntimeException e) {
@@ -47,6 +73,97 @@ public class RouteController {
         }
     }
     
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Calculate a batch of routes",
+               description = "Takes one route request per NDJSON line and streams back one NDJSON line per request as soon as "
+                       + "its route is calculated, in no particular order: {\"index\":n,\"route\":{...}} or "
+                       + "{\"index\":n,\"error\":\"...\"}, where n is the position of the request in the batch")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Results streamed, failed requests report their own error"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated")
+    })
+    public void calculateRouteBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        routeBatchService.calculate(request.getInputStream(), response.getOutputStream());
+    }
+    
+    @PostMapping("/matrix")
+    @Operation(summary = "Calculate travel time and distance matrix",
+               description = "Calculates driving times and distances from every origin to every destination for a truck profile, "
+                       + "returned row-major by origin")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Matrix calculated successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated")
+    })
+    public ResponseEntity<?> calculateMatrix(@Valid @RequestBody MatrixRequestDto matrixRequest) {
+        try {
+            MatrixResponseDto response = routeCalculationService.calculateMatrix(matrixRequest);
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "An unexpected error occurred during matrix calculation"));
+        }
+    }
+    
+    @GetMapping("/isochrone")
+    @Operation(summary = "Calculate reachable area",
+               description = "Calculates the area a truck reaches from a point within a driving time, as a WKT polygon")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Reachable area calculated successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated")
+    })
+    public ResponseEntity<?> calculateIsochrone(
+            @Parameter(description = "Start latitude") @RequestParam BigDecimal latitude,
+            @Parameter(description = "Start longitude") @RequestParam BigDecimal longitude,
+            @Parameter(description = "Truck profile ID") @RequestParam Long truckProfileId,
+            @Parameter(description = "Driving time in minutes") @RequestParam int maxDuration,
+            @Parameter(description = "Avoid toll roads") @RequestParam(defaultValue = "false") boolean avoidTolls,
+            @Parameter(description = "Avoid motorways") @RequestParam(defaultValue = "false") boolean avoidHighways) {
+        try {
+            IsochroneResponseDto response = routeCalculationService.calculateIsochrone(
+                    latitude, longitude, truckProfileId, maxDuration, avoidTolls, avoidHighways);
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "An unexpected error occurred during isochrone calculation"));
+        }
+    }
+    
+    @PostMapping("/departure-profile")
+    @Operation(summary = "Find the best departure time",
+               description = "Calculates the trip duration for every departure slot within a window, waiting at "
+                       + "time-restricted roads included, and the departure with the shortest trip")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Departure profile calculated successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "User not authenticated")
+    })
+    public ResponseEntity<?> calculateDepartureProfile(@Valid @RequestBody DepartureProfileRequestDto profileRequest) {
+        try {
+            DepartureProfileResponseDto response = routeCalculationService.calculateDepartureProfile(profileRequest);
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "An unexpected error occurred during departure profile calculation"));
+        }
+    }
+    
     @GetMapping("/test")
     @Operation(summary = "Test route calculation endpoint", 
                description = "Simple test endpoint to verify route calculation service")
@@ -0,0 +1,76 @@
+package com.trucknavigation.controller;
+
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.service.RouteAdmissionService;
+import com.trucknavigation.service.RouteCacheService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/admin/routing")
+@Tag(name = "Routing Administration", description = "APIs for monitoring and tuning the routing engine")
+public class RoutingAdminController {
+
+    @Autowired
+    private RouteCacheService routeCacheService;
+
+    @Autowired
+    private RouteAdmissionService routeAdmissionService;
+
+    @Autowired
+    private RoadGraph roadGraph;
+
+    @GetMapping("/cache")
+    @Operation(summary = "Get route cache statistics",
+               description = "Size, hit rate, evictions, expirations and invalidations of the route cache, and identical requests coalesced into a running calculation")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(routeCacheService.getStatistics());
+    }
+
+    @DeleteMapping("/cache")
+    @Operation(summary = "Clear route cache", description = "Drops every cached route")
+    public ResponseEntity<Map<String, String>> clearCache() {
+        routeCacheService.clear();
+        return ResponseEntity.ok(Map.of("message", "Route cache cleared"));
+    }
+
+    @GetMapping("/admission")
+    @Operation(summary = "Get route admission statistics",
+               description = "Current adaptive concurrency limit, calculation latency, and the calculations admitted, "
+                       + "running and rejected per priority")
+    public ResponseEntity<Map<String, Object>> getAdmissionStatistics() {
+        return ResponseEntity.ok(routeAdmissionService.getStatistics());
+    }
+
+    @GetMapping("/graph")
+    @Operation(summary = "Get road graph storage statistics",
+               description = "Layout of the road graph and the bytes it takes per node, per edge and for road geometry")
+    public ResponseEntity<Map<String, Object>> getGraphStatistics() {
+        int nodes = roadGraph.getNodeCount();
+        int edges = roadGraph.getEdgeCount();
+        long nodeBytes = roadGraph.getNodeBytes();
+        long edgeBytes = roadGraph.getEdgeBytes();
+        long geometryBytes = roadGraph.getGeometryBytes();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("layout", roadGraph.isCompressed() ? "compressed" : "plain");
+        statistics.put("offHeap", roadGraph.isOffHeap());
+        statistics.put("memoryMapped", roadGraph.getFile() != null);
+        statistics.put("nodes", nodes);
+        statistics.put("edges", edges);
+        statistics.put("pillarPoints", roadGraph.getPillarPointCount());
+        statistics.put("nodeBytes", nodeBytes);
+        statistics.put("edgeBytes", edgeBytes);
+        statistics.put("geometryBytes", geometryBytes);
+        statistics.put("totalBytes", nodeBytes + edgeBytes + geometryBytes);
+        statistics.put("bytesPerNode", nodes == 0 ? 0.0 : (double) nodeBytes / nodes);
+        statistics.put("bytesPerEdge", edges == 0 ? 0.0 : (double) edgeBytes / edges);
+        statistics.put("geometryBytesPerEdge", edges == 0 ? 0.0 : (double) geometryBytes / edges);
+        return ResponseEntity.ok(statistics);
+    }
+}
@@ -0,0 +1,125 @@
+package com.trucknavigation.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Trip whose departure is to be chosen within a window of the given day. A window ending before
+ * it starts runs past midnight.
+ */
+public class DepartureProfileRequestDto {
+    
+    @NotNull(message = "Start latitude is required")
+    private BigDecimal startLatitude;
+    
+    @NotNull(message = "Start longitude is required")
+    private BigDecimal startLongitude;
+    
+    @NotNull(message = "End latitude is required")
+    private BigDecimal endLatitude;
+    
+    @NotNull(message = "End longitude is required")
+    private BigDecimal endLongitude;
+    
+    @NotNull(message = "Truck profile ID is required")
+    private Long truckProfileId;
+    
+    // Day of the earliest departure, today if not given
+    private LocalDate departureDate;
+    
+    @NotNull(message = "Earliest departure is required")
+    private LocalTime earliestDeparture;
+    
+    @NotNull(message = "Latest departure is required")
+    private LocalTime latestDeparture;
+    
+    private boolean avoidTolls = false;
+    private boolean avoidHighways = false;
+    
+    // Constructors
+    public DepartureProfileRequestDto() {}
+    
+    // Getters and Setters
+    public BigDecimal getStartLatitude() {
+        return startLatitude;
+    }
+    
+    public void setStartLatitude(BigDecimal startLatitude) {
+        this.startLatitude = startLatitude;
+    }
+    
+    public BigDecimal getStartLongitude() {
+        return startLongitude;
+    }
+    
+    public void setStartLongitude(BigDecimal startLongitude) {
+        this.startLongitude = startLongitude;
+    }
+    
+    public BigDecimal getEndLatitude() {
+        return endLatitude;
+    }
+    
+    public void setEndLatitude(BigDecimal endLatitude) {
+        this.endLatitude = endLatitude;
+    }
+    
+    public BigDecimal getEndLongitude() {
+        return endLongitude;
+    }
+    
+    public void setEndLongitude(BigDecimal endLongitude) {
+        this.endLongitude = endLongitude;
+    }
+    
+    public Long getTruckProfileId() {
+        return truckProfileId;
+    }
+    
+    public void setTruckProfileId(Long truckProfileId) {
+        this.truckProfileId = truckProfileId;
+    }
+    
+    public LocalDate getDepartureDate() {
+        return departureDate;
+    }
+    
+    public void setDepartureDate(LocalDate departureDate) {
+        this.departureDate = departureDate;
+    }
+    
+    public LocalTime getEarliestDeparture() {
+        return earliestDeparture;
+    }
+    
+    public void setEarliestDeparture(LocalTime earliestDeparture) {
+        this.earliestDeparture = earliestDeparture;
+    }
+    
+    public LocalTime getLatestDeparture() {
+        return latestDeparture;
+    }
+    
+    public void setLatestDeparture(LocalTime latestDeparture) {
+        this.latestDeparture = latestDeparture;
+    }
+    
+    public boolean isAvoidTolls() {
+        return avoidTolls;
+    }
+    
+    public void setAvoidTolls(boolean avoidTolls) {
+        this.avoidTolls = avoidTolls;
+    }
+    
+    public boolean isAvoidHighways() {
+        return avoidHighways;
+    }
+    
+    public void setAvoidHighways(boolean avoidHighways) {
+        this.avoidHighways = avoidHighways;
+    }
+}
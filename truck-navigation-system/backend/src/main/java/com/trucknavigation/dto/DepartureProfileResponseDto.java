@@ -0,0 +1,120 @@
+package com.trucknavigation.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trip duration for every departure slot of a window, waiting at time-restricted roads included,
+ * and the departure that gets the truck there soonest after leaving
+ */
+public class DepartureProfileResponseDto {
+    
+    private LocalDateTime bestDeparture;
+    private Integer bestDuration; // minutes
+    private int freeFlowDuration; // minutes without any time-based restriction
+    private int slotMinutes;
+    private List<Departure> departures;
+    private Long truckProfileUsed;
+    private LocalDateTime calculatedAt;
+    
+    public static class Departure {
+        private LocalDateTime departureTime;
+        private LocalDateTime arrivalTime;
+        private Integer duration; // minutes, null if unreachable
+        private Integer delay; // minutes lost to time-based restrictions
+        
+        public Departure() {}
+        
+        public LocalDateTime getDepartureTime() {
+            return departureTime;
+        }
+        
+        public void setDepartureTime(LocalDateTime departureTime) {
+            this.departureTime = departureTime;
+        }
+        
+        public LocalDateTime getArrivalTime() {
+            return arrivalTime;
+        }
+        
+        public void setArrivalTime(LocalDateTime arrivalTime) {
+            this.arrivalTime = arrivalTime;
+        }
+        
+        public Integer getDuration() {
+            return duration;
+        }
+        
+        public void setDuration(Integer duration) {
+            this.duration = duration;
+        }
+        
+        public Integer getDelay() {
+            return delay;
+        }
+        
+        public void setDelay(Integer delay) {
+            this.delay = delay;
+        }
+    }
+    
+    // Constructors
+    public DepartureProfileResponseDto() {}
+    
+    // Getters and Setters
+    public LocalDateTime getBestDeparture() {
+        return bestDeparture;
+    }
+    
+    public void setBestDeparture(LocalDateTime bestDeparture) {
+        this.bestDeparture = bestDeparture;
+    }
+    
+    public Integer getBestDuration() {
+        return bestDuration;
+    }
+    
+    public void setBestDuration(Integer bestDuration) {
+        this.bestDuration = bestDuration;
+    }
+    
+    public int getFreeFlowDuration() {
+        return freeFlowDuration;
+    }
+    
+    public void setFreeFlowDuration(int freeFlowDuration) {
+        this.freeFlowDuration = freeFlowDuration;
+    }
+    
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+    
+    public void setSlotMinutes(int slotMinutes) {
+        this.slotMinutes = slotMinutes;
+    }
+    
+    public List<Departure> getDepartures() {
+        return departures;
+    }
+    
+    public void setDepartures(List<Departure> departures) {
+        this.departures = departures;
+    }
+    
+    public Long getTruckProfileUsed() {
+        return truckProfileUsed;
+    }
+    
+    public void setTruckProfileUsed(Long truckProfileUsed) {
+        this.truckProfileUsed = truckProfileUsed;
+    }
+    
+    public LocalDateTime getCalculatedAt() {
+        return calculatedAt;
+    }
+    
+    public void setCalculatedAt(LocalDateTime calculatedAt) {
+        this.calculatedAt = calculatedAt;
+    }
+}
@@ -0,0 +1,78 @@
+package com.trucknavigation.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Area a truck reaches from a point within a driving time, as a WKT polygon
+ */
+public class IsochroneResponseDto {
+    
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+    private int maxDuration; // minutes
+    private String geometry;
+    private int reachableNodes;
+    private Long truckProfileUsed;
+    private LocalDateTime calculatedAt;
+    
+    // Constructors
+    public IsochroneResponseDto() {}
+    
+    // Getters and Setters
+    public BigDecimal getLatitude() {
+        return latitude;
+    }
+    
+    public void setLatitude(BigDecimal latitude) {
+        this.latitude = latitude;
+    }
+    
+    public BigDecimal getLongitude() {
+        return longitude;
+    }
+    
+    public void setLongitude(BigDecimal longitude) {
+        this.longitude = longitude;
+    }
+    
+    public int getMaxDuration() {
+        return maxDuration;
+    }
+    
+    public void setMaxDuration(int maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+    
+    public String getGeometry() {
+        return geometry;
+    }
+    
+    public void setGeometry(String geometry) {
+        this.geometry = geometry;
+    }
+    
+    public int getReachableNodes() {
+        return reachableNodes;
+    }
+    
+    public void setReachableNodes(int reachableNodes) {
+        this.reachableNodes = reachableNodes;
+    }
+    
+    public Long getTruckProfileUsed() {
+        return truckProfileUsed;
+    }
+    
+    public void setTruckProfileUsed(Long truckProfileUsed) {
+        this.truckProfileUsed = truckProfileUsed;
+    }
+    
+    public LocalDateTime getCalculatedAt() {
+        return calculatedAt;
+    }
+    
+    public void setCalculatedAt(LocalDateTime calculatedAt) {
+        this.calculatedAt = calculatedAt;
+    }
+}
@@ -0,0 +1,155 @@
+package com.trucknavigation.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of a job computing a matrix or a batch of routes in the background. A job's result is a
+ * list of items, one per route request or one per matrix origin, stored as they are completed.
+ */
+public class JobDto {
+    
+    private String id;
+    private Type type;
+    private Status status;
+    private Priority priority;
+    private Long ownerId;
+    private int totalItems;
+    private int completedItems; // failed items included
+    private int failedItems;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt; // results are dropped after this
+    
+    public enum Type {
+        MATRIX, ROUTES
+    }
+    
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+        
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+    
+    /**
+     * Queued jobs start in priority order, first submitted first within a priority
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+    
+    // Constructors
+    public JobDto() {}
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public void setType(Type type) {
+        this.type = type;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+    
+    public Long getOwnerId() {
+        return ownerId;
+    }
+    
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+    
+    public int getTotalItems() {
+        return totalItems;
+    }
+    
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+    
+    public int getCompletedItems() {
+        return completedItems;
+    }
+    
+    public void setCompletedItems(int completedItems) {
+        this.completedItems = completedItems;
+    }
+    
+    public int getFailedItems() {
+        return failedItems;
+    }
+    
+    public void setFailedItems(int failedItems) {
+        this.failedItems = failedItems;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public double getProgress() {
+        return totalItems == 0 ? 1.0 : (double) completedItems / totalItems;
+    }
+}
@@ -0,0 +1,71 @@
+package com.trucknavigation.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * One chunk of a job's result items, in item order. Items are available as soon as they are
+ * completed, also while the job is still running.
+ */
+public class JobResultsDto {
+    
+    private String jobId;
+    private JobDto.Status status;
+    private int offset;
+    private int totalItems;
+    private int availableItems;
+    private List<JsonNode> items;
+    
+    // Constructors
+    public JobResultsDto() {}
+    
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    public JobDto.Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(JobDto.Status status) {
+        this.status = status;
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+    
+    public int getTotalItems() {
+        return totalItems;
+    }
+    
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+    
+    public int getAvailableItems() {
+        return availableItems;
+    }
+    
+    public void setAvailableItems(int availableItems) {
+        this.availableItems = availableItems;
+    }
+    
+    public List<JsonNode> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<JsonNode> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,111 @@
+package com.trucknavigation.dto;
+
+import com.trucknavigation.model.Route;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class MatrixRequestDto {
+    
+    @NotEmpty(message = "At least one origin is required")
+    @Valid
+    private List<Location> origins;
+    
+    @NotEmpty(message = "At least one destination is required")
+    @Valid
+    private List<Location> destinations;
+    
+    @NotNull(message = "Truck profile ID is required")
+    private Long truckProfileId;
+    
+    private Route.OptimizationType optimizationType = Route.OptimizationType.FASTEST;
+    
+    private boolean avoidTolls = false;
+    private boolean avoidHighways = false;
+    
+    public static class Location {
+        @NotNull(message = "Latitude is required")
+        private BigDecimal latitude;
+        
+        @NotNull(message = "Longitude is required")
+        private BigDecimal longitude;
+        
+        public Location() {}
+        
+        public Location(BigDecimal latitude, BigDecimal longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+        
+        public BigDecimal getLatitude() {
+            return latitude;
+        }
+        
+        public void setLatitude(BigDecimal latitude) {
+            this.latitude = latitude;
+        }
+        
+        public BigDecimal getLongitude() {
+            return longitude;
+        }
+        
+        public void setLongitude(BigDecimal longitude) {
+            this.longitude = longitude;
+        }
+    }
+    
+    // Constructors
+    public MatrixRequestDto() {}
+    
+    // Getters and Setters
+    public List<Location> getOrigins() {
+        return origins;
+    }
+    
+    public void setOrigins(List<Location> origins) {
+        this.origins = origins;
+    }
+    
+    public List<Location> getDestinations() {
+        return destinations;
+    }
+    
+    public void setDestinations(List<Location> destinations) {
+        this.destinations = destinations;
+    }
+    
+    public Long getTruckProfileId() {
+        return truckProfileId;
+    }
+    
+    public void setTruckProfileId(Long truckProfileId) {
+        this.truckProfileId = truckProfileId;
+    }
+    
+    public Route.OptimizationType getOptimizationType() {
+        return optimizationType;
+    }
+    
+    public void setOptimizationType(Route.OptimizationType optimizationType) {
+        this.optimizationType = optimizationType;
+    }
+    
+    public boolean isAvoidTolls() {
+        return avoidTolls;
+    }
+    
+    public void setAvoidTolls(boolean avoidTolls) {
+        this.avoidTolls = avoidTolls;
+    }
+    
+    public boolean isAvoidHighways() {
+        return avoidHighways;
+    }
+    
+    public void setAvoidHighways(boolean avoidHighways) {
+        this.avoidHighways = avoidHighways;
+    }
+}
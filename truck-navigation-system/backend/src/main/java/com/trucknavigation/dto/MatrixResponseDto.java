@@ -0,0 +1,79 @@
+package com.trucknavigation.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Travel times and distances between every origin and every destination, row-major: the entry
+ * for origin {@code i} and destination {@code j} is at {@code i * destinationCount + j}.
+ * Unreachable pairs are -1.
+ */
+public class MatrixResponseDto {
+    
+    private int originCount;
+    private int destinationCount;
+    private int[] durations; // seconds
+    private int[] distances; // metres
+    private int unreachableCount;
+    private Long truckProfileUsed;
+    private LocalDateTime calculatedAt;
+    
+    // Constructors
+    public MatrixResponseDto() {}
+    
+    // Getters and Setters
+    public int getOriginCount() {
+        return originCount;
+    }
+    
+    public void setOriginCount(int originCount) {
+        this.originCount = originCount;
+    }
+    
+    public int getDestinationCount() {
+        return destinationCount;
+    }
+    
+    public void setDestinationCount(int destinationCount) {
+        this.destinationCount = destinationCount;
+    }
+    
+    public int[] getDurations() {
+        return durations;
+    }
+    
+    public void setDurations(int[] durations) {
+        this.durations = durations;
+    }
+    
+    public int[] getDistances() {
+        return distances;
+    }
+    
+    public void setDistances(int[] distances) {
+        this.distances = distances;
+    }
+    
+    public int getUnreachableCount() {
+        return unreachableCount;
+    }
+    
+    public void setUnreachableCount(int unreachableCount) {
+        this.unreachableCount = unreachableCount;
+    }
+    
+    public Long getTruckProfileUsed() {
+        return truckProfileUsed;
+    }
+    
+    public void setTruckProfileUsed(Long truckProfileUsed) {
+        this.truckProfileUsed = truckProfileUsed;
+    }
+    
+    public LocalDateTime getCalculatedAt() {
+        return calculatedAt;
+    }
+    
+    public void setCalculatedAt(LocalDateTime calculatedAt) {
+        this.calculatedAt = calculatedAt;
+    }
+}
@@ -1,6 +1,7 @@
 package com.trucknavigation.dto;
 
 import com.trucknavigation.model.Route;
+import com.trucknavigation.model.RouteWaypoint;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -28,6 +29,7 @@ public class RouteResponseDto {
         private String trafficLevel;
         private List<String> warnings;
         private List<String> recommendations;
+        private List<RouteStop> stops;
         
         // Constructors
         public RouteOption() {}
@@ -137,6 +139,14 @@ public class RouteResponseDto {
             this.recommendations = recommendations;
         }
         
+        public List<RouteStop> getStops() {
+            return stops;
+        }
+        
+        public void setStops(List<RouteStop> stops) {
+            this.stops = stops;
+        }
+        
         // Helper methods for cost calculations
         public BigDecimal getTotalEstimatedCost() {
             BigDecimal fuel = estimatedFuelCost != null ? estimatedFuelCost : BigDecimal.ZERO;
@@ -178,6 +188,100 @@ public class RouteResponseDto {
         }
     }
     
+    /**
+     * A stop of a route option in visiting order, with the leg driven to reach it
+     */
+    public static class RouteStop {
+        private Integer sequenceOrder;
+        private BigDecimal latitude;
+        private BigDecimal longitude;
+        private RouteWaypoint.WaypointType waypointType;
+        // Index into the request's intermediate waypoints, null for start and end
+        private Integer waypointIndex;
+        // Distance from previous stop (in km)
+        private BigDecimal distanceFromPrevious;
+        // Duration from previous stop (in minutes)
+        private Integer durationFromPrevious;
+        // Time spent waiting for the stop's window to open (in minutes)
+        private Integer waitingTime;
+        // Straight distance from the stop to the road it was snapped onto (in meters)
+        private Integer snapDistance;
+        
+        public RouteStop() {}
+        
+        public Integer getSequenceOrder() {
+            return sequenceOrder;
+        }
+        
+        public void setSequenceOrder(Integer sequenceOrder) {
+            this.sequenceOrder = sequenceOrder;
+        }
+        
+        public BigDecimal getLatitude() {
+            return latitude;
+        }
+        
+        public void setLatitude(BigDecimal latitude) {
+            this.latitude = latitude;
+        }
+        
+        public BigDecimal getLongitude() {
+            return longitude;
+        }
+        
+        public void setLongitude(BigDecimal longitude) {
+            this.longitude = longitude;
+        }
+        
+        public RouteWaypoint.WaypointType getWaypointType() {
+            return waypointType;
+        }
+        
+        public void setWaypointType(RouteWaypoint.WaypointType waypointType) {
+            this.waypointType = waypointType;
+        }
+        
+        public Integer getWaypointIndex() {
+            return waypointIndex;
+        }
+        
+        public void setWaypointIndex(Integer waypointIndex) {
+            this.waypointIndex = waypointIndex;
+        }
+        
+        public BigDecimal getDistanceFromPrevious() {
+            return distanceFromPrevious;
+        }
+        
+        public void setDistanceFromPrevious(BigDecimal distanceFromPrevious) {
+            this.distanceFromPrevious = distanceFromPrevious;
+        }
+        
+        public Integer getDurationFromPrevious() {
+            return durationFromPrevious;
+        }
+        
+        public void setDurationFromPrevious(Integer durationFromPrevious) {
+            this.durationFromPrevious = durationFromPrevious;
+        }
+        
+        public Integer getWaitingTime() {
+            return waitingTime;
+        }
+        
+        public void setWaitingTime(Integer waitingTime) {
+            this.waitingTime = waitingTime;
+        }
+        
+        public Integer getSnapDistance() {
+            return snapDistance;
+        }
+        
+        public void setSnapDistance(Integer snapDistance) {
+            this.snapDistance = snapDistance;
+        }
+    }
+    
     // Constructors
     public RouteResponseDto() {}
     
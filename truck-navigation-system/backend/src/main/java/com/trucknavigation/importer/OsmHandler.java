@@ -0,0 +1,13 @@
+package com.trucknavigation.importer;
+
+/**
+ * Receives decoded OSM elements. Tags are only valid during the call.
+ */
+interface OsmHandler {
+
+    default void node(long id, int latitude, int longitude, OsmTags tags) {
+    }
+
+    default void way(long id, long[] refs, OsmTags tags) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.trucknavigation.importer;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.routing.RoadGraph;
+
+import java.util.List;
+
+/**
+ * Result of an OSM import: the road graph and the restrictions found along its roads
+ */
+public record OsmImport(RoadGraph graph, List<RoadRestriction> restrictions) {
+}
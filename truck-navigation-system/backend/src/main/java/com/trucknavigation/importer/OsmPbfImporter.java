@@ -0,0 +1,283 @@
+package com.trucknavigation.importer;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.RoadClass;
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.routing.RoadGraphBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the truck road graph from an OpenStreetMap PBF extract in three streaming passes:
+ * <ol>
+ *   <li>ways: collect the node ids of every way trucks may use into a {@link RoutableNodeIndex}</li>
+ *   <li>nodes: keep the coordinates of exactly those nodes, in index order</li>
+ *   <li>ways again: split ways at junctions into edges, keeping the nodes in between as geometry</li>
+ * </ol>
+ * Nothing but the routable nodes is ever held in memory, about 16 bytes per node plus the graph
+ * itself, so country extracts import in a few hundred MB of heap. Posted height, width and weight
+ * limits go onto the edges; they are also returned as {@link RoadRestriction}s, together with toll
+ * plazas, so the restriction database describes the imported network.
+ */
+public class OsmPbfImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OsmPbfImporter.class);
+
+    /**
+     * Latitude of a routable node the extract does not contain
+     */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    /**
+     * Data source of the restrictions created by the importer
+     */
+    public static final String DATA_SOURCE = "OpenStreetMap";
+
+    private final int threads;
+
+    public OsmPbfImporter(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public OsmImport importFile(Path file) throws IOException {
+        long started = System.currentTimeMillis();
+        PbfPass pass = new PbfPass(file, threads);
+
+        // Pass 1: which nodes are routable, and which of them are junctions
+        RoutableNodeIndex index = new RoutableNodeIndex((int) Math.min(Files.size(file) / 8, 1 << 24));
+        pass.run(false, true, () -> new OsmHandler() {
+            @Override
+            public void way(long id, long[] refs, OsmTags tags) {
+                if (refs.length >= 2 && TruckTagParser.roadClass(tags) != null) {
+                    index.addWay(refs);
+                }
+            }
+        });
+        index.freeze();
+        logger.info("Found {} routable nodes in {} ({} MB index)", index.size(), file, index.memoryBytes() >> 20);
+
+        // Pass 2: coordinates of the routable nodes, and toll booths on them
+        int[] latitudes = new int[index.size()];
+        int[] longitudes = new int[index.size()];
+        Arrays.fill(latitudes, MISSING);
+        List<RoadRestriction> restrictions = Collections.synchronizedList(new ArrayList<>());
+        pass.run(true, false, () -> new OsmHandler() {
+            private int hint;
+
+            @Override
+            public void node(long id, int latitude, int longitude, OsmTags tags) {
+                int position = index.find(id, hint);
+                if (position < 0) {
+                    hint = -position - 1;
+                    return;
+                }
+                hint = position + 1;
+                latitudes[position] = latitude;
+                longitudes[position] = longitude;
+                if (!tags.isEmpty() && tags.is("barrier", "toll_booth")) {
+                    RoadRestriction toll = restriction(tags.get("name") != null ? tags.get("name") : "Toll booth",
+                            latitude, longitude, RoadRestriction.RestrictionType.TOLL_PLAZA, RoadRestriction.Severity.LOW);
+                    restrictions.add(toll);
+                }
+            }
+        });
+        index.assignTowers(latitudes);
+
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int position = 0; position < index.size(); position++) {
+            if (index.towerId(position) >= 0) {
+                builder.addNode(latitudes[position], longitudes[position]);
+            }
+        }
+
+        // Pass 3: edges between tower nodes
+        AtomicLong droppedWays = new AtomicLong();
+        pass.run(false, true, () -> new WayHandler(index, latitudes, longitudes, builder, restrictions, droppedWays));
+
+        RoadGraph graph = builder.build();
+        logger.info("Imported {} nodes, {} edges and {} restrictions from {} in {} ms ({} ways with missing nodes dropped)",
+                graph.getNodeCount(), graph.getEdgeCount(), restrictions.size(), file,
+                System.currentTimeMillis() - started, droppedWays.get());
+        return new OsmImport(graph, new ArrayList<>(restrictions));
+    }
+
+    private static RoadRestriction restriction(String name, int latitude, int longitude,
+                                               RoadRestriction.RestrictionType type, RoadRestriction.Severity severity) {
+        RoadRestriction restriction = new RoadRestriction(name,
+                BigDecimal.valueOf(latitude, 6), BigDecimal.valueOf(longitude, 6), type);
+        restriction.setSeverity(severity);
+        restriction.setDataSource(DATA_SOURCE);
+        return restriction;
+    }
+
+    /**
+     * Splits each routable way into edges at tower nodes. One instance per decoder thread; only
+     * adding to the shared builder is synchronized.
+     */
+    private static final class WayHandler implements OsmHandler {
+
+        private final RoutableNodeIndex index;
+        private final int[] latitudes;
+        private final int[] longitudes;
+        private final RoadGraphBuilder builder;
+        private final List<RoadRestriction> restrictions;
+        private final AtomicLong droppedWays;
+
+        private int[] positions = new int[256];
+        private int[] pillars = new int[512];
+
+        WayHandler(RoutableNodeIndex index, int[] latitudes, int[] longitudes, RoadGraphBuilder builder,
+                   List<RoadRestriction> restrictions, AtomicLong droppedWays) {
+            this.index = index;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.builder = builder;
+            this.restrictions = restrictions;
+            this.droppedWays = droppedWays;
+        }
+
+        @Override
+        public void way(long id, long[] refs, OsmTags tags) {
+            if (refs.length < 2) {
+                return;
+            }
+            RoadClass roadClass = TruckTagParser.roadClass(tags);
+            if (roadClass == null) {
+                return;
+            }
+            if (positions.length < refs.length) {
+                positions = new int[refs.length];
+            }
+            for (int i = 0; i < refs.length; i++) {
+                int position = index.find(refs[i], 0);
+                if (position < 0 || latitudes[position] == MISSING) {
+                    droppedWays.incrementAndGet();
+                    return;
+                }
+                positions[i] = position;
+            }
+
+            int direction = TruckTagParser.direction(tags, roadClass);
+            int speed = TruckTagParser.speed(tags, roadClass);
+            int flags = TruckTagParser.flags(tags);
+            BigDecimal maxHeight = TruckTagParser.metres(tags.get("maxheight"));
+            BigDecimal maxWidth = TruckTagParser.metres(tags.get("maxwidth"));
+            BigDecimal maxWeight = TruckTagParser.tonnes(tags.get("maxweight"));
+            int heightCm = TruckTagParser.toGraphUnits(maxHeight, 100);
+            int widthCm = TruckTagParser.toGraphUnits(maxWidth, 100);
+            int weight100Kg = TruckTagParser.toGraphUnits(maxWeight, 10);
+
+            int from = index.towerId(positions[0]);
+            int pillarCount = 0;
+            double length = 0;
+            for (int i = 1; i < refs.length; i++) {
+                int previous = positions[i - 1], current = positions[i];
+                length += GeoMath.haversineMeters(latitudes[previous], longitudes[previous],
+                        latitudes[current], longitudes[current]);
+                int tower = index.towerId(current);
+                if (tower < 0) {
+                    if (pillars.length < (pillarCount + 1) * 2) {
+                        pillars = Arrays.copyOf(pillars, pillars.length * 2);
+                    }
+                    pillars[pillarCount * 2] = latitudes[current];
+                    pillars[pillarCount * 2 + 1] = longitudes[current];
+                    pillarCount++;
+                    continue;
+                }
+                if (tower != from) {
+                    addSegment(from, tower, Arrays.copyOf(pillars, pillarCount * 2), (int) Math.round(length),
+                            direction, speed, roadClass, flags, heightCm, widthCm, weight100Kg);
+                }
+                from = tower;
+                pillarCount = 0;
+                length = 0;
+            }
+
+            if (maxHeight != null || maxWidth != null || maxWeight != null
+                    || (flags & (RoadGraph.FLAG_NO_HGV | RoadGraph.FLAG_NO_HAZMAT)) != 0) {
+                addRestrictions(id, tags, positions[refs.length / 2], flags, maxHeight, maxWidth, maxWeight);
+            }
+        }
+
+        private void addSegment(int from, int to, int[] points, int length, int direction, int speed,
+                                RoadClass roadClass, int flags, int heightCm, int widthCm, int weight100Kg) {
+            synchronized (builder) {
+                if (direction == 0) {
+                    builder.addRoad(from, to, length, speed, roadClass, flags, heightCm, widthCm, weight100Kg, points);
+                } else if (direction > 0) {
+                    builder.addEdge(from, to, length, speed, roadClass, flags, heightCm, widthCm, weight100Kg, points);
+                } else {
+                    builder.addEdge(to, from, length, speed, roadClass, flags, heightCm, widthCm, weight100Kg,
+                            reversePairs(points));
+                }
+            }
+        }
+
+        /**
+         * Record the way's limits as restrictions located at its middle node
+         */
+        private void addRestrictions(long wayId, OsmTags tags, int position, int flags,
+                                     BigDecimal maxHeight, BigDecimal maxWidth, BigDecimal maxWeight) {
+            int latitude = latitudes[position], longitude = longitudes[position];
+            String name = tags.get("name") != null ? tags.get("name") : "OSM way " + wayId;
+            boolean tunnel = (flags & RoadGraph.FLAG_TUNNEL) != 0;
+            boolean bridge = (flags & RoadGraph.FLAG_BRIDGE) != 0;
+            List<RoadRestriction> found = new ArrayList<>(2);
+            if (maxHeight != null) {
+                RoadRestriction restriction = restriction(name + " height limit", latitude, longitude,
+                        tunnel ? RoadRestriction.RestrictionType.TUNNEL_HEIGHT : RoadRestriction.RestrictionType.BRIDGE_HEIGHT,
+                        RoadRestriction.Severity.CRITICAL);
+                restriction.setMaxHeight(maxHeight);
+                found.add(restriction);
+            }
+            if (maxWidth != null) {
+                RoadRestriction restriction = restriction(name + " width limit", latitude, longitude,
+                        tunnel ? RoadRestriction.RestrictionType.TUNNEL_WIDTH : RoadRestriction.RestrictionType.ROAD_WIDTH,
+                        RoadRestriction.Severity.CRITICAL);
+                restriction.setMaxWidth(maxWidth);
+                found.add(restriction);
+            }
+            if (maxWeight != null) {
+                RoadRestriction restriction = restriction(name + " weight limit", latitude, longitude,
+                        bridge ? RoadRestriction.RestrictionType.BRIDGE_WEIGHT : RoadRestriction.RestrictionType.ROAD_WEIGHT,
+                        RoadRestriction.Severity.CRITICAL);
+                restriction.setMaxWeight(maxWeight.setScale(2, RoundingMode.HALF_UP));
+                found.add(restriction);
+            }
+            if ((flags & (RoadGraph.FLAG_NO_HGV | RoadGraph.FLAG_NO_HAZMAT)) != 0) {
+                RoadRestriction restriction = restriction(name + " truck ban", latitude, longitude,
+                        RoadRestriction.RestrictionType.NO_ENTRY_ZONE, RoadRestriction.Severity.HIGH);
+                restriction.setTrucksProhibited((flags & RoadGraph.FLAG_NO_HGV) != 0);
+                restriction.setHazmatProhibited((flags & RoadGraph.FLAG_NO_HAZMAT) != 0);
+                found.add(restriction);
+            }
+            String ref = tags.get("ref");
+            for (RoadRestriction restriction : found) {
+                restriction.setRoadNumber(ref);
+                restriction.setHighway(tags.get("highway"));
+            }
+            restrictions.addAll(found);
+        }
+
+        private static int[] reversePairs(int[] points) {
+            int[] reversed = new int[points.length];
+            for (int i = 0; i < points.length; i += 2) {
+                reversed[points.length - 2 - i] = points[i];
+                reversed[points.length - 1 - i] = points[i + 1];
+            }
+            return reversed;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.trucknavigation.importer;
+
+import java.util.Arrays;
+
+/**
+ * Tags of the OSM element currently being decoded. Keys and values are indexes into the string
+ * table of the block, so no per-element strings or maps are allocated; the instance is reused
+ * for every element of a block and must not be retained by handlers.
+ */
+final class OsmTags {
+
+    private String[] strings = new String[0];
+    private int[] keys = new int[8];
+    private int[] values = new int[8];
+    private int count;
+
+    void reset(String[] stringTable) {
+        this.strings = stringTable;
+        this.count = 0;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void add(int key, int value) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        keys[count] = key;
+        values[count] = value;
+        count++;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Value of the tag, or {@code null} if the element does not carry it
+     */
+    String get(String key) {
+        for (int i = 0; i < count; i++) {
+            if (strings[keys[i]].equals(key)) {
+                return strings[values[i]];
+            }
+        }
+        return null;
+    }
+
+    boolean is(String key, String value) {
+        return value.equals(get(key));
+    }
+
+    /**
+     * Whether the tag is present with any value other than "no"
+     */
+    boolean isSet(String key) {
+        String value = get(key);
+        return value != null && !value.equals("no");
+    }
+}
@@ -0,0 +1,122 @@
+package com.trucknavigation.importer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Sequential reader of the blob framing of an OSM PBF file. Each frame is a 4 byte big-endian
+ * header length, a {@code BlobHeader} message and a {@code Blob} message. Blobs are returned still
+ * compressed so that inflating and decoding can happen on worker threads.
+ */
+final class PbfBlobReader implements Closeable {
+
+    static final String TYPE_HEADER = "OSMHeader";
+    static final String TYPE_DATA = "OSMData";
+
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private final DataInputStream in;
+
+    PbfBlobReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    /**
+     * @return the next blob, or {@code null} at the end of the file
+     */
+    Blob next() throws IOException {
+        int headerSize;
+        try {
+            headerSize = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+            throw new IOException("Invalid blob header size " + headerSize);
+        }
+        byte[] header = new byte[headerSize];
+        in.readFully(header);
+
+        String type = null;
+        int dataSize = -1;
+        ProtobufReader reader = new ProtobufReader(header, 0, header.length);
+        while (reader.hasRemaining()) {
+            int key = reader.readKey();
+            switch (key >>> 3) {
+                case 1 -> type = reader.readString();
+                case 3 -> dataSize = reader.readInt32();
+                default -> reader.skip(key & 7);
+            }
+        }
+        if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid blob header (type " + type + ", size " + dataSize + ")");
+        }
+        byte[] data = new byte[dataSize];
+        in.readFully(data);
+        return new Blob(type, data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    record Blob(String type, byte[] data) {
+
+        /**
+         * Uncompressed payload of the blob
+         */
+        byte[] decompress() throws IOException {
+            byte[] raw = null;
+            byte[] zlib = null;
+            int rawSize = -1;
+            ProtobufReader reader = new ProtobufReader(data, 0, data.length);
+            while (reader.hasRemaining()) {
+                int key = reader.readKey();
+                switch (key >>> 3) {
+                    case 1 -> raw = reader.readBytes();
+                    case 2 -> rawSize = reader.readInt32();
+                    case 3 -> zlib = reader.readBytes();
+                    case 4, 5, 6, 7 -> throw new IOException("Unsupported blob compression (field " + (key >>> 3)
+                            + "), only raw and zlib blobs are supported");
+                    default -> reader.skip(key & 7);
+                }
+            }
+            if (raw != null) {
+                return raw;
+            }
+            if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+                throw new IOException("Blob without usable payload");
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(zlib);
+                byte[] output = new byte[rawSize];
+                int length = 0;
+                while (length < rawSize && !inflater.finished()) {
+                    int inflated = inflater.inflate(output, length, rawSize - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != rawSize) {
+                    throw new IOException("Blob inflated to " + length + " bytes, expected " + rawSize);
+                }
+                return output;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt zlib blob", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.trucknavigation.importer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * One sequential read of a PBF file with parallel decoding. The calling thread reads the blob
+ * frames and hands them through a small bounded queue to the workers, which inflate and decode
+ * them. At most {@code 2 * threads} compressed blobs are in flight, so memory stays bounded no
+ * matter how large the file is. Blocks reach the handlers in no particular order.
+ */
+final class PbfPass {
+
+    private static final PbfBlobReader.Blob END = new PbfBlobReader.Blob("", new byte[0]);
+
+    private final Path file;
+    private final int threads;
+
+    PbfPass(Path file, int threads) {
+        this.file = file;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Decode the file, giving each worker its own handler from the supplier
+     */
+    void run(boolean decodeNodes, boolean decodeWays, Supplier<OsmHandler> handlers) throws IOException {
+        BlockingQueue<PbfBlobReader.Blob> queue = new ArrayBlockingQueue<>(threads * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            OsmHandler handler = handlers.get();
+            Thread worker = new Thread(() -> {
+                PrimitiveBlockDecoder decoder = new PrimitiveBlockDecoder(decodeNodes, decodeWays);
+                try {
+                    for (PbfBlobReader.Blob blob = queue.take(); blob != END; blob = queue.take()) {
+                        if (failure.get() == null) {
+                            decoder.decode(blob.decompress(), handler);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    // Keep draining so the reader never blocks on a full queue
+                    try {
+                        while (queue.take() != END) {
+                            // discard
+                        }
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "pbf-decoder-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        try (PbfBlobReader reader = new PbfBlobReader(file)) {
+            PbfBlobReader.Blob header = reader.next();
+            if (header == null || !PbfBlobReader.TYPE_HEADER.equals(header.type())) {
+                throw new IOException(file + " does not start with an OSM header block");
+            }
+            PrimitiveBlockDecoder.checkHeader(header.decompress());
+            for (PbfBlobReader.Blob blob = reader.next(); blob != null && failure.get() == null; blob = reader.next()) {
+                if (PbfBlobReader.TYPE_DATA.equals(blob.type())) {
+                    queue.put(blob);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } finally {
+            try {
+                for (int i = 0; i < threads; i++) {
+                    queue.put(END);
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error instanceof RuntimeException runtime) {
+            throw new IOException("Could not decode " + file + ": " + runtime.getMessage(), runtime);
+        }
+        if (error != null) {
+            throw new IOException("Could not decode " + file, error);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.trucknavigation.importer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Decodes the {@code HeaderBlock} and {@code PrimitiveBlock} messages of an OSM PBF file and hands
+ * nodes and ways to an {@link OsmHandler}. Relations, changesets and metadata are skipped. One
+ * decoder is used per worker thread; it keeps its tag buffer between blocks.
+ */
+final class PrimitiveBlockDecoder {
+
+    private static final Set<String> SUPPORTED_FEATURES = Set.of("OsmSchema-V0.6", "DenseNodes");
+
+    private final boolean decodeNodes;
+    private final boolean decodeWays;
+    private final OsmTags tags = new OsmTags();
+
+    PrimitiveBlockDecoder(boolean decodeNodes, boolean decodeWays) {
+        this.decodeNodes = decodeNodes;
+        this.decodeWays = decodeWays;
+    }
+
+    /**
+     * Reject files that require features this decoder does not implement
+     */
+    static void checkHeader(byte[] block) throws IOException {
+        ProtobufReader reader = new ProtobufReader(block, 0, block.length);
+        while (reader.hasRemaining()) {
+            int key = reader.readKey();
+            if (key >>> 3 == 4) {
+                String feature = reader.readString();
+                if (!SUPPORTED_FEATURES.contains(feature)) {
+                    throw new IOException("Unsupported required PBF feature " + feature);
+                }
+            } else {
+                reader.skip(key & 7);
+            }
+        }
+    }
+
+    void decode(byte[] block, OsmHandler handler) {
+        String[] strings = new String[0];
+        int granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+
+        // Block-level settings may follow the groups, so read them first
+        ProtobufReader reader = new ProtobufReader(block, 0, block.length);
+        while (reader.hasRemaining()) {
+            int key = reader.readKey();
+            switch (key >>> 3) {
+                case 1 -> strings = readStringTable(reader.readMessage());
+                case 17 -> granularity = reader.readInt32();
+                case 19 -> latOffset = reader.readVarint();
+                case 20 -> lonOffset = reader.readVarint();
+                default -> reader.skip(key & 7);
+            }
+        }
+        tags.reset(strings);
+
+        reader = new ProtobufReader(block, 0, block.length);
+        while (reader.hasRemaining()) {
+            int key = reader.readKey();
+            if (key >>> 3 == 2) {
+                decodeGroup(reader.readMessage(), granularity, latOffset, lonOffset, handler);
+            } else {
+                reader.skip(key & 7);
+            }
+        }
+    }
+
+    private static String[] readStringTable(ProtobufReader reader) {
+        int count = 0;
+        String[] strings = new String[64];
+        while (reader.hasRemaining()) {
+            int key = reader.readKey();
+            if (key >>> 3 == 1) {
+                if (count == strings.length) {
+                    strings = Arrays.copyOf(strings, count * 2);
+                }
+                strings[count++] = reader.readString();
+            } else {
+                reader.skip(key & 7);
+            }
+        }
+        return Arrays.copyOf(strings, count);
+    }
+
+    private void decodeGroup(ProtobufReader group, int granularity, long latOffset, long lonOffset, OsmHandler handler) {
+        while (group.hasRemaining()) {
+            int key = group.readKey();
+            int field = key >>> 3;
+            if (field == 1 && decodeNodes) {
+                decodeNode(group.readMessage(), granularity, latOffset, lonOffset, handler);
+            } else if (field == 2 && decodeNodes) {
+                decodeDenseNodes(group.readMessage(), granularity, latOffset, lonOffset, handler);
+            } else if (field == 3 && decodeWays) {
+                decodeWay(group.readMessage(), handler);
+            } else {
+                group.skip(key & 7);
+            }
+        }
+    }
+
+    private void decodeNode(ProtobufReader node, int granularity, long latOffset, long lonOffset, OsmHandler handler) {
+        long id = 0, lat = 0, lon = 0;
+        int[] keys = null, values = null;
+        while (node.hasRemaining()) {
+            int key = node.readKey();
+            switch (key >>> 3) {
+                case 1 -> id = node.readSInt64();
+                case 2 -> keys = node.readPackedInts();
+                case 3 -> values = node.readPackedInts();
+                case 8 -> lat = node.readSInt64();
+                case 9 -> lon = node.readSInt64();
+                default -> node.skip(key & 7);
+            }
+        }
+        tags.clear();
+        if (keys != null && values != null) {
+            for (int i = 0; i < Math.min(keys.length, values.length); i++) {
+                tags.add(keys[i], values[i]);
+            }
+        }
+        handler.node(id, toMicroDegrees(latOffset, granularity, lat), toMicroDegrees(lonOffset, granularity, lon), tags);
+    }
+
+    private void decodeDenseNodes(ProtobufReader dense, int granularity, long latOffset, long lonOffset,
+                                  OsmHandler handler) {
+        long[] ids = null, lats = null, lons = null;
+        int[] keysValues = null;
+        while (dense.hasRemaining()) {
+            int key = dense.readKey();
+            switch (key >>> 3) {
+                case 1 -> ids = dense.readPackedLongs(true, true);
+                case 8 -> lats = dense.readPackedLongs(true, true);
+                case 9 -> lons = dense.readPackedLongs(true, true);
+                case 10 -> keysValues = dense.readPackedInts();
+                default -> dense.skip(key & 7);
+            }
+        }
+        if (ids == null || lats == null || lons == null) {
+            return;
+        }
+        int tagPosition = 0;
+        for (int i = 0; i < ids.length; i++) {
+            tags.clear();
+            if (keysValues != null) {
+                // Tags of consecutive nodes are separated by a single 0
+                while (tagPosition < keysValues.length && keysValues[tagPosition] != 0) {
+                    tags.add(keysValues[tagPosition], keysValues[tagPosition + 1]);
+                    tagPosition += 2;
+                }
+                tagPosition++;
+            }
+            handler.node(ids[i], toMicroDegrees(latOffset, granularity, lats[i]),
+                    toMicroDegrees(lonOffset, granularity, lons[i]), tags);
+        }
+    }
+
+    private void decodeWay(ProtobufReader way, OsmHandler handler) {
+        long id = 0;
+        int[] keys = null, values = null;
+        long[] refs = null;
+        while (way.hasRemaining()) {
+            int key = way.readKey();
+            switch (key >>> 3) {
+                case 1 -> id = way.readVarint();
+                case 2 -> keys = way.readPackedInts();
+                case 3 -> values = way.readPackedInts();
+                case 8 -> refs = way.readPackedLongs(true, true);
+                default -> way.skip(key & 7);
+            }
+        }
+        tags.clear();
+        if (keys != null && values != null) {
+            for (int i = 0; i < Math.min(keys.length, values.length); i++) {
+                tags.add(keys[i], values[i]);
+            }
+        }
+        handler.way(id, refs != null ? refs : new long[0], tags);
+    }
+
+    /**
+     * Convert a coordinate in granularity units (nanodegrees by default) to micro-degrees
+     */
+    private static int toMicroDegrees(long offset, int granularity, long value) {
+        return (int) Math.floorDiv(offset + granularity * value + 500, 1000);
+    }
+}
@@ -0,0 +1,153 @@
+package com.trucknavigation.importer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal protocol buffers wire-format reader over a byte array, covering exactly what the OSM
+ * PBF schema uses: varints, zigzag varints, length-delimited fields and packed repeated fields.
+ */
+final class ProtobufReader {
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_FIXED64 = 1;
+    static final int WIRE_LENGTH_DELIMITED = 2;
+    static final int WIRE_FIXED32 = 5;
+
+    private final byte[] data;
+    private int position;
+    private int limit;
+
+    ProtobufReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    boolean hasRemaining() {
+        return position < limit;
+    }
+
+    int position() {
+        return position;
+    }
+
+    /**
+     * Read the next field key; the field number is {@code key >>> 3} and the wire type {@code key & 7}
+     */
+    int readKey() {
+        return (int) readVarint();
+    }
+
+    long readVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IllegalStateException("Truncated varint");
+            }
+            byte b = data[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    int readInt32() {
+        return (int) readVarint();
+    }
+
+    long readSInt64() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read the length prefix of a length-delimited field and return the end offset of its payload
+     */
+    int readLengthDelimited() {
+        int length = readInt32();
+        if (length < 0 || position + length > limit) {
+            throw new IllegalStateException("Length-delimited field exceeds its message");
+        }
+        return position + length;
+    }
+
+    /**
+     * Reader over the payload of the length-delimited field at the current position
+     */
+    ProtobufReader readMessage() {
+        int end = readLengthDelimited();
+        ProtobufReader message = new ProtobufReader(data, position, end - position);
+        position = end;
+        return message;
+    }
+
+    byte[] readBytes() {
+        int end = readLengthDelimited();
+        byte[] bytes = new byte[end - position];
+        System.arraycopy(data, position, bytes, 0, bytes.length);
+        position = end;
+        return bytes;
+    }
+
+    String readString() {
+        int end = readLengthDelimited();
+        String value = new String(data, position, end - position, StandardCharsets.UTF_8);
+        position = end;
+        return value;
+    }
+
+    void skip(int wireType) {
+        switch (wireType) {
+            case WIRE_VARINT -> readVarint();
+            case WIRE_FIXED64 -> position += 8;
+            case WIRE_LENGTH_DELIMITED -> position = readLengthDelimited();
+            case WIRE_FIXED32 -> position += 4;
+            default -> throw new IllegalStateException("Unsupported wire type " + wireType);
+        }
+        if (position > limit) {
+            throw new IllegalStateException("Field exceeds its message");
+        }
+    }
+
+    /**
+     * Count the varints of a packed field without consuming it
+     */
+    int countPacked() {
+        int saved = position;
+        int end = readLengthDelimited();
+        int count = 0;
+        for (int i = position; i < end; i++) {
+            if (data[i] >= 0) {
+                count++;
+            }
+        }
+        position = saved;
+        return count;
+    }
+
+    /**
+     * Read a packed repeated varint field, optionally zigzag-decoded and delta-decoded
+     */
+    long[] readPackedLongs(boolean zigzag, boolean delta) {
+        long[] values = new long[countPacked()];
+        int end = readLengthDelimited();
+        long previous = 0;
+        for (int i = 0; position < end; i++) {
+            long value = zigzag ? readSInt64() : readVarint();
+            previous = delta ? previous + value : value;
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    int[] readPackedInts() {
+        int[] values = new int[countPacked()];
+        int end = readLengthDelimited();
+        for (int i = 0; position < end; i++) {
+            values[i] = readInt32();
+        }
+        return values;
+    }
+}
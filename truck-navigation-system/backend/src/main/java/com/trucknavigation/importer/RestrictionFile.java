@@ -0,0 +1,95 @@
+package com.trucknavigation.importer;
+
+import com.trucknavigation.model.RoadRestriction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Tab-separated file of the restrictions found by an import. The graph file is reused across
+ * restarts while the restriction database is not, so the restrictions are kept next to it and
+ * loaded again on every start.
+ */
+public final class RestrictionFile {
+
+    private static final String HEADER = "name\tlatitude\tlongitude\ttype\tseverity\tmax_height\tmax_width"
+            + "\tmax_weight\ttrucks_prohibited\thazmat_prohibited\troad_number\thighway\tdata_source";
+
+    private RestrictionFile() {}
+
+    public static void write(Path path, Iterable<RoadRestriction> restrictions) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (RoadRestriction r : restrictions) {
+                writer.write(String.join("\t", text(r.getName()), text(r.getLatitude()), text(r.getLongitude()),
+                        text(r.getRestrictionType()), text(r.getSeverity()), text(r.getMaxHeight()),
+                        text(r.getMaxWidth()), text(r.getMaxWeight()), text(r.isTrucksProhibited()),
+                        text(r.isHazmatProhibited()), text(r.getRoadNumber()), text(r.getHighway()),
+                        text(r.getDataSource())));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stream the restrictions of the file to the consumer
+     */
+    public static void read(Path path, Consumer<RoadRestriction> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException(path + " is not a restriction file");
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 13) {
+                    throw new IOException("Malformed restriction in " + path + " line " + lineNumber);
+                }
+                try {
+                    RoadRestriction restriction = new RoadRestriction(fields[0], new BigDecimal(fields[1]),
+                            new BigDecimal(fields[2]), RoadRestriction.RestrictionType.valueOf(fields[3]));
+                    restriction.setSeverity(fields[4].isEmpty() ? null : RoadRestriction.Severity.valueOf(fields[4]));
+                    restriction.setMaxHeight(decimal(fields[5]));
+                    restriction.setMaxWidth(decimal(fields[6]));
+                    restriction.setMaxWeight(decimal(fields[7]));
+                    restriction.setTrucksProhibited(Boolean.parseBoolean(fields[8]));
+                    restriction.setHazmatProhibited(Boolean.parseBoolean(fields[9]));
+                    restriction.setRoadNumber(fields[10].isEmpty() ? null : fields[10]);
+                    restriction.setHighway(fields[11].isEmpty() ? null : fields[11]);
+                    restriction.setDataSource(fields[12].isEmpty() ? null : fields[12]);
+                    consumer.accept(restriction);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed restriction in " + path + " line " + lineNumber, e);
+                }
+            }
+        }
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value.isEmpty() ? null : new BigDecimal(value);
+    }
+}
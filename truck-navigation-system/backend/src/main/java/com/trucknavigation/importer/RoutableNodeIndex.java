@@ -0,0 +1,151 @@
+package com.trucknavigation.importer;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of the OSM node ids referenced by routable ways, with a junction flag per node.
+ * <p>
+ * Ids are collected as {@code id << 1 | flag} in one primitive array. Whenever it fills up it is
+ * sorted and duplicates are merged in place, a repeated id becoming a junction; it only grows when
+ * compaction frees too little. Memory therefore tracks the number of distinct routable nodes
+ * (8 bytes each plus slack) rather than the number of way references. After collection the
+ * position of an id in the array is its dense node index.
+ */
+final class RoutableNodeIndex {
+
+    private long[] entries;
+    private int size;
+    private boolean frozen;
+
+    private long[] towerWords;
+    private int[] towerRank;
+    private int towerCount;
+
+    RoutableNodeIndex(int initialCapacity) {
+        entries = new long[Math.max(1024, initialCapacity)];
+    }
+
+    /**
+     * Add the node references of one way; its end nodes always become junctions
+     */
+    synchronized void addWay(long[] refs) {
+        if (frozen) {
+            throw new IllegalStateException("Index is already frozen");
+        }
+        if (size + refs.length > entries.length) {
+            compact();
+            if (size + refs.length > entries.length * 3L / 4) {
+                long capacity = Math.max(size + (long) refs.length, entries.length + (entries.length >> 1));
+                entries = Arrays.copyOf(entries, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+            }
+        }
+        for (int i = 0; i < refs.length; i++) {
+            boolean endpoint = i == 0 || i == refs.length - 1;
+            entries[size++] = refs[i] << 1 | (endpoint ? 1 : 0);
+        }
+    }
+
+    /**
+     * Sort and merge the collected ids; afterwards the index is read-only
+     */
+    synchronized void freeze() {
+        compact();
+        frozen = true;
+    }
+
+    private void compact() {
+        Arrays.sort(entries, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; ) {
+            long id = entries[i] >>> 1;
+            long flag = entries[i] & 1;
+            int j = i + 1;
+            while (j < size && entries[j] >>> 1 == id) {
+                flag = 1;
+                j++;
+            }
+            entries[unique++] = id << 1 | flag;
+            i = j;
+        }
+        size = unique;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) entries.length * Long.BYTES + (towerRank != null ? (long) towerRank.length * Integer.BYTES * 3 : 0);
+    }
+
+    boolean isJunction(int index) {
+        return (entries[index] & 1) != 0;
+    }
+
+    /**
+     * Index of the id, or {@code -(insertion point) - 1} if it is not routable. Lookups of
+     * ascending ids pass the previous insertion point as hint and gallop forward from it.
+     */
+    int find(long id, int hint) {
+        int low = 0;
+        int high = size - 1;
+        if (hint > 0 && hint <= size && entries[hint - 1] >>> 1 < id) {
+            // Everything before low is smaller than id; double the probe distance until passing it
+            low = hint;
+            int step = 1;
+            while (low + step - 1 < size && entries[low + step - 1] >>> 1 < id) {
+                low += step;
+                step <<= 1;
+            }
+            high = Math.min(size - 1, low + step - 1);
+        }
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = entries[middle] >>> 1;
+            if (value < id) {
+                low = middle + 1;
+            } else if (value > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Fix the graph node ids: every junction with known coordinates becomes a tower node, numbered
+     * in id order
+     */
+    void assignTowers(int[] latitudes) {
+        int words = (size + 63) >>> 6;
+        towerWords = new long[words];
+        towerRank = new int[words];
+        int count = 0;
+        for (int index = 0; index < size; index++) {
+            if ((index & 63) == 0) {
+                towerRank[index >>> 6] = count;
+            }
+            if (isJunction(index) && latitudes[index] != OsmPbfImporter.MISSING) {
+                towerWords[index >>> 6] |= 1L << index;
+                count++;
+            }
+        }
+        towerCount = count;
+    }
+
+    int getTowerCount() {
+        return towerCount;
+    }
+
+    /**
+     * Graph node id of a tower node, or -1 for a pillar
+     */
+    int towerId(int index) {
+        long word = towerWords[index >>> 6];
+        if ((word & (1L << index)) == 0) {
+            return -1;
+        }
+        return towerRank[index >>> 6] + Long.bitCount(word & ((1L << index) - 1));
+    }
+}
@@ -0,0 +1,214 @@
+package com.trucknavigation.importer;
+
+import com.trucknavigation.routing.RoadClass;
+import com.trucknavigation.routing.RoadGraph;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Interprets the OSM tags that matter for trucks: road class, direction, speed, toll and tunnel
+ * flags, hgv and hazmat access, and the posted height, width and weight limits.
+ */
+final class TruckTagParser {
+
+    private static final Map<String, RoadClass> HIGHWAY_CLASSES = Map.ofEntries(
+            Map.entry("motorway", RoadClass.MOTORWAY), Map.entry("motorway_link", RoadClass.MOTORWAY),
+            Map.entry("trunk", RoadClass.TRUNK), Map.entry("trunk_link", RoadClass.TRUNK),
+            Map.entry("primary", RoadClass.PRIMARY), Map.entry("primary_link", RoadClass.PRIMARY),
+            Map.entry("secondary", RoadClass.SECONDARY), Map.entry("secondary_link", RoadClass.SECONDARY),
+            Map.entry("tertiary", RoadClass.TERTIARY), Map.entry("tertiary_link", RoadClass.TERTIARY),
+            Map.entry("unclassified", RoadClass.RESIDENTIAL), Map.entry("residential", RoadClass.RESIDENTIAL),
+            Map.entry("living_street", RoadClass.RESIDENTIAL), Map.entry("road", RoadClass.RESIDENTIAL),
+            Map.entry("service", RoadClass.SERVICE));
+
+    private static final Set<String> CLOSED_ACCESS = Set.of("no", "private", "agricultural", "forestry", "emergency");
+    private static final Set<String> OPEN_ACCESS = Set.of("yes", "designated", "permissive", "destination", "delivery");
+    private static final Set<String> UNLIMITED = Set.of("none", "default", "unsigned", "no", "below_default");
+
+    private static final Pattern NUMBER_WITH_UNIT = Pattern.compile("^([0-9]+(?:[.,][0-9]+)?)\\s*([a-z]*)$");
+    private static final Pattern FEET_INCHES = Pattern.compile("^([0-9]+)\\s*'\\s*(?:([0-9]+(?:\\.[0-9]+)?)\\s*\")?$");
+
+    private TruckTagParser() {}
+
+    /**
+     * Road class of a way trucks may drive on, or {@code null} if the way is not part of the graph
+     */
+    static RoadClass roadClass(OsmTags tags) {
+        String highway = tags.get("highway");
+        if (highway == null || tags.is("area", "yes")) {
+            return null;
+        }
+        RoadClass roadClass = HIGHWAY_CLASSES.get(highway);
+        if (roadClass == null) {
+            return null;
+        }
+        String hgv = tags.get("hgv");
+        if (hgv != null && OPEN_ACCESS.contains(hgv)) {
+            return roadClass;
+        }
+        // The most specific access tag wins
+        for (String key : new String[]{"motor_vehicle", "vehicle", "access"}) {
+            String access = tags.get(key);
+            if (access != null) {
+                return CLOSED_ACCESS.contains(access) ? null : roadClass;
+            }
+        }
+        return roadClass;
+    }
+
+    /**
+     * @return 1 if the way may only be driven along its node order, -1 if only against it, 0 for both
+     */
+    static int direction(OsmTags tags, RoadClass roadClass) {
+        String oneway = tags.get("oneway");
+        if (oneway != null) {
+            switch (oneway) {
+                case "yes", "true", "1" -> {
+                    return 1;
+                }
+                case "-1", "reverse" -> {
+                    return -1;
+                }
+                case "no", "false", "0" -> {
+                    return 0;
+                }
+                default -> {
+                    // alternating, reversible etc. are treated as two-way
+                }
+            }
+        }
+        String junction = tags.get("junction");
+        if ("roundabout".equals(junction) || "circular".equals(junction)
+                || "motorway_link".equals(tags.get("highway")) || "motorway".equals(tags.get("highway"))) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Posted speed in km/h, or the default of the road class when none is tagged
+     */
+    static int speed(OsmTags tags, RoadClass roadClass) {
+        String maxSpeed = tags.get("maxspeed:hgv");
+        if (maxSpeed == null) {
+            maxSpeed = tags.get("maxspeed");
+        }
+        if (maxSpeed != null) {
+            Matcher matcher = NUMBER_WITH_UNIT.matcher(maxSpeed.trim().toLowerCase(Locale.ROOT));
+            if (matcher.matches()) {
+                double value = Double.parseDouble(matcher.group(1).replace(',', '.'));
+                if (matcher.group(2).equals("mph")) {
+                    value *= 1.609344;
+                } else if (!matcher.group(2).isEmpty() && !matcher.group(2).equals("kmh")
+                        && !matcher.group(2).equals("kph")) {
+                    return roadClass.getDefaultSpeed();
+                }
+                if (value >= 5 && value <= 150) {
+                    return (int) Math.round(value);
+                }
+            }
+        }
+        return roadClass.getDefaultSpeed();
+    }
+
+    static int flags(OsmTags tags) {
+        int flags = 0;
+        if (tags.isSet("toll") || tags.isSet("toll:hgv")) {
+            flags |= RoadGraph.FLAG_TOLL;
+        }
+        if (tags.isSet("tunnel")) {
+            flags |= RoadGraph.FLAG_TUNNEL;
+        }
+        if (tags.isSet("bridge")) {
+            flags |= RoadGraph.FLAG_BRIDGE;
+        }
+        if (tags.is("hgv", "no")) {
+            flags |= RoadGraph.FLAG_NO_HGV;
+        }
+        if (tags.is("hazmat", "no")) {
+            flags |= RoadGraph.FLAG_NO_HAZMAT;
+        }
+        return flags;
+    }
+
+    /**
+     * Parse a length limit such as {@code 4.5}, {@code 4.5 m} or {@code 14'6"} into metres
+     *
+     * @return the limit, or {@code null} when there is none or it cannot be read
+     */
+    static BigDecimal metres(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (UNLIMITED.contains(text)) {
+            return null;
+        }
+        Matcher feet = FEET_INCHES.matcher(text);
+        if (feet.matches()) {
+            double inches = feet.group(2) != null ? Double.parseDouble(feet.group(2)) : 0;
+            return positive(Integer.parseInt(feet.group(1)) * 0.3048 + inches * 0.0254);
+        }
+        Matcher matcher = NUMBER_WITH_UNIT.matcher(text);
+        if (!matcher.matches()) {
+            return null;
+        }
+        double number = Double.parseDouble(matcher.group(1).replace(',', '.'));
+        return switch (matcher.group(2)) {
+            case "", "m" -> positive(number);
+            case "cm" -> positive(number / 100);
+            case "ft" -> positive(number * 0.3048);
+            default -> null;
+        };
+    }
+
+    /**
+     * Parse a weight limit such as {@code 10}, {@code 10 t} or {@code 10000 kg} into tonnes
+     */
+    static BigDecimal tonnes(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (UNLIMITED.contains(text)) {
+            return null;
+        }
+        Matcher matcher = NUMBER_WITH_UNIT.matcher(text);
+        if (!matcher.matches()) {
+            return null;
+        }
+        double number = Double.parseDouble(matcher.group(1).replace(',', '.'));
+        return switch (matcher.group(2)) {
+            case "", "t" -> positive(number);
+            case "kg" -> positive(number / 1000);
+            case "st" -> positive(number * 0.90718474);
+            case "lbs" -> positive(number * 0.00045359237);
+            default -> null;
+        };
+    }
+
+    /**
+     * Limit in the integer unit of the graph (centimetres or 100 kg), rounded down so that a
+     * vehicle exactly at the posted limit is never let through by rounding
+     */
+    static int toGraphUnits(BigDecimal value, int factor) {
+        if (value == null) {
+            return 0;
+        }
+        int scaled = value.multiply(BigDecimal.valueOf(factor)).setScale(0, RoundingMode.FLOOR).intValue();
+        return Math.min(Short.MAX_VALUE, Math.max(1, scaled));
+    }
+
+    private static BigDecimal positive(double value) {
+        if (!(value > 0) || value > 1000) {
+            return null;
+        }
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
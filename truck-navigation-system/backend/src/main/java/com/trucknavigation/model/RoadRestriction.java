@@ -1,5 +1,6 @@
 package com.trucknavigation.model;
 
+import com.trucknavigation.service.RoadRestrictionListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
@@ -11,6 +12,7 @@ import java.time.LocalTime;
 
 @Entity
 @Table(name = "road_restrictions")
+@EntityListeners(RoadRestrictionListener.class)
 public class RoadRestriction {
     
     @Id
@@ -0,0 +1,166 @@
+package com.trucknavigation.repository;
+
+import com.trucknavigation.dto.JobDto;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jobs, their requests and their result items, in an H2 database file of their own so that they
+ * survive restarts while the application database does not. Plain SQL on the job data source
+ * rather than JPA: the entity manager belongs to the application database, whose schema is
+ * dropped and recreated on every start.
+ */
+@Repository
+public class JobStore {
+
+    private static final String JOB_COLUMNS = "id, type, status, priority, owner_id, total_items, completed_items, "
+            + "failed_items, error, created_at, started_at, finished_at, expires_at";
+
+    private final JdbcTemplate jdbc;
+    // Transactions on the job data source only, the application's transaction manager being JPA's
+    private final TransactionTemplate transactions;
+
+    public JobStore(@Qualifier("jobDataSource") DataSource jobDataSource) {
+        this.jdbc = new JdbcTemplate(jobDataSource);
+        this.transactions = new TransactionTemplate(new DataSourceTransactionManager(jobDataSource));
+    }
+
+    @PostConstruct
+    public void createTables() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS jobs (id VARCHAR(36) PRIMARY KEY, type VARCHAR(16) NOT NULL, "
+                + "status VARCHAR(16) NOT NULL, priority VARCHAR(16) NOT NULL, owner_id BIGINT NOT NULL, "
+                + "total_items INT NOT NULL, completed_items INT NOT NULL, failed_items INT NOT NULL, "
+                + "error VARCHAR(1000), created_at BIGINT NOT NULL, started_at BIGINT, finished_at BIGINT, "
+                + "expires_at BIGINT, request CLOB NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS job_results (job_id VARCHAR(36) NOT NULL, "
+                + "item_index INT NOT NULL, result CLOB NOT NULL, PRIMARY KEY (job_id, item_index))");
+    }
+
+    public void insert(JobDto job, String request) {
+        jdbc.update("INSERT INTO jobs (" + JOB_COLUMNS + ", request) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                job.getId(), job.getType().name(), job.getStatus().name(), job.getPriority().name(),
+                job.getOwnerId(), job.getTotalItems(), job.getCompletedItems(), job.getFailedItems(),
+                job.getError(), epochMillis(job.getCreatedAt()), epochMillis(job.getStartedAt()),
+                epochMillis(job.getFinishedAt()), epochMillis(job.getExpiresAt()), request);
+    }
+
+    /**
+     * The job, or null
+     */
+    public JobDto find(String id) {
+        List<JobDto> jobs = jdbc.query("SELECT " + JOB_COLUMNS + " FROM jobs WHERE id = ?", JobStore::toJob, id);
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    public List<JobDto> findByOwner(Long ownerId) {
+        return jdbc.query("SELECT " + JOB_COLUMNS + " FROM jobs WHERE owner_id = ? ORDER BY created_at DESC",
+                JobStore::toJob, ownerId);
+    }
+
+    /**
+     * Jobs that were queued or running when the application stopped, oldest first
+     */
+    public List<JobDto> findUnfinished() {
+        return jdbc.query("SELECT " + JOB_COLUMNS + " FROM jobs WHERE status IN ('QUEUED', 'RUNNING') "
+                + "ORDER BY created_at", JobStore::toJob);
+    }
+
+    public String findRequest(String id) {
+        List<String> requests = jdbc.queryForList("SELECT request FROM jobs WHERE id = ?", String.class, id);
+        return requests.isEmpty() ? null : requests.get(0);
+    }
+
+    public void updateStatus(String id, JobDto.Status status, LocalDateTime startedAt) {
+        jdbc.update("UPDATE jobs SET status = ?, started_at = ? WHERE id = ?", status.name(), epochMillis(startedAt), id);
+    }
+
+    public void finish(String id, JobDto.Status status, String error, LocalDateTime finishedAt,
+                       LocalDateTime expiresAt) {
+        jdbc.update("UPDATE jobs SET status = ?, error = ?, finished_at = ?, expires_at = ? WHERE id = ?",
+                status.name(), error, epochMillis(finishedAt), epochMillis(expiresAt), id);
+    }
+
+    /**
+     * Store the results of the items from {@code firstIndex} on, and count them as completed, at once
+     */
+    public void addResults(String id, int firstIndex, List<String> results, int failed) {
+        List<Object[]> rows = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            rows.add(new Object[] {id, firstIndex + i, results.get(i)});
+        }
+        transactions.executeWithoutResult(status -> {
+            jdbc.batchUpdate("INSERT INTO job_results (job_id, item_index, result) VALUES (?, ?, ?)", rows);
+            jdbc.update("UPDATE jobs SET completed_items = completed_items + ?, failed_items = failed_items + ? "
+                    + "WHERE id = ?", results.size(), failed, id);
+        });
+    }
+
+    /**
+     * Up to {@code limit} result items from {@code offset} on, in item order
+     */
+    public List<String> findResults(String id, int offset, int limit) {
+        return jdbc.queryForList("SELECT result FROM job_results WHERE job_id = ? AND item_index >= ? "
+                + "ORDER BY item_index LIMIT ?", String.class, id, offset, limit);
+    }
+
+    public void delete(String id) {
+        transactions.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM job_results WHERE job_id = ?", id);
+            jdbc.update("DELETE FROM jobs WHERE id = ?", id);
+        });
+    }
+
+    /**
+     * Delete finished jobs whose results have expired
+     *
+     * @return the number of jobs deleted
+     */
+    public int deleteExpired(LocalDateTime now) {
+        long millis = epochMillis(now);
+        Integer deleted = transactions.execute(status -> {
+            jdbc.update("DELETE FROM job_results WHERE job_id IN (SELECT id FROM jobs WHERE expires_at <= ?)", millis);
+            return jdbc.update("DELETE FROM jobs WHERE expires_at <= ?", millis);
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
+    private static JobDto toJob(ResultSet rows, int rowNumber) throws SQLException {
+        JobDto job = new JobDto();
+        job.setId(rows.getString("id"));
+        job.setType(JobDto.Type.valueOf(rows.getString("type")));
+        job.setStatus(JobDto.Status.valueOf(rows.getString("status")));
+        job.setPriority(JobDto.Priority.valueOf(rows.getString("priority")));
+        job.setOwnerId(rows.getLong("owner_id"));
+        job.setTotalItems(rows.getInt("total_items"));
+        job.setCompletedItems(rows.getInt("completed_items"));
+        job.setFailedItems(rows.getInt("failed_items"));
+        job.setError(rows.getString("error"));
+        job.setCreatedAt(getTime(rows, "created_at"));
+        job.setStartedAt(getTime(rows, "started_at"));
+        job.setFinishedAt(getTime(rows, "finished_at"));
+        job.setExpiresAt(getTime(rows, "expires_at"));
+        return job;
+    }
+
+    private static LocalDateTime getTime(ResultSet rows, String column) throws SQLException {
+        long millis = rows.getLong(column);
+        return rows.wasNull() ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static Long epochMillis(LocalDateTime time) {
+        return time == null ? null : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
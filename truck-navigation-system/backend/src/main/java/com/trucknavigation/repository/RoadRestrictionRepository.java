@@ -22,6 +22,10 @@ public interface RoadRestrictionRepository extends JpaRepository<RoadRestriction
             @Param("minLon") BigDecimal minLon, 
             @Param("maxLon") BigDecimal maxLon);
     
+    List<RoadRestriction> findByIsActiveTrue();
+    
+    long countByDataSource(String dataSource);
+    
     List<RoadRestriction> findByRestrictionTypeAndIsActiveTrue(RoadRestriction.RestrictionType restrictionType);
     
     List<RoadRestriction> findByStateAndIsActiveTrue(String state);
@@ -0,0 +1,44 @@
+package com.trucknavigation.routing;
+
+/**
+ * What makes a path an acceptable alternative to the cheapest one
+ */
+public final class AlternativeCriteria {
+
+    private final int maxCount;
+    private final double maxStretch;
+    private final double maxSharing;
+    private final double localOptimality;
+
+    /**
+     * @param maxCount        alternatives wanted besides the cheapest path
+     * @param maxStretch      how much more than the cheapest path a detour may cost, as a fraction of
+     *                        the part of the cheapest path it replaces
+     * @param maxSharing      fraction of the cheapest path's cost an alternative may have in common
+     *                        with it or with any other alternative
+     * @param localOptimality fraction of the cheapest path's cost over which every stretch of an
+     *                        alternative around its via node must itself be a cheapest path
+     */
+    public AlternativeCriteria(int maxCount, double maxStretch, double maxSharing, double localOptimality) {
+        this.maxCount = maxCount;
+        this.maxStretch = maxStretch;
+        this.maxSharing = maxSharing;
+        this.localOptimality = localOptimality;
+    }
+
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    public double getMaxStretch() {
+        return maxStretch;
+    }
+
+    public double getMaxSharing() {
+        return maxSharing;
+    }
+
+    public double getLocalOptimality() {
+        return localOptimality;
+    }
+}
@@ -0,0 +1,552 @@
+package com.trucknavigation.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cheapest path and alternatives to it from one bidirectional search on a
+ * {@link ContractionHierarchy}, by the via-node method.
+ * <p>
+ * A forward search from the source and a backward search from the target climb the hierarchy up to
+ * the cost an alternative may have at most. Plain upward search spaces are small and, where the
+ * endpoints rank high, nearly empty, so both searches also step down a few arcs from every node they
+ * climb to. Every node both of them reach is a via node: the path through it costs the sum of its two
+ * labels. The cheapest via node gives the cheapest path and the others are tried as alternatives,
+ * cheapest first. A candidate is accepted if it
+ * <ul>
+ * <li>uses no edge the weighting excludes and passes no node twice,</li>
+ * <li>shares at most a fraction of the cheapest path's cost with it and with every alternative
+ * accepted before (limited sharing),</li>
+ * <li>costs little more than the cheapest path between where it leaves and rejoins it (bounded
+ * stretch),</li>
+ * <li>and is a cheapest path over a stretch of given cost around its via node, checked with one more
+ * query between the ends of that stretch (local optimality).</li>
+ * </ul>
+ * Via nodes on a path already tried would mostly produce that path again and are skipped. If the
+ * cheapest path on the hierarchy uses an excluded edge, the fallback engine finds the truck's
+ * cheapest path and the alternatives are measured against that one.
+ */
+final class AlternativeRouteSearch {
+
+    private static final long UNREACHED = Long.MAX_VALUE;
+    // Arcs a search may step down below the nodes it climbs to
+    private static final int MAX_DESCENTS = 2;
+
+    private final RoadGraph graph;
+    private final ContractionHierarchy hierarchy;
+    private final EdgeWeighting weighting;
+    private final RoutingEngine fallback;
+    private final DescentGraph descentGraph;
+
+    private final SearchWorkspacePool workspaces;
+    private Labels labels;
+
+    AlternativeRouteSearch(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting,
+                           DescentGraph descentGraph, RoutingEngine fallback, SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.weighting = weighting;
+        this.descentGraph = descentGraph;
+        this.fallback = fallback;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * @return the cheapest path followed by its alternatives in increasing cost, or an empty list
+     * if the target cannot be reached
+     */
+    List<RoutePath> run(int source, int target, AlternativeCriteria criteria) {
+        if (source == target) {
+            return List.of(RoutePath.of(graph, weighting, source, target, new int[0], 0));
+        }
+        SearchWorkspace workspace = workspaces.acquire();
+        labels = workspace.alternativeLabels();
+        labels.begin();
+        try {
+            return search(source, target, criteria);
+        } finally {
+            labels.reset();
+            workspaces.release(workspace);
+        }
+    }
+
+    private List<RoutePath> search(int source, int target, AlternativeCriteria criteria) {
+        long shortest = distance(source, target, UNREACHED);
+        if (shortest == UNREACHED) {
+            return List.of();
+        }
+        long limit = (long) (shortest * (1 + criteria.getMaxStretch()));
+        long[] forwardWeights = labels.forwardWeights;
+        long[] backwardWeights = labels.backwardWeights;
+        IntArrayList reached = labels.forwardReached;
+        climb(source, true, forwardWeights, labels.forwardParents, reached, limit);
+        climb(target, false, backwardWeights, labels.backwardParents, labels.backwardReached, limit);
+
+        // Via nodes by the cost of the path through them
+        long[] candidates = labels.candidates(reached.size());
+        int candidateCount = 0;
+        for (int i = 0; i < reached.size(); i++) {
+            int node = reached.get(i);
+            if (backwardWeights[node] != UNREACHED) {
+                candidates[candidateCount++] = LongMinHeap.pack(forwardWeights[node] + backwardWeights[node], node);
+            }
+        }
+        if (candidateCount == 0) {
+            return List.of();
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        IntArrayList edges = labels.edges;
+        unpackVia(source, target, LongMinHeap.node(candidates[0]), edges);
+        RoutePath best = toPath(source, target, edges);
+        if (best == null) {
+            best = fallback.route(source, target, weighting);
+            if (best == null) {
+                return List.of();
+            }
+        }
+        List<RoutePath> paths = new ArrayList<>();
+        List<int[]> pathEdges = new ArrayList<>();
+        accept(best, paths, pathEdges);
+
+        long maxWeight = (long) (best.getWeight() * (1 + criteria.getMaxStretch()));
+        for (int k = 1; k < candidateCount && paths.size() <= criteria.getMaxCount(); k++) {
+            if (LongMinHeap.key(candidates[k]) > maxWeight) {
+                break;
+            }
+            int via = LongMinHeap.node(candidates[k]);
+            if (labels.isTried(via)) {
+                continue;
+            }
+            edges.clear();
+            int viaIndex = unpackVia(source, target, via, edges);
+            RoutePath alternative = admissible(source, target, edges, viaIndex, best, pathEdges, criteria);
+            if (alternative != null) {
+                accept(alternative, paths, pathEdges);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Search that climbs the hierarchy as far as the limit allows, then steps down from every node it
+     * climbed to by up to {@value #MAX_DESCENTS} arcs. The backward search follows arcs in reverse.
+     */
+    private void climb(int start, boolean forward, long[] weights, int[] parents, IntArrayList touched,
+                       long limit) {
+        LongMinHeap queue = labels.climbQueue;
+        queue.clear();
+        int[] descents = labels.descents;
+        weights[start] = 0;
+        parents[start] = -1;
+        descents[start] = 0;
+        touched.add(start);
+        queue.push(LongMinHeap.pack(0, start));
+        while (!queue.isEmpty()) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            if (LongMinHeap.key(item) > weights[node]) {
+                continue;
+            }
+            if (descents[node] == 0) {
+                int end = forward ? hierarchy.upEnd(node) : hierarchy.downEnd(node);
+                for (int i = forward ? hierarchy.upStart(node) : hierarchy.downStart(node); i < end; i++) {
+                    int arc = forward ? hierarchy.upArc(i) : hierarchy.downArc(i);
+                    relax(node, forward ? hierarchy.arcTarget(arc) : hierarchy.arcSource(arc), arc,
+                            forward ? hierarchy.upWeight(i) : hierarchy.downWeight(i), 0,
+                            limit, weights, parents, touched, queue);
+                }
+            }
+            if (descents[node] < MAX_DESCENTS) {
+                int[] first = forward ? descentGraph.forwardFirst : descentGraph.backwardFirst;
+                int[] arcs = forward ? descentGraph.forwardArcs : descentGraph.backwardArcs;
+                int[] arcWeights = forward ? descentGraph.forwardWeights : descentGraph.backwardWeights;
+                for (int i = first[node]; i < first[node + 1]; i++) {
+                    relax(node, forward ? hierarchy.arcTarget(arcs[i]) : hierarchy.arcSource(arcs[i]), arcs[i],
+                            arcWeights[i], descents[node] + 1, limit, weights, parents, touched, queue);
+                }
+            }
+        }
+    }
+
+    private void relax(int node, int next, int arc, int weight, int nextDescents, long limit, long[] weights,
+                       int[] parents, IntArrayList touched, LongMinHeap queue) {
+        long candidate = weights[node] + weight;
+        if (candidate <= limit && candidate < weights[next]) {
+            if (weights[next] == UNREACHED) {
+                touched.add(next);
+            }
+            weights[next] = candidate;
+            parents[next] = arc;
+            labels.descents[next] = nextDescents;
+            queue.push(LongMinHeap.pack(candidate, next));
+        }
+    }
+
+    /**
+     * Unpack the path that climbs from the source to the via node and descends to the target
+     *
+     * @return the number of edges leading up to the via node
+     */
+    private int unpackVia(int source, int target, int via, IntArrayList edges) {
+        IntArrayList arcs = labels.arcs;
+        arcs.clear();
+        int[] forwardParents = labels.forwardParents;
+        int[] backwardParents = labels.backwardParents;
+        for (int node = via; node != source; node = hierarchy.arcSource(forwardParents[node])) {
+            arcs.add(forwardParents[node]);
+        }
+        arcs.reverse();
+        for (int i = 0; i < arcs.size(); i++) {
+            hierarchy.unpack(arcs.get(i), edges);
+        }
+        int viaIndex = edges.size();
+        for (int node = via; node != target; node = hierarchy.arcTarget(backwardParents[node])) {
+            hierarchy.unpack(backwardParents[node], edges);
+        }
+        return viaIndex;
+    }
+
+    /**
+     * @return the path, or {@code null} if it uses an excluded edge or passes a node twice
+     */
+    private RoutePath toPath(int source, int target, IntArrayList edges) {
+        int visit = labels.nextVisit();
+        int[] visited = labels.visited;
+        visited[source] = visit;
+        long weight = 0;
+        for (int i = 0; i < edges.size(); i++) {
+            int edge = edges.get(i);
+            int edgeWeight = weighting.weight(graph, edge);
+            int node = graph.target(edge);
+            if (edgeWeight == EdgeWeighting.INFINITE || visited[node] == visit) {
+                return null;
+            }
+            visited[node] = visit;
+            weight += edgeWeight;
+        }
+        return RoutePath.of(graph, weighting, source, target, edges.toArray(), weight);
+    }
+
+    private RoutePath admissible(int source, int target, IntArrayList edges, int viaIndex, RoutePath best,
+                                 List<int[]> pathEdges, AlternativeCriteria criteria) {
+        labels.markTried(source);
+        for (int i = 0; i < edges.size(); i++) {
+            labels.markTried(graph.target(edges.get(i)));
+        }
+        RoutePath path = toPath(source, target, edges);
+        if (path == null) {
+
+            return null;
+        }
+        int[] pathEdgeIds = path.getEdges();
+        long[] costs = labels.costs(pathEdgeIds.length + 1);
+        costs[0] = 0;
+        for (int i = 0; i < pathEdgeIds.length; i++) {
+            costs[i + 1] = costs[i] + weighting.weight(graph, pathEdgeIds[i]);
+        }
+
+        // Limited sharing with every path accepted so far
+        long maxShared = (long) (best.getWeight() * criteria.getMaxSharing());
+        for (int[] accepted : pathEdges) {
+            long shared = 0;
+            for (int i = 0; i < pathEdgeIds.length; i++) {
+                if (Arrays.binarySearch(accepted, pathEdgeIds[i]) >= 0) {
+                    shared += costs[i + 1] - costs[i];
+                }
+            }
+            if (shared > maxShared) {
+                return null;
+            }
+        }
+
+        // Bounded stretch of the detour against the part of the cheapest path it replaces
+        int[] bestEdges = best.getEdges();
+        int prefix = 0;
+        while (prefix < pathEdgeIds.length && prefix < bestEdges.length && pathEdgeIds[prefix] == bestEdges[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < pathEdgeIds.length - prefix && suffix < bestEdges.length - prefix
+                && pathEdgeIds[pathEdgeIds.length - 1 - suffix] == bestEdges[bestEdges.length - 1 - suffix]) {
+            suffix++;
+        }
+        long common = costs[prefix] + costs[pathEdgeIds.length] - costs[pathEdgeIds.length - suffix];
+        long detour = path.getWeight() - common;
+        long replaced = best.getWeight() - common;
+        if (detour > replaced * (1 + criteria.getMaxStretch())) {
+
+            return null;
+        }
+
+        // Local optimality around the via node
+        long local = (long) (best.getWeight() * criteria.getLocalOptimality());
+        int from = viaIndex;
+        while (from > 0 && costs[viaIndex] - costs[from] < local) {
+            from--;
+        }
+        int to = viaIndex;
+        while (to < pathEdgeIds.length && costs[to] - costs[viaIndex] < local) {
+            to++;
+        }
+        long stretch = costs[to] - costs[from];
+        int fromNode = from == 0 ? source : graph.target(pathEdgeIds[from - 1]);
+        int toNode = to == 0 ? source : graph.target(pathEdgeIds[to - 1]);
+        if (stretch > 0 && distance(fromNode, toNode, stretch) < stretch) {
+
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Cost of the cheapest path between two nodes on the hierarchy, if it is at most the limit
+     *
+     * @return the cost, or {@link #UNREACHED} if it exceeds the limit
+     */
+    private long distance(int from, int to, long limit) {
+        IntArrayList forwardTouched = labels.queryForwardReached;
+        IntArrayList backwardTouched = labels.queryBackwardReached;
+        LongMinHeap forwardQueue = labels.queryForwardQueue;
+        LongMinHeap backwardQueue = labels.queryBackwardQueue;
+        forwardQueue.clear();
+        backwardQueue.clear();
+        long[] queryForward = labels.queryForward;
+        long[] queryBackward = labels.queryBackward;
+        queryForward[from] = 0;
+        queryBackward[to] = 0;
+        forwardTouched.add(from);
+        backwardTouched.add(to);
+        forwardQueue.push(LongMinHeap.pack(0, from));
+        backwardQueue.push(LongMinHeap.pack(0, to));
+
+        long best = UNREACHED;
+        while (true) {
+            boolean forwardOpen = !forwardQueue.isEmpty() && LongMinHeap.key(forwardQueue.peek()) < best;
+            boolean backwardOpen = !backwardQueue.isEmpty() && LongMinHeap.key(backwardQueue.peek()) < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            boolean forward = forwardOpen && (!backwardOpen
+                    || LongMinHeap.key(forwardQueue.peek()) <= LongMinHeap.key(backwardQueue.peek()));
+            LongMinHeap queue = forward ? forwardQueue : backwardQueue;
+            long[] weights = forward ? queryForward : queryBackward;
+            long[] opposite = forward ? queryBackward : queryForward;
+            IntArrayList touched = forward ? forwardTouched : backwardTouched;
+
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            if (LongMinHeap.key(item) > weights[node]) {
+                continue;
+            }
+            if (opposite[node] != UNREACHED) {
+                best = Math.min(best, weights[node] + opposite[node]);
+            }
+            int end = forward ? hierarchy.upEnd(node) : hierarchy.downEnd(node);
+            for (int i = forward ? hierarchy.upStart(node) : hierarchy.downStart(node); i < end; i++) {
+                int arc = forward ? hierarchy.upArc(i) : hierarchy.downArc(i);
+                int next = forward ? hierarchy.arcTarget(arc) : hierarchy.arcSource(arc);
+                long candidate = weights[node] + (forward ? hierarchy.upWeight(i) : hierarchy.downWeight(i));
+                if (candidate <= limit && candidate < weights[next]) {
+                    if (weights[next] == UNREACHED) {
+                        touched.add(next);
+                    }
+                    weights[next] = candidate;
+                    queue.push(LongMinHeap.pack(candidate, next));
+                }
+            }
+        }
+        labels.resetQuery();
+        return best <= limit ? best : UNREACHED;
+    }
+
+    /**
+     * Add the path to the result, with its edges sorted for the sharing check of later candidates
+     */
+    private void accept(RoutePath path, List<RoutePath> paths, List<int[]> pathEdges) {
+        labels.markTried(path.getSource());
+        for (int edge : path.getEdges()) {
+            labels.markTried(graph.target(edge));
+        }
+        int[] edges = path.getEdges().clone();
+        Arrays.sort(edges);
+        paths.add(path);
+        pathEdges.add(edges);
+    }
+
+    /**
+     * Node labels and buffers of one query, kept in a {@link SearchWorkspace}. The labels of the two
+     * searches the candidates come from are reset through the nodes those searches reached, the
+     * labels of the local optimality queries through the nodes each query reached, and the marks of
+     * tried and visited nodes by stamping them with the current query and candidate.
+     */
+    static final class Labels {
+        // Labels of the two searches the candidates come from
+        final long[] forwardWeights;
+        final long[] backwardWeights;
+        final int[] forwardParents;
+        final int[] backwardParents;
+        final IntArrayList forwardReached = new IntArrayList();
+        final IntArrayList backwardReached = new IntArrayList();
+        final LongMinHeap climbQueue = new LongMinHeap(256);
+        // Labels of the local optimality queries
+        final long[] queryForward;
+        final long[] queryBackward;
+        final IntArrayList queryForwardReached = new IntArrayList();
+        final IntArrayList queryBackwardReached = new IntArrayList();
+        final LongMinHeap queryForwardQueue = new LongMinHeap(64);
+        final LongMinHeap queryBackwardQueue = new LongMinHeap(64);
+        // Buffers for the candidates, the path of the current one and its cost up to each edge
+        final IntArrayList arcs = new IntArrayList();
+        final IntArrayList edges = new IntArrayList();
+        private long[] candidates = new long[256];
+        private long[] costs = new long[256];
+        // Arcs stepped down along the path of each label
+        final int[] descents;
+        // Nodes of every path tried in this query, and of the current candidate
+        private final int[] tried;
+        private int query;
+        final int[] visited;
+        private int visit;
+
+        Labels(int nodeCount) {
+            forwardWeights = new long[nodeCount];
+            backwardWeights = new long[nodeCount];
+            forwardParents = new int[nodeCount];
+            backwardParents = new int[nodeCount];
+            queryForward = new long[nodeCount];
+            queryBackward = new long[nodeCount];
+            descents = new int[nodeCount];
+            tried = new int[nodeCount];
+            visited = new int[nodeCount];
+            Arrays.fill(forwardWeights, UNREACHED);
+            Arrays.fill(backwardWeights, UNREACHED);
+            Arrays.fill(queryForward, UNREACHED);
+            Arrays.fill(queryBackward, UNREACHED);
+        }
+
+        void begin() {
+            if (++query == Integer.MAX_VALUE) {
+                Arrays.fill(tried, 0);
+                query = 1;
+            }
+        }
+
+        boolean isTried(int node) {
+            return tried[node] == query;
+        }
+
+        void markTried(int node) {
+            tried[node] = query;
+        }
+
+        int nextVisit() {
+            if (++visit == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                visit = 1;
+            }
+            return visit;
+        }
+
+        long[] candidates(int size) {
+            if (candidates.length < size) {
+                candidates = new long[Math.max(size, candidates.length * 2)];
+            }
+            return candidates;
+        }
+
+        long[] costs(int size) {
+            if (costs.length < size) {
+                costs = new long[Math.max(size, costs.length * 2)];
+            }
+            return costs;
+        }
+
+        void resetQuery() {
+            for (int i = 0; i < queryForwardReached.size(); i++) {
+                queryForward[queryForwardReached.get(i)] = UNREACHED;
+            }
+            for (int i = 0; i < queryBackwardReached.size(); i++) {
+                queryBackward[queryBackwardReached.get(i)] = UNREACHED;
+            }
+            queryForwardReached.clear();
+            queryBackwardReached.clear();
+        }
+
+        void reset() {
+            resetQuery();
+            edges.clear();
+            for (int i = 0; i < forwardReached.size(); i++) {
+                forwardWeights[forwardReached.get(i)] = UNREACHED;
+            }
+            for (int i = 0; i < backwardReached.size(); i++) {
+                backwardWeights[backwardReached.get(i)] = UNREACHED;
+            }
+            forwardReached.clear();
+            backwardReached.clear();
+        }
+    }
+
+    /**
+     * Arcs of a hierarchy that lead down, indexed by the node a search leaves through them: for the
+     * forward search the arcs to lower-ranked nodes by their source, for the backward search the arcs
+     * from lower-ranked nodes by their target. Built once per hierarchy.
+     */
+    static final class DescentGraph {
+        final int[] forwardFirst;
+        final int[] forwardArcs;
+        final int[] forwardWeights;
+        final int[] backwardFirst;
+        final int[] backwardArcs;
+        final int[] backwardWeights;
+
+        private DescentGraph(int[] forwardFirst, int[] forwardArcs, int[] forwardWeights,
+                             int[] backwardFirst, int[] backwardArcs, int[] backwardWeights) {
+            this.forwardFirst = forwardFirst;
+            this.forwardArcs = forwardArcs;
+            this.forwardWeights = forwardWeights;
+            this.backwardFirst = backwardFirst;
+            this.backwardArcs = backwardArcs;
+            this.backwardWeights = backwardWeights;
+        }
+
+        static DescentGraph build(ContractionHierarchy hierarchy, int nodeCount) {
+            // Downward arcs are listed by their lower-ranked target, upward arcs by their lower-ranked source
+            int[] forwardFirst = new int[nodeCount + 1];
+            int[] backwardFirst = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                for (int i = hierarchy.downStart(node); i < hierarchy.downEnd(node); i++) {
+                    forwardFirst[hierarchy.arcSource(hierarchy.downArc(i)) + 1]++;
+                }
+                for (int i = hierarchy.upStart(node); i < hierarchy.upEnd(node); i++) {
+                    backwardFirst[hierarchy.arcTarget(hierarchy.upArc(i)) + 1]++;
+                }
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                forwardFirst[node + 1] += forwardFirst[node];
+                backwardFirst[node + 1] += backwardFirst[node];
+            }
+            int[] forwardArcs = new int[forwardFirst[nodeCount]];
+            int[] forwardWeights = new int[forwardArcs.length];
+            int[] backwardArcs = new int[backwardFirst[nodeCount]];
+            int[] backwardWeights = new int[backwardArcs.length];
+            int[] forwardNext = Arrays.copyOf(forwardFirst, nodeCount);
+            int[] backwardNext = Arrays.copyOf(backwardFirst, nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                for (int i = hierarchy.downStart(node); i < hierarchy.downEnd(node); i++) {
+                    int k = forwardNext[hierarchy.arcSource(hierarchy.downArc(i))]++;
+                    forwardArcs[k] = hierarchy.downArc(i);
+                    forwardWeights[k] = hierarchy.downWeight(i);
+                }
+                for (int i = hierarchy.upStart(node); i < hierarchy.upEnd(node); i++) {
+                    int k = backwardNext[hierarchy.arcTarget(hierarchy.upArc(i))]++;
+                    backwardArcs[k] = hierarchy.upArc(i);
+                    backwardWeights[k] = hierarchy.upWeight(i);
+                }
+            }
+            return new DescentGraph(forwardFirst, forwardArcs, forwardWeights, backwardFirst, backwardArcs,
+                    backwardWeights);
+        }
+    }
+}
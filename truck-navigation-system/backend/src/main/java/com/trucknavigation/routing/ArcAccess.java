@@ -0,0 +1,47 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Whether the arcs of a {@link ContractionHierarchy} unpack onto an edge the weighting excludes,
+ * worked out at most once per arc and query. Like {@link SearchLabels} every entry is stamped with
+ * the query that set it, so a new query starts by bumping the stamp instead of clearing the arrays.
+ */
+final class ArcAccess {
+
+    private int[] stamp = new int[0];
+    private boolean[] restricted = new boolean[0];
+    private int query;
+    private RoadGraph graph;
+    private ContractionHierarchy hierarchy;
+    private EdgeWeighting weighting;
+
+    /**
+     * Forget the previous query's answers and answer for the given hierarchy and weighting
+     */
+    void begin(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting) {
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.weighting = weighting;
+        if (stamp.length < hierarchy.getArcCount()) {
+            stamp = new int[hierarchy.getArcCount()];
+            restricted = new boolean[hierarchy.getArcCount()];
+            query = 0;
+        }
+        if (++query == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+    }
+
+    boolean isRestricted(int arc) {
+        if (stamp[arc] != query) {
+            int edge = hierarchy.arcEdge(arc);
+            restricted[arc] = edge >= 0
+                    ? !weighting.isAccessible(graph, edge)
+                    : isRestricted(hierarchy.arcChild1(arc)) || isRestricted(hierarchy.arcChild2(arc));
+            stamp[arc] = query;
+        }
+        return restricted[arc];
+    }
+}
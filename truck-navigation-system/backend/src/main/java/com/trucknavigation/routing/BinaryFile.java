@@ -0,0 +1,355 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned container of named, checksummed primitive sections that is opened with
+ * {@link FileChannel#map} so every section is read zero-copy.
+ * <p>
+ * Layout (little endian): a 32 byte header with magic, format version, an 8 byte kind tag, the
+ * section count and the CRC32C of the directory; then one 64 byte directory entry per section
+ * (name, offset, length, CRC32C of the payload); then the payloads, each aligned to 8 bytes.
+ * The directory CRC covers every payload CRC, so it doubles as a content fingerprint.
+ * <p>
+ * Data built in memory can be {@link Writer#allocate() allocated} off-heap in the same form
+ * instead, so readers never hold large arrays on the garbage collected heap either way.
+ */
+final class BinaryFile {
+
+    static final int MAGIC = 0x46424E54; // "TNBF"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 64;
+    private static final int NAME_BYTES = 40;
+    private static final int KIND_BYTES = 8;
+    private static final int STAGING_BYTES = 1 << 20;
+
+    private final Path file;
+    private final String kind;
+    private final long fingerprint;
+    private final Map<String, Section> sections;
+
+    private BinaryFile(Path file, String kind, long fingerprint, Map<String, Section> sections) {
+        this.file = file;
+        this.kind = kind;
+        this.fingerprint = fingerprint;
+        this.sections = sections;
+    }
+
+    /**
+     * Map every section of the file. Only the header and directory are checked here; call
+     * {@link #verify()} to check the payload checksums as well.
+     */
+    static BinaryFile open(Path file, String expectedKind) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated binary file: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a routing binary file: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary format version " + version + " in " + file);
+            }
+            String kind = readName(header, KIND_BYTES);
+            if (!kind.equals(expectedKind)) {
+                throw new IOException("Expected a " + expectedKind + " file but " + file + " holds " + kind);
+            }
+            int sectionCount = header.getInt();
+            header.getInt(); // reserved
+            long directoryCrc = header.getLong();
+            if (sectionCount < 0 || HEADER_BYTES + (long) sectionCount * ENTRY_BYTES > size) {
+                throw new IOException("Corrupt section directory in " + file);
+            }
+
+            ByteBuffer directory = ByteBuffer.allocate(sectionCount * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, directory, HEADER_BYTES);
+            directory.flip();
+            CRC32C crc = new CRC32C();
+            crc.update(directory.duplicate());
+            if (crc.getValue() != directoryCrc) {
+                throw new IOException("Section directory checksum mismatch in " + file);
+            }
+
+            Map<String, Section> sections = new LinkedHashMap<>();
+            for (int i = 0; i < sectionCount; i++) {
+                String name = readName(directory, NAME_BYTES);
+                long offset = directory.getLong();
+                long length = directory.getLong();
+                long checksum = directory.getInt() & 0xFFFFFFFFL;
+                directory.getInt(); // reserved
+                if (offset < 0 || length < 0 || offset + length > size) {
+                    throw new IOException("Section " + name + " lies outside " + file);
+                }
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Section " + name + " exceeds the 2 GB mapping limit in " + file);
+                }
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+                sections.put(name, new Section(data, checksum));
+            }
+            return new BinaryFile(file, kind, directoryCrc, sections);
+        }
+    }
+
+    /**
+     * Recompute the checksum of every section payload; this touches every mapped page
+     */
+    void verify() throws IOException {
+        for (Map.Entry<String, Section> entry : sections.entrySet()) {
+            CRC32C crc = new CRC32C();
+            crc.update(entry.getValue().data.duplicate().clear());
+            if (crc.getValue() != entry.getValue().checksum) {
+                throw new IOException("Checksum mismatch in section " + entry.getKey() + " of " + file);
+            }
+        }
+    }
+
+    /**
+     * The mapped file, or {@code null} if the sections were allocated in memory
+     */
+    Path getFile() {
+        return file;
+    }
+
+    String getKind() {
+        return kind;
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    boolean has(String name) {
+        return sections.containsKey(name);
+    }
+
+    ByteBuffer bytes(String name) throws IOException {
+        return section(name).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    ShortBuffer shorts(String name) throws IOException {
+        return bytes(name).asShortBuffer();
+    }
+
+    IntBuffer ints(String name) throws IOException {
+        return bytes(name).asIntBuffer();
+    }
+
+    LongBuffer longs(String name) throws IOException {
+        return bytes(name).asLongBuffer();
+    }
+
+    private ByteBuffer section(String name) throws IOException {
+        Section section = sections.get(name);
+        if (section == null) {
+            throw new IOException("Missing section " + name + " in " + (file != null ? file : kind + " memory"));
+        }
+        return section.data;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private static String readName(ByteBuffer buffer, int width) {
+        byte[] raw = new byte[width];
+        buffer.get(raw);
+        int length = 0;
+        while (length < width && raw[length] != 0) {
+            length++;
+        }
+        return new String(raw, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeName(ByteBuffer buffer, String name, int width) {
+        byte[] raw = name.getBytes(StandardCharsets.US_ASCII);
+        if (raw.length > width) {
+            throw new IllegalArgumentException("Name too long: " + name);
+        }
+        buffer.put(raw);
+        buffer.put(new byte[width - raw.length]);
+    }
+
+    private record Section(ByteBuffer data, long checksum) {}
+
+    /**
+     * Streams sections to a temporary file and moves it into place once complete, so a reader
+     * never maps a half-written file
+     */
+    static final class Writer {
+
+        private final String kind;
+        private final List<String> names = new ArrayList<>();
+        private final List<Buffer> buffers = new ArrayList<>();
+
+        Writer(String kind) {
+            if (kind.length() > KIND_BYTES) {
+                throw new IllegalArgumentException("Kind too long: " + kind);
+            }
+            this.kind = kind;
+        }
+
+        Writer add(String name, Buffer data) {
+            if (!(data instanceof ByteBuffer || data instanceof ShortBuffer || data instanceof IntBuffer
+                    || data instanceof LongBuffer)) {
+                throw new IllegalArgumentException("Unsupported buffer type for section " + name);
+            }
+            names.add(name);
+            buffers.add(data);
+            return this;
+        }
+
+        /**
+         * @return the fingerprint of the written content, as later reported by {@link BinaryFile#getFingerprint()}
+         */
+        long write(Path file) throws IOException {
+            Path absolute = file.toAbsolutePath();
+            Files.createDirectories(absolute.getParent());
+            Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            long fingerprint;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer directory = ByteBuffer.allocate(names.size() * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                long position = align(HEADER_BYTES + (long) directory.capacity());
+                for (int i = 0; i < names.size(); i++) {
+                    CRC32C crc = new CRC32C();
+                    long length = writeSection(channel, position, buffers.get(i), staging, crc);
+                    writeName(directory, names.get(i), NAME_BYTES);
+                    directory.putLong(position).putLong(length).putInt((int) crc.getValue()).putInt(0);
+                    position = align(position + length);
+                }
+                // Pad to the aligned end, so an empty last section does not start past the end of the file
+                if (channel.size() < position) {
+                    writeFully(channel, ByteBuffer.allocate((int) (position - channel.size())), channel.size());
+                }
+                directory.flip();
+                CRC32C directoryCrc = new CRC32C();
+                directoryCrc.update(directory.duplicate());
+                fingerprint = directoryCrc.getValue();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION);
+                writeName(header, kind, KIND_BYTES);
+                header.putInt(names.size()).putInt(0).putLong(fingerprint);
+                header.flip();
+                writeFully(channel, header, 0);
+                writeFully(channel, directory, HEADER_BYTES);
+                channel.force(true);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return fingerprint;
+        }
+
+        /**
+         * Copy the sections into memory allocated outside the Java heap instead of a file. The
+         * result reads like a mapped file, with the fingerprint the written file would have; it
+         * counts against {@code -XX:MaxDirectMemorySize} rather than the heap.
+         */
+        BinaryFile allocate() {
+            ByteBuffer directory = ByteBuffer.allocate(names.size() * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            Map<String, Section> sections = new LinkedHashMap<>();
+            long position = align(HEADER_BYTES + (long) directory.capacity());
+            for (int i = 0; i < names.size(); i++) {
+                Buffer source = buffers.get(i).duplicate().clear();
+                long length = (long) source.capacity() * elementSize(source);
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Section " + names.get(i) + " exceeds the 2 GB buffer limit");
+                }
+                ByteBuffer data = ByteBuffer.allocateDirect((int) length).order(ByteOrder.LITTLE_ENDIAN);
+                if (source instanceof ByteBuffer bytes) {
+                    data.put(bytes);
+                } else if (source instanceof ShortBuffer shorts) {
+                    data.asShortBuffer().put(shorts);
+                } else if (source instanceof IntBuffer ints) {
+                    data.asIntBuffer().put(ints);
+                } else {
+                    data.asLongBuffer().put((LongBuffer) source);
+                }
+                data.clear();
+                CRC32C crc = new CRC32C();
+                crc.update(data.duplicate());
+                writeName(directory, names.get(i), NAME_BYTES);
+                directory.putLong(position).putLong(length).putInt((int) crc.getValue()).putInt(0);
+                position = align(position + length);
+                sections.put(names.get(i), new Section(data.asReadOnlyBuffer(), crc.getValue()));
+            }
+            directory.flip();
+            CRC32C directoryCrc = new CRC32C();
+            directoryCrc.update(directory);
+            return new BinaryFile(null, kind, directoryCrc.getValue(), sections);
+        }
+
+        private static long writeSection(FileChannel channel, long position, Buffer data, ByteBuffer staging,
+                                         CRC32C crc) throws IOException {
+            Buffer source = data.duplicate().clear();
+            int elementSize = elementSize(data);
+            long written = 0;
+            while (source.hasRemaining()) {
+                int count = Math.min(source.remaining(), STAGING_BYTES / elementSize);
+                int limit = source.limit();
+                source.limit(source.position() + count);
+                staging.clear();
+                if (source instanceof ByteBuffer bytes) {
+                    staging.put(bytes);
+                } else if (source instanceof ShortBuffer shorts) {
+                    staging.asShortBuffer().put(shorts);
+                } else if (source instanceof IntBuffer ints) {
+                    staging.asIntBuffer().put(ints);
+                } else {
+                    staging.asLongBuffer().put((LongBuffer) source);
+                }
+                source.limit(limit);
+                staging.position(0).limit(count * elementSize);
+                crc.update(staging);
+                staging.position(0);
+                writeFully(channel, staging, position + written);
+                written += (long) count * elementSize;
+            }
+            return written;
+        }
+
+        private static int elementSize(Buffer data) {
+            return data instanceof ByteBuffer ? 1 : data instanceof ShortBuffer ? 2 : data instanceof IntBuffer ? 4 : 8;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        }
+
+        private static long align(long position) {
+            return (position + 7) & ~7L;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Preprocessed Contraction Hierarchy for one {@link EdgeWeighting.Metric}.
+ * <p>
+ * Every arc is either an original graph edge or a shortcut that bypasses a contracted node and
+ * expands into two child arcs. The forward upward graph holds, per node, the arcs leading to a
+ * higher-ranked node; the backward upward graph holds, per node, the arcs arriving from a
+ * higher-ranked node. A query only ever climbs in both graphs and meets at the top.
+ * <p>
+ * Persisted hierarchies are memory-mapped, and record the fingerprint of the graph file they were
+ * built for.
+ */
+public final class ContractionHierarchy {
+
+    static final String FILE_KIND = "ch";
+
+    private final EdgeWeighting.Metric metric;
+    private final int graphNodeCount;
+    private final int graphEdgeCount;
+    private final long graphFingerprint;
+
+    private final IntBuffer rank;
+
+    private final IntBuffer arcSource;
+    private final IntBuffer arcTarget;
+    private final IntBuffer arcEdge;      // original edge id, or -1 for shortcuts
+    private final IntBuffer arcChild1;    // first half of a shortcut
+    private final IntBuffer arcChild2;    // second half of a shortcut
+
+    private final IntBuffer upFirst;
+    private final IntBuffer upArcs;
+    private final IntBuffer upWeights;
+    private final IntBuffer downFirst;
+    private final IntBuffer downArcs;
+    private final IntBuffer downWeights;
+
+    private final BinaryFile file;
+
+    ContractionHierarchy(EdgeWeighting.Metric metric, int graphNodeCount, int graphEdgeCount, long graphFingerprint,
+                         int[] rank, int[] arcSource, int[] arcTarget, int[] arcEdge, int[] arcChild1, int[] arcChild2,
+                         int[] upFirst, int[] upArcs, int[] upWeights,
+                         int[] downFirst, int[] downArcs, int[] downWeights) {
+        this(metric, graphNodeCount, graphEdgeCount, graphFingerprint, IntBuffer.wrap(rank),
+                IntBuffer.wrap(arcSource), IntBuffer.wrap(arcTarget), IntBuffer.wrap(arcEdge),
+                IntBuffer.wrap(arcChild1), IntBuffer.wrap(arcChild2),
+                IntBuffer.wrap(upFirst), IntBuffer.wrap(upArcs), IntBuffer.wrap(upWeights),
+                IntBuffer.wrap(downFirst), IntBuffer.wrap(downArcs), IntBuffer.wrap(downWeights), null);
+    }
+
+    private ContractionHierarchy(EdgeWeighting.Metric metric, int graphNodeCount, int graphEdgeCount,
+                                 long graphFingerprint, IntBuffer rank, IntBuffer arcSource, IntBuffer arcTarget,
+                                 IntBuffer arcEdge, IntBuffer arcChild1, IntBuffer arcChild2,
+                                 IntBuffer upFirst, IntBuffer upArcs, IntBuffer upWeights,
+                                 IntBuffer downFirst, IntBuffer downArcs, IntBuffer downWeights, BinaryFile file) {
+        this.metric = metric;
+        this.graphNodeCount = graphNodeCount;
+        this.graphEdgeCount = graphEdgeCount;
+        this.graphFingerprint = graphFingerprint;
+        this.rank = rank;
+        this.arcSource = arcSource;
+        this.arcTarget = arcTarget;
+        this.arcEdge = arcEdge;
+        this.arcChild1 = arcChild1;
+        this.arcChild2 = arcChild2;
+        this.upFirst = upFirst;
+        this.upArcs = upArcs;
+        this.upWeights = upWeights;
+        this.downFirst = downFirst;
+        this.downArcs = downArcs;
+        this.downWeights = downWeights;
+        this.file = file;
+    }
+
+    public EdgeWeighting.Metric getMetric() {
+        return metric;
+    }
+
+    public int getArcCount() {
+        return arcSource.capacity();
+    }
+
+    public int getShortcutCount() {
+        return arcSource.capacity() - graphEdgeCount;
+    }
+
+    /**
+     * Check that the hierarchy was built for exactly this graph
+     */
+    public boolean matches(RoadGraph graph) {
+        return graph.getNodeCount() == graphNodeCount && graph.getEdgeCount() == graphEdgeCount
+                && graph.getFingerprint() == graphFingerprint;
+    }
+
+    public int rank(int node) {
+        return rank.get(node);
+    }
+
+    public int upStart(int node) {
+        return upFirst.get(node);
+    }
+
+    public int upEnd(int node) {
+        return upFirst.get(node + 1);
+    }
+
+    public int upArc(int position) {
+        return upArcs.get(position);
+    }
+
+    public int upWeight(int position) {
+        return upWeights.get(position);
+    }
+
+    public int downStart(int node) {
+        return downFirst.get(node);
+    }
+
+    public int downEnd(int node) {
+        return downFirst.get(node + 1);
+    }
+
+    public int downArc(int position) {
+        return downArcs.get(position);
+    }
+
+    public int downWeight(int position) {
+        return downWeights.get(position);
+    }
+
+    public int arcSource(int arc) {
+        return arcSource.get(arc);
+    }
+
+    public int arcTarget(int arc) {
+        return arcTarget.get(arc);
+    }
+
+    /**
+     * Original edge of the arc, or -1 for a shortcut
+     */
+    public int arcEdge(int arc) {
+        return arcEdge.get(arc);
+    }
+
+    public int arcChild1(int arc) {
+        return arcChild1.get(arc);
+    }
+
+    public int arcChild2(int arc) {
+        return arcChild2.get(arc);
+    }
+
+    /**
+     * Expand an arc into its original edges and append them in driving order
+     */
+    public void unpack(int arc, IntArrayList edges) {
+        if (arcEdge.get(arc) >= 0) {
+            edges.add(arcEdge.get(arc));
+            return;
+        }
+        unpack(arcChild1.get(arc), edges);
+        unpack(arcChild2.get(arc), edges);
+    }
+
+    /**
+     * Persist the hierarchy so that it does not have to be rebuilt on the next start
+     */
+    public void writeTo(Path file) throws IOException {
+        sections().write(file);
+    }
+
+    /**
+     * The same hierarchy in memory allocated outside the Java heap, for one that was built but
+     * not written to a file; a mapped or copied hierarchy is returned as is
+     */
+    public ContractionHierarchy offHeap() {
+        if (file != null) {
+            return this;
+        }
+        try {
+            return read(sections().allocate());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read back the hierarchy sections", e);
+        }
+    }
+
+    private BinaryFile.Writer sections() {
+        return new BinaryFile.Writer(FILE_KIND)
+                .add("meta.metric", ByteBuffer.wrap(metric.name().getBytes(StandardCharsets.US_ASCII)))
+                .add("meta.graph", LongBuffer.wrap(new long[]{graphNodeCount, graphEdgeCount, graphFingerprint}))
+                .add("rank", rank)
+                .add("arc.source", arcSource).add("arc.target", arcTarget).add("arc.edge", arcEdge)
+                .add("arc.child1", arcChild1).add("arc.child2", arcChild2)
+                .add("up.first", upFirst).add("up.arcs", upArcs).add("up.weights", upWeights)
+                .add("down.first", downFirst).add("down.arcs", downArcs).add("down.weights", downWeights);
+    }
+
+    /**
+     * Map a hierarchy written by {@link #writeTo(Path)} without copying it onto the heap
+     */
+    public static ContractionHierarchy readFrom(Path path) throws IOException {
+        return read(BinaryFile.open(path, FILE_KIND));
+    }
+
+    private static ContractionHierarchy read(BinaryFile file) throws IOException {
+        ByteBuffer metricName = file.bytes("meta.metric");
+        byte[] name = new byte[metricName.remaining()];
+        metricName.get(name);
+        LongBuffer graph = file.longs("meta.graph");
+        return new ContractionHierarchy(EdgeWeighting.Metric.valueOf(new String(name, StandardCharsets.US_ASCII)),
+                (int) graph.get(0), (int) graph.get(1), graph.get(2), file.ints("rank"),
+                file.ints("arc.source"), file.ints("arc.target"), file.ints("arc.edge"),
+                file.ints("arc.child1"), file.ints("arc.child2"),
+                file.ints("up.first"), file.ints("up.arcs"), file.ints("up.weights"),
+                file.ints("down.first"), file.ints("down.arcs"), file.ints("down.weights"), file);
+    }
+
+    /**
+     * Check the payload checksums of a mapped or off-heap hierarchy
+     */
+    public void verifyChecksums() throws IOException {
+        if (file != null) {
+            file.verify();
+        }
+    }
+}
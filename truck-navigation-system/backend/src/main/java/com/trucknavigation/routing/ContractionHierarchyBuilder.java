@@ -0,0 +1,339 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Offline preprocessing that contracts the road graph into a {@link ContractionHierarchy}.
+ * <p>
+ * Nodes are contracted in order of a lazily updated priority built from the edge difference
+ * (shortcuts added minus arcs removed) and the number of already contracted neighbours, which
+ * keeps the hierarchy flat and the shortcut count low. A shortcut u→w around node v is only added
+ * when a bounded witness search from u cannot reach w as cheaply without passing through v.
+ * Arc ids {@code [0, edgeCount)} are the original edges; shortcuts are appended after them.
+ */
+public class ContractionHierarchyBuilder {
+
+    private static final int PRIORITY_OFFSET = 1 << 30;
+    private static final int CONTRACTION_SETTLE_LIMIT = 500;
+    private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+    private final RoadGraph graph;
+    private final EdgeWeighting weighting;
+    private final int nodeCount;
+
+    private int arcCount;
+    private int[] arcSource;
+    private int[] arcTarget;
+    private int[] arcWeight;
+    private int[] arcEdge;
+    private int[] arcChild1;
+    private int[] arcChild2;
+
+    private final int[][] outArcs;
+    private final int[] outSize;
+    private final int[][] inArcs;
+    private final int[] inSize;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    private final int[] priority;
+
+    private final int[] witnessDistance;
+    private final int[] touched;
+    private int touchedCount;
+    private final LongMinHeap witnessHeap;
+
+    public ContractionHierarchyBuilder(RoadGraph graph, EdgeWeighting.Metric metric) {
+        this.graph = graph;
+        this.weighting = EdgeWeighting.unrestricted(metric);
+        this.nodeCount = graph.getNodeCount();
+
+        int edgeCount = graph.getEdgeCount();
+        int capacity = edgeCount + edgeCount / 2 + 16;
+        arcSource = new int[capacity];
+        arcTarget = new int[capacity];
+        arcWeight = new int[capacity];
+        arcEdge = new int[capacity];
+        arcChild1 = new int[capacity];
+        arcChild2 = new int[capacity];
+
+        outArcs = new int[nodeCount][];
+        outSize = new int[nodeCount];
+        inArcs = new int[nodeCount][];
+        inSize = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            outArcs[node] = new int[Math.max(2, graph.edgeEnd(node) - graph.edgeStart(node))];
+            inArcs[node] = new int[Math.max(2, graph.inEdgeEnd(node) - graph.inEdgeStart(node))];
+        }
+
+        contracted = new boolean[nodeCount];
+        contractedNeighbours = new int[nodeCount];
+        priority = new int[nodeCount];
+        witnessDistance = new int[nodeCount];
+        Arrays.fill(witnessDistance, Integer.MAX_VALUE);
+        touched = new int[nodeCount];
+        witnessHeap = new LongMinHeap(1024);
+
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int weight = weighting.weight(graph, edge);
+            int arc = newArc(graph.source(edge), graph.target(edge), weight, edge, -1, -1);
+            if (weight != EdgeWeighting.INFINITE && graph.source(edge) != graph.target(edge)) {
+                link(arc);
+            }
+        }
+    }
+
+    /**
+     * Contract every node and pack the result into the query-side arrays
+     */
+    public ContractionHierarchy build() {
+        LongMinHeap queue = new LongMinHeap(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            priority[node] = computePriority(node);
+            queue.push(packPriority(priority[node], node));
+        }
+
+        int[] rank = new int[nodeCount];
+        int nextRank = 0;
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int node = LongMinHeap.node(entry);
+            if (contracted[node] || LongMinHeap.key(entry) != priority[node] + (long) PRIORITY_OFFSET) {
+                continue;
+            }
+            // Lazy update: priorities of untouched nodes drift as the graph shrinks
+            int current = computePriority(node);
+            if (!queue.isEmpty() && current > LongMinHeap.key(queue.peek()) - PRIORITY_OFFSET) {
+                priority[node] = current;
+                queue.push(packPriority(current, node));
+                continue;
+            }
+            contract(node, false);
+            contracted[node] = true;
+            rank[node] = nextRank++;
+            for (int i = 0; i < outSize[node]; i++) {
+                touchNeighbour(arcTarget[outArcs[node][i]], queue);
+            }
+            for (int i = 0; i < inSize[node]; i++) {
+                touchNeighbour(arcSource[inArcs[node][i]], queue);
+            }
+        }
+        return pack(rank);
+    }
+
+    private void touchNeighbour(int neighbour, LongMinHeap queue) {
+        if (contracted[neighbour]) {
+            return;
+        }
+        contractedNeighbours[neighbour]++;
+        priority[neighbour] = computePriority(neighbour);
+        queue.push(packPriority(priority[neighbour], neighbour));
+    }
+
+    private long packPriority(int value, int node) {
+        return LongMinHeap.pack(value + (long) PRIORITY_OFFSET, node);
+    }
+
+    private int computePriority(int node) {
+        int shortcuts = contract(node, true);
+        int removed = 0;
+        for (int i = 0; i < outSize[node]; i++) {
+            if (!contracted[arcTarget[outArcs[node][i]]]) {
+                removed++;
+            }
+        }
+        for (int i = 0; i < inSize[node]; i++) {
+            if (!contracted[arcSource[inArcs[node][i]]]) {
+                removed++;
+            }
+        }
+        return 10 * (shortcuts - removed) + 5 * contractedNeighbours[node];
+    }
+
+    /**
+     * Add the shortcuts needed to remove {@code node}, or only count them when simulating
+     */
+    private int contract(int node, boolean simulate) {
+        int shortcuts = 0;
+        int settleLimit = simulate ? ESTIMATE_SETTLE_LIMIT : CONTRACTION_SETTLE_LIMIT;
+        for (int i = 0; i < inSize[node]; i++) {
+            int inArc = inArcs[node][i];
+            int from = arcSource[inArc];
+            if (contracted[from]) {
+                continue;
+            }
+            // -1 while no out arc leads anywhere but back to from; 0 is a real weight of very short edges
+            int maxOut = -1;
+            for (int j = 0; j < outSize[node]; j++) {
+                int outArc = outArcs[node][j];
+                int to = arcTarget[outArc];
+                if (!contracted[to] && to != from) {
+                    maxOut = Math.max(maxOut, arcWeight[outArc]);
+                }
+            }
+            if (maxOut < 0) {
+                continue;
+            }
+            long limit = (long) arcWeight[inArc] + maxOut;
+            witnessSearch(from, node, limit, settleLimit);
+            for (int j = 0; j < outSize[node]; j++) {
+                int outArc = outArcs[node][j];
+                int to = arcTarget[outArc];
+                if (contracted[to] || to == from) {
+                    continue;
+                }
+                long via = (long) arcWeight[inArc] + arcWeight[outArc];
+                if (witnessDistance[to] <= via) {
+                    continue;
+                }
+                shortcuts++;
+                if (!simulate) {
+                    addShortcut(from, to, (int) Math.min(via, EdgeWeighting.INFINITE - 1), inArc, outArc);
+                }
+            }
+            resetWitness();
+        }
+        return shortcuts;
+    }
+
+    private void witnessSearch(int from, int ignored, long limit, int settleLimit) {
+        witnessHeap.clear();
+        witnessDistance[from] = 0;
+        touched[touchedCount++] = from;
+        witnessHeap.push(LongMinHeap.pack(0, from));
+        int settled = 0;
+        while (!witnessHeap.isEmpty() && settled++ < settleLimit) {
+            long entry = witnessHeap.poll();
+            int node = LongMinHeap.node(entry);
+            long distance = LongMinHeap.key(entry);
+            if (distance > witnessDistance[node]) {
+                continue;
+            }
+            if (distance > limit) {
+                break;
+            }
+            for (int i = 0; i < outSize[node]; i++) {
+                int arc = outArcs[node][i];
+                int next = arcTarget[arc];
+                if (next == ignored || contracted[next]) {
+                    continue;
+                }
+                long candidate = distance + arcWeight[arc];
+                if (candidate < witnessDistance[next]) {
+                    if (witnessDistance[next] == Integer.MAX_VALUE) {
+                        touched[touchedCount++] = next;
+                    }
+                    witnessDistance[next] = (int) Math.min(candidate, Integer.MAX_VALUE - 1);
+                    witnessHeap.push(LongMinHeap.pack(candidate, next));
+                }
+            }
+        }
+    }
+
+    private void resetWitness() {
+        for (int i = 0; i < touchedCount; i++) {
+            witnessDistance[touched[i]] = Integer.MAX_VALUE;
+        }
+        touchedCount = 0;
+    }
+
+    private void addShortcut(int from, int to, int weight, int child1, int child2) {
+        for (int i = 0; i < outSize[from]; i++) {
+            int arc = outArcs[from][i];
+            if (arcTarget[arc] != to) {
+                continue;
+            }
+            if (arcWeight[arc] <= weight) {
+                return;
+            }
+            if (arcEdge[arc] < 0) {
+                arcWeight[arc] = weight;
+                arcChild1[arc] = child1;
+                arcChild2[arc] = child2;
+                return;
+            }
+        }
+        link(newArc(from, to, weight, -1, child1, child2));
+    }
+
+    private int newArc(int source, int target, int weight, int edge, int child1, int child2) {
+        if (arcCount == arcSource.length) {
+            int capacity = arcCount * 2;
+            arcSource = Arrays.copyOf(arcSource, capacity);
+            arcTarget = Arrays.copyOf(arcTarget, capacity);
+            arcWeight = Arrays.copyOf(arcWeight, capacity);
+            arcEdge = Arrays.copyOf(arcEdge, capacity);
+            arcChild1 = Arrays.copyOf(arcChild1, capacity);
+            arcChild2 = Arrays.copyOf(arcChild2, capacity);
+        }
+        arcSource[arcCount] = source;
+        arcTarget[arcCount] = target;
+        arcWeight[arcCount] = weight;
+        arcEdge[arcCount] = edge;
+        arcChild1[arcCount] = child1;
+        arcChild2[arcCount] = child2;
+        return arcCount++;
+    }
+
+    private void link(int arc) {
+        int source = arcSource[arc];
+        int target = arcTarget[arc];
+        if (outSize[source] == outArcs[source].length) {
+            outArcs[source] = Arrays.copyOf(outArcs[source], outSize[source] * 2);
+        }
+        outArcs[source][outSize[source]++] = arc;
+        if (inSize[target] == inArcs[target].length) {
+            inArcs[target] = Arrays.copyOf(inArcs[target], inSize[target] * 2);
+        }
+        inArcs[target][inSize[target]++] = arc;
+    }
+
+    private ContractionHierarchy pack(int[] rank) {
+        int[] upFirst = new int[nodeCount + 1];
+        int[] downFirst = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int i = 0; i < outSize[node]; i++) {
+                if (rank[arcTarget[outArcs[node][i]]] > rank[node]) {
+                    upFirst[node + 1]++;
+                }
+            }
+            for (int i = 0; i < inSize[node]; i++) {
+                if (rank[arcSource[inArcs[node][i]]] > rank[node]) {
+                    downFirst[node + 1]++;
+                }
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            upFirst[node + 1] += upFirst[node];
+            downFirst[node + 1] += downFirst[node];
+        }
+
+        int[] upArcs = new int[upFirst[nodeCount]];
+        int[] upWeights = new int[upArcs.length];
+        int[] downArcs = new int[downFirst[nodeCount]];
+        int[] downWeights = new int[downArcs.length];
+        for (int node = 0; node < nodeCount; node++) {
+            int up = upFirst[node];
+            for (int i = 0; i < outSize[node]; i++) {
+                int arc = outArcs[node][i];
+                if (rank[arcTarget[arc]] > rank[node]) {
+                    upArcs[up] = arc;
+                    upWeights[up++] = arcWeight[arc];
+                }
+            }
+            int down = downFirst[node];
+            for (int i = 0; i < inSize[node]; i++) {
+                int arc = inArcs[node][i];
+                if (rank[arcSource[arc]] > rank[node]) {
+                    downArcs[down] = arc;
+                    downWeights[down++] = arcWeight[arc];
+                }
+            }
+        }
+
+        return new ContractionHierarchy(weighting.getMetric(), nodeCount, graph.getEdgeCount(), graph.getFingerprint(), rank,
+                Arrays.copyOf(arcSource, arcCount), Arrays.copyOf(arcTarget, arcCount),
+                Arrays.copyOf(arcEdge, arcCount), Arrays.copyOf(arcChild1, arcCount), Arrays.copyOf(arcChild2, arcCount),
+                upFirst, upArcs, upWeights, downFirst, downArcs, downWeights);
+    }
+}
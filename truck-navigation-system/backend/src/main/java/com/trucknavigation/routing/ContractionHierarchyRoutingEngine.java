@@ -0,0 +1,200 @@
+package com.trucknavigation.routing;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Answers queries with a bidirectional upward search on a {@link ContractionHierarchy}.
+ * <p>
+ * Hierarchies are preprocessed on the unrestricted weighting of their metric. Because truck
+ * restrictions and avoid flags only remove edges, the unpacked path is exact whenever none of its
+ * edges is removed for the requesting truck. Otherwise, and for metrics without a hierarchy, the
+ * query is handed to the fallback engine.
+ */
+public class ContractionHierarchyRoutingEngine implements RoutingEngine {
+
+    private final RoadGraph graph;
+    private final Map<EdgeWeighting.Metric, ContractionHierarchy> hierarchies;
+    private final RoutingEngine fallback;
+    private final SearchWorkspacePool workspaces;
+    private final Map<String, ManyToManySearch.ArcCosts> arcCosts = new ConcurrentHashMap<>();
+    private final Map<EdgeWeighting.Metric, IsochroneSearch.SweepGraph> sweepGraphs = new ConcurrentHashMap<>();
+    private final Map<EdgeWeighting.Metric, AlternativeRouteSearch.DescentGraph> descentGraphs = new ConcurrentHashMap<>();
+
+    public ContractionHierarchyRoutingEngine(RoadGraph graph, Map<EdgeWeighting.Metric, ContractionHierarchy> hierarchies,
+                                             RoutingEngine fallback) {
+        this(graph, hierarchies, fallback, new SearchWorkspacePool(graph.getNodeCount(),
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ContractionHierarchyRoutingEngine(RoadGraph graph, Map<EdgeWeighting.Metric, ContractionHierarchy> hierarchies,
+                                             RoutingEngine fallback, SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.hierarchies = new EnumMap<>(hierarchies);
+        this.fallback = fallback;
+        this.workspaces = workspaces;
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public SearchWorkspacePool getWorkspacePool() {
+        return workspaces;
+    }
+
+    public ContractionHierarchy getHierarchy(EdgeWeighting.Metric metric) {
+        return hierarchies.get(metric);
+    }
+
+    @Override
+    public RoutePath route(int source, int target, EdgeWeighting weighting) {
+        ContractionHierarchy hierarchy = hierarchies.get(weighting.getMetric());
+        if (hierarchy == null) {
+            return fallback.route(source, target, weighting);
+        }
+        int[] edges = search(hierarchy, source, target);
+        if (edges == null) {
+            return fallback.route(source, target, weighting);
+        }
+        long weight = 0;
+        for (int edge : edges) {
+            int edgeWeight = weighting.weight(graph, edge);
+            if (edgeWeight == EdgeWeighting.INFINITE) {
+                return fallback.route(source, target, weighting);
+            }
+            weight += edgeWeight;
+        }
+        return RoutePath.of(graph, weighting, source, target, edges, weight);
+    }
+
+    /**
+     * Via-node alternatives from one bidirectional search, see {@link AlternativeRouteSearch}
+     */
+    @Override
+    public List<RoutePath> alternatives(int source, int target, EdgeWeighting weighting, AlternativeCriteria criteria) {
+        ContractionHierarchy hierarchy = hierarchies.get(weighting.getMetric());
+        if (hierarchy == null) {
+            return fallback.alternatives(source, target, weighting, criteria);
+        }
+        AlternativeRouteSearch.DescentGraph descentGraph = descentGraphs.computeIfAbsent(weighting.getMetric(),
+                metric -> AlternativeRouteSearch.DescentGraph.build(hierarchy, graph.getNodeCount()));
+        return new AlternativeRouteSearch(graph, hierarchy, weighting, descentGraph, fallback, workspaces)
+                .run(source, target, criteria);
+    }
+
+    /**
+     * Bucket-based many-to-many search on the hierarchy, see {@link ManyToManySearch}
+     */
+    @Override
+    public DistanceMatrix matrix(int[] sources, int[] targets, EdgeWeighting weighting) {
+        ContractionHierarchy hierarchy = hierarchies.get(weighting.getMetric());
+        if (hierarchy == null) {
+            return fallback.matrix(sources, targets, weighting);
+        }
+        return new ManyToManySearch(graph, hierarchy, weighting, arcCosts(hierarchy, weighting), workspaces)
+                .run(sources, targets);
+    }
+
+    /**
+     * One-to-all search with a downward sweep over the hierarchy, see {@link IsochroneSearch}
+     */
+    @Override
+    public <T> T travelTimes(int source, int maxDurationDeciseconds, EdgeWeighting weighting,
+                             Function<int[], T> reader) {
+        ContractionHierarchy hierarchy = hierarchies.get(weighting.getMetric());
+        if (hierarchy == null) {
+            return fallback.travelTimes(source, maxDurationDeciseconds, weighting, reader);
+        }
+        IsochroneSearch.SweepGraph sweepGraph = sweepGraphs.computeIfAbsent(weighting.getMetric(),
+                metric -> IsochroneSearch.SweepGraph.build(hierarchy, graph.getNodeCount()));
+        return new IsochroneSearch(graph, hierarchy, weighting, arcCosts(hierarchy, weighting), sweepGraph,
+                workspaces).run(source, maxDurationDeciseconds, reader);
+    }
+
+    private ManyToManySearch.ArcCosts arcCosts(ContractionHierarchy hierarchy, EdgeWeighting weighting) {
+        return arcCosts.computeIfAbsent(weighting.getMetric() + "/" + weighting.getVehicle().getMaxSpeedKmh(),
+                key -> ManyToManySearch.ArcCosts.compute(graph, hierarchy, weighting));
+    }
+
+    /**
+     * Bidirectional Dijkstra restricted to upward arcs in both directions, on a pooled workspace
+     *
+     * @return the unpacked original edges of the shortest path, or {@code null} if none exists
+     */
+    private int[] search(ContractionHierarchy hierarchy, int source, int target) {
+        if (source == target) {
+            return new int[0];
+        }
+        SearchWorkspace workspace = workspaces.acquire();
+        try {
+            RouteSearchEvent event = RouteSearchEvent.start("contraction-hierarchy");
+            SearchLabels forwardLabels = workspace.forward();
+            SearchLabels backwardLabels = workspace.backward();
+            int meeting = meet(hierarchy, forwardLabels, backwardLabels, source, target);
+            event.finish(forwardLabels.getSettledCount() + backwardLabels.getSettledCount());
+            if (meeting < 0) {
+                return null;
+            }
+
+            IntArrayList arcs = new IntArrayList();
+            for (int node = meeting; node != source; node = hierarchy.arcSource(forwardLabels.parent(node))) {
+                arcs.add(forwardLabels.parent(node));
+            }
+            arcs.reverse();
+            for (int node = meeting; node != target; node = hierarchy.arcTarget(backwardLabels.parent(node))) {
+                arcs.add(backwardLabels.parent(node));
+            }
+            IntArrayList edges = new IntArrayList(arcs.size() * 4);
+            for (int i = 0; i < arcs.size(); i++) {
+                hierarchy.unpack(arcs.get(i), edges);
+            }
+            return edges.toArray();
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Run both upward searches until neither can improve the best connection
+     *
+     * @return the node where the shortest path crosses from the forward to the backward search, or -1
+     */
+    private int meet(ContractionHierarchy hierarchy, SearchLabels forwardLabels, SearchLabels backwardLabels,
+                     int source, int target) {
+        forwardLabels.relax(source, 0, -1);
+        backwardLabels.relax(target, 0, -1);
+        long best = Long.MAX_VALUE;
+        int meeting = -1;
+        while (true) {
+            boolean forwardOpen = !forwardLabels.isQueueEmpty() && forwardLabels.peekDistance() < best;
+            boolean backwardOpen = !backwardLabels.isQueueEmpty() && backwardLabels.peekDistance() < best;
+            if (!forwardOpen && !backwardOpen) {
+                return meeting;
+            }
+            boolean forward = forwardOpen && (!backwardOpen
+                    || forwardLabels.peekDistance() <= backwardLabels.peekDistance());
+            SearchLabels labels = forward ? forwardLabels : backwardLabels;
+            SearchLabels opposite = forward ? backwardLabels : forwardLabels;
+
+            int node = labels.settle();
+            long nodeDistance = labels.distance(node);
+            if (opposite.isReached(node) && nodeDistance + opposite.distance(node) < best) {
+                best = nodeDistance + opposite.distance(node);
+                meeting = node;
+            }
+            int start = forward ? hierarchy.upStart(node) : hierarchy.downStart(node);
+            int end = forward ? hierarchy.upEnd(node) : hierarchy.downEnd(node);
+            for (int i = start; i < end; i++) {
+                int arc = forward ? hierarchy.upArc(i) : hierarchy.downArc(i);
+                int next = forward ? hierarchy.arcTarget(arc) : hierarchy.arcSource(arc);
+                labels.relax(next, nodeDistance + (forward ? hierarchy.upWeight(i) : hierarchy.downWeight(i)), arc);
+            }
+        }
+    }
+}
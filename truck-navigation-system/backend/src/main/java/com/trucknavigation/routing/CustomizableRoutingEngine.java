@@ -0,0 +1,252 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Customizable route planning on top of a {@link GraphPartition}.
+ * <p>
+ * The partition is built once and does not depend on any metric. A weighting is "customized" by
+ * computing, for every cell in parallel, the cost from each entry node to each exit node while
+ * staying inside the cell. Customizations are cached by {@link EdgeWeighting#getCustomizationKey()},
+ * so every truck class pays the cost once and all later queries for that class are exact. When a
+ * restriction change closes or opens a few edges for a class, only the cells holding them are
+ * customized again.
+ * <p>
+ * Queries run Dijkstra on the overlay: the source and target cells are searched on original edges,
+ * every other cell is crossed through its clique arcs. Clique arcs on the result are unpacked by a
+ * search restricted to their cell.
+ */
+public class CustomizableRoutingEngine implements RoutingEngine {
+
+    private final RoadGraph graph;
+    private final GraphPartition partition;
+    private final Map<String, Customization> customizations = new ConcurrentHashMap<>();
+    private final SearchWorkspacePool workspaces;
+
+    public CustomizableRoutingEngine(GraphPartition partition) {
+        this(partition, new SearchWorkspacePool(partition.getGraph().getNodeCount(),
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    public CustomizableRoutingEngine(GraphPartition partition, SearchWorkspacePool workspaces) {
+        this.graph = partition.getGraph();
+        this.partition = partition;
+        this.workspaces = workspaces;
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public SearchWorkspacePool getWorkspacePool() {
+        return workspaces;
+    }
+
+    public GraphPartition getPartition() {
+        return partition;
+    }
+
+    public int getCustomizationCount() {
+        return customizations.size();
+    }
+
+    /**
+     * Drop every cached customization, e.g. after restriction data changed
+     */
+    public void clearCustomizations() {
+        customizations.clear();
+    }
+
+    /**
+     * Clique weights for the weighting, computing them on first use
+     */
+    public int[] customize(EdgeWeighting weighting) {
+        return customizations.computeIfAbsent(weighting.getCustomizationKey(),
+                key -> new Customization(weighting, computeCliques(weighting))).cliques();
+    }
+
+    /**
+     * Carry every customization of the previous vehicle class over to the next one, which differs
+     * from it only on the given edges: the clique weights are copied and just the cells holding one
+     * of the edges are searched again. The previous class's customizations are dropped.
+     */
+    public void recustomize(VehicleClass previous, VehicleClass next, int[] edges) {
+        boolean[] touched = new boolean[partition.getCellCount()];
+        for (int edge : edges) {
+            int cell = partition.cell(graph.source(edge));
+            // Edges between cells are never part of a clique
+            if (cell == partition.cell(graph.target(edge))) {
+                touched[cell] = true;
+            }
+        }
+        for (Map.Entry<String, Customization> entry : customizations.entrySet()) {
+            EdgeWeighting weighting = entry.getValue().weighting();
+            if (weighting.getVehicleClass() != previous) {
+                continue;
+            }
+            customizations.remove(entry.getKey());
+            EdgeWeighting carried = new EdgeWeighting(weighting.getMetric(), weighting.getVehicle(),
+                    weighting.isAvoidTolls(), weighting.isAvoidHighways(), next);
+            int[] cliques = entry.getValue().cliques().clone();
+            IntStream.range(0, partition.getCellCount()).parallel()
+                    .filter(cell -> touched[cell])
+                    .forEach(cell -> customizeCell(cell, carried, cliques));
+            customizations.putIfAbsent(carried.getCustomizationKey(), new Customization(carried, cliques));
+        }
+    }
+
+    private int[] computeCliques(EdgeWeighting weighting) {
+        int[] weights = new int[partition.getCliqueArcCount()];
+        IntStream.range(0, partition.getCellCount()).parallel().forEach(cell -> customizeCell(cell, weighting, weights));
+        return weights;
+    }
+
+    private void customizeCell(int cell, EdgeWeighting weighting, int[] weights) {
+        int size = partition.cellSize(cell);
+        long[] distance = new long[size];
+        LongMinHeap queue = new LongMinHeap(64);
+        for (int entry = 0; entry < partition.entryCount(cell); entry++) {
+            cellSearch(cell, partition.entryNode(cell, entry), -1, weighting, distance, null, queue);
+            for (int exit = 0; exit < partition.exitCount(cell); exit++) {
+                long value = distance[partition.localIndex(partition.exitNode(cell, exit))];
+                weights[partition.cliqueArc(cell, entry, exit)] =
+                        (int) Math.min(value, EdgeWeighting.INFINITE);
+            }
+        }
+    }
+
+    /**
+     * Dijkstra that never leaves the cell, indexed by local node position
+     */
+    private void cellSearch(int cell, int source, int target, EdgeWeighting weighting,
+                            long[] distance, int[] parentEdge, LongMinHeap queue) {
+        Arrays.fill(distance, Long.MAX_VALUE);
+        queue.clear();
+        distance[partition.localIndex(source)] = 0;
+        queue.push(LongMinHeap.pack(0, partition.localIndex(source)));
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int local = LongMinHeap.node(entry);
+            long nodeDistance = LongMinHeap.key(entry);
+            if (nodeDistance > distance[local]) {
+                continue;
+            }
+            int node = partition.cellNode(cell, local);
+            if (node == target) {
+                return;
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int next = graph.target(edge);
+                if (partition.cell(next) != cell) {
+                    continue;
+                }
+                int weight = weighting.weight(graph, edge);
+                if (weight == EdgeWeighting.INFINITE) {
+                    continue;
+                }
+                int nextLocal = partition.localIndex(next);
+                long candidate = nodeDistance + weight;
+                if (candidate < distance[nextLocal]) {
+                    distance[nextLocal] = candidate;
+                    if (parentEdge != null) {
+                        parentEdge[nextLocal] = edge;
+                    }
+                    queue.push(LongMinHeap.pack(candidate, nextLocal));
+                }
+            }
+        }
+    }
+
+    @Override
+    public RoutePath route(int source, int target, EdgeWeighting weighting) {
+        int[] cliques = customize(weighting);
+        SearchWorkspace workspace = workspaces.acquire();
+        try {
+            RouteSearchEvent event = RouteSearchEvent.start("customizable");
+            SearchLabels labels = workspace.forward();
+            boolean found = search(source, target, weighting, cliques, labels);
+            event.finish(labels.getSettledCount());
+            if (!found) {
+                return null;
+            }
+            return RoutePath.of(graph, weighting, source, target,
+                    unpack(labels, source, target, weighting, workspace), labels.distance(target));
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Dijkstra on the overlay, original edges in the source and target cells
+     *
+     * @return whether the target was reached
+     */
+    private boolean search(int source, int target, EdgeWeighting weighting, int[] cliques, SearchLabels labels) {
+        int sourceCell = partition.cell(source);
+        int targetCell = partition.cell(target);
+        labels.relax(source, 0, -1, -1);
+        while (!labels.isQueueEmpty()) {
+            int node = labels.settle();
+            long nodeDistance = labels.distance(node);
+            if (node == target) {
+                return true;
+            }
+            int cell = partition.cell(node);
+            boolean open = cell == sourceCell || cell == targetCell;
+            if (!open && partition.entryIndex(node) >= 0) {
+                int entryIndex = partition.entryIndex(node);
+                for (int exit = 0; exit < partition.exitCount(cell); exit++) {
+                    int weight = cliques[partition.cliqueArc(cell, entryIndex, exit)];
+                    if (weight == EdgeWeighting.INFINITE) {
+                        continue;
+                    }
+                    labels.relax(partition.exitNode(cell, exit), nodeDistance + weight, -1, node);
+                }
+            }
+            if (!open && partition.exitIndex(node) < 0) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int next = graph.target(edge);
+                if (!open && partition.cell(next) == cell) {
+                    continue; // inner edges of closed cells are covered by the clique
+                }
+                int weight = weighting.weight(graph, edge);
+                if (weight == EdgeWeighting.INFINITE) {
+                    continue;
+                }
+                labels.relax(next, nodeDistance + weight, edge, node);
+            }
+        }
+        return false;
+    }
+
+    private int[] unpack(SearchLabels labels, int source, int target, EdgeWeighting weighting,
+                         SearchWorkspace workspace) {
+        IntArrayList edges = new IntArrayList();
+        for (int node = target; node != source; node = labels.parentNode(node)) {
+            if (labels.parent(node) >= 0) {
+                edges.add(labels.parent(node));
+                continue;
+            }
+            // Clique arc: recover the inner path with a search confined to the cell, backwards
+            int cell = partition.cell(node);
+            int size = partition.cellSize(cell);
+            int[] cellParent = workspace.cellParent(size);
+            cellSearch(cell, labels.parentNode(node), node, weighting, workspace.cellDistance(size), cellParent,
+                    workspace.cellQueue());
+            for (int inner = node; inner != labels.parentNode(node); inner = graph.source(cellParent[partition.localIndex(inner)])) {
+                edges.add(cellParent[partition.localIndex(inner)]);
+            }
+        }
+        edges.reverse();
+        return edges.toArray();
+    }
+
+    private record Customization(EdgeWeighting weighting, int[] cliques) {}
+}
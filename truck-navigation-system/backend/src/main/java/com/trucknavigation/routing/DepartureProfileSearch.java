@@ -0,0 +1,216 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Earliest arrival for a series of departure times in one search, when edges close during parts
+ * of the week.
+ * <p>
+ * Each reached node carries a vector with the travel time for every departure, stored side by
+ * side in one pool. A node is queued by its shortest travel time across departures plus the
+ * straight-line bound to the target, and queued again whenever any of its travel times improves;
+ * relaxing an edge updates all departures at once, and one closure lookup serves every departure
+ * that reaches the edge in the same state. A departure's travel time is only kept while it can
+ * still beat the target's, so the search ends once no queued node can improve the target.
+ */
+final class DepartureProfileSearch {
+
+    private static final int NONE = -1;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final RoadGraph graph;
+    private final EdgeWeighting weighting;
+    private final EdgeClosures closures;
+    private final SearchWorkspacePool workspaces;
+    private Labels labels;
+
+    DepartureProfileSearch(RoadGraph graph, EdgeWeighting weighting, EdgeClosures closures,
+                           SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.closures = closures;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * @param firstDeparture second of the week of the first departure
+     * @param step           seconds between departures
+     * @param count          number of departures
+     * @return travel time in deciseconds, waiting included, per departure, or
+     *         {@link DistanceMatrix#UNREACHABLE}
+     */
+    int[] run(int source, int target, int firstDeparture, int step, int count) {
+        SearchWorkspace workspace = workspaces.acquire();
+        labels = workspace.profileLabels();
+        try {
+            return search(source, target, firstDeparture, step, count);
+        } finally {
+            labels.reset();
+            workspaces.release(workspace);
+        }
+    }
+
+    private int[] search(int source, int target, int firstDeparture, int step, int count) {
+        int[] labelOffset = labels.offset;
+        long[] queued = labels.queued;
+        int targetLatitude = graph.latitude(target);
+        int targetLongitude = graph.longitude(target);
+        int speedLimit = weighting.getVehicle().getMaxSpeedKmh();
+
+        LongMinHeap queue = labels.queue;
+        int start = label(source, count);
+        Arrays.fill(labels.pool, start, start + count, 0);
+        queue.push(LongMinHeap.pack(0, source));
+        queued[source >>> 6] |= 1L << source;
+        int[] candidate = labels.candidate(count);
+        while (!queue.isEmpty()) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            if ((queued[node >>> 6] & (1L << node)) == 0) {
+                continue;
+            }
+            if (labelOffset[target] != NONE && LongMinHeap.key(item) >= latest(labelOffset[target], count)) {
+                break;
+            }
+            queued[node >>> 6] &= ~(1L << node);
+            if (node == target) {
+                continue;
+            }
+            int offset = labelOffset[node];
+            int[] pool = labels.pool;
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                if (!weighting.isAccessible(graph, edge)) {
+                    continue;
+                }
+                int next = graph.target(edge);
+                int travelTime = weighting.travelTime(graph, edge);
+                boolean scheduled = closures.isScheduled(edge);
+                double remaining = GeoMath.haversineMeters(graph.latitude(next), graph.longitude(next),
+                        targetLatitude, targetLongitude);
+                int bound = (int) (remaining * 36 / speedLimit);
+                int targetOffset = labelOffset[target];
+                int best = UNREACHED;
+                boolean improves = false;
+                // The edge opens at the same time for every departure that reaches it within one slot
+                long slot = -1;
+                long opensAt = 0;
+                for (int k = 0; k < count; k++) {
+                    int time = pool[offset + k];
+                    candidate[k] = UNREACHED;
+                    if (time == UNREACHED) {
+                        continue;
+                    }
+                    int wait = 0;
+                    if (scheduled) {
+                        long secondOfWeek = firstDeparture + (long) k * step + time / 10;
+                        if (secondOfWeek / WeeklySchedule.SLOT_SECONDS != slot) {
+                            slot = secondOfWeek / WeeklySchedule.SLOT_SECONDS;
+                            int until = closures.secondsUntilOpen(edge, secondOfWeek);
+                            opensAt = until < 0 ? -1 : secondOfWeek + until;
+                        }
+                        if (opensAt < 0) {
+                            continue;
+                        }
+                        // Ends exactly at the opening, as in EdgeClosures.waitDeciseconds
+                        wait = opensAt > secondOfWeek ? (int) (opensAt - secondOfWeek) * 10 - time % 10 : 0;
+                    }
+                    int arrival = time + wait + travelTime;
+                    if (targetOffset != NONE && arrival + bound >= pool[targetOffset + k]) {
+                        continue;
+                    }
+                    candidate[k] = arrival;
+                    improves |= labelOffset[next] == NONE || arrival < pool[labelOffset[next] + k];
+                    best = Math.min(best, arrival);
+                }
+                if (!improves) {
+                    continue;
+                }
+                int nextOffset = labelOffset[next];
+                if (nextOffset == NONE) {
+                    nextOffset = label(next, count);
+                    pool = labels.pool;
+                }
+                for (int k = 0; k < count; k++) {
+                    if (candidate[k] < pool[nextOffset + k]) {
+                        pool[nextOffset + k] = candidate[k];
+                    }
+                }
+                queue.push(LongMinHeap.pack((long) best + bound, next));
+                queued[next >>> 6] |= 1L << next;
+            }
+        }
+
+        int[] times = new int[count];
+        Arrays.fill(times, DistanceMatrix.UNREACHABLE);
+        if (labelOffset[target] != NONE) {
+            for (int k = 0; k < count; k++) {
+                int time = labels.pool[labelOffset[target] + k];
+                times[k] = time == UNREACHED ? DistanceMatrix.UNREACHABLE : time;
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Latest travel time to the target across departures, unreached ones counting as never
+     */
+    private long latest(int offset, int count) {
+        long latest = 0;
+        for (int k = 0; k < count; k++) {
+            latest = Math.max(latest, labels.pool[offset + k]);
+        }
+        return latest;
+    }
+
+    private int label(int node, int count) {
+        if (labels.poolSize + count > labels.pool.length) {
+            labels.pool = Arrays.copyOf(labels.pool, Math.max(labels.pool.length * 2, labels.poolSize + count));
+        }
+        int offset = labels.poolSize;
+        labels.poolSize += count;
+        Arrays.fill(labels.pool, offset, labels.poolSize, UNREACHED);
+        labels.offset[node] = offset;
+        labels.labeled.add(node);
+        return offset;
+    }
+
+    /**
+     * Travel time vectors of one query, kept in a {@link SearchWorkspace}. The pool grows to the
+     * largest query seen; node offsets and queue marks are cleared afterwards through the nodes
+     * that got a vector.
+     */
+    static final class Labels {
+        // Per node: offset of its travel times in the pool, or NONE
+        final int[] offset;
+        final long[] queued;
+        final IntArrayList labeled = new IntArrayList();
+        final LongMinHeap queue = new LongMinHeap(1024);
+        int[] pool = new int[16 * 1024];
+        int poolSize;
+        private int[] candidate = new int[0];
+
+        Labels(int nodeCount) {
+            offset = new int[nodeCount];
+            Arrays.fill(offset, NONE);
+            queued = VehicleClass.newEdgeSet(nodeCount);
+        }
+
+        int[] candidate(int count) {
+            if (candidate.length < count) {
+                candidate = new int[count];
+            }
+            return candidate;
+        }
+
+        void reset() {
+            for (int i = 0; i < labeled.size(); i++) {
+                int node = labeled.get(i);
+                offset[node] = NONE;
+                queued[node >>> 6] &= ~(1L << node);
+            }
+            labeled.clear();
+            poolSize = 0;
+            queue.clear();
+        }
+    }
+}
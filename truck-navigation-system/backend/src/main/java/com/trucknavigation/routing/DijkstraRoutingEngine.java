@@ -0,0 +1,72 @@
+package com.trucknavigation.routing;
+
+/**
+ * Plain unidirectional Dijkstra with early termination once the target is settled
+ */
+public class DijkstraRoutingEngine implements RoutingEngine {
+
+    private final RoadGraph graph;
+    private final SearchWorkspacePool workspaces;
+
+    public DijkstraRoutingEngine(RoadGraph graph) {
+        this.graph = graph;
+        this.workspaces = new SearchWorkspacePool(graph.getNodeCount(), Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public SearchWorkspacePool getWorkspacePool() {
+        return workspaces;
+    }
+
+    @Override
+    public RoutePath route(int source, int target, EdgeWeighting weighting) {
+        SearchWorkspace workspace = workspaces.acquire();
+        try {
+            RouteSearchEvent event = RouteSearchEvent.start("dijkstra");
+            SearchLabels labels = workspace.forward();
+            boolean found = search(source, target, weighting, labels);
+            event.finish(labels.getSettledCount());
+            if (!found) {
+                return null;
+            }
+            return RoutePath.of(graph, weighting, source, target, unpack(labels, source, target), labels.distance(target));
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private boolean search(int source, int target, EdgeWeighting weighting, SearchLabels labels) {
+        labels.relax(source, 0, -1);
+        while (!labels.isQueueEmpty()) {
+            int node = labels.settle();
+            if (node == target) {
+                return true;
+            }
+            long nodeDistance = labels.distance(node);
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int weight = weighting.weight(graph, edge);
+                if (weight != EdgeWeighting.INFINITE) {
+                    labels.relax(graph.target(edge), nodeDistance + weight, edge);
+                }
+            }
+        }
+        return false;
+    }
+
+    private int[] unpack(SearchLabels labels, int source, int target) {
+        int count = 0;
+        for (int node = target; node != source; node = graph.source(labels.parent(node))) {
+            count++;
+        }
+        int[] edges = new int[count];
+        for (int node = target; node != source; node = graph.source(labels.parent(node))) {
+            edges[--count] = labels.parent(node);
+        }
+        return edges;
+    }
+}
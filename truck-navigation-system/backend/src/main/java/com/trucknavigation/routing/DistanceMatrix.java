@@ -0,0 +1,65 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Travel times and distances from every source to every target, stored row-major: the entry of
+ * source {@code i} and target {@code j} is at {@code i * targetCount + j}.
+ */
+public final class DistanceMatrix {
+
+    /**
+     * Value of both duration and distance for a target the source cannot reach
+     */
+    public static final int UNREACHABLE = -1;
+
+    private final int sourceCount;
+    private final int targetCount;
+    private final int[] durations;
+    private final int[] distances;
+
+    public DistanceMatrix(int sourceCount, int targetCount) {
+        this.sourceCount = sourceCount;
+        this.targetCount = targetCount;
+        this.durations = new int[sourceCount * targetCount];
+        this.distances = new int[sourceCount * targetCount];
+        Arrays.fill(durations, UNREACHABLE);
+        Arrays.fill(distances, UNREACHABLE);
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    /**
+     * Travel time in deciseconds, or {@link #UNREACHABLE}
+     */
+    public int duration(int source, int target) {
+        return durations[source * targetCount + target];
+    }
+
+    /**
+     * Distance in metres, or {@link #UNREACHABLE}
+     */
+    public int distance(int source, int target) {
+        return distances[source * targetCount + target];
+    }
+
+    public void set(int source, int target, long durationDeciseconds, long distanceMeters) {
+        durations[source * targetCount + target] = (int) Math.min(durationDeciseconds, Integer.MAX_VALUE);
+        distances[source * targetCount + target] = (int) Math.min(distanceMeters, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Fill the entry from a path, or leave it unreachable if there is none
+     */
+    public void set(int source, int target, RoutePath path) {
+        if (path != null) {
+            set(source, target, path.getDurationDeciseconds(), path.getDistanceMeters());
+        }
+    }
+}
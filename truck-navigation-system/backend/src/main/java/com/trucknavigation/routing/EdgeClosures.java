@@ -0,0 +1,101 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Edges closed to trucks during parts of the week, such as city roads under a daytime no-entry
+ * window. A bitset marks the edges that have a schedule at all, so a search only looks one up for
+ * those; a truck reaching a closed edge waits until it opens.
+ */
+public final class EdgeClosures {
+
+    public static final EdgeClosures NONE = new EdgeClosures(0, Map.of());
+
+    private final long[] scheduledEdges;
+    private final int[] edges;
+    private final WeeklySchedule[] schedules;
+
+    /**
+     * @param schedules closing times per edge
+     */
+    public EdgeClosures(int edgeCount, Map<Integer, WeeklySchedule> schedules) {
+        TreeMap<Integer, WeeklySchedule> sorted = new TreeMap<>(schedules);
+        this.scheduledEdges = VehicleClass.newEdgeSet(edgeCount);
+        this.edges = new int[sorted.size()];
+        this.schedules = new WeeklySchedule[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, WeeklySchedule> entry : sorted.entrySet()) {
+            VehicleClass.addEdge(scheduledEdges, entry.getKey());
+            edges[i] = entry.getKey();
+            this.schedules[i++] = entry.getValue();
+        }
+    }
+
+    public boolean isEmpty() {
+        return edges.length == 0;
+    }
+
+    public int size() {
+        return edges.length;
+    }
+
+    public boolean isScheduled(int edge) {
+        return edges.length > 0 && (scheduledEdges[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    /**
+     * Seconds a truck reaching the edge at the given second of the week waits before it may
+     * enter, 0 if the edge is open, or -1 if it never opens
+     */
+    public int secondsUntilOpen(int edge, long secondOfWeek) {
+        if (!isScheduled(edge)) {
+            return 0;
+        }
+        return schedules[Arrays.binarySearch(edges, edge)].secondsUntilInactive(secondOfWeek);
+    }
+
+    /**
+     * Deciseconds a truck that left at the given second of the week and reaches the edge the
+     * given time later waits before it may enter, 0 if the edge is open, or -1 if it never opens.
+     * The wait ends exactly when the edge opens, so a truck reaching it earlier never enters later.
+     */
+    public long waitDeciseconds(int edge, long departureSecondOfWeek, long elapsedDeciseconds) {
+        int wait = secondsUntilOpen(edge, departureSecondOfWeek + elapsedDeciseconds / 10);
+        return wait <= 0 ? wait : wait * 10L - elapsedDeciseconds % 10;
+    }
+
+    /**
+     * Seconds from the given time until the edge next opens or closes, or -1 if it never does
+     */
+    public int secondsUntilChange(int edge, long secondOfWeek) {
+        if (!isScheduled(edge)) {
+            return -1;
+        }
+        return schedules[Arrays.binarySearch(edges, edge)].secondsUntilChange(secondOfWeek);
+    }
+
+    /**
+     * Time spent waiting for closed edges by a truck that drives the path from the given second
+     * of the week
+     *
+     * @return the waiting time in deciseconds, or -1 if the path uses an edge that never opens
+     */
+    public long waitDeciseconds(RoadGraph graph, EdgeWeighting weighting, RoutePath path, int departureSecondOfWeek) {
+        if (isEmpty()) {
+            return 0;
+        }
+        long time = 0;
+        long waited = 0;
+        for (int edge : path.getEdges()) {
+            long wait = waitDeciseconds(edge, departureSecondOfWeek, time);
+            if (wait < 0) {
+                return -1;
+            }
+            time += wait + weighting.travelTime(graph, edge);
+            waited += wait;
+        }
+        return waited;
+    }
+}
@@ -0,0 +1,267 @@
+package com.trucknavigation.routing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Uniform grid over edge geometry for snapping coordinates onto the closest road a vehicle may
+ * use. Every edge is listed in each cell its segments' bounding boxes touch, cells in CSR order.
+ * A lookup scans rings of cells around the coordinate until no closer edge can remain, skipping
+ * edges the weighting does not allow, so a truck is never snapped onto a road its profile keeps
+ * it off.
+ * <p>
+ * The cell arrays grow with the edge count and live as long as the graph, so like the graph they
+ * are kept in direct memory outside the Java heap.
+ */
+public final class EdgeIndex {
+
+    private static final int CELL_SIZE = 2_000; // micro-degrees, roughly 220 m
+
+    private final RoadGraph graph;
+    private final int cellSize;
+    private final int minLatitude;
+    private final int minLongitude;
+    private final int rows;
+    private final int columns;
+    private final IntBuffer cellKeys;
+    private final IntBuffer cellStart;
+    private final IntBuffer edges;
+
+    public EdgeIndex(RoadGraph graph) {
+        this.graph = graph;
+        int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            minLat = Math.min(minLat, graph.latitude(node));
+            minLon = Math.min(minLon, graph.longitude(node));
+            maxLat = Math.max(maxLat, graph.latitude(node));
+            maxLon = Math.max(maxLon, graph.longitude(node));
+        }
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            for (int i = 0; i < graph.pillarCount(edge); i++) {
+                minLat = Math.min(minLat, graph.pillarLatitude(edge, i));
+                minLon = Math.min(minLon, graph.pillarLongitude(edge, i));
+                maxLat = Math.max(maxLat, graph.pillarLatitude(edge, i));
+                maxLon = Math.max(maxLon, graph.pillarLongitude(edge, i));
+            }
+        }
+        if (minLat > maxLat) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+        // Coarser cells for extracts so large that cell numbers would not fit an int
+        int size = CELL_SIZE;
+        while ((long) ((maxLat - minLat) / size + 1) * ((maxLon - minLon) / size + 1) > Integer.MAX_VALUE) {
+            size *= 2;
+        }
+        this.cellSize = size;
+        this.minLatitude = minLat;
+        this.minLongitude = minLon;
+        this.rows = (maxLat - minLat) / size + 1;
+        this.columns = (maxLon - minLon) / size + 1;
+
+        // Cell number in the high bits, edge in the low 31, so sorting groups edges by cell
+        long[] entries = new long[Math.max(16, graph.getEdgeCount() * 2)];
+        int count = 0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int points = graph.pillarCount(edge) + 2;
+            for (int i = 1; i < points; i++) {
+                int fromLat = pointLatitude(edge, i - 1), toLat = pointLatitude(edge, i);
+                int fromLon = pointLongitude(edge, i - 1), toLon = pointLongitude(edge, i);
+                // Pieces no longer than a cell, so long segments only list the cells along them
+                int pieces = Math.max(Math.abs(toLat - fromLat), Math.abs(toLon - fromLon)) / size + 1;
+                for (int piece = 0; piece < pieces; piece++) {
+                    int startY = row(fromLat + (int) ((long) (toLat - fromLat) * piece / pieces));
+                    int endY = row(fromLat + (int) ((long) (toLat - fromLat) * (piece + 1) / pieces));
+                    int startX = column(fromLon + (int) ((long) (toLon - fromLon) * piece / pieces));
+                    int endX = column(fromLon + (int) ((long) (toLon - fromLon) * (piece + 1) / pieces));
+                    for (int y = Math.min(startY, endY); y <= Math.max(startY, endY); y++) {
+                        for (int x = Math.min(startX, endX); x <= Math.max(startX, endX); x++) {
+                            if (count == entries.length) {
+                                entries = Arrays.copyOf(entries, count * 2);
+                            }
+                            entries[count++] = ((long) (y * columns + x) << 31) | edge;
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(entries, 0, count);
+
+        int[] keys = new int[count];
+        int[] starts = new int[count + 1];
+        int[] indexed = new int[count];
+        int cells = 0;
+        int indexedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && entries[i] == entries[i - 1]) {
+                continue;
+            }
+            int key = (int) (entries[i] >>> 31);
+            if (cells == 0 || keys[cells - 1] != key) {
+                keys[cells] = key;
+                starts[cells++] = indexedCount;
+            }
+            indexed[indexedCount++] = (int) (entries[i] & Integer.MAX_VALUE);
+        }
+        starts[cells] = indexedCount;
+        this.cellKeys = offHeap(keys, cells);
+        this.cellStart = offHeap(starts, cells + 1);
+        this.edges = offHeap(indexed, indexedCount);
+    }
+
+    private static IntBuffer offHeap(int[] values, int count) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(count * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        return buffer.put(values, 0, count).clear();
+    }
+
+    public int getCellCount() {
+        return cellKeys.capacity();
+    }
+
+    /**
+     * Snap the coordinate onto the closest point of an edge the weighting allows
+     *
+     * @param maxMeters how far from the coordinate the edge may be
+     * @param result    filled in with the snapped point; its edge is -1 if none was in range
+     * @return whether an edge was in range
+     */
+    public boolean snap(int latitude, int longitude, double maxMeters, EdgeWeighting weighting, EdgeSnap result) {
+        result.edge = -1;
+        result.node = -1;
+        result.distanceMeters = maxMeters;
+        double scale = Math.cos(Math.toRadians(GeoMath.toDegrees(latitude)));
+        // Shortest side of a cell, any cell of ring r is at least r - 1 of those away
+        double cellMeters = Math.toRadians(cellSize / GeoMath.MICRO_DEGREES) * GeoMath.EARTH_RADIUS_METERS
+                * Math.max(0.01, scale);
+        int centerY = Math.floorDiv(latitude - minLatitude, cellSize);
+        int centerX = Math.floorDiv(longitude - minLongitude, cellSize);
+        // Rings before the first that reaches the grid and after the last that overlaps it are empty
+        int firstRing = Math.max(Math.max(-centerY, centerY - rows + 1), Math.max(-centerX, centerX - columns + 1));
+        int lastRing = Math.max(Math.max(centerY, rows - 1 - centerY), Math.max(centerX, columns - 1 - centerX));
+        int maxRing = (int) Math.min(lastRing, Math.ceil(maxMeters / cellMeters) + 1);
+        for (int ring = Math.max(0, firstRing); ring <= maxRing; ring++) {
+            if ((ring - 1) * cellMeters > result.distanceMeters) {
+                break;
+            }
+            int fromX = Math.max(0, centerX - ring), toX = Math.min(columns - 1, centerX + ring);
+            for (int y = Math.max(0, centerY - ring); y <= Math.min(rows - 1, centerY + ring); y++) {
+                if (y == centerY - ring || y == centerY + ring) {
+                    for (int x = fromX; x <= toX; x++) {
+                        scanCell(y * columns + x, latitude, longitude, scale, weighting, result);
+                    }
+                } else {
+                    if (centerX - ring >= 0 && centerX - ring < columns) {
+                        scanCell(y * columns + centerX - ring, latitude, longitude, scale, weighting, result);
+                    }
+                    if (centerX + ring >= 0 && centerX + ring < columns) {
+                        scanCell(y * columns + centerX + ring, latitude, longitude, scale, weighting, result);
+                    }
+                }
+            }
+        }
+        if (result.edge < 0) {
+            result.distanceMeters = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private void scanCell(int key, int latitude, int longitude, double scale, EdgeWeighting weighting,
+                          EdgeSnap result) {
+        int cell = findCell(key);
+        if (cell < 0) {
+            return;
+        }
+        for (int i = cellStart.get(cell), end = cellStart.get(cell + 1); i < end; i++) {
+            int edge = edges.get(i);
+            if (edge != result.edge && weighting.isAccessible(graph, edge)) {
+                measure(edge, latitude, longitude, scale, result);
+            }
+        }
+    }
+
+    /**
+     * Position of the cell among the non-empty ones, -1 if it holds no edge
+     */
+    private int findCell(int key) {
+        int low = 0, high = cellKeys.capacity() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = cellKeys.get(middle);
+            if (value < key) {
+                low = middle + 1;
+            } else if (value > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take the edge as the result if its closest point to the coordinate beats the current one
+     */
+    private void measure(int edge, int latitude, int longitude, double scale, EdgeSnap result) {
+        int points = graph.pillarCount(edge) + 2;
+        double bestSquared = Double.MAX_VALUE;
+        double bestX = 0, bestY = 0, bestAlong = 0, along = 0;
+        double ax = (pointLongitude(edge, 0) - longitude) * scale;
+        double ay = pointLatitude(edge, 0) - latitude;
+        for (int i = 1; i < points; i++) {
+            double bx = (pointLongitude(edge, i) - longitude) * scale;
+            double by = pointLatitude(edge, i) - latitude;
+            double dx = bx - ax, dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double px = ax + t * dx, py = ay + t * dy;
+            double length = Math.sqrt(lengthSquared);
+            if (px * px + py * py < bestSquared) {
+                bestSquared = px * px + py * py;
+                bestX = px;
+                bestY = py;
+                bestAlong = along + t * length;
+            }
+            along += length;
+            ax = bx;
+            ay = by;
+        }
+        double distance = Math.toRadians(Math.sqrt(bestSquared) / GeoMath.MICRO_DEGREES) * GeoMath.EARTH_RADIUS_METERS;
+        if (result.edge >= 0 ? distance >= result.distanceMeters : distance > result.distanceMeters) {
+            return;
+        }
+        double fraction = along == 0 ? 0 : bestAlong / along;
+        result.edge = edge;
+        result.latitude = latitude + (int) Math.round(bestY);
+        result.longitude = longitude + (int) Math.round(bestX / scale);
+        result.distanceMeters = distance;
+        result.node = fraction <= 0.5 ? graph.source(edge) : graph.target(edge);
+        result.accessMeters = distance + graph.length(edge) * Math.min(fraction, 1 - fraction);
+    }
+
+    private int pointLatitude(int edge, int point) {
+        if (point == 0) {
+            return graph.latitude(graph.source(edge));
+        }
+        return point <= graph.pillarCount(edge) ? graph.pillarLatitude(edge, point - 1)
+                : graph.latitude(graph.target(edge));
+    }
+
+    private int pointLongitude(int edge, int point) {
+        if (point == 0) {
+            return graph.longitude(graph.source(edge));
+        }
+        return point <= graph.pillarCount(edge) ? graph.pillarLongitude(edge, point - 1)
+                : graph.longitude(graph.target(edge));
+    }
+
+    private int row(int latitude) {
+        return (latitude - minLatitude) / cellSize;
+    }
+
+    private int column(int longitude) {
+        return (longitude - minLongitude) / cellSize;
+    }
+}
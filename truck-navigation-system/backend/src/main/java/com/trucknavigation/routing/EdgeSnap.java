@@ -0,0 +1,51 @@
+package com.trucknavigation.routing;
+
+/**
+ * Closest point on a road to a coordinate, filled in by {@link EdgeIndex#snap}. One instance can
+ * be reused across lookups, so snapping does not allocate.
+ */
+public final class EdgeSnap {
+
+    int edge = -1;
+    int node = -1;
+    int latitude;
+    int longitude;
+    double distanceMeters;
+    double accessMeters;
+
+    /**
+     * Edge the coordinate was snapped to, or -1 if no accessible edge was in range
+     */
+    public int getEdge() {
+        return edge;
+    }
+
+    /**
+     * End of the edge closer to the snapped point, where routing starts or ends
+     */
+    public int getNode() {
+        return node;
+    }
+
+    public int getLatitude() {
+        return latitude;
+    }
+
+    public int getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Straight distance in metres from the coordinate to the snapped point
+     */
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    /**
+     * Distance in metres from the coordinate to the snapped point and on along the edge to its node
+     */
+    public double getAccessMeters() {
+        return accessMeters;
+    }
+}
@@ -0,0 +1,120 @@
+package com.trucknavigation.routing;
+
+/**
+ * Turns edge attributes into the integer cost minimised by a search.
+ * Inaccessible edges weigh {@link #INFINITE}; searches must skip them instead of adding the value.
+ * <p>
+ * The cost of an accessible edge depends only on the metric, never on the vehicle: the truck and
+ * the avoid flags merely remove edges. A path that is optimal on the full graph and uses no removed
+ * edge is therefore optimal for the vehicle too, which is what lets preprocessed hierarchies serve
+ * every truck profile.
+ */
+public final class EdgeWeighting {
+
+    public static final int INFINITE = Integer.MAX_VALUE;
+
+    public enum Metric {
+        FASTEST,        // travel time in deciseconds
+        SHORTEST,       // length in metres
+        FUEL_EFFICIENT  // length in metres scaled by the road class fuel factor
+    }
+
+    private final Metric metric;
+    private final VehicleSpec vehicle;
+    private final boolean avoidTolls;
+    private final boolean avoidHighways;
+    private final VehicleClass vehicleClass;
+
+    public EdgeWeighting(Metric metric, VehicleSpec vehicle, boolean avoidTolls, boolean avoidHighways) {
+        this(metric, vehicle, avoidTolls, avoidHighways, null);
+    }
+
+    public EdgeWeighting(Metric metric, VehicleSpec vehicle, boolean avoidTolls, boolean avoidHighways,
+                         VehicleClass vehicleClass) {
+        this.metric = metric;
+        this.vehicle = vehicle;
+        this.avoidTolls = avoidTolls;
+        this.avoidHighways = avoidHighways;
+        this.vehicleClass = vehicleClass;
+    }
+
+    /**
+     * Check whether the edge may be used at all under this weighting
+     */
+    public boolean isAccessible(RoadGraph graph, int edge) {
+        if (avoidTolls && graph.hasFlag(edge, RoadGraph.FLAG_TOLL)) {
+            return false;
+        }
+        if (avoidHighways && graph.roadClass(edge) == RoadClass.MOTORWAY) {
+            return false;
+        }
+        if (vehicleClass != null && vehicleClass.isBlocked(edge)) {
+            return false;
+        }
+        return vehicle.canUse(graph, edge);
+    }
+
+    public int weight(RoadGraph graph, int edge) {
+        if (!isAccessible(graph, edge)) {
+            return INFINITE;
+        }
+        return switch (metric) {
+            case FASTEST -> (int) ((long) graph.length(edge) * 36 / graph.speed(edge));
+            case SHORTEST -> graph.length(edge);
+            case FUEL_EFFICIENT -> (int) ((long) graph.length(edge) * graph.roadClass(edge).getFuelFactor() / 100);
+        };
+    }
+
+    /**
+     * Travel time of the vehicle along the edge in deciseconds, honouring its own speed limit
+     */
+    public int travelTime(RoadGraph graph, int edge) {
+        return (int) ((long) graph.length(edge) * 36 / vehicle.speedOn(graph, edge));
+    }
+
+    /**
+     * Weighting with the same metric whose only restriction is the HGV ban every truck obeys.
+     * Hierarchies are preprocessed on this weighting.
+     */
+    public static EdgeWeighting unrestricted(Metric metric) {
+        return new EdgeWeighting(metric, new VehicleSpec(0, 0, 0, false, 255), false, false);
+    }
+
+    /**
+     * Weighting with the same restrictions that minimises another metric
+     */
+    public EdgeWeighting withMetric(Metric otherMetric) {
+        return new EdgeWeighting(otherMetric, vehicle, avoidTolls, avoidHighways, vehicleClass);
+    }
+
+    /**
+     * Key under which a customized metric for this weighting can be shared. Two weightings with
+     * the same key produce identical weights on every edge.
+     */
+    public String getCustomizationKey() {
+        String vehicleKey = vehicleClass != null
+                ? vehicleClass.getKey()
+                : vehicle.getHeightCm() + "/" + vehicle.getWidthCm() + "/" + vehicle.getWeight100Kg() + "/" + vehicle.isHazmat();
+        return metric + (avoidTolls ? "|no-toll" : "") + (avoidHighways ? "|no-motorway" : "") + "|" + vehicleKey;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public VehicleSpec getVehicle() {
+        return vehicle;
+    }
+
+    public boolean isAvoidTolls() {
+        return avoidTolls;
+    }
+
+    public boolean isAvoidHighways() {
+        return avoidHighways;
+    }
+
+    public VehicleClass getVehicleClass() {
+        return vehicleClass;
+    }
+}
@@ -0,0 +1,64 @@
+package com.trucknavigation.routing;
+
+/**
+ * Geodesic helpers for coordinates stored as fixed-point micro-degrees (degrees * 1e6)
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    public static final double MICRO_DEGREES = 1_000_000.0;
+
+    private GeoMath() {}
+
+    public static int toMicroDegrees(double degrees) {
+        return (int) Math.round(degrees * MICRO_DEGREES);
+    }
+
+    public static double toDegrees(int microDegrees) {
+        return microDegrees / MICRO_DEGREES;
+    }
+
+    /**
+     * Great-circle distance in metres between two points given in degrees
+     */
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Great-circle distance in metres between two points given in micro-degrees
+     */
+    public static double haversineMeters(int lat1, int lon1, int lat2, int lon2) {
+        return haversineMeters(toDegrees(lat1), toDegrees(lon1), toDegrees(lat2), toDegrees(lon2));
+    }
+
+    /**
+     * Cheap equirectangular distance in metres, accurate enough for nearest-neighbour comparisons
+     * at city scale and much faster than {@link #haversineMeters(double, double, double, double)}
+     */
+    public static double approximateMeters(int lat1, int lon1, int lat2, int lon2) {
+        double meanLat = Math.toRadians((lat1 + (double) lat2) / 2 / MICRO_DEGREES);
+        double x = Math.toRadians((lon2 - lon1) / MICRO_DEGREES) * Math.cos(meanLat);
+        double y = Math.toRadians((lat2 - lat1) / MICRO_DEGREES);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+
+    /**
+     * Equirectangular distance in metres from a point to the segment a-b, all in micro-degrees
+     */
+    public static double pointToSegmentMeters(int lat, int lon, int aLat, int aLon, int bLat, int bLon) {
+        double scale = Math.cos(Math.toRadians(lat / MICRO_DEGREES));
+        double ax = (aLon - lon) * scale, ay = aLat - lat;
+        double bx = (bLon - lon) * scale, by = bLat - lat;
+        double dx = bx - ax, dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+        double x = ax + t * dx, y = ay + t * dy;
+        return Math.toRadians(Math.sqrt(x * x + y * y) / MICRO_DEGREES) * EARTH_RADIUS_METERS;
+    }
+}
@@ -0,0 +1,308 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Metric-independent partition of the road graph into cells of bounded size.
+ * <p>
+ * Cells come from recursive coordinate bisection at the median of the wider axis. Only topology
+ * is stored here: cell membership, the boundary nodes of every cell and the layout of the
+ * entry-to-exit cliques. The clique weights themselves are produced per metric by the
+ * customization step of {@link CustomizableRoutingEngine}.
+ * <p>
+ * Like the graph itself the partition can be persisted and memory-mapped on the next start.
+ */
+public final class GraphPartition {
+
+    static final String FILE_KIND = "cells";
+
+    private final RoadGraph graph;
+    private final int maxCellSize;
+    private final long graphFingerprint;
+    private final int cellCount;
+    private final IntBuffer cell;
+    private final IntBuffer localIndex;
+    private final IntBuffer cellFirst;
+    private final IntBuffer cellNodes;
+
+    private final IntBuffer entryFirst;
+    private final IntBuffer entryNodes;
+    private final IntBuffer exitFirst;
+    private final IntBuffer exitNodes;
+    private final IntBuffer entryIndex;
+    private final IntBuffer exitIndex;
+    private final IntBuffer cliqueOffset;
+
+    private GraphPartition(RoadGraph graph, int maxCellSize, long graphFingerprint, IntBuffer cell,
+                           IntBuffer localIndex, IntBuffer cellFirst, IntBuffer cellNodes,
+                           IntBuffer entryFirst, IntBuffer entryNodes, IntBuffer exitFirst, IntBuffer exitNodes,
+                           IntBuffer entryIndex, IntBuffer exitIndex, IntBuffer cliqueOffset) {
+        this.graph = graph;
+        this.maxCellSize = maxCellSize;
+        this.graphFingerprint = graphFingerprint;
+        this.cellCount = cellFirst.capacity() - 1;
+        this.cell = cell;
+        this.localIndex = localIndex;
+        this.cellFirst = cellFirst;
+        this.cellNodes = cellNodes;
+        this.entryFirst = entryFirst;
+        this.entryNodes = entryNodes;
+        this.exitFirst = exitFirst;
+        this.exitNodes = exitNodes;
+        this.entryIndex = entryIndex;
+        this.exitIndex = exitIndex;
+        this.cliqueOffset = cliqueOffset;
+    }
+
+    /**
+     * Partition the graph into cells of at most {@code maxCellSize} nodes
+     */
+    public static GraphPartition build(RoadGraph graph, int maxCellSize) {
+        if (maxCellSize < 2) {
+            throw new IllegalArgumentException("Cell size must be at least 2");
+        }
+        int nodeCount = graph.getNodeCount();
+
+        int[] order = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            order[node] = node;
+        }
+        IntArrayList bounds = new IntArrayList();
+        bounds.add(0);
+        bisect(graph, order, 0, nodeCount, maxCellSize, bounds);
+        int cellCount = bounds.size() - 1;
+
+        int[] cellFirst = bounds.toArray();
+        int[] cellNodes = order;
+        int[] cell = new int[nodeCount];
+        int[] localIndex = new int[nodeCount];
+        for (int c = 0; c < cellCount; c++) {
+            for (int i = cellFirst[c]; i < cellFirst[c + 1]; i++) {
+                cell[cellNodes[i]] = c;
+                localIndex[cellNodes[i]] = i - cellFirst[c];
+            }
+        }
+
+        int[] entryIndex = new int[nodeCount];
+        int[] exitIndex = new int[nodeCount];
+        Arrays.fill(entryIndex, -1);
+        Arrays.fill(exitIndex, -1);
+        IntArrayList entries = new IntArrayList();
+        IntArrayList exits = new IntArrayList();
+        int[] entryFirst = new int[cellCount + 1];
+        int[] exitFirst = new int[cellCount + 1];
+        int[] cliqueOffset = new int[cellCount + 1];
+        for (int c = 0; c < cellCount; c++) {
+            entryFirst[c] = entries.size();
+            exitFirst[c] = exits.size();
+            for (int i = cellFirst[c]; i < cellFirst[c + 1]; i++) {
+                int node = cellNodes[i];
+                if (hasCutInEdge(graph, cell, node)) {
+                    entryIndex[node] = entries.size() - entryFirst[c];
+                    entries.add(node);
+                }
+                if (hasCutOutEdge(graph, cell, node)) {
+                    exitIndex[node] = exits.size() - exitFirst[c];
+                    exits.add(node);
+                }
+            }
+            long cliqueSize = (long) (entries.size() - entryFirst[c]) * (exits.size() - exitFirst[c]);
+            cliqueOffset[c + 1] = Math.toIntExact(cliqueOffset[c] + cliqueSize);
+        }
+        entryFirst[cellCount] = entries.size();
+        exitFirst[cellCount] = exits.size();
+        return new GraphPartition(graph, maxCellSize, graph.getFingerprint(), IntBuffer.wrap(cell),
+                IntBuffer.wrap(localIndex), IntBuffer.wrap(cellFirst), IntBuffer.wrap(cellNodes),
+                IntBuffer.wrap(entryFirst), IntBuffer.wrap(entries.toArray()),
+                IntBuffer.wrap(exitFirst), IntBuffer.wrap(exits.toArray()),
+                IntBuffer.wrap(entryIndex), IntBuffer.wrap(exitIndex), IntBuffer.wrap(cliqueOffset));
+    }
+
+    /**
+     * Persist the partition so that it does not have to be recomputed on the next start
+     */
+    public void writeTo(Path file) throws IOException {
+        sections().write(file);
+    }
+
+    /**
+     * The same partition in memory allocated outside the Java heap, for one that was built but
+     * not written to a file; a mapped or copied partition is returned as is
+     */
+    public GraphPartition offHeap() {
+        if (cell.isDirect()) {
+            return this;
+        }
+        try {
+            return read(sections().allocate(), graph);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read back the partition sections", e);
+        }
+    }
+
+    private BinaryFile.Writer sections() {
+        return new BinaryFile.Writer(FILE_KIND)
+                .add("meta.graph", LongBuffer.wrap(new long[]{
+                        graph.getNodeCount(), graph.getEdgeCount(), graphFingerprint, maxCellSize}))
+                .add("cell", cell).add("local", localIndex)
+                .add("cell.first", cellFirst).add("cell.nodes", cellNodes)
+                .add("entry.first", entryFirst).add("entry.nodes", entryNodes)
+                .add("exit.first", exitFirst).add("exit.nodes", exitNodes)
+                .add("entry.index", entryIndex).add("exit.index", exitIndex)
+                .add("clique.offset", cliqueOffset);
+    }
+
+    /**
+     * Map a partition written by {@link #writeTo(Path)} for the given graph
+     *
+     * @return the partition, or {@code null} if it was built for a different graph or cell size
+     */
+    public static GraphPartition readFrom(Path path, RoadGraph graph, int maxCellSize) throws IOException {
+        BinaryFile file = BinaryFile.open(path, FILE_KIND);
+        LongBuffer meta = file.longs("meta.graph");
+        if (meta.get(0) != graph.getNodeCount() || meta.get(1) != graph.getEdgeCount()
+                || meta.get(2) != graph.getFingerprint() || meta.get(3) != maxCellSize) {
+            return null;
+        }
+        return read(file, graph);
+    }
+
+    private static GraphPartition read(BinaryFile file, RoadGraph graph) throws IOException {
+        LongBuffer meta = file.longs("meta.graph");
+        return new GraphPartition(graph, (int) meta.get(3), meta.get(2), file.ints("cell"), file.ints("local"),
+                file.ints("cell.first"), file.ints("cell.nodes"),
+                file.ints("entry.first"), file.ints("entry.nodes"),
+                file.ints("exit.first"), file.ints("exit.nodes"),
+                file.ints("entry.index"), file.ints("exit.index"), file.ints("clique.offset"));
+    }
+
+    private static void bisect(RoadGraph graph, int[] order, int from, int to, int maxCellSize, IntArrayList bounds) {
+        if (to - from <= maxCellSize) {
+            bounds.add(to);
+            return;
+        }
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            minLat = Math.min(minLat, graph.latitude(order[i]));
+            maxLat = Math.max(maxLat, graph.latitude(order[i]));
+            minLon = Math.min(minLon, graph.longitude(order[i]));
+            maxLon = Math.max(maxLon, graph.longitude(order[i]));
+        }
+        // Compare extents in metres so cells stay roughly square away from the equator
+        int middleLat = (int) (((long) minLat + maxLat) / 2);
+        double lonScale = Math.cos(Math.toRadians(GeoMath.toDegrees(middleLat)));
+        boolean splitByLatitude = (maxLat - minLat) >= (maxLon - minLon) * lonScale;
+
+        long[] keyed = new long[to - from];
+        for (int i = from; i < to; i++) {
+            int coordinate = splitByLatitude ? graph.latitude(order[i]) : graph.longitude(order[i]);
+            keyed[i - from] = ((long) coordinate << 32) | order[i];
+        }
+        Arrays.sort(keyed);
+        for (int i = from; i < to; i++) {
+            order[i] = (int) keyed[i - from];
+        }
+        int middle = from + (to - from) / 2;
+        bisect(graph, order, from, middle, maxCellSize, bounds);
+        bisect(graph, order, middle, to, maxCellSize, bounds);
+    }
+
+    private static boolean hasCutInEdge(RoadGraph graph, int[] cell, int node) {
+        for (int i = graph.inEdgeStart(node), end = graph.inEdgeEnd(node); i < end; i++) {
+            if (cell[graph.source(graph.inEdge(i))] != cell[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasCutOutEdge(RoadGraph graph, int[] cell, int node) {
+        for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+            if (cell[graph.target(edge)] != cell[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public int getMaxCellSize() {
+        return maxCellSize;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int cell(int node) {
+        return cell.get(node);
+    }
+
+    /**
+     * Position of the node inside its cell, in {@code [0, cellSize)}
+     */
+    public int localIndex(int node) {
+        return localIndex.get(node);
+    }
+
+    public int cellSize(int cell) {
+        return cellFirst.get(cell + 1) - cellFirst.get(cell);
+    }
+
+    public int cellNode(int cell, int local) {
+        return cellNodes.get(cellFirst.get(cell) + local);
+    }
+
+    public int entryCount(int cell) {
+        return entryFirst.get(cell + 1) - entryFirst.get(cell);
+    }
+
+    public int entryNode(int cell, int index) {
+        return entryNodes.get(entryFirst.get(cell) + index);
+    }
+
+    public int exitCount(int cell) {
+        return exitFirst.get(cell + 1) - exitFirst.get(cell);
+    }
+
+    public int exitNode(int cell, int index) {
+        return exitNodes.get(exitFirst.get(cell) + index);
+    }
+
+    /**
+     * Index of the node among the entry nodes of its cell, or -1 if no cut edge enters it
+     */
+    public int entryIndex(int node) {
+        return entryIndex.get(node);
+    }
+
+    /**
+     * Index of the node among the exit nodes of its cell, or -1 if no cut edge leaves it
+     */
+    public int exitIndex(int node) {
+        return exitIndex.get(node);
+    }
+
+    /**
+     * Position of the entry→exit clique arc in a customized weight array
+     */
+    public int cliqueArc(int cell, int entry, int exit) {
+        return cliqueOffset.get(cell) + entry * exitCount(cell) + exit;
+    }
+
+    public int getCliqueArcCount() {
+        return cliqueOffset.get(cellCount);
+    }
+
+    public int getBoundaryNodeCount() {
+        return entryNodes.capacity() + exitNodes.capacity();
+    }
+}
@@ -0,0 +1,126 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap of node ids keyed by primitive longs, with decrease-key. A node is in the
+ * heap at most once, so searches need no stale-entry checks. Positions are kept per node and reset
+ * as nodes leave the heap, which keeps the heap reusable across searches without clearing arrays
+ * the size of the graph.
+ */
+final class IndexedDaryHeap {
+
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+
+    // Heap slot of each node, ABSENT when the node is not in the heap
+    private final int[] position;
+    private int[] nodes;
+    private long[] keys;
+    private int size;
+
+    IndexedDaryHeap(int nodeCount) {
+        position = new int[nodeCount];
+        Arrays.fill(position, ABSENT);
+        int capacity = Math.max(16, Math.min(nodeCount, 1024));
+        nodes = new int[capacity];
+        keys = new long[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return position[node] != ABSENT;
+    }
+
+    long peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Insert the node, or lower its key if it is already in the heap with a larger one
+     */
+    void push(int node, long key) {
+        int slot = position[node];
+        if (slot == ABSENT) {
+            if (size == nodes.length) {
+                int capacity = (int) Math.min((long) size * 2, position.length);
+                nodes = Arrays.copyOf(nodes, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            slot = size++;
+        } else if (key >= keys[slot]) {
+            return;
+        }
+        siftUp(slot, node, key);
+    }
+
+    /**
+     * Remove and return the node with the smallest key
+     */
+    int poll() {
+        int top = nodes[0];
+        position[top] = ABSENT;
+        size--;
+        if (size > 0) {
+            siftDown(0, nodes[size], keys[size]);
+        }
+        return top;
+    }
+
+    /**
+     * Empty the heap, touching only the nodes still in it
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[nodes[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot, int node, long key) {
+        while (slot > 0) {
+            int parent = (slot - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(slot, nodes[parent], keys[parent]);
+            slot = parent;
+        }
+        place(slot, node, key);
+    }
+
+    private void siftDown(int slot, int node, long key) {
+        while (true) {
+            int first = slot * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int smallest = first;
+            int last = Math.min(first + ARITY, size);
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (key <= keys[smallest]) {
+                break;
+            }
+            place(slot, nodes[smallest], keys[smallest]);
+            slot = smallest;
+        }
+        place(slot, node, key);
+    }
+
+    private void place(int slot, int node, long key) {
+        nodes[slot] = node;
+        keys[slot] = key;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,107 @@
+package com.trucknavigation.routing;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Read-only array of ints indexed from 0, the storage behind one {@link RoadGraph} attribute.
+ * Narrow attributes are widened with sign extension; callers mask them as before.
+ */
+interface IntColumn {
+
+    int get(int index);
+
+    int size();
+
+    /**
+     * Bytes the column occupies on the heap or in the mapped file
+     */
+    long byteSize();
+
+    /**
+     * Append the column's sections under the given name
+     */
+    void addTo(BinaryFile.Writer writer, String name);
+
+    static IntColumn of(IntBuffer buffer) {
+        return new Ints(buffer);
+    }
+
+    static IntColumn of(ShortBuffer buffer) {
+        return new Shorts(buffer);
+    }
+
+    static IntColumn of(ByteBuffer buffer) {
+        return new Bytes(buffer);
+    }
+
+    record Ints(IntBuffer buffer) implements IntColumn {
+
+        @Override
+        public int get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        public int size() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public long byteSize() {
+            return (long) buffer.capacity() * Integer.BYTES;
+        }
+
+        @Override
+        public void addTo(BinaryFile.Writer writer, String name) {
+            writer.add(name, buffer);
+        }
+    }
+
+    record Shorts(ShortBuffer buffer) implements IntColumn {
+
+        @Override
+        public int get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        public int size() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public long byteSize() {
+            return (long) buffer.capacity() * Short.BYTES;
+        }
+
+        @Override
+        public void addTo(BinaryFile.Writer writer, String name) {
+            writer.add(name, buffer);
+        }
+    }
+
+    record Bytes(ByteBuffer buffer) implements IntColumn {
+
+        @Override
+        public int get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        public int size() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public long byteSize() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public void addTo(BinaryFile.Writer writer, String name) {
+            writer.add(name, buffer);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.trucknavigation.routing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Outline of the area a vehicle reaches within a time limit, as one simplified polygon.
+ * <p>
+ * The reachable part of the road network is drawn onto a grid of square cells, about
+ * {@value #GRID_CELLS} across its extent, including the stretch of each edge the vehicle gets
+ * partway along before time runs out. Every drawn cell is grown by one cell to close the gaps
+ * between neighbouring roads, only the region around the start is kept, and its outer boundary is
+ * traced along the cell edges and simplified to within one cell. Holes are dropped.
+ */
+public final class Isochrone {
+
+    private static final int GRID_CELLS = 128;
+    private static final int MIN_CELL_MICRO_DEGREES = 900;
+    // Empty cells around the drawing: one for growing, one so the boundary never touches the edge
+    private static final int PADDING = 2;
+    private static final double TOLERANCE_CELLS = 1.0;
+
+    private final int originLatitude;
+    private final int originLongitude;
+    private final int cellLatitude;
+    private final int cellLongitude;
+    private final int width;
+    private final int height;
+    private final boolean[] cells;
+
+    private Isochrone(int minLatitude, int minLongitude, int maxLatitude, int maxLongitude) {
+        double cos = Math.max(Math.cos(Math.toRadians((minLatitude + maxLatitude) / 2.0 / GeoMath.MICRO_DEGREES)), 0.01);
+        double span = Math.max(maxLatitude - minLatitude, (maxLongitude - minLongitude) * cos);
+        cellLatitude = Math.max(MIN_CELL_MICRO_DEGREES, (int) Math.ceil(span / GRID_CELLS));
+        cellLongitude = Math.max(1, (int) Math.round(cellLatitude / cos));
+        originLatitude = minLatitude - PADDING * cellLatitude;
+        originLongitude = minLongitude - PADDING * cellLongitude;
+        width = (maxLongitude - minLongitude) / cellLongitude + 1 + 2 * PADDING;
+        height = (maxLatitude - minLatitude) / cellLatitude + 1 + 2 * PADDING;
+        cells = new boolean[width * height];
+    }
+
+    /**
+     * Outline the nodes of a one-to-all search and the stretches of road beyond them
+     *
+     * @param travelTimes travel time in deciseconds per node, or {@link DistanceMatrix#UNREACHABLE}
+     * @return the closed outer ring as interleaved latitude/longitude pairs in micro-degrees,
+     * counter-clockwise, its first point repeated at the end
+     */
+    public static IntArrayList outline(RoadGraph graph, EdgeWeighting weighting, int source,
+                                       int[] travelTimes, int maxDurationDeciseconds) {
+        // Bounds of the reachable nodes and of the far ends of the edges leaving them
+        int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int node = 0; node < travelTimes.length; node++) {
+            if (travelTimes[node] == DistanceMatrix.UNREACHABLE) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int target = graph.target(edge);
+                if (travelTimes[target] == DistanceMatrix.UNREACHABLE) {
+                    minLat = Math.min(minLat, graph.latitude(target));
+                    maxLat = Math.max(maxLat, graph.latitude(target));
+                    minLon = Math.min(minLon, graph.longitude(target));
+                    maxLon = Math.max(maxLon, graph.longitude(target));
+                }
+            }
+            minLat = Math.min(minLat, graph.latitude(node));
+            maxLat = Math.max(maxLat, graph.latitude(node));
+            minLon = Math.min(minLon, graph.longitude(node));
+            maxLon = Math.max(maxLon, graph.longitude(node));
+        }
+
+        Isochrone isochrone = new Isochrone(minLat, minLon, maxLat, maxLon);
+        for (int node = 0; node < travelTimes.length; node++) {
+            if (travelTimes[node] == DistanceMatrix.UNREACHABLE) {
+                continue;
+            }
+            int row = isochrone.row(graph.latitude(node));
+            int column = isochrone.column(graph.longitude(node));
+            isochrone.cells[row * isochrone.width + column] = true;
+            int remaining = maxDurationDeciseconds - travelTimes[node];
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                // Both ends drawn in touching cells: growing the drawing covers the road between them
+                int target = graph.target(edge);
+                if (travelTimes[target] != DistanceMatrix.UNREACHABLE
+                        && Math.abs(isochrone.row(graph.latitude(target)) - row) <= 1
+                        && Math.abs(isochrone.column(graph.longitude(target)) - column) <= 1) {
+                    continue;
+                }
+                if (weighting.weight(graph, edge) == EdgeWeighting.INFINITE) {
+                    continue;
+                }
+                int travelTime = weighting.travelTime(graph, edge);
+                isochrone.drawEdge(graph, edge, travelTime <= remaining ? 1 : (double) remaining / travelTime);
+            }
+        }
+        return isochrone.trace(isochrone.column(graph.longitude(source)), isochrone.row(graph.latitude(source)));
+    }
+
+    private int column(int longitude) {
+        return (longitude - originLongitude) / cellLongitude;
+    }
+
+    private int row(int latitude) {
+        return (latitude - originLatitude) / cellLatitude;
+    }
+
+    /**
+     * Draw the first fraction of the edge's geometry, sampled every half cell. Pillars outside the
+     * padded bounds are clipped.
+     */
+    private void drawEdge(RoadGraph graph, int edge, double fraction) {
+        int pointCount = graph.pillarCount(edge) + 2;
+        double left = Double.MAX_VALUE;
+        if (fraction < 1) {
+            double total = 0;
+            for (int i = 1; i < pointCount; i++) {
+                total += Math.hypot(x(pointLongitude(graph, edge, i)) - x(pointLongitude(graph, edge, i - 1)),
+                        y(pointLatitude(graph, edge, i)) - y(pointLatitude(graph, edge, i - 1)));
+            }
+            left = total * fraction;
+        }
+        double x0 = x(pointLongitude(graph, edge, 0)), y0 = y(pointLatitude(graph, edge, 0));
+        for (int i = 1; i < pointCount && left > 0; i++) {
+            double x1 = x(pointLongitude(graph, edge, i)), y1 = y(pointLatitude(graph, edge, i));
+            double length = Math.hypot(x1 - x0, y1 - y0);
+            double part = length <= left ? 1 : left / length;
+            int steps = (int) Math.ceil(length * part * 2);
+            for (int step = 1; step <= steps; step++) {
+                double t = part * step / steps;
+                int row = (int) Math.floor(y0 + (y1 - y0) * t), column = (int) Math.floor(x0 + (x1 - x0) * t);
+                if (row >= PADDING && column >= PADDING && row < height - PADDING && column < width - PADDING) {
+                    cells[row * width + column] = true;
+                }
+            }
+            left -= length;
+            x0 = x1;
+            y0 = y1;
+        }
+    }
+
+    private double x(int longitude) {
+        return (double) (longitude - originLongitude) / cellLongitude;
+    }
+
+    private double y(int latitude) {
+        return (double) (latitude - originLatitude) / cellLatitude;
+    }
+
+    /**
+     * Point of an edge's geometry: its source, then its pillars, then its target
+     */
+    private static int pointLatitude(RoadGraph graph, int edge, int index) {
+        return index == 0 ? graph.latitude(graph.source(edge))
+                : index <= graph.pillarCount(edge) ? graph.pillarLatitude(edge, index - 1) : graph.latitude(graph.target(edge));
+    }
+
+    private static int pointLongitude(RoadGraph graph, int edge, int index) {
+        return index == 0 ? graph.longitude(graph.source(edge))
+                : index <= graph.pillarCount(edge) ? graph.pillarLongitude(edge, index - 1) : graph.longitude(graph.target(edge));
+    }
+
+    /**
+     * Grow the drawing, keep the region around the start cell and trace its outer boundary
+     */
+    private IntArrayList trace(int startColumn, int startRow) {
+        boolean[] grown = new boolean[cells.length];
+        for (int row = 1; row < height - 1; row++) {
+            for (int column = 1; column < width - 1; column++) {
+                if (cells[row * width + column]) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            grown[(row + dy) * width + column + dx] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Region around the start, cells touching at a corner included like the tracing does
+        boolean[] region = new boolean[cells.length];
+        int[] queue = new int[cells.length];
+        int head = 0, tail = 0;
+        region[startRow * width + startColumn] = true;
+        queue[tail++] = startRow * width + startColumn;
+        int first = startRow * width + startColumn;
+        while (head < tail) {
+            int cell = queue[head++];
+            first = Math.min(first, cell);
+            int row = cell / width, column = cell % width;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int next = (row + dy) * width + column + dx;
+                    if (grown[next] && !region[next]) {
+                        region[next] = true;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        // Walk the cell edges from the bottom edge of the lowest cell, region on the left
+        int startX = first % width, startY = first / width;
+        IntArrayList xs = new IntArrayList();
+        IntArrayList ys = new IntArrayList();
+        xs.add(startX);
+        ys.add(startY);
+        int x = startX, y = startY, dx = 1, dy = 0;
+        while (true) {
+            x += dx;
+            y += dy;
+            if (x == startX && y == startY) {
+                break;
+            }
+            boolean aheadLeft = filled(region, Math.floorDiv(2 * x + dx - dy, 2), Math.floorDiv(2 * y + dy + dx, 2));
+            boolean aheadRight = filled(region, Math.floorDiv(2 * x + dx + dy, 2), Math.floorDiv(2 * y + dy - dx, 2));
+            int nextDx = dx, nextDy = dy;
+            if (aheadRight) {
+                nextDx = dy;
+                nextDy = -dx;
+            } else if (!aheadLeft) {
+                nextDx = -dy;
+                nextDy = dx;
+            }
+            if (nextDx != dx || nextDy != dy) {
+                xs.add(x);
+                ys.add(y);
+                dx = nextDx;
+                dy = nextDy;
+            }
+        }
+
+        boolean[] keep = simplify(xs, ys);
+        IntArrayList ring = new IntArrayList();
+        for (int i = 0; i <= xs.size(); i++) {
+            int vertex = i % xs.size();
+            if (keep[vertex]) {
+                ring.add(originLatitude + ys.get(vertex) * cellLatitude);
+                ring.add(originLongitude + xs.get(vertex) * cellLongitude);
+            }
+        }
+        return ring;
+    }
+
+    private boolean filled(boolean[] region, int column, int row) {
+        return column >= 0 && row >= 0 && column < width && row < height && region[row * width + column];
+    }
+
+    /**
+     * Douglas-Peucker on the closed ring, split at its first vertex and the vertex farthest from it
+     *
+     * @return which vertices to keep
+     */
+    private static boolean[] simplify(IntArrayList xs, IntArrayList ys) {
+        int count = xs.size();
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        if (count <= 3) {
+            Arrays.fill(keep, true);
+            return keep;
+        }
+        int farthest = 1;
+        double farthestDistance = -1;
+        for (int i = 1; i < count; i++) {
+            double distance = Math.hypot(xs.get(i) - xs.get(0), ys.get(i) - ys.get(0));
+            if (distance > farthestDistance) {
+                farthest = i;
+                farthestDistance = distance;
+            }
+        }
+        keep[farthest] = true;
+        ArrayDeque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, farthest});
+        ranges.push(new int[]{farthest, count});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int from = range[0], to = range[1];
+            double ax = xs.get(from), ay = ys.get(from);
+            double bx = xs.get(to % count), by = ys.get(to % count);
+            double length = Math.hypot(bx - ax, by - ay);
+            int worst = -1;
+            double worstDistance = TOLERANCE_CELLS;
+            for (int i = from + 1; i < to; i++) {
+                double px = xs.get(i) - ax, py = ys.get(i) - ay;
+                double distance = length == 0 ? Math.hypot(px, py)
+                        : Math.abs(px * (by - ay) - py * (bx - ax)) / length;
+                if (distance > worstDistance) {
+                    worst = i;
+                    worstDistance = distance;
+                }
+            }
+            if (worst >= 0) {
+                keep[worst] = true;
+                ranges.push(new int[]{from, worst});
+                ranges.push(new int[]{worst, to});
+            }
+        }
+        return keep;
+    }
+}
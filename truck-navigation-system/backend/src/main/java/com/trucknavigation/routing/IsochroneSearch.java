@@ -0,0 +1,280 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * One-to-all search on a {@link ContractionHierarchy} in the style of PHAST.
+ * <p>
+ * An upward search from the source labels its search space. One sweep over all nodes in
+ * descending rank order then pulls every downward arc into each node; all nodes above it are final
+ * by then, so a single linear pass without a priority queue leaves every node with its shortest
+ * path. The sweep runs on a {@link SweepGraph}, which numbers nodes by sweep position so that labels
+ * and arcs are read front to back. Under the fastest metric, whose weight never exceeds the
+ * truck's travel time, labels beyond the time limit are dropped.
+ * <p>
+ * As in {@link ManyToManySearch}, each label records whether its path unpacks onto an edge the
+ * weighting excludes, see {@link ArcAccess}, and all other labels are exact for the truck. Excluded nodes that may still
+ * lie within the limit are settled again by a Dijkstra on the original graph that is confined to
+ * them and seeded from the exact nodes next to them: the truck's path to such a node leaves the
+ * exact nodes for the last time somewhere and only passes excluded ones afterwards.
+ */
+final class IsochroneSearch {
+
+    private static final int UNLABELED = Integer.MAX_VALUE;
+
+    private final RoadGraph graph;
+    private final ContractionHierarchy hierarchy;
+    private final EdgeWeighting weighting;
+    private final ManyToManySearch.ArcCosts costs;
+    private final SweepGraph sweep;
+    private final SearchWorkspacePool workspaces;
+    private Labels labels;
+    private ArcAccess arcAccess;
+    // Travel time per node and the nodes given one
+    private int[] result;
+    private IntArrayList reached;
+
+    IsochroneSearch(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting,
+                    ManyToManySearch.ArcCosts costs, SweepGraph sweep, SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.weighting = weighting;
+        this.costs = costs;
+        this.sweep = sweep;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * @param reader reads the travel time in deciseconds per node, or {@link DistanceMatrix#UNREACHABLE};
+     *               the array is only valid until it returns
+     * @return what the reader returns
+     */
+    <T> T run(int source, int maxDurationDeciseconds, Function<int[], T> reader) {
+        SearchWorkspace workspace = workspaces.acquire();
+        labels = workspace.isochroneLabels();
+        arcAccess = workspace.arcAccess();
+        arcAccess.begin(graph, hierarchy, weighting);
+        result = workspace.travelTimes();
+        reached = workspace.travelTimeNodes();
+        try {
+            search(source, maxDurationDeciseconds);
+            return reader.apply(result);
+        } finally {
+            labels.reset();
+            workspace.clearTravelTimes();
+            workspaces.release(workspace);
+        }
+    }
+
+    private void search(int source, int maxDurationDeciseconds) {
+        int nodeCount = graph.getNodeCount();
+        long weightLimit = weighting.getMetric() == EdgeWeighting.Metric.FASTEST ? maxDurationDeciseconds : UNLABELED - 1;
+        // Labels by sweep position
+        int[] weights = labels.weights;
+        int[] durations = labels.durations;
+        boolean[] restricted = labels.restricted;
+        IntArrayList labeled = labels.labeled;
+
+        // Upward search from the source
+        LongMinHeap queue = labels.queue;
+        int sourcePosition = sweep.positionOf[source];
+        weights[sourcePosition] = 0;
+        durations[sourcePosition] = 0;
+        labeled.add(sourcePosition);
+        queue.push(LongMinHeap.pack(0, source));
+        while (!queue.isEmpty()) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            int position = sweep.positionOf[node];
+            if (LongMinHeap.key(item) > weights[position]) {
+                continue;
+            }
+            for (int i = hierarchy.upStart(node); i < hierarchy.upEnd(node); i++) {
+                int arc = hierarchy.upArc(i);
+                int next = sweep.positionOf[hierarchy.arcTarget(arc)];
+                long candidate = (long) weights[position] + hierarchy.upWeight(i);
+                if (candidate <= weightLimit && candidate < weights[next]) {
+                    if (weights[next] == UNLABELED) {
+                        labeled.add(next);
+                    }
+                    weights[next] = (int) candidate;
+                    durations[next] = durations[position] + costs.durations[arc];
+                    restricted[next] = restricted[position] || arcAccess.isRestricted(arc);
+                    queue.push(LongMinHeap.pack(candidate, hierarchy.arcTarget(arc)));
+                }
+            }
+        }
+
+        // Downward sweep: every arc into a position comes from an earlier one
+        for (int position = 0; position < nodeCount; position++) {
+            long best = weights[position];
+            int bestArc = -1;
+            for (int i = sweep.first[position]; i < sweep.first[position + 1]; i++) {
+                int from = weights[sweep.from[i]];
+                if (from != UNLABELED && (long) from + sweep.weights[i] < best) {
+                    best = (long) from + sweep.weights[i];
+                    bestArc = i;
+                }
+            }
+            if (bestArc >= 0 && best <= weightLimit) {
+                int from = sweep.from[bestArc];
+                if (weights[position] == UNLABELED) {
+                    labeled.add(position);
+                }
+                weights[position] = (int) best;
+                durations[position] = durations[from] + costs.durations[sweep.arcs[bestArc]];
+                restricted[position] = restricted[from] || arcAccess.isRestricted(sweep.arcs[bestArc]);
+            }
+        }
+
+        boolean anyExcluded = false;
+        for (int i = 0; i < labeled.size(); i++) {
+            int position = labeled.get(i);
+            if (restricted[position]) {
+                anyExcluded = true;
+            } else if (durations[position] <= maxDurationDeciseconds) {
+                setResult(sweep.nodeAt[position], durations[position]);
+            }
+        }
+        if (anyExcluded) {
+            settleExcluded(weights, durations, restricted, maxDurationDeciseconds);
+        }
+    }
+
+    /**
+     * Dijkstra over the excluded nodes under the weighting, entered from the exact nodes within the
+     * limit. Settled nodes within the limit are added to the result.
+     *
+     * @param excluded by sweep position, cleared as nodes are settled
+     */
+    private void settleExcluded(int[] weights, int[] durations, boolean[] excluded, int maxDurationDeciseconds) {
+        IntArrayList labeled = labels.labeled;
+        for (int i = 0; i < labeled.size(); i++) {
+            if (excluded[labeled.get(i)]) {
+                weights[labeled.get(i)] = UNLABELED;
+            }
+        }
+        LongMinHeap queue = labels.queue;
+        for (int i = 0, exact = reached.size(); i < exact; i++) {
+            relax(reached.get(i), weights, durations, excluded, queue);
+        }
+        while (!queue.isEmpty()) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            int position = sweep.positionOf[node];
+            if (!excluded[position] || LongMinHeap.key(item) > weights[position]) {
+                continue;
+            }
+            excluded[position] = false;
+            if (durations[position] <= maxDurationDeciseconds) {
+                setResult(node, durations[position]);
+                relax(node, weights, durations, excluded, queue);
+            }
+        }
+    }
+
+    private void relax(int node, int[] weights, int[] durations, boolean[] excluded, LongMinHeap queue) {
+        int position = sweep.positionOf[node];
+        for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+            int next = sweep.positionOf[graph.target(edge)];
+            if (!excluded[next]) {
+                continue;
+            }
+            int weight = weighting.weight(graph, edge);
+            if (weight == EdgeWeighting.INFINITE) {
+                continue;
+            }
+            long candidate = (long) weights[position] + weight;
+            if (candidate < weights[next]) {
+                weights[next] = (int) candidate;
+                durations[next] = durations[position] + weighting.travelTime(graph, edge);
+                queue.push(LongMinHeap.pack(candidate, graph.target(edge)));
+            }
+        }
+    }
+
+    private void setResult(int node, int duration) {
+        result[node] = duration;
+        reached.add(node);
+    }
+
+    /**
+     * Labels of one query by sweep position, kept in a {@link SearchWorkspace} and reset afterwards
+     * through the positions that were labeled
+     */
+    static final class Labels {
+        final int[] weights;
+        final int[] durations;
+        final boolean[] restricted;
+        final IntArrayList labeled = new IntArrayList();
+        final LongMinHeap queue = new LongMinHeap(64);
+
+        Labels(int nodeCount) {
+            weights = new int[nodeCount];
+            durations = new int[nodeCount];
+            restricted = new boolean[nodeCount];
+            Arrays.fill(weights, UNLABELED);
+        }
+
+        void reset() {
+            for (int i = 0; i < labeled.size(); i++) {
+                weights[labeled.get(i)] = UNLABELED;
+                restricted[labeled.get(i)] = false;
+            }
+            labeled.clear();
+            queue.clear();
+        }
+    }
+
+    /**
+     * Downward arcs of a hierarchy with nodes numbered by descending rank. Built once per hierarchy;
+     * every arc into a position comes from a smaller position.
+     */
+    static final class SweepGraph {
+        final int[] nodeAt;
+        final int[] positionOf;
+        // Per position: first of its incoming arcs; one more entry marks the end
+        final int[] first;
+        // Per incoming arc: position of its source, weight and hierarchy arc
+        final int[] from;
+        final int[] weights;
+        final int[] arcs;
+
+        private SweepGraph(int[] nodeAt, int[] positionOf, int[] first, int[] from, int[] weights, int[] arcs) {
+            this.nodeAt = nodeAt;
+            this.positionOf = positionOf;
+            this.first = first;
+            this.from = from;
+            this.weights = weights;
+            this.arcs = arcs;
+        }
+
+        static SweepGraph build(ContractionHierarchy hierarchy, int nodeCount) {
+            int[] nodeAt = new int[nodeCount];
+            int[] positionOf = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int position = nodeCount - 1 - hierarchy.rank(node);
+                nodeAt[position] = node;
+                positionOf[node] = position;
+            }
+            int[] first = new int[nodeCount + 1];
+            for (int position = 0; position < nodeCount; position++) {
+                int node = nodeAt[position];
+                first[position + 1] = first[position] + hierarchy.downEnd(node) - hierarchy.downStart(node);
+            }
+            int[] from = new int[first[nodeCount]];
+            int[] weights = new int[from.length];
+            int[] arcs = new int[from.length];
+            for (int position = 0; position < nodeCount; position++) {
+                int node = nodeAt[position];
+                for (int i = hierarchy.downStart(node), k = first[position]; i < hierarchy.downEnd(node); i++, k++) {
+                    arcs[k] = hierarchy.downArc(i);
+                    from[k] = positionOf[hierarchy.arcSource(arcs[k])];
+                    weights[k] = hierarchy.downWeight(i);
+                }
+            }
+            return new SweepGraph(nodeAt, positionOf, first, from, weights, arcs);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs. Callers pack a key and a node id into one long
+ * (key in the high bits) so that heap order equals key order without boxing.
+ */
+final class LongMinHeap {
+
+    private long[] heap;
+    private int size;
+
+    LongMinHeap(int initialCapacity) {
+        heap = new long[Math.max(16, initialCapacity)];
+    }
+
+    static long pack(long key, int node) {
+        return (key << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    static int node(long packed) {
+        return (int) packed;
+    }
+
+    static long key(long packed) {
+        return packed >>> 32;
+    }
+
+    void push(long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    long peek() {
+        return heap[0];
+    }
+
+    long poll() {
+        long top = heap[0];
+        long last = heap[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (size > 0) {
+            heap[i] = last;
+        }
+        return top;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,405 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Bucket-based many-to-many search on a {@link ContractionHierarchy}.
+ * <p>
+ * A backward upward search from every target leaves an entry in the bucket of each node it
+ * settles. A forward upward search from each source then scans the buckets of the nodes it
+ * settles, and the cheapest sum per target is the shortest path, exactly as the meeting node of a
+ * bidirectional query. Upward search spaces are small, so a 1000 x 1000 table costs 2000 searches
+ * of a few hundred nodes plus the bucket scans. Both phases are spread over all cores with one
+ * pooled workspace per worker; a workspace only touches the nodes it settles, and the buckets are
+ * indexed through a pooled per-node array that is cleared through the nodes that have one.
+ * <p>
+ * Length and travel time are summed along with the weight, and each label records whether its
+ * path unpacks onto an edge the weighting excludes. All other pairs are exact for the truck, as
+ * explained in {@link ContractionHierarchyRoutingEngine}. The excluded ones of a row are settled
+ * together by one Dijkstra on the original graph from their source, which stops as soon as the
+ * last of them is settled.
+ */
+final class ManyToManySearch {
+
+    private final RoadGraph graph;
+    private final ContractionHierarchy hierarchy;
+    private final EdgeWeighting weighting;
+    private final ArcCosts costs;
+    private final SearchWorkspacePool workspaces;
+
+    ManyToManySearch(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting, ArcCosts costs,
+                     SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.weighting = weighting;
+        this.costs = costs;
+        this.workspaces = workspaces;
+    }
+
+    DistanceMatrix run(int[] sources, int[] targets) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length);
+        if (sources.length == 0 || targets.length == 0) {
+            return matrix;
+        }
+
+        // Backward searches: the labels of every target's search space
+        Space[] spaces = new Space[targets.length];
+        inParallel(targets.length, (labels, arcAccess, target) -> {
+            search(labels, arcAccess, targets[target], false);
+            spaces[target] = labels.toSpace();
+        });
+
+        // Buckets: the (target, label) entries of every search space, ordered by the node they settled
+        int entryCount = 0;
+        for (Space space : spaces) {
+            entryCount += space.nodes.length;
+        }
+        long[] order = new long[entryCount];
+        int[] spaceOf = new int[entryCount];
+        for (int target = 0, entry = 0; target < spaces.length; target++) {
+            for (int i = 0; i < spaces[target].nodes.length; i++, entry++) {
+                order[entry] = (long) spaces[target].nodes[i] << 32 | entry;
+                spaceOf[entry] = target;
+            }
+        }
+        Arrays.sort(order);
+        int[] entryNode = new int[entryCount];
+        int[] entryTarget = new int[entryCount];
+        long[] entryWeight = new long[entryCount];
+        int[] entryLength = new int[entryCount];
+        int[] entryDuration = new int[entryCount];
+        boolean[] entryRestricted = new boolean[entryCount];
+        int[] spaceStart = new int[spaces.length + 1];
+        for (int target = 0; target < spaces.length; target++) {
+            spaceStart[target + 1] = spaceStart[target] + spaces[target].nodes.length;
+        }
+        for (int entry = 0; entry < entryCount; entry++) {
+            int flat = (int) order[entry];
+            int target = spaceOf[flat];
+            Space space = spaces[target];
+            int i = flat - spaceStart[target];
+            entryNode[entry] = space.nodes[i];
+            entryTarget[entry] = target;
+            entryWeight[entry] = space.weights[i];
+            entryLength[entry] = space.lengths[i];
+            entryDuration[entry] = space.durations[i];
+            entryRestricted[entry] = space.restricted[i];
+        }
+        SearchWorkspace bucketWorkspace = workspaces.acquire();
+        Labels buckets = bucketWorkspace.manyToManyLabels();
+        try {
+            int[] bucketFirst = buckets.bucketFirst();
+            for (int entry = 0; entry < entryCount; entry++) {
+                int node = entryNode[entry];
+                if (bucketFirst[node] < 0) {
+                    bucketFirst[node] = entry;
+                }
+            }
+
+            // Forward searches: one row each, scanning the buckets of every settled node
+            inParallel(sources.length, (labels, arcAccess, source) -> {
+                labels.clearRow(targets.length);
+                long[] best = labels.rowWeights;
+                long[] length = labels.rowLengths;
+                long[] duration = labels.rowDurations;
+                boolean[] restricted = labels.rowRestricted;
+                search(labels, arcAccess, sources[source], true);
+                for (int slot = 0; slot < labels.size; slot++) {
+                    int node = labels.nodes[slot];
+                    long weight = labels.weights[slot];
+                    for (int entry = bucketFirst[node]; entry >= 0 && entry < entryNode.length
+                            && entryNode[entry] == node; entry++) {
+                        int target = entryTarget[entry];
+                        long candidate = weight + entryWeight[entry];
+                        if (candidate < best[target]) {
+                            best[target] = candidate;
+                            length[target] = (long) labels.lengths[slot] + entryLength[entry];
+                            duration[target] = (long) labels.durations[slot] + entryDuration[entry];
+                            restricted[target] = labels.restricted[slot] || entryRestricted[entry];
+                        }
+                    }
+                }
+                IntArrayList excluded = new IntArrayList();
+                for (int target = 0; target < targets.length; target++) {
+                    if (best[target] == Long.MAX_VALUE) {
+                        continue; // unreachable even without restrictions
+                    }
+                    if (restricted[target]) {
+                        excluded.add(targets[target]);
+                    } else {
+                        matrix.set(source, target, duration[target], length[target]);
+                    }
+                }
+                if (excluded.isEmpty()) {
+                    return;
+                }
+                int[] wanted = excluded.toArray();
+                Arrays.sort(wanted);
+                searchGraph(labels, sources[source], wanted);
+                for (int target = 0; target < targets.length; target++) {
+                    if (best[target] != Long.MAX_VALUE && restricted[target]) {
+                        int slot = labels.slotOf[targets[target]];
+                        if (slot >= 0 && labels.settled[slot]) {
+                            matrix.set(source, target, labels.durations[slot], labels.lengths[slot]);
+                        }
+                    }
+                }
+            });
+        } finally {
+            buckets.clearBuckets(entryNode);
+            workspaces.release(bucketWorkspace);
+        }
+        return matrix;
+    }
+
+    /**
+     * Run the task for every index, striped over one worker per core, each with its own pooled workspace
+     */
+    private void inParallel(int count, WorkspaceTask task) {
+        int workers = Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors()));
+        IntStream.range(0, workers).parallel().forEach(worker -> {
+            SearchWorkspace workspace = workspaces.acquire();
+            Labels labels = workspace.manyToManyLabels();
+            ArcAccess arcAccess = workspace.arcAccess();
+            arcAccess.begin(graph, hierarchy, weighting);
+            try {
+                for (int index = worker; index < count; index += workers) {
+                    task.run(labels, arcAccess, index);
+                }
+            } finally {
+                labels.reset();
+                workspaces.release(workspace);
+            }
+        });
+    }
+
+    /**
+     * Upward Dijkstra from the node; afterwards slots {@code [0, size)} hold its search space
+     */
+    private void search(Labels labels, ArcAccess arcAccess, int start, boolean forward) {
+        labels.reset();
+        int startSlot = labels.slot(start);
+        labels.weights[startSlot] = 0;
+        LongMinHeap queue = labels.queue;
+        queue.push(LongMinHeap.pack(0, start));
+        while (!queue.isEmpty()) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            int nodeSlot = labels.slotOf[node];
+            if (labels.settled[nodeSlot] || LongMinHeap.key(item) > labels.weights[nodeSlot]) {
+                continue;
+            }
+            labels.settled[nodeSlot] = true;
+            int begin = forward ? hierarchy.upStart(node) : hierarchy.downStart(node);
+            int end = forward ? hierarchy.upEnd(node) : hierarchy.downEnd(node);
+            for (int i = begin; i < end; i++) {
+                int arc = forward ? hierarchy.upArc(i) : hierarchy.downArc(i);
+                int next = forward ? hierarchy.arcTarget(arc) : hierarchy.arcSource(arc);
+                long candidate = labels.weights[nodeSlot] + (forward ? hierarchy.upWeight(i) : hierarchy.downWeight(i));
+                int nextSlot = labels.slotOf[next] >= 0 ? labels.slotOf[next] : labels.slot(next);
+                if (candidate < labels.weights[nextSlot]) {
+                    labels.weights[nextSlot] = candidate;
+                    labels.lengths[nextSlot] = labels.lengths[nodeSlot] + costs.lengths[arc];
+                    labels.durations[nextSlot] = labels.durations[nodeSlot] + costs.durations[arc];
+                    labels.restricted[nextSlot] = labels.restricted[nodeSlot] || arcAccess.isRestricted(arc);
+                    queue.push(LongMinHeap.pack(candidate, next));
+                }
+            }
+        }
+    }
+
+    /**
+     * Dijkstra on the original graph under the weighting, until every wanted node is settled
+     *
+     * @param wanted sorted nodes
+     */
+    private void searchGraph(Labels labels, int start, int[] wanted) {
+        labels.reset();
+        int remaining = wanted.length;
+        int startSlot = labels.slot(start);
+        labels.weights[startSlot] = 0;
+        LongMinHeap queue = labels.queue;
+        queue.push(LongMinHeap.pack(0, start));
+        while (!queue.isEmpty() && remaining > 0) {
+            long item = queue.poll();
+            int node = LongMinHeap.node(item);
+            int nodeSlot = labels.slotOf[node];
+            if (labels.settled[nodeSlot] || LongMinHeap.key(item) > labels.weights[nodeSlot]) {
+                continue;
+            }
+            labels.settled[nodeSlot] = true;
+            int position = Arrays.binarySearch(wanted, node);
+            if (position >= 0) {
+                // Count duplicates of the node too
+                for (int i = position; i >= 0 && wanted[i] == node; i--) {
+                    remaining--;
+                }
+                for (int i = position + 1; i < wanted.length && wanted[i] == node; i++) {
+                    remaining--;
+                }
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int weight = weighting.weight(graph, edge);
+                if (weight == EdgeWeighting.INFINITE) {
+                    continue;
+                }
+                int next = graph.target(edge);
+                long candidate = labels.weights[nodeSlot] + weight;
+                int nextSlot = labels.slotOf[next] >= 0 ? labels.slotOf[next] : labels.slot(next);
+                if (candidate < labels.weights[nextSlot]) {
+                    labels.weights[nextSlot] = candidate;
+                    labels.lengths[nextSlot] = labels.lengths[nodeSlot] + graph.length(edge);
+                    labels.durations[nextSlot] = labels.durations[nodeSlot] + weighting.travelTime(graph, edge);
+                    queue.push(LongMinHeap.pack(candidate, next));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface WorkspaceTask {
+        void run(Labels labels, ArcAccess arcAccess, int index);
+    }
+
+    /**
+     * Labels of one settled search space
+     */
+    private record Space(int[] nodes, long[] weights, int[] lengths, int[] durations, boolean[] restricted) {}
+
+    /**
+     * Search state of one worker, kept in a {@link SearchWorkspace}. Labels live in slots allocated
+     * in the order nodes are reached, so resetting only visits the nodes of the last search. Upward
+     * searches run until the queue is empty, so every slot ends up settled.
+     */
+    static final class Labels {
+        private final int nodeCount;
+        final int[] slotOf;
+        int[] nodes = new int[64];
+        long[] weights = new long[64];
+        int[] lengths = new int[64];
+        int[] durations = new int[64];
+        boolean[] restricted = new boolean[64];
+        boolean[] settled = new boolean[64];
+        int size;
+        final LongMinHeap queue = new LongMinHeap(64);
+
+        long[] rowWeights = new long[0];
+        long[] rowLengths = new long[0];
+        long[] rowDurations = new long[0];
+        boolean[] rowRestricted = new boolean[0];
+
+        // Per node: first of its bucket entries, or -1; only created for the workspace holding the buckets
+        private int[] bucketFirst;
+
+        Labels(int nodeCount) {
+            this.nodeCount = nodeCount;
+            slotOf = new int[nodeCount];
+            Arrays.fill(slotOf, -1);
+        }
+
+        void reset() {
+            for (int i = 0; i < size; i++) {
+                slotOf[nodes[i]] = -1;
+            }
+            size = 0;
+            queue.clear();
+        }
+
+        int slot(int node) {
+            if (size == nodes.length) {
+                int capacity = size * 2;
+                nodes = Arrays.copyOf(nodes, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+                restricted = Arrays.copyOf(restricted, capacity);
+                settled = Arrays.copyOf(settled, capacity);
+            }
+            int slot = size++;
+            slotOf[node] = slot;
+            nodes[slot] = node;
+            weights[slot] = Long.MAX_VALUE;
+            lengths[slot] = 0;
+            durations[slot] = 0;
+            restricted[slot] = false;
+            settled[slot] = false;
+            return slot;
+        }
+
+        Space toSpace() {
+            return new Space(Arrays.copyOf(nodes, size), Arrays.copyOf(weights, size), Arrays.copyOf(lengths, size),
+                    Arrays.copyOf(durations, size), Arrays.copyOf(restricted, size));
+        }
+
+        /**
+         * Prepare the row buffers for the next source
+         */
+        void clearRow(int targetCount) {
+            if (rowWeights.length < targetCount) {
+                rowWeights = new long[targetCount];
+                rowLengths = new long[targetCount];
+                rowDurations = new long[targetCount];
+                rowRestricted = new boolean[targetCount];
+            }
+            Arrays.fill(rowWeights, 0, targetCount, Long.MAX_VALUE);
+        }
+
+        int[] bucketFirst() {
+            if (bucketFirst == null) {
+                bucketFirst = new int[nodeCount];
+                Arrays.fill(bucketFirst, -1);
+            }
+            return bucketFirst;
+        }
+
+        void clearBuckets(int[] entryNode) {
+            if (bucketFirst != null) {
+                for (int entry = 0; entry < entryNode.length; entry++) {
+                    bucketFirst[entryNode[entry]] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Length in metres and travel time in deciseconds of every arc, shortcuts unpacked. Travel time
+     * depends only on the vehicle's speed limit, so one instance serves every truck with that limit.
+     */
+    static final class ArcCosts {
+        final int[] lengths;
+        final int[] durations;
+
+        private ArcCosts(int[] lengths, int[] durations) {
+            this.lengths = lengths;
+            this.durations = durations;
+        }
+
+        static ArcCosts compute(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting) {
+            int count = hierarchy.getArcCount();
+            ArcCosts costs = new ArcCosts(new int[count], new int[count]);
+            Arrays.fill(costs.lengths, -1);
+            for (int arc = 0; arc < count; arc++) {
+                costs.fill(graph, hierarchy, weighting, arc);
+            }
+            return costs;
+        }
+
+        private void fill(RoadGraph graph, ContractionHierarchy hierarchy, EdgeWeighting weighting, int arc) {
+            if (lengths[arc] >= 0) {
+                return;
+            }
+            int edge = hierarchy.arcEdge(arc);
+            if (edge >= 0) {
+                lengths[arc] = graph.length(edge);
+                durations[arc] = weighting.travelTime(graph, edge);
+                return;
+            }
+            int child1 = hierarchy.arcChild1(arc), child2 = hierarchy.arcChild2(arc);
+            fill(graph, hierarchy, weighting, child1);
+            fill(graph, hierarchy, weighting, child2);
+            lengths[arc] = lengths[child1] + lengths[child2];
+            durations[arc] = durations[child1] + durations[child2];
+        }
+    }
+}
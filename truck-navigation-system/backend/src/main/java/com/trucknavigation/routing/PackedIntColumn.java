@@ -0,0 +1,178 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Patched frame-of-reference bit packing of an int column. Values are stored as the delta to the
+ * smallest value of their block of 64, all in one bit width chosen for the whole column; the few
+ * deltas too wide for it are stored as exceptions, marked by a delta of all ones. Graph attributes
+ * change little between neighbouring ids (CSR offsets grow by the degree, sources repeat, targets
+ * and coordinates cluster), so the width is a fraction of 32 bits.
+ * <p>
+ * A value's bits start at {@code index * width}, so its word and its block's base are loaded
+ * independently of each other, the word with one unaligned 8 byte load holding all of its at most
+ * 32 bits. Random access costs about as much as reading an uncompressed array, unlike a varint
+ * stream that must be decoded from the front or blocks of varying width that must be located first.
+ */
+final class PackedIntColumn implements IntColumn {
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    // Exceptions slow reads down, never trade more than one value in this many for a smaller width
+    private static final int MIN_VALUES_PER_EXCEPTION = 64;
+
+    private final int size;
+    private final int width;
+    private final int mask;
+    private final ByteBuffer words;
+    // Smallest value of each block, then the bit width
+    private final IntBuffer bases;
+    // Copy of the block bases on the heap, a sixteenth of a byte per value, so reads skip a buffer
+    private final int[] blockBases;
+    // Indexes of the values stored whole, ascending, and those values
+    private final IntBuffer exceptions;
+    private final IntBuffer exceptionValues;
+
+    private PackedIntColumn(int size, ByteBuffer words, IntBuffer bases, IntBuffer exceptions,
+                            IntBuffer exceptionValues) {
+        this.size = size;
+        this.words = words;
+        this.bases = bases;
+        this.exceptions = exceptions;
+        this.exceptionValues = exceptionValues;
+        int blockCount = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        if (bases.capacity() != blockCount + 1 || exceptions.capacity() != exceptionValues.capacity()) {
+            throw new IllegalArgumentException("Inconsistent packed column");
+        }
+        this.blockBases = new int[blockCount];
+        bases.get(0, blockBases);
+        this.width = bases.get(blockCount);
+        this.mask = (int) ((1L << width) - 1);
+        if (width < 1 || width > 32 || words.capacity() < wordBytes(size, width)) {
+            throw new IllegalArgumentException("Inconsistent packed column");
+        }
+    }
+
+    static PackedIntColumn pack(IntColumn values) {
+        int size = values.size();
+        int blockCount = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        int[] bases = new int[blockCount + 1];
+        // Values whose delta needs each width, a delta of all ones counting as one bit wider
+        long[] needed = new long[34];
+        for (int block = 0; block < blockCount; block++) {
+            int from = block << BLOCK_SHIFT, to = Math.min(size, from + BLOCK_SIZE);
+            int min = Integer.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values.get(i));
+            }
+            bases[block] = min;
+            for (int i = from; i < to; i++) {
+                needed[64 - Long.numberOfLeadingZeros((long) values.get(i) - min + 1)]++;
+            }
+        }
+
+        int width = 32;
+        long bestBytes = Long.MAX_VALUE;
+        long wider = needed[33];
+        for (int candidate = 32; candidate >= 1 && wider * MIN_VALUES_PER_EXCEPTION <= size; candidate--) {
+            long bytes = wordBytes(size, candidate) + wider * 2 * Integer.BYTES;
+            if (bytes < bestBytes) {
+                bestBytes = bytes;
+                width = candidate;
+            }
+            wider += needed[candidate];
+        }
+        bases[blockCount] = width;
+
+        long mask = (1L << width) - 1;
+        ByteBuffer words = ByteBuffer.allocate((int) wordBytes(size, width)).order(ByteOrder.LITTLE_ENDIAN);
+        IntArrayList exceptions = new IntArrayList();
+        IntArrayList exceptionValues = new IntArrayList();
+        for (int i = 0; i < size; i++) {
+            long delta = (long) values.get(i) - bases[i >>> BLOCK_SHIFT];
+            if (delta >= mask) {
+                exceptions.add(i);
+                exceptionValues.add(values.get(i));
+                delta = mask;
+            }
+            long bit = (long) i * width;
+            int at = (int) (bit >>> 3);
+            words.putLong(at, words.getLong(at) | delta << (bit & 7));
+        }
+        return new PackedIntColumn(size, words, IntBuffer.wrap(bases), IntBuffer.wrap(exceptions.toArray()),
+                IntBuffer.wrap(exceptionValues.toArray()));
+    }
+
+    /**
+     * Read a column written by {@link #addTo} from the file, the packed values zero-copy
+     */
+    static PackedIntColumn open(BinaryFile file, String name, int size) throws IOException {
+        return new PackedIntColumn(size, file.bytes(name), file.ints(name + ".base"),
+                file.ints(name + ".exceptions"), file.ints(name + ".exception-values"));
+    }
+
+    /**
+     * Whether the file holds the column under the given name in packed form
+     */
+    static boolean isPacked(BinaryFile file, String name) {
+        return file.has(name + ".base");
+    }
+
+    @Override
+    public int get(int index) {
+        long bit = (long) index * width;
+        int delta = (int) (words.getLong((int) (bit >>> 3)) >>> (bit & 7)) & mask;
+        if (delta == mask) {
+            return exception(index);
+        }
+        return blockBases[index >>> BLOCK_SHIFT] + delta;
+    }
+
+    private int exception(int index) {
+        int low = 0, high = exceptions.capacity() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = exceptions.get(middle);
+            if (value < index) {
+                low = middle + 1;
+            } else if (value > index) {
+                high = middle - 1;
+            } else {
+                return exceptionValues.get(middle);
+            }
+        }
+        throw new IllegalStateException("Missing exception " + index + " in packed column");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long byteSize() {
+        return words.capacity() + (long) bases.capacity() * Integer.BYTES
+                + (long) exceptions.capacity() * 2 * Integer.BYTES;
+    }
+
+    @Override
+    public void addTo(BinaryFile.Writer writer, String name) {
+        writer.add(name, words).add(name + ".base", bases).add(name + ".exceptions", exceptions)
+                .add(name + ".exception-values", exceptionValues);
+    }
+
+    /**
+     * Bytes of packed values, plus one spare word so the 8 byte load of the last never runs past
+     * the end
+     */
+    private static long wordBytes(int size, int width) {
+        long bytes = (((long) size * width + 63) >>> 6) * Long.BYTES + Long.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Column too large to pack");
+        }
+        return bytes;
+    }
+}
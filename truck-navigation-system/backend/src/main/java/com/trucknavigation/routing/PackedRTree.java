@@ -0,0 +1,155 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Static R-tree over points, bulk-loaded with Sort-Tile-Recursive packing.
+ * <p>
+ * Points are sorted into vertical slices by longitude and each slice by latitude, then packed
+ * {@value #NODE_SIZE} to a node, level by level up to the root. Every node is full except the last
+ * of each level, and all boxes live in flat int arrays, so the tree costs about 20 bytes per point
+ * and a query touches only the handful of nodes whose boxes overlap it. The tree is immutable;
+ * callers rebuild it to reflect changes.
+ */
+public final class PackedRTree {
+
+    private static final int NODE_SIZE = 16;
+
+    private final int itemCount;
+    private final int[] minLats;
+    private final int[] minLons;
+    private final int[] maxLats;
+    private final int[] maxLons;
+    // Leaf entries hold the item, inner entries the position of their first child
+    private final int[] children;
+    private final int[] levelEnds;
+
+    /**
+     * @param latitudes  point latitudes in micro-degrees, indexed by item
+     * @param longitudes point longitudes in micro-degrees, indexed by item
+     */
+    public PackedRTree(int[] latitudes, int[] longitudes) {
+        itemCount = latitudes.length;
+        int total = itemCount;
+        int levels = 1;
+        for (int count = itemCount; count > 1; levels++) {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            total += count;
+        }
+        minLats = new int[total];
+        minLons = new int[total];
+        maxLats = new int[total];
+        maxLons = new int[total];
+        children = new int[total];
+        levelEnds = new int[levels];
+
+        int[] order = sortTileRecursive(latitudes, longitudes);
+        for (int i = 0; i < itemCount; i++) {
+            int item = order[i];
+            minLats[i] = maxLats[i] = latitudes[item];
+            minLons[i] = maxLons[i] = longitudes[item];
+            children[i] = item;
+        }
+
+        int levelStart = 0;
+        int position = itemCount;
+        levelEnds[0] = itemCount;
+        for (int level = 1; level < levels; level++) {
+            int levelEnd = levelEnds[level - 1];
+            for (int child = levelStart; child < levelEnd; child += NODE_SIZE) {
+                int last = Math.min(child + NODE_SIZE, levelEnd);
+                int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+                int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+                for (int i = child; i < last; i++) {
+                    minLat = Math.min(minLat, minLats[i]);
+                    minLon = Math.min(minLon, minLons[i]);
+                    maxLat = Math.max(maxLat, maxLats[i]);
+                    maxLon = Math.max(maxLon, maxLons[i]);
+                }
+                minLats[position] = minLat;
+                minLons[position] = minLon;
+                maxLats[position] = maxLat;
+                maxLons[position] = maxLon;
+                children[position] = child;
+                position++;
+            }
+            levelStart = levelEnd;
+            levelEnds[level] = position;
+        }
+    }
+
+    private static int[] sortTileRecursive(int[] latitudes, int[] longitudes) {
+        int count = latitudes.length;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortKey(longitudes[i], i);
+        }
+        Arrays.sort(keys);
+        int leaves = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_SIZE;
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int i = start; i < end; i++) {
+                int item = (int) keys[i];
+                keys[i] = sortKey(latitudes[item], item);
+            }
+            Arrays.sort(keys, start, end);
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Coordinate in the high half, item in the low half, so a plain long sort orders by coordinate
+     */
+    private static long sortKey(int coordinate, int item) {
+        return (long) coordinate << 32 | (item & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * Add every item inside the box, bounds inclusive, to the result
+     */
+    public void search(int minLat, int minLon, int maxLat, int maxLon, IntArrayList result) {
+        if (itemCount == 0) {
+            return;
+        }
+        int root = minLats.length - 1;
+        if (maxLats[root] < minLat || minLats[root] > maxLat || maxLons[root] < minLon || minLons[root] > maxLon) {
+            return;
+        }
+        int[] stack = new int[levelEnds.length * NODE_SIZE];
+        int depth = 0;
+        stack[depth++] = root;
+        while (depth > 0) {
+            int node = stack[--depth];
+            if (node < itemCount) {
+                result.add(children[node]);
+                continue;
+            }
+            int first = children[node];
+            int last = Math.min(first + NODE_SIZE, levelEndOf(first));
+            for (int child = first; child < last; child++) {
+                if (maxLats[child] >= minLat && minLats[child] <= maxLat
+                        && maxLons[child] >= minLon && minLons[child] <= maxLon) {
+                    stack[depth++] = child;
+                }
+            }
+        }
+    }
+
+    private int levelEndOf(int position) {
+        for (int levelEnd : levelEnds) {
+            if (position < levelEnd) {
+                return levelEnd;
+            }
+        }
+        return levelEnds[levelEnds.length - 1];
+    }
+}
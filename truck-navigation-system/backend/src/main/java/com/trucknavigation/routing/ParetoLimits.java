@@ -0,0 +1,43 @@
+package com.trucknavigation.routing;
+
+/**
+ * Bounds that keep a multi-criteria search and the front it returns small
+ */
+public final class ParetoLimits {
+
+    private final double maxSlack;
+    private final double epsilon;
+    private final int maxLabelsPerNode;
+    private final int maxFrontSize;
+
+    /**
+     * @param maxSlack         how much longer than the fastest path, and how much more fuel than the
+     *                         most economical one, a path of the front may take, as a fraction
+     * @param epsilon          relative difference in every criterion below which two paths count as
+     *                         equally good and only the first one found is kept
+     * @param maxLabelsPerNode paths kept per node during the search
+     * @param maxFrontSize     paths kept at the target
+     */
+    public ParetoLimits(double maxSlack, double epsilon, int maxLabelsPerNode, int maxFrontSize) {
+        this.maxSlack = maxSlack;
+        this.epsilon = epsilon;
+        this.maxLabelsPerNode = maxLabelsPerNode;
+        this.maxFrontSize = maxFrontSize;
+    }
+
+    public double getMaxSlack() {
+        return maxSlack;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public int getMaxLabelsPerNode() {
+        return maxLabelsPerNode;
+    }
+
+    public int getMaxFrontSize() {
+        return maxFrontSize;
+    }
+}
@@ -0,0 +1,265 @@
+package com.trucknavigation.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Multi-label search for the paths that trade travel time, fuel and tolls off against each other.
+ * <p>
+ * Every node keeps a bag of labels, one per path to it that no other path in the bag beats on time,
+ * fuel-weighted distance and tolled distance alike. Labels leave the queue in order of their time
+ * plus a straight-line lower bound on the time still to go. The search is bounded three ways: a
+ * label whose lower bounds exceed the slack over the fastest or most economical path is dropped, so
+ * is one that a path already at the target beats within epsilon, and bags stop growing at a fixed
+ * size. Seed paths found beforehand, typically the cheapest path per criterion, prune from the start
+ * and join the front if nothing beats them.
+ */
+final class ParetoSearch {
+
+    private static final int NONE = -1;
+    private static final int MIN_FUEL_FACTOR = Arrays.stream(RoadClass.values())
+            .mapToInt(RoadClass::getFuelFactor).min().orElse(100);
+
+    private final RoadGraph graph;
+    private final EdgeWeighting weighting;
+    private final ParetoLimits limits;
+    private final SearchWorkspacePool workspaces;
+    private Labels labels;
+
+    ParetoSearch(RoadGraph graph, EdgeWeighting weighting, ParetoLimits limits, SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.limits = limits;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * @param seeds paths from the source to the target found beforehand, at least one
+     * @return the front ordered by travel time
+     */
+    List<RoutePath> run(int source, int target, List<RoutePath> seeds) {
+        SearchWorkspace workspace = workspaces.acquire();
+        labels = workspace.paretoLabels();
+        try {
+            return search(source, target, seeds);
+        } finally {
+            labels.reset();
+            workspaces.release(workspace);
+        }
+    }
+
+    private List<RoutePath> search(int source, int target, List<RoutePath> seeds) {
+        long[][] seedCosts = new long[seeds.size()][];
+        long maxTime = Long.MAX_VALUE;
+        long maxFuel = Long.MAX_VALUE;
+        for (int i = 0; i < seeds.size(); i++) {
+            RoutePath seed = seeds.get(i);
+            seedCosts[i] = new long[]{seed.getDurationDeciseconds(), seed.getFuelWeightedMeters(), seed.getTollMeters()};
+            maxTime = Math.min(maxTime, (long) (seed.getDurationDeciseconds() * (1 + limits.getMaxSlack())));
+            maxFuel = Math.min(maxFuel, (long) (seed.getFuelWeightedMeters() * (1 + limits.getMaxSlack())));
+        }
+        int targetLatitude = graph.latitude(target);
+        int targetLongitude = graph.longitude(target);
+        int speedLimit = weighting.getVehicle().getMaxSpeedKmh();
+
+        LongMinHeap queue = labels.queue;
+        int start = addLabel(source, NONE, NONE, 0, 0, 0);
+        labels.bagFirst[source] = start;
+        queue.push(LongMinHeap.pack(0, start));
+        while (!queue.isEmpty()) {
+            int label = LongMinHeap.node(queue.poll());
+            int node = labels.node[label];
+            if (labels.dead[label] || node == target) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                if (!weighting.isAccessible(graph, edge)) {
+                    continue;
+                }
+                int next = graph.target(edge);
+                int length = graph.length(edge);
+                long time = labels.time[label] + weighting.travelTime(graph, edge);
+                long fuel = labels.fuel[label] + (long) length * graph.roadClass(edge).getFuelFactor() / 100;
+                long toll = labels.toll[label] + (graph.hasFlag(edge, RoadGraph.FLAG_TOLL) ? length : 0);
+
+                // Straight-line bounds on what the rest of the way costs at least
+                double remaining = GeoMath.haversineMeters(graph.latitude(next), graph.longitude(next),
+                        targetLatitude, targetLongitude);
+                long timeBound = time + (long) (remaining * 36 / speedLimit);
+                long fuelBound = fuel + (long) (remaining * MIN_FUEL_FACTOR / 100);
+                if (timeBound > maxTime || fuelBound > maxFuel
+                        || beatenAtTarget(target, seedCosts, timeBound, fuelBound, toll)) {
+                    continue;
+                }
+                int added = insert(next, label, edge, time, fuel, toll,
+                        next == target ? limits.getMaxFrontSize() : limits.getMaxLabelsPerNode());
+                if (added != NONE && next != target) {
+                    queue.push(LongMinHeap.pack(timeBound, added));
+                }
+            }
+        }
+        return front(source, target, seeds);
+    }
+
+    /**
+     * Check whether a seed or a label at the target is at least as good in every criterion, within epsilon
+     */
+    private boolean beatenAtTarget(int target, long[][] seedCosts, long time, long fuel, long toll) {
+        for (long[] seed : seedCosts) {
+            if (covers(seed[0], seed[1], seed[2], time, fuel, toll)) {
+                return true;
+            }
+        }
+        for (int label = labels.bagFirst[target]; label != NONE; label = labels.next[label]) {
+            if (covers(labels.time[label], labels.fuel[label], labels.toll[label], time, fuel, toll)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean covers(long time, long fuel, long toll, long otherTime, long otherFuel, long otherToll) {
+        double factor = 1 + limits.getEpsilon();
+        return time <= otherTime * factor && fuel <= otherFuel * factor && toll <= otherToll * factor;
+    }
+
+    /**
+     * Add a label to the node's bag unless a label there covers it, dropping the labels it beats
+     *
+     * @return the new label, or {@link #NONE} if it was not added
+     */
+    private int insert(int node, int parent, int edge, long time, long fuel, long toll, int maxBagSize) {
+        for (int label = labels.bagFirst[node]; label != NONE; label = labels.next[label]) {
+            if (covers(labels.time[label], labels.fuel[label], labels.toll[label], time, fuel, toll)) {
+                return NONE;
+            }
+        }
+        int size = 0;
+        int previous = NONE;
+        for (int label = labels.bagFirst[node]; label != NONE; label = labels.next[label]) {
+            if (time <= labels.time[label] && fuel <= labels.fuel[label] && toll <= labels.toll[label]) {
+                labels.dead[label] = true;
+                if (previous == NONE) {
+                    labels.bagFirst[node] = labels.next[label];
+                } else {
+                    labels.next[previous] = labels.next[label];
+                }
+            } else {
+                size++;
+                previous = label;
+            }
+        }
+        if (size >= maxBagSize) {
+            return NONE;
+        }
+        int label = addLabel(node, parent, edge, time, fuel, toll);
+        labels.next[label] = labels.bagFirst[node];
+        labels.bagFirst[node] = label;
+        return label;
+    }
+
+    private int addLabel(int node, int parent, int edge, long time, long fuel, long toll) {
+        labels.ensureCapacity();
+        int label = labels.count++;
+        labels.node[label] = node;
+        labels.parent[label] = parent;
+        labels.edge[label] = edge;
+        labels.next[label] = NONE;
+        labels.time[label] = time;
+        labels.fuel[label] = fuel;
+        labels.toll[label] = toll;
+        labels.dead[label] = false;
+        return label;
+    }
+
+    /**
+     * Paths of the labels at the target together with the seeds, without any that another one beats
+     */
+    private List<RoutePath> front(int source, int target, List<RoutePath> seeds) {
+        List<RoutePath> candidates = new ArrayList<>(seeds);
+        for (int label = labels.bagFirst[target]; label != NONE; label = labels.next[label]) {
+            IntArrayList edges = new IntArrayList();
+            long weight = 0;
+            for (int current = label; labels.edge[current] != NONE; current = labels.parent[current]) {
+                edges.add(labels.edge[current]);
+                weight += weighting.weight(graph, labels.edge[current]);
+            }
+            edges.reverse();
+            candidates.add(RoutePath.of(graph, weighting, source, target, edges.toArray(), weight));
+        }
+
+        // Of equal paths, the first one listed stays
+        List<RoutePath> front = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            RoutePath candidate = candidates.get(i);
+            boolean beaten = false;
+            for (int j = 0; j < candidates.size() && !beaten; j++) {
+                RoutePath other = candidates.get(j);
+                beaten = dominates(other, candidate)
+                        || (j < i && Arrays.equals(other.getEdges(), candidate.getEdges()));
+            }
+            if (!beaten) {
+                front.add(candidate);
+            }
+        }
+        front.sort(Comparator.comparingLong(RoutePath::getDurationDeciseconds));
+        return front;
+    }
+
+    private static boolean dominates(RoutePath path, RoutePath other) {
+        return path.getDurationDeciseconds() <= other.getDurationDeciseconds()
+                && path.getFuelWeightedMeters() <= other.getFuelWeightedMeters()
+                && path.getTollMeters() <= other.getTollMeters()
+                && (path.getDurationDeciseconds() < other.getDurationDeciseconds()
+                        || path.getFuelWeightedMeters() < other.getFuelWeightedMeters()
+                        || path.getTollMeters() < other.getTollMeters());
+    }
+
+    /**
+     * Bags and labels of one query, kept in a {@link SearchWorkspace}. The label arrays grow to the
+     * largest query seen; the bags are emptied afterwards through the nodes of the labels created.
+     */
+    static final class Labels {
+        // Per node: most recent label of its bag, labels of a bag chained through next
+        final int[] bagFirst;
+        final LongMinHeap queue = new LongMinHeap(1024);
+        int[] node = new int[1024];
+        int[] parent = new int[1024];
+        int[] edge = new int[1024];
+        int[] next = new int[1024];
+        long[] time = new long[1024];
+        long[] fuel = new long[1024];
+        long[] toll = new long[1024];
+        boolean[] dead = new boolean[1024];
+        int count;
+
+        Labels(int nodeCount) {
+            bagFirst = new int[nodeCount];
+            Arrays.fill(bagFirst, NONE);
+        }
+
+        void ensureCapacity() {
+            if (count == node.length) {
+                int capacity = count * 2;
+                node = Arrays.copyOf(node, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                edge = Arrays.copyOf(edge, capacity);
+                next = Arrays.copyOf(next, capacity);
+                time = Arrays.copyOf(time, capacity);
+                fuel = Arrays.copyOf(fuel, capacity);
+                toll = Arrays.copyOf(toll, capacity);
+                dead = Arrays.copyOf(dead, capacity);
+            }
+        }
+
+        void reset() {
+            for (int label = 0; label < count; label++) {
+                bagFirst[node[label]] = NONE;
+            }
+            count = 0;
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.trucknavigation.routing;
+
+/**
+ * Functional road class of a graph edge, ordered from the most to the least important road.
+ * The ordinal is what gets stored per edge, so new values must only be appended.
+ */
+public enum RoadClass {
+    MOTORWAY(80, 100),      // Expressways (Mumbai-Pune, Yamuna Expressway)
+    TRUNK(60, 105),         // National highways
+    PRIMARY(50, 115),       // State highways
+    SECONDARY(40, 125),     // Major district roads
+    TERTIARY(30, 135),      // Other district roads
+    RESIDENTIAL(20, 150),   // Urban streets
+    SERVICE(15, 160);       // Access roads, depots, yards
+
+    private static final RoadClass[] VALUES = values();
+
+    private final int defaultSpeed;
+    private final int fuelFactor;
+
+    RoadClass(int defaultSpeed, int fuelFactor) {
+        this.defaultSpeed = defaultSpeed;
+        this.fuelFactor = fuelFactor;
+    }
+
+    /**
+     * Typical truck speed in km/h when the source data carries no speed
+     */
+    public int getDefaultSpeed() {
+        return defaultSpeed;
+    }
+
+    /**
+     * Relative fuel consumption per km in percent, 100 being steady highway cruising
+     */
+    public int getFuelFactor() {
+        return fuelFactor;
+    }
+
+    public static RoadClass fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,525 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Immutable directed road graph in compressed sparse row (CSR) layout.
+ * <p>
+ * Outgoing edges of node {@code n} occupy the edge ids {@code [edgeStart(n), edgeEnd(n))}; every
+ * per-edge attribute lives in its own primitive array indexed by edge id. A reverse index over the
+ * same edge ids gives the incoming edges of a node for backward searches. Coordinates are stored
+ * as micro-degrees, lengths in metres, speeds in km/h, heights and widths in centimetres and
+ * weights in units of 100 kg. A restriction value of 0 means the edge is unrestricted.
+ * <p>
+ * The arrays are held as typed NIO buffers: heap-backed for a graph built in memory, views of a
+ * memory-mapped file for a graph opened with {@link #open(Path)}, or direct memory for a graph
+ * copied {@link #offHeap()}. The served graph is always off the heap, so its arrays, by far the
+ * largest long-lived data, neither grow the heap nor add to garbage collection work.
+ * <p>
+ * In the compressed layout the arrays wider than a byte are bit-packed by {@link PackedIntColumn},
+ * or held by a {@link SparseIntColumn} when nearly all zero, and pillar points are split into a
+ * latitude and a longitude column; values are still read in constant time and ids are the same in
+ * both layouts.
+ */
+public final class RoadGraph {
+
+    public static final int FLAG_TOLL = 1;
+    public static final int FLAG_TUNNEL = 1 << 1;
+    public static final int FLAG_BRIDGE = 1 << 2;
+    public static final int FLAG_NO_HGV = 1 << 3;
+    public static final int FLAG_NO_HAZMAT = 1 << 4;
+
+    static final String FILE_KIND = "graph";
+    private static final String SOURCE_SECTION = "graph.source";
+
+    // Section names of the attribute columns, and the width of their plain layout in bytes
+    private static final String[] COLUMNS = {"node.lat", "node.lon", "edge.first", "edge.source", "edge.target",
+            "edge.length", "edge.speed", "edge.class", "edge.flags", "edge.max-height", "edge.max-width",
+            "edge.max-weight", "in.first", "in.edges", "geo.start", "geo.count"};
+    private static final int[] COLUMN_BYTES = {4, 4, 4, 4, 4, 4, 1, 1, 1, 2, 2, 2, 4, 4, 4, 4};
+
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private final IntColumn nodeLatitude;
+    private final IntColumn nodeLongitude;
+
+    private final IntColumn firstEdge;
+    private final IntColumn edgeSource;
+    private final IntColumn edgeTarget;
+    private final IntColumn edgeLength;
+    private final IntColumn edgeSpeed;
+    private final IntColumn edgeRoadClass;
+    private final IntColumn edgeFlags;
+    private final IntColumn edgeMaxHeight;
+    private final IntColumn edgeMaxWidth;
+    private final IntColumn edgeMaxWeight;
+
+    private final IntColumn firstInEdge;
+    private final IntColumn inEdges;
+
+    private final IntColumn edgeGeometryStart;  // first pillar point, bit-inverted when read backwards
+    private final IntColumn edgeGeometryCount;
+    // Interleaved latitude/longitude pillar points (stride 2), or one column each when compressed
+    private final IntColumn pillarLatitudes;
+    private final IntColumn pillarLongitudes;
+    private final int pointStride;
+
+    private final boolean compressed;
+    private final BinaryFile file;
+    private final String source;
+    private volatile long fingerprint;
+
+    RoadGraph(int[] nodeLatitude, int[] nodeLongitude, int[] firstEdge, int[] edgeSource, int[] edgeTarget,
+              int[] edgeLength, byte[] edgeSpeed, byte[] edgeRoadClass, byte[] edgeFlags,
+              short[] edgeMaxHeight, short[] edgeMaxWidth, short[] edgeMaxWeight,
+              int[] firstInEdge, int[] inEdges, int[] edgeGeometryStart, int[] edgeGeometryCount, int[] geometry) {
+        this(new IntColumn[] {
+                IntColumn.of(IntBuffer.wrap(nodeLatitude)), IntColumn.of(IntBuffer.wrap(nodeLongitude)),
+                IntColumn.of(IntBuffer.wrap(firstEdge)), IntColumn.of(IntBuffer.wrap(edgeSource)),
+                IntColumn.of(IntBuffer.wrap(edgeTarget)), IntColumn.of(IntBuffer.wrap(edgeLength)),
+                IntColumn.of(ByteBuffer.wrap(edgeSpeed)), IntColumn.of(ByteBuffer.wrap(edgeRoadClass)),
+                IntColumn.of(ByteBuffer.wrap(edgeFlags)), IntColumn.of(ShortBuffer.wrap(edgeMaxHeight)),
+                IntColumn.of(ShortBuffer.wrap(edgeMaxWidth)), IntColumn.of(ShortBuffer.wrap(edgeMaxWeight)),
+                IntColumn.of(IntBuffer.wrap(firstInEdge)), IntColumn.of(IntBuffer.wrap(inEdges)),
+                IntColumn.of(IntBuffer.wrap(edgeGeometryStart)), IntColumn.of(IntBuffer.wrap(edgeGeometryCount))},
+                interleavedPoints(IntBuffer.wrap(geometry)), false, null, "");
+    }
+
+    /**
+     * @param columns the attribute columns in {@link #COLUMNS} order
+     * @param points  pillar latitudes and longitudes
+     */
+    private RoadGraph(IntColumn[] columns, IntColumn[] points, boolean compressed, BinaryFile file, String source) {
+        this.nodeLatitude = columns[0];
+        this.nodeLongitude = columns[1];
+        this.firstEdge = columns[2];
+        this.edgeSource = columns[3];
+        this.edgeTarget = columns[4];
+        this.edgeLength = columns[5];
+        this.edgeSpeed = columns[6];
+        this.edgeRoadClass = columns[7];
+        this.edgeFlags = columns[8];
+        this.edgeMaxHeight = columns[9];
+        this.edgeMaxWidth = columns[10];
+        this.edgeMaxWeight = columns[11];
+        this.firstInEdge = columns[12];
+        this.inEdges = columns[13];
+        this.edgeGeometryStart = columns[14];
+        this.edgeGeometryCount = columns[15];
+        this.pillarLatitudes = points[0];
+        this.pillarLongitudes = points[1];
+        this.pointStride = compressed ? 1 : 2;
+        this.nodeCount = nodeLatitude.size();
+        this.edgeCount = edgeTarget.size();
+        this.compressed = compressed;
+        this.file = file;
+        this.source = source;
+        this.fingerprint = file != null ? file.getFingerprint() : 0;
+        if (firstEdge.size() != nodeCount + 1 || firstInEdge.size() != nodeCount + 1
+                || edgeSource.size() != edgeCount || inEdges.size() != edgeCount
+                || edgeGeometryStart.size() != edgeCount || edgeGeometryCount.size() != edgeCount) {
+            throw new IllegalArgumentException("Inconsistent road graph arrays");
+        }
+    }
+
+    /**
+     * Map a graph file written by {@link #writeTo(Path)}, in either layout. Nothing is copied onto
+     * the heap; pages are faulted in by the operating system as queries touch them.
+     */
+    public static RoadGraph open(Path path) throws IOException {
+        return read(BinaryFile.open(path, FILE_KIND));
+    }
+
+    /**
+     * The same graph in memory allocated outside the Java heap, for a graph built or converted in
+     * memory that is not written to a file; a graph that is off-heap already is returned as is.
+     * Its fingerprint is the one the written file would have.
+     */
+    public RoadGraph offHeap() {
+        if (file != null) {
+            return this;
+        }
+        try {
+            return read(sections().allocate());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read back the road graph sections", e);
+        }
+    }
+
+    private static RoadGraph read(BinaryFile file) throws IOException {
+        String source = "";
+        if (file.has(SOURCE_SECTION)) {
+            source = StandardCharsets.UTF_8.decode(file.bytes(SOURCE_SECTION)).toString();
+        }
+        IntColumn[] columns = new IntColumn[COLUMNS.length];
+        if (file.has("packed.sizes")) {
+            IntBuffer sizes = file.ints("packed.sizes");
+            int nodeCount = sizes.get(0), edgeCount = sizes.get(1), pointCount = sizes.get(2);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                int size = COLUMNS[i].startsWith("node.") ? nodeCount
+                        : COLUMNS[i].endsWith(".first") ? nodeCount + 1 : edgeCount;
+                if (SparseIntColumn.isSparse(file, COLUMNS[i])) {
+                    columns[i] = SparseIntColumn.open(file, COLUMNS[i], size);
+                } else if (PackedIntColumn.isPacked(file, COLUMNS[i])) {
+                    columns[i] = PackedIntColumn.open(file, COLUMNS[i], size);
+                } else {
+                    columns[i] = plainColumn(file, i);
+                }
+            }
+            IntColumn[] points = {PackedIntColumn.open(file, "geo.lat", pointCount),
+                    PackedIntColumn.open(file, "geo.lon", pointCount)};
+            return new RoadGraph(columns, points, true, file, source);
+        }
+
+        // Files written before geometry was stored simply have straight edges
+        boolean hasGeometry = file.has("geo.points");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = hasGeometry || !COLUMNS[i].startsWith("geo.") ? plainColumn(file, i)
+                    : IntColumn.of(IntBuffer.allocate(file.ints("edge.target").capacity()));
+        }
+        return new RoadGraph(columns, interleavedPoints(hasGeometry ? file.ints("geo.points") : IntBuffer.allocate(0)),
+                false, file, source);
+    }
+
+    private static IntColumn plainColumn(BinaryFile file, int column) throws IOException {
+        return switch (COLUMN_BYTES[column]) {
+            case Byte.BYTES -> IntColumn.of(file.bytes(COLUMNS[column]));
+            case Short.BYTES -> IntColumn.of(file.shorts(COLUMNS[column]));
+            default -> IntColumn.of(file.ints(COLUMNS[column]));
+        };
+    }
+
+    private static IntColumn[] interleavedPoints(IntBuffer geometry) {
+        return new IntColumn[] {IntColumn.of(geometry),
+                IntColumn.of(geometry.slice(Math.min(1, geometry.capacity()), Math.max(0, geometry.capacity() - 1)))};
+    }
+
+    /**
+     * The same graph in the compressed or the plain layout; node and edge ids are unchanged.
+     * Converting copies every column onto the heap, write the result out and {@link #open(Path)}
+     * it to map it instead, or copy it {@link #offHeap()}.
+     */
+    public RoadGraph withCompression(boolean compressed) {
+        if (compressed == this.compressed) {
+            return this;
+        }
+        IntColumn[] columns = columns();
+        IntColumn[] converted = new IntColumn[columns.length];
+        int pointCount = pillarLatitudes.size() / pointStride;
+        IntColumn[] points = new IntColumn[2];
+        if (compressed) {
+            for (int i = 0; i < columns.length; i++) {
+                converted[i] = compress(columns[i], COLUMN_BYTES[i]);
+            }
+            points[0] = PackedIntColumn.pack(new Strided(pillarLatitudes, pointStride, pointCount));
+            points[1] = PackedIntColumn.pack(new Strided(pillarLongitudes, pointStride, pointCount));
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                converted[i] = unpack(columns[i], COLUMN_BYTES[i]);
+            }
+            int[] geometry = new int[2 * pointCount];
+            for (int point = 0; point < pointCount; point++) {
+                geometry[2 * point] = pillarLatitudes.get(point);
+                geometry[2 * point + 1] = pillarLongitudes.get(point);
+            }
+            points = interleavedPoints(IntBuffer.wrap(geometry));
+        }
+        return new RoadGraph(converted, points, compressed, null, source);
+    }
+
+    /**
+     * The same graph labelled with what it was built from, see {@link #getSource()}. Like
+     * {@link #withCompression(boolean)} the result is on the heap until written or copied off it.
+     */
+    public RoadGraph withSource(String source) {
+        return new RoadGraph(columns(), new IntColumn[] {pillarLatitudes, pillarLongitudes}, compressed, null, source);
+    }
+
+    /**
+     * Bytes barely shrink while searches read speed, class and flags on every edge they relax, so
+     * they stay as they are. Limits that almost every edge lacks become sparse, anything else is
+     * bit-packed.
+     */
+    private static IntColumn compress(IntColumn column, int bytes) {
+        if (bytes == Byte.BYTES) {
+            return unpack(column, bytes);
+        }
+        return SparseIntColumn.suits(column) ? SparseIntColumn.pack(column) : PackedIntColumn.pack(column);
+    }
+
+    private static IntColumn unpack(IntColumn column, int bytes) {
+        int size = column.size();
+        if (bytes == Byte.BYTES) {
+            byte[] values = new byte[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = (byte) column.get(i);
+            }
+            return IntColumn.of(ByteBuffer.wrap(values));
+        }
+        if (bytes == Short.BYTES) {
+            short[] values = new short[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = (short) column.get(i);
+            }
+            return IntColumn.of(ShortBuffer.wrap(values));
+        }
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = column.get(i);
+        }
+        return IntColumn.of(IntBuffer.wrap(values));
+    }
+
+    private IntColumn[] columns() {
+        return new IntColumn[] {nodeLatitude, nodeLongitude, firstEdge, edgeSource, edgeTarget, edgeLength,
+                edgeSpeed, edgeRoadClass, edgeFlags, edgeMaxHeight, edgeMaxWidth, edgeMaxWeight,
+                firstInEdge, inEdges, edgeGeometryStart, edgeGeometryCount};
+    }
+
+    /**
+     * Write the graph in the binary format read by {@link #open(Path)}
+     */
+    public void writeTo(Path path) throws IOException {
+        fingerprint = sections().write(path);
+    }
+
+    private BinaryFile.Writer sections() {
+        BinaryFile.Writer writer = new BinaryFile.Writer(FILE_KIND);
+        IntColumn[] columns = columns();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].addTo(writer, COLUMNS[i]);
+        }
+        if (compressed) {
+            writer.add("packed.sizes", IntBuffer.wrap(new int[] {nodeCount, edgeCount, pillarLatitudes.size()}));
+            pillarLatitudes.addTo(writer, "geo.lat");
+            pillarLongitudes.addTo(writer, "geo.lon");
+        } else {
+            pillarLatitudes.addTo(writer, "geo.points");
+        }
+        if (!source.isEmpty()) {
+            writer.add(SOURCE_SECTION, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        }
+        return writer;
+    }
+
+    /**
+     * Check the payload checksums of a mapped or off-heap graph; a graph on the heap has nothing to verify
+     */
+    public void verifyChecksums() throws IOException {
+        if (file != null) {
+            file.verify();
+        }
+    }
+
+    /**
+     * Content fingerprint of the graph file this graph was read from or last written to, or would be
+     * written to for an off-heap copy; 0 if none.
+     * Derived data such as hierarchies records it to detect that the graph changed underneath.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The mapped file backing this graph, or {@code null} for a graph built in memory
+     */
+    public Path getFile() {
+        return file != null ? file.getFile() : null;
+    }
+
+    /**
+     * Whether the arrays are mapped from a file or allocated outside the Java heap
+     */
+    public boolean isOffHeap() {
+        return file != null;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * What the graph was built from, as labelled by whoever built it, e.g. the OSM extract it was
+     * imported from; empty if unknown, as for files written before the label was stored
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Bytes held by the per-node arrays: coordinates and both CSR offsets
+     */
+    public long getNodeBytes() {
+        return nodeLatitude.byteSize() + nodeLongitude.byteSize() + firstEdge.byteSize() + firstInEdge.byteSize();
+    }
+
+    /**
+     * Bytes held by the per-edge arrays searches read: adjacency, attributes and the reverse index
+     */
+    public long getEdgeBytes() {
+        return edgeSource.byteSize() + edgeTarget.byteSize() + edgeLength.byteSize() + edgeSpeed.byteSize()
+                + edgeRoadClass.byteSize() + edgeFlags.byteSize() + edgeMaxHeight.byteSize()
+                + edgeMaxWidth.byteSize() + edgeMaxWeight.byteSize() + inEdges.byteSize();
+    }
+
+    /**
+     * Bytes held by the road geometry, which only route tracing and snapping read
+     */
+    public long getGeometryBytes() {
+        long points = pillarLatitudes.byteSize() + (compressed ? pillarLongitudes.byteSize() : 0);
+        return edgeGeometryStart.byteSize() + edgeGeometryCount.byteSize() + points;
+    }
+
+    public int getPillarPointCount() {
+        return pillarLatitudes.size() / pointStride;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int latitude(int node) {
+        return nodeLatitude.get(node);
+    }
+
+    public int longitude(int node) {
+        return nodeLongitude.get(node);
+    }
+
+    public int edgeStart(int node) {
+        return firstEdge.get(node);
+    }
+
+    public int edgeEnd(int node) {
+        return firstEdge.get(node + 1);
+    }
+
+    public int inEdgeStart(int node) {
+        return firstInEdge.get(node);
+    }
+
+    public int inEdgeEnd(int node) {
+        return firstInEdge.get(node + 1);
+    }
+
+    /**
+     * Edge id stored at the given position of the reverse index
+     */
+    public int inEdge(int position) {
+        return inEdges.get(position);
+    }
+
+    public int source(int edge) {
+        return edgeSource.get(edge);
+    }
+
+    public int target(int edge) {
+        return edgeTarget.get(edge);
+    }
+
+    public int length(int edge) {
+        return edgeLength.get(edge);
+    }
+
+    public int speed(int edge) {
+        return edgeSpeed.get(edge) & 0xFF;
+    }
+
+    public RoadClass roadClass(int edge) {
+        return RoadClass.fromOrdinal(edgeRoadClass.get(edge));
+    }
+
+    public int flags(int edge) {
+        return edgeFlags.get(edge) & 0xFF;
+    }
+
+    public boolean hasFlag(int edge, int flag) {
+        return (edgeFlags.get(edge) & flag) != 0;
+    }
+
+    public int maxHeight(int edge) {
+        return edgeMaxHeight.get(edge);
+    }
+
+    public int maxWidth(int edge) {
+        return edgeMaxWidth.get(edge);
+    }
+
+    public int maxWeight(int edge) {
+        return edgeMaxWeight.get(edge);
+    }
+
+    /**
+     * Number of pillar points between the source and target node of the edge
+     */
+    public int pillarCount(int edge) {
+        return edgeGeometryCount.get(edge);
+    }
+
+    public int pillarLatitude(int edge, int index) {
+        return pillarLatitudes.get(pointStride * pillarPoint(edge, index));
+    }
+
+    public int pillarLongitude(int edge, int index) {
+        return pillarLongitudes.get(pointStride * pillarPoint(edge, index));
+    }
+
+    private int pillarPoint(int edge, int index) {
+        int start = edgeGeometryStart.get(edge);
+        return start >= 0 ? start + index : reversedGeometry(start) + edgeGeometryCount.get(edge) - 1 - index;
+    }
+
+    /**
+     * Encode (or decode) a pillar start that is read back to front, for the reverse edge of a road
+     */
+    static int reversedGeometry(int start) {
+        return ~start;
+    }
+
+    /**
+     * Find the node closest to the given coordinate, or -1 for an empty graph
+     */
+    public int findClosestNode(int latitude, int longitude) {
+        int closest = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int node = 0; node < nodeCount; node++) {
+            double distance = GeoMath.approximateMeters(latitude, longitude, nodeLatitude.get(node), nodeLongitude.get(node));
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                closest = node;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Every n-th value of a column, to pack the interleaved pillar points one coordinate at a time
+     */
+    private record Strided(IntColumn column, int stride, int size) implements IntColumn {
+
+        @Override
+        public int get(int index) {
+            return column.get(index * stride);
+        }
+
+        @Override
+        public long byteSize() {
+            return (long) size * Integer.BYTES;
+        }
+
+        @Override
+        public void addTo(BinaryFile.Writer writer, String name) {
+            throw new UnsupportedOperationException("A strided view is not stored");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Collects nodes and edges in insertion order and packs them into an immutable {@link RoadGraph}.
+ * Not thread-safe; a builder is meant to be filled by a single loader and discarded after
+ * {@link #build()}.
+ */
+public class RoadGraphBuilder {
+
+    private int nodeCount;
+    private int[] latitudes = new int[1024];
+    private int[] longitudes = new int[1024];
+
+    private int edgeCount;
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private int[] lengths = new int[1024];
+    private byte[] speeds = new byte[1024];
+    private byte[] roadClasses = new byte[1024];
+    private byte[] flags = new byte[1024];
+    private short[] maxHeights = new short[1024];
+    private short[] maxWidths = new short[1024];
+    private short[] maxWeights = new short[1024];
+    private int[] geometryStarts = new int[1024];
+    private int[] geometryCounts = new int[1024];
+
+    private int geometrySize;
+    private int[] geometry = new int[1024];
+
+    /**
+     * Add a node and return its id
+     */
+    public int addNode(int latitude, int longitude) {
+        if (nodeCount == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+            longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+        }
+        latitudes[nodeCount] = latitude;
+        longitudes[nodeCount] = longitude;
+        return nodeCount++;
+    }
+
+    /**
+     * Add a single directed edge
+     */
+    public void addEdge(int from, int to, int lengthMeters, int speedKmh, RoadClass roadClass, int edgeFlags,
+                        int maxHeightCm, int maxWidthCm, int maxWeight100Kg) {
+        addEdge(from, to, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg,
+                0, 0);
+    }
+
+    /**
+     * Add a single directed edge whose road bends through the given pillar points
+     *
+     * @param pillars interleaved latitude/longitude pairs in driving order, without the end nodes
+     */
+    public void addEdge(int from, int to, int lengthMeters, int speedKmh, RoadClass roadClass, int edgeFlags,
+                        int maxHeightCm, int maxWidthCm, int maxWeight100Kg, int[] pillars) {
+        int start = addGeometry(pillars);
+        addEdge(from, to, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg,
+                start, pillars.length / 2);
+    }
+
+    private void addEdge(int from, int to, int lengthMeters, int speedKmh, RoadClass roadClass, int edgeFlags,
+                         int maxHeightCm, int maxWidthCm, int maxWeight100Kg, int geometryStart, int geometryCount) {
+        if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+            throw new IllegalArgumentException("Edge " + from + "->" + to + " references an unknown node");
+        }
+        if (edgeCount == targets.length) {
+            growEdges();
+        }
+        sources[edgeCount] = from;
+        targets[edgeCount] = to;
+        lengths[edgeCount] = Math.max(1, lengthMeters);
+        speeds[edgeCount] = (byte) Math.min(255, Math.max(1, speedKmh));
+        roadClasses[edgeCount] = (byte) roadClass.ordinal();
+        flags[edgeCount] = (byte) edgeFlags;
+        maxHeights[edgeCount] = (short) maxHeightCm;
+        maxWidths[edgeCount] = (short) maxWidthCm;
+        maxWeights[edgeCount] = (short) maxWeight100Kg;
+        geometryStarts[edgeCount] = geometryStart;
+        geometryCounts[edgeCount] = geometryCount;
+        edgeCount++;
+    }
+
+    /**
+     * Add a two-way road as a pair of directed edges with identical attributes
+     */
+    public void addRoad(int from, int to, int lengthMeters, int speedKmh, RoadClass roadClass, int edgeFlags,
+                        int maxHeightCm, int maxWidthCm, int maxWeight100Kg) {
+        addEdge(from, to, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg);
+        addEdge(to, from, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg);
+    }
+
+    /**
+     * Add a two-way road with pillar points given in the from→to direction. The points are stored
+     * once and read backwards for the reverse edge.
+     */
+    public void addRoad(int from, int to, int lengthMeters, int speedKmh, RoadClass roadClass, int edgeFlags,
+                        int maxHeightCm, int maxWidthCm, int maxWeight100Kg, int[] pillars) {
+        int start = addGeometry(pillars);
+        int count = pillars.length / 2;
+        addEdge(from, to, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg,
+                start, count);
+        addEdge(to, from, lengthMeters, speedKmh, roadClass, edgeFlags, maxHeightCm, maxWidthCm, maxWeight100Kg,
+                RoadGraph.reversedGeometry(start), count);
+    }
+
+    private int addGeometry(int[] pillars) {
+        if ((pillars.length & 1) != 0) {
+            throw new IllegalArgumentException("Pillar coordinates must come in latitude/longitude pairs");
+        }
+        if (geometrySize + pillars.length > geometry.length) {
+            geometry = Arrays.copyOf(geometry, Math.max(geometry.length * 2, geometrySize + pillars.length));
+        }
+        int start = geometrySize / 2;
+        System.arraycopy(pillars, 0, geometry, geometrySize, pillars.length);
+        geometrySize += pillars.length;
+        return start;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getLatitude(int node) {
+        return latitudes[node];
+    }
+
+    public int getLongitude(int node) {
+        return longitudes[node];
+    }
+
+    /**
+     * Sort edges by source node with a counting sort and build the forward and reverse CSR indexes
+     */
+    public RoadGraph build() {
+        int[] firstEdge = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            firstEdge[sources[e] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            firstEdge[n + 1] += firstEdge[n];
+        }
+
+        int[] insertAt = Arrays.copyOf(firstEdge, nodeCount);
+        int[] edgeSource = new int[edgeCount];
+        int[] edgeTarget = new int[edgeCount];
+        int[] edgeLength = new int[edgeCount];
+        byte[] edgeSpeed = new byte[edgeCount];
+        byte[] edgeRoadClass = new byte[edgeCount];
+        byte[] edgeFlags = new byte[edgeCount];
+        short[] edgeMaxHeight = new short[edgeCount];
+        short[] edgeMaxWidth = new short[edgeCount];
+        short[] edgeMaxWeight = new short[edgeCount];
+        int[] edgeGeometryStart = new int[edgeCount];
+        int[] edgeGeometryCount = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = insertAt[sources[e]]++;
+            edgeSource[slot] = sources[e];
+            edgeTarget[slot] = targets[e];
+            edgeLength[slot] = lengths[e];
+            edgeSpeed[slot] = speeds[e];
+            edgeRoadClass[slot] = roadClasses[e];
+            edgeFlags[slot] = flags[e];
+            edgeMaxHeight[slot] = maxHeights[e];
+            edgeMaxWidth[slot] = maxWidths[e];
+            edgeMaxWeight[slot] = maxWeights[e];
+            edgeGeometryStart[slot] = geometryStarts[e];
+            edgeGeometryCount[slot] = geometryCounts[e];
+        }
+
+        int[] firstInEdge = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            firstInEdge[edgeTarget[e] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            firstInEdge[n + 1] += firstInEdge[n];
+        }
+        int[] inInsertAt = Arrays.copyOf(firstInEdge, nodeCount);
+        int[] inEdges = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            inEdges[inInsertAt[edgeTarget[e]]++] = e;
+        }
+
+        return new RoadGraph(Arrays.copyOf(latitudes, nodeCount), Arrays.copyOf(longitudes, nodeCount),
+                firstEdge, edgeSource, edgeTarget, edgeLength, edgeSpeed, edgeRoadClass, edgeFlags,
+                edgeMaxHeight, edgeMaxWidth, edgeMaxWeight, firstInEdge, inEdges,
+                edgeGeometryStart, edgeGeometryCount, Arrays.copyOf(geometry, geometrySize));
+    }
+
+    private void growEdges() {
+        int capacity = targets.length * 2;
+        sources = Arrays.copyOf(sources, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        roadClasses = Arrays.copyOf(roadClasses, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        maxHeights = Arrays.copyOf(maxHeights, capacity);
+        maxWidths = Arrays.copyOf(maxWidths, capacity);
+        maxWeights = Arrays.copyOf(maxWeights, capacity);
+        geometryStarts = Arrays.copyOf(geometryStarts, capacity);
+        geometryCounts = Arrays.copyOf(geometryCounts, capacity);
+    }
+}
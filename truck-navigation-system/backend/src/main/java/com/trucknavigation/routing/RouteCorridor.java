@@ -0,0 +1,165 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * The area within a given distance either side of a polyline, as a chain of boxes.
+ * <p>
+ * Consecutive segments are grouped into one chunk while the chunk's box stays within about 5 km,
+ * so dense road geometry costs one box per few kilometres. Each box is widened by the corridor
+ * width and therefore holds every point within that distance of its segments. Only the boxes and
+ * the point range of each chunk are kept, not the points themselves, so a corridor stays small
+ * enough to outlive the route it was built from.
+ */
+public final class RouteCorridor {
+
+    private static final int CHUNK_SPAN = 50_000;
+    private static final double METERS_PER_MICRO_DEGREE = Math.toRadians(1 / GeoMath.MICRO_DEGREES) * GeoMath.EARTH_RADIUS_METERS;
+
+    private final double widthMeters;
+    private final int chunkCount;
+    // Per chunk: minLat, minLon, maxLat, maxLon of the widened box
+    private final int[] boxes;
+    // Per chunk: index of its last point; the first point is the last of the previous chunk
+    private final int[] chunkEnds;
+    private final int minLatitude;
+    private final int minLongitude;
+    private final int maxLatitude;
+    private final int maxLongitude;
+
+    private RouteCorridor(double widthMeters, int chunkCount, int[] boxes, int[] chunkEnds) {
+        this.widthMeters = widthMeters;
+        this.chunkCount = chunkCount;
+        this.boxes = boxes;
+        this.chunkEnds = chunkEnds;
+        int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            minLat = Math.min(minLat, boxes[chunk * 4]);
+            minLon = Math.min(minLon, boxes[chunk * 4 + 1]);
+            maxLat = Math.max(maxLat, boxes[chunk * 4 + 2]);
+            maxLon = Math.max(maxLon, boxes[chunk * 4 + 3]);
+        }
+        minLatitude = minLat;
+        minLongitude = minLon;
+        maxLatitude = maxLat;
+        maxLongitude = maxLon;
+    }
+
+    /**
+     * @param points interleaved latitude/longitude pairs in micro-degrees
+     */
+    public static RouteCorridor along(IntArrayList points, double widthMeters) {
+        int pointCount = points.size() / 2;
+        int maxChunks = Math.max(pointCount - 1, 0);
+        int[] boxes = new int[maxChunks * 4];
+        int[] chunkEnds = new int[maxChunks];
+        int chunkCount = 0;
+        int latMargin = (int) Math.ceil(widthMeters / METERS_PER_MICRO_DEGREE);
+        int first = 0;
+        while (first < pointCount - 1) {
+            // Grow the chunk while its box stays small, but always take at least one segment
+            int minLat = Math.min(points.get(first * 2), points.get(first * 2 + 2));
+            int maxLat = Math.max(points.get(first * 2), points.get(first * 2 + 2));
+            int minLon = Math.min(points.get(first * 2 + 1), points.get(first * 2 + 3));
+            int maxLon = Math.max(points.get(first * 2 + 1), points.get(first * 2 + 3));
+            int last = first + 1;
+            while (last < pointCount - 1) {
+                int lat = points.get(last * 2 + 2), lon = points.get(last * 2 + 3);
+                if (Math.max(maxLat, lat) - Math.min(minLat, lat) > CHUNK_SPAN
+                        || Math.max(maxLon, lon) - Math.min(minLon, lon) > CHUNK_SPAN) {
+                    break;
+                }
+                minLat = Math.min(minLat, lat);
+                maxLat = Math.max(maxLat, lat);
+                minLon = Math.min(minLon, lon);
+                maxLon = Math.max(maxLon, lon);
+                last++;
+            }
+
+            double widest = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat)) / GeoMath.MICRO_DEGREES));
+            int lonMargin = (int) Math.ceil(widthMeters / (METERS_PER_MICRO_DEGREE * Math.max(widest, 0.01)));
+            boxes[chunkCount * 4] = minLat - latMargin;
+            boxes[chunkCount * 4 + 1] = minLon - lonMargin;
+            boxes[chunkCount * 4 + 2] = maxLat + latMargin;
+            boxes[chunkCount * 4 + 3] = maxLon + lonMargin;
+            chunkEnds[chunkCount] = last;
+            chunkCount++;
+            first = last;
+        }
+        return new RouteCorridor(widthMeters, chunkCount, Arrays.copyOf(boxes, chunkCount * 4),
+                Arrays.copyOf(chunkEnds, chunkCount));
+    }
+
+    public double getWidthMeters() {
+        return widthMeters;
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    public int minLatitude(int chunk) {
+        return boxes[chunk * 4];
+    }
+
+    public int minLongitude(int chunk) {
+        return boxes[chunk * 4 + 1];
+    }
+
+    public int maxLatitude(int chunk) {
+        return boxes[chunk * 4 + 2];
+    }
+
+    public int maxLongitude(int chunk) {
+        return boxes[chunk * 4 + 3];
+    }
+
+    /**
+     * Whether the point lies in the box of the chunk, bounds inclusive
+     */
+    public boolean inBox(int chunk, int latitude, int longitude) {
+        return latitude >= boxes[chunk * 4] && latitude <= boxes[chunk * 4 + 2]
+                && longitude >= boxes[chunk * 4 + 1] && longitude <= boxes[chunk * 4 + 3];
+    }
+
+    /**
+     * Whether the point lies in the box around all chunk boxes, bounds inclusive
+     */
+    public boolean inBounds(int latitude, int longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    /**
+     * Whether the point lies in any chunk box. Every point of the corridor does, and so do a few
+     * around it, which is good enough to decide what a change at that point may affect.
+     */
+    public boolean mayContain(int latitude, int longitude) {
+        if (!inBounds(latitude, longitude)) {
+            return false;
+        }
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (inBox(chunk, latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the point is within the corridor width of a segment of the chunk
+     *
+     * @param points the polyline the corridor was built from
+     */
+    public boolean withinChunk(IntArrayList points, int chunk, int latitude, int longitude) {
+        int first = chunk == 0 ? 0 : chunkEnds[chunk - 1];
+        for (int i = first; i < chunkEnds[chunk]; i++) {
+            if (GeoMath.pointToSegmentMeters(latitude, longitude, points.get(i * 2), points.get(i * 2 + 1),
+                    points.get(i * 2 + 2), points.get(i * 2 + 3)) <= widthMeters) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.trucknavigation.routing;
+
+/**
+ * Result of a point-to-point search: the sequence of graph edges plus totals accumulated
+ * along them for the vehicle that was routed.
+ */
+public final class RoutePath {
+
+    private final int source;
+    private final int target;
+    private final int[] edges;
+    private final long weight;
+    private final long distanceMeters;
+    private final long durationDeciseconds;
+    private final long tollMeters;
+    private final long fuelWeightedMeters;
+
+    private RoutePath(int source, int target, int[] edges, long weight, long distanceMeters,
+                      long durationDeciseconds, long tollMeters, long fuelWeightedMeters) {
+        this.source = source;
+        this.target = target;
+        this.edges = edges;
+        this.weight = weight;
+        this.distanceMeters = distanceMeters;
+        this.durationDeciseconds = durationDeciseconds;
+        this.tollMeters = tollMeters;
+        this.fuelWeightedMeters = fuelWeightedMeters;
+    }
+
+    /**
+     * Build a path from its edge sequence, summing distance, time, tolled length and fuel
+     */
+    public static RoutePath of(RoadGraph graph, EdgeWeighting weighting, int source, int target, int[] edges, long weight) {
+        long distance = 0;
+        long duration = 0;
+        long toll = 0;
+        long fuel = 0;
+        for (int edge : edges) {
+            int length = graph.length(edge);
+            distance += length;
+            duration += weighting.travelTime(graph, edge);
+            fuel += (long) length * graph.roadClass(edge).getFuelFactor() / 100;
+            if (graph.hasFlag(edge, RoadGraph.FLAG_TOLL)) {
+                toll += length;
+            }
+        }
+        return new RoutePath(source, target, edges, weight, distance, duration, toll, fuel);
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public int[] getEdges() {
+        return edges;
+    }
+
+    /**
+     * Total cost in the units of the weighting that produced the path
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public long getDurationDeciseconds() {
+        return durationDeciseconds;
+    }
+
+    public long getTollMeters() {
+        return tollMeters;
+    }
+
+    /**
+     * Path length weighted by each edge's road class fuel factor, i.e. the equivalent
+     * distance of steady highway driving
+     */
+    public long getFuelWeightedMeters() {
+        return fuelWeightedMeters;
+    }
+}
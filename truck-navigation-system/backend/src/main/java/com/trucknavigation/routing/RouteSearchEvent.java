@@ -0,0 +1,63 @@
+package com.trucknavigation.routing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Flight recorder event for one point-to-point search, with the bytes the search itself allocated
+ * on the querying thread. Building the resulting path is not included; the search should allocate
+ * nothing once its workspace has warmed up.
+ */
+@Name("com.trucknavigation.RouteSearch")
+@Label("Route Search")
+@Category({"Truck Navigation", "Routing"})
+@Description("Point-to-point search of a routing engine")
+final class RouteSearchEvent extends Event {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Settled Nodes")
+    int settledNodes;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocatedBytes;
+
+    /**
+     * Start timing a search, noting the thread's allocation counter when the event is recorded
+     */
+    static RouteSearchEvent start(String engine) {
+        RouteSearchEvent event = new RouteSearchEvent();
+        if (event.isEnabled()) {
+            event.engine = engine;
+            event.allocatedBytes = THREADS.getCurrentThreadAllocatedBytes();
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Finish the search and record it if the recording asks for it
+     */
+    void finish(int settledNodes) {
+        if (!isEnabled()) {
+            return;
+        }
+        end();
+        if (shouldCommit()) {
+            this.settledNodes = settledNodes;
+            this.allocatedBytes = THREADS.getCurrentThreadAllocatedBytes() - allocatedBytes;
+            commit();
+        }
+    }
+}
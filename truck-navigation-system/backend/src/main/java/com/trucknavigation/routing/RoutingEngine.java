@@ -0,0 +1,179 @@
+package com.trucknavigation.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest-path search over the road graph
+ */
+public interface RoutingEngine {
+
+    /**
+     * Graph the engine searches on
+     */
+    RoadGraph getGraph();
+
+    /**
+     * Workspaces the engine's searches borrow their labels from, shared with the default searches
+     * here so that no query allocates graph-sized arrays of its own
+     */
+    SearchWorkspacePool getWorkspacePool();
+
+    /**
+     * Find the cheapest path between two graph nodes under the given weighting
+     *
+     * @return the path, or {@code null} if the target cannot be reached
+     */
+    RoutePath route(int source, int target, EdgeWeighting weighting);
+
+    /**
+     * Path for a truck leaving the source at the given second of the week, which waits at edges
+     * that are closed when it gets there. The cheapest path is kept as long as all of its edges
+     * open eventually, except for the fastest metric, where a closure on it triggers a
+     * time-dependent search for the earliest arrival, possibly on other roads.
+     *
+     * @return the path, or {@code null} if the target cannot be reached
+     * @see EdgeClosures#waitDeciseconds
+     */
+    default RoutePath routeDeparting(int source, int target, EdgeWeighting weighting, EdgeClosures closures,
+                                     int departureSecondOfWeek) {
+        RoutePath path = route(source, target, weighting);
+        if (path == null) {
+            return null;
+        }
+        long wait = closures.waitDeciseconds(getGraph(), weighting, path, departureSecondOfWeek);
+        if (wait == 0 || (wait > 0 && weighting.getMetric() != EdgeWeighting.Metric.FASTEST)) {
+            return path;
+        }
+        return new TimeDependentSearch(getGraph(), weighting, closures, getWorkspacePool())
+                .route(source, target, departureSecondOfWeek);
+    }
+
+    /**
+     * Travel time between two graph nodes, waiting at closed edges included, for each of a series
+     * of departures. When the fastest path runs into no closure for any of them it is the answer
+     * for all; otherwise a single search computes the earliest arrival for every departure.
+     *
+     * @param firstDeparture second of the week of the first departure
+     * @param step           seconds between departures
+     * @return travel time in deciseconds per departure, or {@link DistanceMatrix#UNREACHABLE}
+     */
+    default int[] departureProfile(int source, int target, EdgeWeighting weighting, EdgeClosures closures,
+                                   int firstDeparture, int step, int count) {
+        EdgeWeighting fastest = weighting.withMetric(EdgeWeighting.Metric.FASTEST);
+        int[] times = new int[count];
+        RoutePath path = route(source, target, fastest);
+        if (path == null) {
+            Arrays.fill(times, DistanceMatrix.UNREACHABLE);
+            return times;
+        }
+        for (int k = 0; k < count; k++) {
+            if (closures.waitDeciseconds(getGraph(), fastest, path, firstDeparture + k * step) != 0) {
+                return new DepartureProfileSearch(getGraph(), fastest, closures, getWorkspacePool())
+                        .run(source, target, firstDeparture, step, count);
+            }
+        }
+        Arrays.fill(times, (int) path.getDurationDeciseconds());
+        return times;
+    }
+
+    /**
+     * The cheapest path between two graph nodes followed by alternatives to it that meet the
+     * criteria, in increasing cost. Engines without a dedicated search offer the cheapest path only.
+     *
+     * @return the paths, or an empty list if the target cannot be reached
+     */
+    default List<RoutePath> alternatives(int source, int target, EdgeWeighting weighting, AlternativeCriteria criteria) {
+        RoutePath path = route(source, target, weighting);
+        return path == null ? List.of() : List.of(path);
+    }
+
+    /**
+     * Paths between two graph nodes that no other path beats on travel time, fuel and tolled
+     * distance at once, within the limits and in increasing travel time. The fastest and the most
+     * economical path, plus the fastest toll-free one when tolls are allowed, seed a bounded
+     * multi-label search over the accessible edges of the weighting.
+     *
+     * @return the paths, or an empty list if the target cannot be reached
+     */
+    default List<RoutePath> paretoFront(int source, int target, EdgeWeighting weighting, ParetoLimits limits) {
+        RoutePath fastest = route(source, target, weighting.withMetric(EdgeWeighting.Metric.FASTEST));
+        if (fastest == null) {
+            return List.of();
+        }
+        List<RoutePath> seeds = new ArrayList<>();
+        seeds.add(fastest);
+        seeds.add(route(source, target, weighting.withMetric(EdgeWeighting.Metric.FUEL_EFFICIENT)));
+        if (fastest.getTollMeters() > 0 && !weighting.isAvoidTolls()) {
+            RoutePath tollFree = route(source, target, new EdgeWeighting(EdgeWeighting.Metric.FASTEST,
+                    weighting.getVehicle(), true, weighting.isAvoidHighways(), weighting.getVehicleClass()));
+            if (tollFree != null) {
+                seeds.add(tollFree);
+            }
+        }
+        return new ParetoSearch(getGraph(), weighting, limits, getWorkspacePool()).run(source, target, seeds);
+    }
+
+    /**
+     * Durations and distances of the cheapest paths from every source to every target. Engines
+     * without a dedicated many-to-many search run one query per pair, rows in parallel.
+     */
+    default DistanceMatrix matrix(int[] sources, int[] targets, EdgeWeighting weighting) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length);
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            for (int j = 0; j < targets.length; j++) {
+                matrix.set(i, j, route(sources[i], targets[j], weighting));
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Travel time from the source to every node whose cheapest path under the weighting takes at
+     * most the given time. Engines without a dedicated one-to-all search run a Dijkstra on pooled
+     * labels that does not expand nodes beyond the limit. The travel times are kept in a pooled
+     * workspace and handed to the reader, which must not keep the array.
+     *
+     * @param reader reads the travel time in deciseconds per node, or {@link DistanceMatrix#UNREACHABLE}
+     * @return what the reader returns
+     */
+    default <T> T travelTimes(int source, int maxDurationDeciseconds, EdgeWeighting weighting,
+                              Function<int[], T> reader) {
+        RoadGraph graph = getGraph();
+        SearchWorkspacePool workspaces = getWorkspacePool();
+        SearchWorkspace workspace = workspaces.acquire();
+        try {
+            int[] durations = workspace.travelTimes();
+            IntArrayList reached = workspace.travelTimeNodes();
+            SearchLabels labels = workspace.forward();
+            durations[source] = 0;
+            reached.add(source);
+            labels.relax(source, 0, -1);
+            while (!labels.isQueueEmpty()) {
+                int node = labels.settle();
+                if (durations[node] > maxDurationDeciseconds) {
+                    durations[node] = DistanceMatrix.UNREACHABLE;
+                    continue;
+                }
+                long nodeWeight = labels.distance(node);
+                for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                    int weight = weighting.weight(graph, edge);
+                    int next = graph.target(edge);
+                    if (weight != EdgeWeighting.INFINITE && labels.relax(next, nodeWeight + weight, edge)) {
+                        if (durations[next] == DistanceMatrix.UNREACHABLE) {
+                            reached.add(next);
+                        }
+                        durations[next] = durations[node] + weighting.travelTime(graph, edge);
+                    }
+                }
+            }
+            return reader.apply(durations);
+        } finally {
+            workspace.clearTravelTimes();
+            workspaces.release(workspace);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.trucknavigation.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Built-in skeleton of the Indian national highway network used when no imported graph is available.
+ * Corridors run straight between city nodes and are split into short segments so that searches,
+ * snapping and geometry behave like they do on a real extract.
+ */
+public final class SampleRoadNetwork {
+
+    private static final int SEGMENT_LENGTH_METERS = 5_000;
+    private static final double ROAD_CURVATURE = 1.2; // road length vs. straight line between cities
+
+    private static final Object[][] CITIES = {
+            {"Delhi", 28.6139, 77.2090}, {"Mumbai", 19.0760, 72.8777}, {"Chennai", 13.0827, 80.2707},
+            {"Kolkata", 22.5726, 88.3639}, {"Bengaluru", 12.9716, 77.5946}, {"Hyderabad", 17.3850, 78.4867},
+            {"Ahmedabad", 23.0225, 72.5714}, {"Pune", 18.5204, 73.8567}, {"Jaipur", 26.9124, 75.7873},
+            {"Lucknow", 26.8467, 80.9462}, {"Kanpur", 26.4499, 80.3319}, {"Nagpur", 21.1458, 79.0882},
+            {"Indore", 22.7196, 75.8577}, {"Bhopal", 23.2599, 77.4126}, {"Surat", 21.1702, 72.8311},
+            {"Vadodara", 22.3072, 73.1812}, {"Agra", 27.1767, 78.0081}, {"Varanasi", 25.3176, 82.9739},
+            {"Patna", 25.5941, 85.1376}, {"Ranchi", 23.3441, 85.3096}, {"Bhubaneswar", 20.2961, 85.8245},
+            {"Visakhapatnam", 17.6868, 83.2185}, {"Vijayawada", 16.5062, 80.6480}, {"Coimbatore", 11.0168, 76.9558},
+            {"Kochi", 9.9312, 76.2673}, {"Madurai", 9.9252, 78.1198}, {"Mangaluru", 12.9141, 74.8560},
+            {"Panaji", 15.4909, 73.8278}, {"Kolhapur", 16.7050, 74.2433}, {"Hubballi", 15.3647, 75.1240},
+            {"Solapur", 17.6599, 75.9064}, {"Raipur", 21.2514, 81.6296}, {"Jabalpur", 23.1815, 79.9864},
+            {"Gwalior", 26.2183, 78.1828}, {"Chandigarh", 30.7333, 76.7794}, {"Amritsar", 31.6340, 74.8723},
+            {"Jammu", 32.7266, 74.8570}, {"Srinagar", 34.0837, 74.7973}, {"Ludhiana", 30.9010, 75.8573},
+            {"Dehradun", 30.3165, 78.0322}, {"Guwahati", 26.1445, 91.7362}, {"Siliguri", 26.7271, 88.3953},
+            {"Udaipur", 24.5854, 73.7125}, {"Jodhpur", 26.2389, 73.0243}, {"Kota", 25.2138, 75.8648},
+            {"Nashik", 19.9975, 73.7898}, {"Salem", 11.6643, 78.1460}, {"Tiruchirappalli", 10.7905, 78.7047},
+            {"Thiruvananthapuram", 8.5241, 76.9366}, {"Kanyakumari", 8.0883, 77.5385},
+            {"Gorakhpur", 26.7606, 83.3732}, {"Prayagraj", 25.4358, 81.8463}, {"Dhanbad", 23.7957, 86.4304},
+            {"Jamshedpur", 22.8046, 86.2029}, {"Berhampur", 19.3150, 84.7941}, {"Rajkot", 22.3039, 70.8022},
+            {"Bareilly", 28.3670, 79.4304}, {"Jhansi", 25.4484, 78.5685}, {"Sagar", 23.8388, 78.7378},
+            {"Amravati", 20.9374, 77.7796}, {"Adilabad", 19.6641, 78.5320}, {"Kurnool", 15.8281, 78.0373},
+            {"Anantapur", 14.6819, 77.6006}, {"Belagavi", 15.8497, 74.4977}, {"Vellore", 12.9165, 79.1325},
+            {"Krishnagiri", 12.5186, 78.2137}, {"Dhule", 20.9042, 74.7749}, {"Muzaffarpur", 26.1209, 85.3647},
+            {"Sambalpur", 21.4669, 83.9812}, {"Hassan", 13.0033, 76.1004}
+    };
+
+    // corridor name, road class, speed, flags, max height (cm), max weight (100 kg), cities along the corridor
+    private static final Object[][] CORRIDORS = {
+            {"NH44", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Srinagar", "Jammu"}},
+            {"NH44", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Jammu", "Ludhiana", "Delhi",
+                    "Agra", "Gwalior", "Jhansi", "Sagar", "Nagpur", "Adilabad", "Hyderabad", "Kurnool", "Anantapur",
+                    "Bengaluru", "Krishnagiri", "Salem", "Madurai", "Kanyakumari"}},
+            {"NH48", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Delhi", "Jaipur", "Udaipur",
+                    "Ahmedabad", "Vadodara", "Surat", "Mumbai"}},
+            {"NH48", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Pune", "Kolhapur", "Belagavi",
+                    "Hubballi", "Bengaluru"}},
+            {"NH48", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Krishnagiri", "Vellore", "Chennai"}},
+            {"Mumbai-Pune Expressway", RoadClass.MOTORWAY, 80, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Mumbai", "Pune"}},
+            {"Yamuna Expressway", RoadClass.MOTORWAY, 80, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Delhi", "Agra"}},
+            {"Agra-Lucknow Expressway", RoadClass.MOTORWAY, 80, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Agra", "Lucknow"}},
+            {"NH19", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Agra", "Kanpur", "Prayagraj",
+                    "Varanasi", "Dhanbad", "Kolkata"}},
+            {"NH16", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Kolkata", "Bhubaneswar",
+                    "Berhampur", "Visakhapatnam", "Vijayawada", "Chennai"}},
+            {"NH27", RoadClass.TRUNK, 60, 0, 0, 0, new String[]{"Rajkot", "Ahmedabad", "Udaipur", "Kota", "Gwalior",
+                    "Jhansi", "Kanpur", "Lucknow", "Gorakhpur", "Muzaffarpur", "Siliguri", "Guwahati"}},
+            {"NH52", RoadClass.TRUNK, 60, 0, 0, 0, new String[]{"Mumbai", "Nashik", "Dhule", "Indore", "Kota", "Jaipur"}},
+            {"NH53", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Surat", "Dhule", "Amravati",
+                    "Nagpur", "Raipur", "Sambalpur", "Jamshedpur", "Kolkata"}},
+            {"NH65", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Pune", "Solapur", "Hyderabad",
+                    "Vijayawada"}},
+            {"NH46", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Indore", "Bhopal", "Sagar"}},
+            {"NH45", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Bhopal", "Jabalpur", "Nagpur"}},
+            {"NH30", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Jabalpur", "Prayagraj"}},
+            {"NH30", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Raipur", "Visakhapatnam"}},
+            {"NH47", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Ahmedabad", "Indore"}},
+            {"NH62", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Jaipur", "Jodhpur", "Udaipur"}},
+            {"NH31", RoadClass.TRUNK, 60, 0, 0, 0, new String[]{"Varanasi", "Patna", "Muzaffarpur"}},
+            {"NH20", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Patna", "Ranchi", "Jamshedpur"}},
+            {"NH20", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Ranchi", "Dhanbad"}},
+            {"NH49", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Jamshedpur", "Bhubaneswar"}},
+            {"NH530", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Delhi", "Bareilly", "Lucknow"}},
+            {"NH7", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Delhi", "Dehradun"}},
+            {"NH5", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Delhi", "Chandigarh", "Ludhiana", "Amritsar"}},
+            {"NH3", RoadClass.TRUNK, 60, 0, 0, 0, new String[]{"Amritsar", "Jammu"}},
+            {"NH66", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Mumbai", "Panaji", "Mangaluru", "Kochi",
+                    "Thiruvananthapuram", "Kanyakumari"}},
+            {"NH748", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Panaji", "Belagavi"}},
+            {"NH75 Shiradi Ghat", RoadClass.PRIMARY, 35, 0, 0, 250, new String[]{"Mangaluru", "Hassan"}},
+            {"NH75", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Hassan", "Bengaluru"}},
+            {"NH544", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Kochi", "Coimbatore", "Salem"}},
+            {"NH38", RoadClass.TRUNK, 60, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Madurai", "Tiruchirappalli", "Chennai"}},
+            {"NH83", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Coimbatore", "Tiruchirappalli"}},
+            {"Old Amravati Road", RoadClass.PRIMARY, 45, RoadGraph.FLAG_BRIDGE, 420, 0, new String[]{"Nagpur", "Amravati"}},
+            {"Chennai-Bengaluru Expressway", RoadClass.MOTORWAY, 80, RoadGraph.FLAG_TOLL, 0, 0, new String[]{"Bengaluru", "Vellore"}},
+            {"NH40", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Kurnool", "Vijayawada"}},
+            {"NH160", RoadClass.PRIMARY, 50, 0, 0, 0, new String[]{"Solapur", "Hubballi"}},
+            {"NH10", RoadClass.PRIMARY, 40, RoadGraph.FLAG_TUNNEL | RoadGraph.FLAG_NO_HAZMAT, 0, 0, new String[]{"Siliguri", "Patna"}},
+            {"NH44 Chenani-Nashri Tunnel", RoadClass.TRUNK, 50, RoadGraph.FLAG_TUNNEL | RoadGraph.FLAG_NO_HAZMAT | RoadGraph.FLAG_TOLL,
+                    500, 0, new String[]{"Jammu", "Srinagar"}}
+    };
+
+    private SampleRoadNetwork() {}
+
+    /**
+     * Build the sample network as an immutable graph
+     */
+    public static RoadGraph build() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        Map<String, Integer> cityNodes = new HashMap<>();
+        for (Object[] city : CITIES) {
+            int node = builder.addNode(GeoMath.toMicroDegrees((Double) city[1]), GeoMath.toMicroDegrees((Double) city[2]));
+            cityNodes.put((String) city[0], node);
+        }
+
+        for (Object[] corridor : CORRIDORS) {
+            String[] cities = (String[]) corridor[6];
+            for (int i = 0; i + 1 < cities.length; i++) {
+                addCorridorSection(builder, cityNodes.get(cities[i]), cityNodes.get(cities[i + 1]),
+                        (RoadClass) corridor[1], (Integer) corridor[2], (Integer) corridor[3],
+                        (Integer) corridor[4], (Integer) corridor[5]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addCorridorSection(RoadGraphBuilder builder, int from, int to, RoadClass roadClass,
+                                           int speed, int flags, int maxHeight, int maxWeight) {
+        int fromLat = builder.getLatitude(from);
+        int fromLon = builder.getLongitude(from);
+        int toLat = builder.getLatitude(to);
+        int toLon = builder.getLongitude(to);
+        double roadLength = GeoMath.haversineMeters(fromLat, fromLon, toLat, toLon) * ROAD_CURVATURE;
+        int segments = Math.max(1, (int) Math.round(roadLength / SEGMENT_LENGTH_METERS));
+        int segmentLength = (int) Math.round(roadLength / segments);
+
+        int previous = from;
+        for (int i = 1; i <= segments; i++) {
+            int next = i == segments ? to : builder.addNode(
+                    fromLat + (int) ((long) (toLat - fromLat) * i / segments),
+                    fromLon + (int) ((long) (toLon - fromLon) * i / segments));
+            builder.addRoad(previous, next, segmentLength, speed, roadClass, flags, maxHeight, 0, maxWeight);
+            previous = next;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Distance and parent labels of one search direction, with its queue. Every label is stamped with
+ * the query that set it and counts as unreached under any other, so a new query starts by bumping
+ * the stamp instead of clearing the arrays.
+ */
+final class SearchLabels {
+
+    private final int[] stamp;
+    private final long[] distance;
+    private final int[] parent;
+    // Node the parent arc or edge starts from, only kept by searches that ask for it
+    private int[] parentNode;
+    private final IndexedDaryHeap queue;
+    private int query;
+    private int settled;
+
+    SearchLabels(int nodeCount) {
+        stamp = new int[nodeCount];
+        distance = new long[nodeCount];
+        parent = new int[nodeCount];
+        queue = new IndexedDaryHeap(nodeCount);
+    }
+
+    /**
+     * Forget the previous query's labels and queue
+     */
+    void begin() {
+        if (++query == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+        queue.clear();
+        settled = 0;
+    }
+
+    boolean isReached(int node) {
+        return stamp[node] == query;
+    }
+
+    /**
+     * Distance of the node in this query, {@link Long#MAX_VALUE} if it has not been reached
+     */
+    long distance(int node) {
+        return stamp[node] == query ? distance[node] : Long.MAX_VALUE;
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int parentNode(int node) {
+        return parentNode[node];
+    }
+
+    /**
+     * Label the node and queue it if the distance improves on its current one
+     *
+     * @return whether the label changed
+     */
+    boolean relax(int node, long candidate, int parentArc) {
+        if (candidate >= distance(node)) {
+            return false;
+        }
+        stamp[node] = query;
+        distance[node] = candidate;
+        parent[node] = parentArc;
+        queue.push(node, candidate);
+        return true;
+    }
+
+    /**
+     * Like {@link #relax(int, long, int)}, also keeping the node the parent arc starts from
+     */
+    boolean relax(int node, long candidate, int parentArc, int fromNode) {
+        if (!relax(node, candidate, parentArc)) {
+            return false;
+        }
+        if (parentNode == null) {
+            parentNode = new int[stamp.length];
+        }
+        parentNode[node] = fromNode;
+        return true;
+    }
+
+    boolean isQueueEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Smallest distance in the queue
+     */
+    long peekDistance() {
+        return queue.peekKey();
+    }
+
+    /**
+     * Remove the closest queued node, its distance now being final
+     */
+    int settle() {
+        settled++;
+        return queue.poll();
+    }
+
+    /**
+     * Nodes settled since the query began
+     */
+    int getSettledCount() {
+        return settled;
+    }
+}
@@ -0,0 +1,154 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a query: labels for a forward and a backward search, the buffers a search
+ * confined to one partition cell needs, and the state of the other searches, each created the
+ * first time a query on this workspace needs it. Everything is left reset for the next query, so
+ * no query allocates or clears graph-sized arrays. Handed out by {@link SearchWorkspacePool}, one
+ * query at a time.
+ */
+final class SearchWorkspace {
+
+    private final int nodeCount;
+    private SearchLabels forward;
+    private SearchLabels backward;
+    private long[] cellDistance;
+    private int[] cellParent;
+    private LongMinHeap cellQueue;
+    private ArcAccess arcAccess;
+    private int[] travelTimes;
+    private IntArrayList travelTimeNodes;
+    private AlternativeRouteSearch.Labels alternativeLabels;
+    private ParetoSearch.Labels paretoLabels;
+    private DepartureProfileSearch.Labels profileLabels;
+    private IsochroneSearch.Labels isochroneLabels;
+    private ManyToManySearch.Labels manyToManyLabels;
+
+    SearchWorkspace(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Forward labels, reset for a new query
+     */
+    SearchLabels forward() {
+        if (forward == null) {
+            forward = new SearchLabels(nodeCount);
+        }
+        forward.begin();
+        return forward;
+    }
+
+    /**
+     * Backward labels, reset for a new query
+     */
+    SearchLabels backward() {
+        if (backward == null) {
+            backward = new SearchLabels(nodeCount);
+        }
+        backward.begin();
+        return backward;
+    }
+
+    /**
+     * Distances for a search over the nodes of one cell, at least {@code size} long
+     */
+    long[] cellDistance(int size) {
+        ensureCellCapacity(size);
+        return cellDistance;
+    }
+
+    /**
+     * Parent edges for a search over the nodes of one cell, at least {@code size} long
+     */
+    int[] cellParent(int size) {
+        ensureCellCapacity(size);
+        return cellParent;
+    }
+
+    LongMinHeap cellQueue() {
+        if (cellQueue == null) {
+            cellQueue = new LongMinHeap(64);
+        }
+        return cellQueue;
+    }
+
+    private void ensureCellCapacity(int size) {
+        if (cellDistance == null || cellDistance.length < size) {
+            cellDistance = new long[size];
+            cellParent = new int[size];
+        }
+    }
+
+    ArcAccess arcAccess() {
+        if (arcAccess == null) {
+            arcAccess = new ArcAccess();
+        }
+        return arcAccess;
+    }
+
+    /**
+     * Travel time per node, {@link DistanceMatrix#UNREACHABLE} wherever it is not set. A search
+     * writing to it lists the nodes it set in {@link #travelTimeNodes()} and
+     * {@link #clearTravelTimes()} resets them afterwards.
+     */
+    int[] travelTimes() {
+        if (travelTimes == null) {
+            travelTimes = new int[nodeCount];
+            Arrays.fill(travelTimes, DistanceMatrix.UNREACHABLE);
+            travelTimeNodes = new IntArrayList();
+        }
+        return travelTimes;
+    }
+
+    IntArrayList travelTimeNodes() {
+        travelTimes();
+        return travelTimeNodes;
+    }
+
+    void clearTravelTimes() {
+        if (travelTimes != null) {
+            for (int i = 0; i < travelTimeNodes.size(); i++) {
+                travelTimes[travelTimeNodes.get(i)] = DistanceMatrix.UNREACHABLE;
+            }
+            travelTimeNodes.clear();
+        }
+    }
+
+    AlternativeRouteSearch.Labels alternativeLabels() {
+        if (alternativeLabels == null) {
+            alternativeLabels = new AlternativeRouteSearch.Labels(nodeCount);
+        }
+        return alternativeLabels;
+    }
+
+    ParetoSearch.Labels paretoLabels() {
+        if (paretoLabels == null) {
+            paretoLabels = new ParetoSearch.Labels(nodeCount);
+        }
+        return paretoLabels;
+    }
+
+    DepartureProfileSearch.Labels profileLabels() {
+        if (profileLabels == null) {
+            profileLabels = new DepartureProfileSearch.Labels(nodeCount);
+        }
+        return profileLabels;
+    }
+
+    IsochroneSearch.Labels isochroneLabels() {
+        if (isochroneLabels == null) {
+            isochroneLabels = new IsochroneSearch.Labels(nodeCount);
+        }
+        return isochroneLabels;
+    }
+
+    ManyToManySearch.Labels manyToManyLabels() {
+        if (manyToManyLabels == null) {
+            manyToManyLabels = new ManyToManySearch.Labels(nodeCount);
+        }
+        return manyToManyLabels;
+    }
+}
@@ -0,0 +1,65 @@
+package com.trucknavigation.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Idle search workspaces for the threads serving queries. Workspaces are kept in a fixed set of
+ * slots taken and returned with compare-and-set, so handing one out allocates nothing. A thread
+ * finding every slot empty gets a new workspace; one returned to a full pool is left to the
+ * garbage collector, so the pool never holds more than the configured number while idle.
+ */
+public final class SearchWorkspacePool {
+
+    private final int nodeCount;
+    private final AtomicReferenceArray<SearchWorkspace> idle;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+
+    /**
+     * @param maxIdle workspaces kept between queries, typically the number of concurrent queries
+     */
+    public SearchWorkspacePool(int nodeCount, int maxIdle) {
+        this.nodeCount = nodeCount;
+        this.idle = new AtomicReferenceArray<>(Math.max(1, maxIdle));
+    }
+
+    SearchWorkspace acquire() {
+        acquired.incrementAndGet();
+        int start = (int) (Thread.currentThread().getId() % idle.length());
+        for (int i = 0; i < idle.length(); i++) {
+            int slot = (start + i) % idle.length();
+            SearchWorkspace workspace = idle.get(slot);
+            if (workspace != null && idle.compareAndSet(slot, workspace, null)) {
+                return workspace;
+            }
+        }
+        created.incrementAndGet();
+        return new SearchWorkspace(nodeCount);
+    }
+
+    void release(SearchWorkspace workspace) {
+        int start = (int) (Thread.currentThread().getId() % idle.length());
+        for (int i = 0; i < idle.length(); i++) {
+            int slot = (start + i) % idle.length();
+            if (idle.get(slot) == null && idle.compareAndSet(slot, null, workspace)) {
+                return;
+            }
+        }
+    }
+
+    public int getMaxIdle() {
+        return idle.length();
+    }
+
+    /**
+     * Workspaces created because none was idle, the first for each slot included
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getAcquiredCount() {
+        return acquired.get();
+    }
+}
@@ -0,0 +1,114 @@
+package com.trucknavigation.routing;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Int column that is zero almost everywhere, such as the height, width and weight limits of the
+ * few edges that have one. A bitset marks the non-zero values, which are kept packed in index
+ * order and found through the number of set bits before them. Reading a zero costs one bit test,
+ * so searches that check the limits on every edge barely notice them.
+ */
+final class SparseIntColumn implements IntColumn {
+
+    private final int size;
+    private final LongBuffer present;
+    // Set bits in all words before each word of the bitset, and a copy of them on the heap
+    private final IntBuffer ranks;
+    private final int[] wordRanks;
+    private final IntColumn values;
+
+    private SparseIntColumn(int size, LongBuffer present, IntBuffer ranks, IntColumn values) {
+        this.size = size;
+        this.present = present;
+        this.ranks = ranks;
+        this.values = values;
+        if (present.capacity() != (size + 63) >>> 6 || ranks.capacity() != present.capacity()) {
+            throw new IllegalArgumentException("Inconsistent sparse column");
+        }
+        this.wordRanks = new int[ranks.capacity()];
+        ranks.get(0, wordRanks);
+    }
+
+    /**
+     * Whether the column is sparse enough to be stored as one, at most one value in eight set
+     */
+    static boolean suits(IntColumn column) {
+        long nonZero = 0;
+        for (int i = 0; i < column.size(); i++) {
+            if (column.get(i) != 0) {
+                nonZero++;
+            }
+        }
+        return nonZero * 8 <= column.size();
+    }
+
+    static SparseIntColumn pack(IntColumn column) {
+        int size = column.size();
+        long[] present = new long[(size + 63) >>> 6];
+        int[] ranks = new int[present.length];
+        int[] values = new int[16];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((i & 63) == 0) {
+                ranks[i >>> 6] = count;
+            }
+            int value = column.get(i);
+            if (value != 0) {
+                present[i >>> 6] |= 1L << i;
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = value;
+            }
+        }
+        IntColumn packed = PackedIntColumn.pack(IntColumn.of(IntBuffer.wrap(values, 0, count).slice()));
+        return new SparseIntColumn(size, LongBuffer.wrap(present), IntBuffer.wrap(ranks), packed);
+    }
+
+    /**
+     * Read a column written by {@link #addTo} from the file, the bitset and values zero-copy
+     */
+    static SparseIntColumn open(BinaryFile file, String name, int size) throws IOException {
+        LongBuffer present = file.longs(name);
+        IntBuffer ranks = file.ints(name + ".rank");
+        int last = present.capacity() - 1;
+        int count = last < 0 ? 0 : ranks.get(last) + Long.bitCount(present.get(last));
+        return new SparseIntColumn(size, present, ranks, PackedIntColumn.open(file, name + ".values", count));
+    }
+
+    /**
+     * Whether the file holds the column under the given name in sparse form
+     */
+    static boolean isSparse(BinaryFile file, String name) {
+        return file.has(name + ".rank");
+    }
+
+    @Override
+    public int get(int index) {
+        long word = present.get(index >>> 6);
+        long bit = 1L << index;
+        if ((word & bit) == 0) {
+            return 0;
+        }
+        return values.get(wordRanks[index >>> 6] + Long.bitCount(word & (bit - 1)));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long byteSize() {
+        return (long) present.capacity() * Long.BYTES + (long) ranks.capacity() * Integer.BYTES + values.byteSize();
+    }
+
+    @Override
+    public void addTo(BinaryFile.Writer writer, String name) {
+        writer.add(name, present).add(name + ".rank", ranks);
+        values.addTo(writer, name + ".values");
+    }
+}
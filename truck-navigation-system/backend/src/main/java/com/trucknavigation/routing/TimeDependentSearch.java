@@ -0,0 +1,86 @@
+package com.trucknavigation.routing;
+
+/**
+ * A* search for the earliest arrival when edges close during parts of the week.
+ * <p>
+ * A truck reaching a closed edge may wait until it opens, so arriving earlier never means leaving
+ * an edge later and the first time a node is settled is its earliest arrival. Edges that never
+ * open are skipped. Labels are keyed by arrival time plus the straight-line distance to the target
+ * at the vehicle's top speed, which never overestimates the time still to go. The labels hold that
+ * key, so the search runs on a pooled workspace like the other searches, and a node's arrival is
+ * its label less its own estimate.
+ */
+final class TimeDependentSearch {
+
+    private final RoadGraph graph;
+    private final EdgeWeighting weighting;
+    private final EdgeClosures closures;
+    private final SearchWorkspacePool workspaces;
+    private int targetLatitude;
+    private int targetLongitude;
+    private int speedLimit;
+
+    TimeDependentSearch(RoadGraph graph, EdgeWeighting weighting, EdgeClosures closures,
+                        SearchWorkspacePool workspaces) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.closures = closures;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * @return the path with the earliest arrival, or {@code null} if the target cannot be reached
+     */
+    RoutePath route(int source, int target, int departureSecondOfWeek) {
+        targetLatitude = graph.latitude(target);
+        targetLongitude = graph.longitude(target);
+        speedLimit = weighting.getVehicle().getMaxSpeedKmh();
+        SearchWorkspace workspace = workspaces.acquire();
+        try {
+            SearchLabels labels = workspace.forward();
+            labels.relax(source, estimate(source), -1);
+            while (!labels.isQueueEmpty()) {
+                int node = labels.settle();
+                if (node == target) {
+                    return path(labels, source, target);
+                }
+                long arrival = labels.distance(node) - estimate(node);
+                for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                    if (!weighting.isAccessible(graph, edge)) {
+                        continue;
+                    }
+                    long wait = closures.waitDeciseconds(edge, departureSecondOfWeek, arrival);
+                    if (wait < 0) {
+                        continue;
+                    }
+                    int next = graph.target(edge);
+                    long candidate = arrival + wait + weighting.travelTime(graph, edge);
+                    labels.relax(next, candidate + estimate(next), edge);
+                }
+            }
+            return null;
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Lower bound in deciseconds on the time from the node to the target
+     */
+    private long estimate(int node) {
+        double remaining = GeoMath.haversineMeters(graph.latitude(node), graph.longitude(node),
+                targetLatitude, targetLongitude);
+        return (long) (remaining * 36 / speedLimit);
+    }
+
+    private RoutePath path(SearchLabels labels, int source, int target) {
+        IntArrayList edges = new IntArrayList();
+        long weight = 0;
+        for (int node = target; node != source; node = graph.source(labels.parent(node))) {
+            edges.add(labels.parent(node));
+            weight += weighting.weight(graph, labels.parent(node));
+        }
+        edges.reverse();
+        return RoutePath.of(graph, weighting, source, target, edges.toArray(), weight);
+    }
+}
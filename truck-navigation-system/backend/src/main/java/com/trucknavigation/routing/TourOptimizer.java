@@ -0,0 +1,214 @@
+package com.trucknavigation.routing;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Orders the stops of a multi-stop trip so the truck reaches the last one as early as possible.
+ * <p>
+ * The first and last stop stay in place; the ones between are visited in any order. A stop may have
+ * a daily window it can be served in: a truck arriving outside it waits for the next opening, so the
+ * window costs waiting time rather than making an order infeasible. Travel times need not be
+ * symmetric.
+ * <p>
+ * Every restart builds a tour, the first by nearest neighbour and the others at random, and improves
+ * it with 2-opt and Or-opt moves until none helps. Restarts run in parallel and the best tour wins.
+ * With windows the arrival time depends on everything before a stop, so each candidate tour is
+ * evaluated in full, which is linear in the number of stops and cheap at the sizes a truck visits.
+ */
+public final class TourOptimizer {
+
+    public static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final int OR_OPT_MAX_SEGMENT = 3;
+
+    private final int stopCount;
+    private final long[] durations;
+    private final int[] windowOpens;
+    private final int[] windowCloses;
+    private final int departure;
+
+    /**
+     * @param durations    travel time in seconds from every stop to every stop, row-major, negative
+     *                     for a stop that cannot be reached from the other
+     * @param windowOpens  second of the day each stop's window opens, or -1 if it is always open
+     * @param windowCloses second of the day each stop's window closes, inclusive; a window closing
+     *                     before it opens runs past midnight
+     * @param departure    second of the day the truck leaves the first stop
+     */
+    public TourOptimizer(int[] durations, int[] windowOpens, int[] windowCloses, int departure) {
+        this.stopCount = windowOpens.length;
+        this.durations = new long[durations.length];
+        // Unreachable legs are allowed but lose against any order that avoids them
+        long unreachable = (long) SECONDS_PER_DAY * 365;
+        for (int i = 0; i < durations.length; i++) {
+            this.durations[i] = durations[i] < 0 ? unreachable : durations[i];
+        }
+        this.windowOpens = windowOpens;
+        this.windowCloses = windowCloses;
+        this.departure = departure;
+    }
+
+    /**
+     * Seconds a truck arriving at the given time waits for a daily window to open
+     *
+     * @param time seconds since midnight of the departure day, may exceed a day
+     */
+    public static int waitSeconds(long time, int opens, int closes) {
+        if (opens < 0) {
+            return 0;
+        }
+        int second = (int) Math.floorMod(time, (long) SECONDS_PER_DAY);
+        boolean open = opens <= closes ? second >= opens && second <= closes : second >= opens || second <= closes;
+        if (open) {
+            return 0;
+        }
+        return second < opens ? opens - second : SECONDS_PER_DAY - second + opens;
+    }
+
+    /**
+     * Best stop order found within the deadline
+     *
+     * @param restarts       number of local searches from different starting tours
+     * @param deadlineMillis wall time after which searches stop improving and report what they have
+     * @return the stop indexes in visiting order, starting with 0 and ending with the last stop
+     */
+    public int[] optimize(int restarts, long deadlineMillis) {
+        int[] identity = IntStream.range(0, stopCount).toArray();
+        if (stopCount <= 3) {
+            return identity;
+        }
+        long deadline = System.nanoTime() + deadlineMillis * 1_000_000;
+        int[][] tours = new int[restarts][];
+        long[] costs = new long[restarts];
+        IntStream.range(0, restarts).parallel().forEach(restart -> {
+            int[] tour = restart == 0 ? nearestNeighbourTour() : randomTour(new Random(restart));
+            costs[restart] = improve(tour, deadline);
+            tours[restart] = tour;
+        });
+
+        int best = 0;
+        for (int restart = 1; restart < restarts; restart++) {
+            if (costs[restart] < costs[best]) {
+                best = restart;
+            }
+        }
+        return tours[best];
+    }
+
+    /**
+     * Seconds from departure until the tour reaches its last stop, waiting included
+     */
+    public long cost(int[] tour) {
+        long time = departure;
+        for (int k = 1; k < stopCount; k++) {
+            time += durations[tour[k - 1] * stopCount + tour[k]];
+            time += waitSeconds(time, windowOpens[tour[k]], windowCloses[tour[k]]);
+        }
+        return time - departure;
+    }
+
+    private int[] nearestNeighbourTour() {
+        int[] tour = new int[stopCount];
+        boolean[] visited = new boolean[stopCount];
+        visited[0] = true;
+        visited[stopCount - 1] = true;
+        tour[stopCount - 1] = stopCount - 1;
+        for (int k = 1; k < stopCount - 1; k++) {
+            int from = tour[k - 1];
+            int nearest = -1;
+            for (int stop = 1; stop < stopCount - 1; stop++) {
+                if (!visited[stop] && (nearest < 0
+                        || durations[from * stopCount + stop] < durations[from * stopCount + nearest])) {
+                    nearest = stop;
+                }
+            }
+            tour[k] = nearest;
+            visited[nearest] = true;
+        }
+        return tour;
+    }
+
+    private int[] randomTour(Random random) {
+        int[] tour = IntStream.range(0, stopCount).toArray();
+        for (int k = stopCount - 2; k > 1; k--) {
+            int swap = 1 + random.nextInt(k);
+            int stop = tour[k];
+            tour[k] = tour[swap];
+            tour[swap] = stop;
+        }
+        return tour;
+    }
+
+    /**
+     * Apply improving 2-opt and Or-opt moves to the tour in place until none is left or time is up
+     *
+     * @return the cost of the improved tour
+     */
+    private long improve(int[] tour, long deadline) {
+        int[] candidate = new int[stopCount];
+        long cost = cost(tour);
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+
+            // 2-opt: reverse the stops from first to last
+            for (int first = 1; first < stopCount - 2; first++) {
+                for (int last = first + 1; last < stopCount - 1; last++) {
+                    reverse(tour, first, last);
+                    long reversed = cost(tour);
+                    if (reversed < cost) {
+                        cost = reversed;
+                        improved = true;
+                    } else {
+                        reverse(tour, first, last);
+                    }
+                }
+            }
+
+            // Or-opt: move a run of up to three stops elsewhere, keeping its direction
+            for (int length = 1; length <= OR_OPT_MAX_SEGMENT; length++) {
+                for (int first = 1; first + length < stopCount; first++) {
+                    for (int position = 1; position + length < stopCount; position++) {
+                        if (position == first) {
+                            continue;
+                        }
+                        move(tour, candidate, first, length, position);
+                        long moved = cost(candidate);
+                        if (moved < cost) {
+                            System.arraycopy(candidate, 0, tour, 0, stopCount);
+                            cost = moved;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    private static void reverse(int[] tour, int first, int last) {
+        while (first < last) {
+            int stop = tour[first];
+            tour[first++] = tour[last];
+            tour[last--] = stop;
+        }
+    }
+
+    /**
+     * Copy the tour to the target with the run of stops at first moved to start at position of the
+     * remaining stops
+     */
+    private static void move(int[] tour, int[] target, int first, int length, int position) {
+        int k = 0;
+        for (int i = 0; i < tour.length; i++) {
+            if (k == position) {
+                System.arraycopy(tour, first, target, k, length);
+                k += length;
+            }
+            if (i < first || i >= first + length) {
+                target[k++] = tour[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.trucknavigation.routing;
+
+/**
+ * Equivalence class of trucks that are blocked by exactly the same road restrictions.
+ * <p>
+ * The key identifies the class for caching customized metrics; the bitset marks the edges closed
+ * by restriction records (as opposed to restrictions carried on the graph edges themselves).
+ */
+public final class VehicleClass {
+
+    private final String key;
+    private final long[] blockedEdges;
+    private final int blockedCount;
+
+    public VehicleClass(String key, long[] blockedEdges) {
+        this.key = key;
+        this.blockedEdges = blockedEdges;
+        int count = 0;
+        for (long word : blockedEdges) {
+            count += Long.bitCount(word);
+        }
+        this.blockedCount = count;
+    }
+
+    public static long[] newEdgeSet(int edgeCount) {
+        return new long[(edgeCount + 63) >>> 6];
+    }
+
+    public static void addEdge(long[] edgeSet, int edge) {
+        edgeSet[edge >>> 6] |= 1L << edge;
+    }
+
+    /**
+     * Class under the given key that is closed out of the same edges as this one, except that the
+     * given edges are flipped
+     */
+    public VehicleClass toggled(String key, int[] edges) {
+        long[] copy = blockedEdges.clone();
+        for (int edge : edges) {
+            copy[edge >>> 6] ^= 1L << edge;
+        }
+        return new VehicleClass(key, copy);
+    }
+
+    public boolean isBlocked(int edge) {
+        return (blockedEdges[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getBlockedCount() {
+        return blockedCount;
+    }
+}
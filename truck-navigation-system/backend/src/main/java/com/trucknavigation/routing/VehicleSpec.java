@@ -0,0 +1,92 @@
+package com.trucknavigation.routing;
+
+import com.trucknavigation.model.TruckProfile;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Truck dimensions converted to the integer units used by {@link RoadGraph}
+ */
+public final class VehicleSpec {
+
+    private final int heightCm;
+    private final int widthCm;
+    private final int weight100Kg;
+    private final boolean hazmat;
+    private final int maxSpeedKmh;
+
+    public VehicleSpec(int heightCm, int widthCm, int weight100Kg, boolean hazmat, int maxSpeedKmh) {
+        this.heightCm = heightCm;
+        this.widthCm = widthCm;
+        this.weight100Kg = weight100Kg;
+        this.hazmat = hazmat;
+        this.maxSpeedKmh = maxSpeedKmh;
+    }
+
+    /**
+     * Convert a truck profile (metres and tonnes) into routing units
+     */
+    public static VehicleSpec of(TruckProfile truckProfile, int maxSpeedKmh) {
+        return new VehicleSpec(
+                scale(truckProfile.getHeight(), 100),
+                scale(truckProfile.getWidth(), 100),
+                scale(truckProfile.getMaxWeight(), 10),
+                truckProfile.isHasHazmatPermit(),
+                maxSpeedKmh);
+    }
+
+    private static int scale(BigDecimal value, int factor) {
+        return value == null ? 0 : value.multiply(BigDecimal.valueOf(factor)).setScale(0, RoundingMode.CEILING).intValue();
+    }
+
+    /**
+     * Check whether the truck may legally and physically use the given edge
+     */
+    public boolean canUse(RoadGraph graph, int edge) {
+        int flags = graph.flags(edge);
+        if ((flags & RoadGraph.FLAG_NO_HGV) != 0) {
+            return false;
+        }
+        if (hazmat && (flags & RoadGraph.FLAG_NO_HAZMAT) != 0) {
+            return false;
+        }
+        int maxHeight = graph.maxHeight(edge);
+        if (maxHeight > 0 && heightCm > maxHeight) {
+            return false;
+        }
+        int maxWidth = graph.maxWidth(edge);
+        if (maxWidth > 0 && widthCm > maxWidth) {
+            return false;
+        }
+        int maxWeight = graph.maxWeight(edge);
+        return maxWeight <= 0 || weight100Kg <= maxWeight;
+    }
+
+    /**
+     * Speed the truck actually drives on the edge, capped by its own limit
+     */
+    public int speedOn(RoadGraph graph, int edge) {
+        return Math.min(graph.speed(edge), maxSpeedKmh);
+    }
+
+    public int getHeightCm() {
+        return heightCm;
+    }
+
+    public int getWidthCm() {
+        return widthCm;
+    }
+
+    public int getWeight100Kg() {
+        return weight100Kg;
+    }
+
+    public boolean isHazmat() {
+        return hazmat;
+    }
+
+    public int getMaxSpeedKmh() {
+        return maxSpeedKmh;
+    }
+}
@@ -0,0 +1,133 @@
+package com.trucknavigation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Times of the week at which something is in force, as a bitset of fifteen-minute slots starting
+ * Monday 00:00. Checking a time is a single array read, so schedules can be consulted inside
+ * search loops.
+ */
+public final class WeeklySchedule {
+
+    public static final int SLOT_SECONDS = 15 * 60;
+    public static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    public static final int SLOTS_PER_DAY = SECONDS_PER_DAY / SLOT_SECONDS;
+    public static final int SECONDS_PER_WEEK = 7 * SECONDS_PER_DAY;
+    public static final int EVERY_DAY = (1 << 7) - 1;
+
+    private static final int SLOTS = 7 * SLOTS_PER_DAY;
+
+    private final long[] slots;
+
+    private WeeklySchedule(long[] slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Schedule of a daily window on some days of the week. Every slot the window touches is in
+     * force; a window ending before it starts runs overnight into the following day.
+     *
+     * @param days        bit {@code i} set for day {@code i} of the week, Monday being 0
+     * @param startSecond second of the day at which the window opens
+     * @param endSecond   second of the day at which the window has closed again
+     */
+    public static WeeklySchedule daily(int days, int startSecond, int endSecond) {
+        long[] slots = new long[(SLOTS + 63) >>> 6];
+        int end = endSecond > startSecond ? endSecond : endSecond + SECONDS_PER_DAY;
+        int first = startSecond / SLOT_SECONDS;
+        int count = (end + SLOT_SECONDS - 1) / SLOT_SECONDS - first;
+        for (int day = 0; day < 7; day++) {
+            if ((days & (1 << day)) == 0) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                int slot = (day * SLOTS_PER_DAY + first + i) % SLOTS;
+                slots[slot >>> 6] |= 1L << slot;
+            }
+        }
+        return new WeeklySchedule(slots);
+    }
+
+    /**
+     * Second of the week, Monday 00:00 being 0
+     *
+     * @param dayOfWeek day of the week, Monday being 0
+     */
+    public static int secondOfWeek(int dayOfWeek, int secondOfDay) {
+        return dayOfWeek * SECONDS_PER_DAY + secondOfDay;
+    }
+
+    /**
+     * Schedule in force whenever this one or the other one is
+     */
+    public WeeklySchedule or(WeeklySchedule other) {
+        long[] merged = slots.clone();
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] |= other.slots[i];
+        }
+        return new WeeklySchedule(merged);
+    }
+
+    /**
+     * @param secondOfWeek second of the week, any multiple of a week later denoting the same time
+     */
+    public boolean isActive(long secondOfWeek) {
+        return isSet((int) (secondOfWeek % SECONDS_PER_WEEK / SLOT_SECONDS));
+    }
+
+    public boolean isEmpty() {
+        for (long word : slots) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Seconds from the given time until the schedule is next out of force, 0 if it is now, or -1
+     * if it is in force all week
+     */
+    public int secondsUntilInactive(long secondOfWeek) {
+        if (!isActive(secondOfWeek)) {
+            return 0;
+        }
+        return secondsUntilSlot(secondOfWeek, false);
+    }
+
+    /**
+     * Seconds from the given time until the schedule next comes into or out of force, or -1 if it
+     * never changes
+     */
+    public int secondsUntilChange(long secondOfWeek) {
+        return secondsUntilSlot(secondOfWeek, !isActive(secondOfWeek));
+    }
+
+    /**
+     * Seconds of the week at which the schedule comes into or out of force, in increasing order
+     */
+    public int[] changes() {
+        int[] changes = new int[SLOTS];
+        int count = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (isSet(slot) != isSet((slot + SLOTS - 1) % SLOTS)) {
+                changes[count++] = slot * SLOT_SECONDS;
+            }
+        }
+        return Arrays.copyOf(changes, count);
+    }
+
+    private int secondsUntilSlot(long secondOfWeek, boolean active) {
+        int current = (int) (secondOfWeek % SECONDS_PER_WEEK / SLOT_SECONDS);
+        for (int i = 1; i < SLOTS; i++) {
+            if (isSet((current + i) % SLOTS) == active) {
+                return i * SLOT_SECONDS - (int) (secondOfWeek % SLOT_SECONDS);
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSet(int slot) {
+        return (slots[slot >>> 6] & (1L << slot)) != 0;
+    }
+}
@@ -0,0 +1,381 @@
+package com.trucknavigation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trucknavigation.dto.JobDto;
+import com.trucknavigation.dto.JobResultsDto;
+import com.trucknavigation.dto.MatrixRequestDto;
+import com.trucknavigation.dto.MatrixResponseDto;
+import com.trucknavigation.dto.RouteRequestDto;
+import com.trucknavigation.model.TruckProfile;
+import com.trucknavigation.model.User;
+import com.trucknavigation.repository.JobStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Matrices and route batches computed in the background, for work too large to wait for in one
+ * request.
+ * <p>
+ * A job is split into items, one per route request or one per matrix origin, computed in chunks.
+ * Each chunk's results are stored before the next chunk starts, so they can be fetched while the
+ * job runs, a cancelled job stops after the chunk at hand, and a job interrupted by a restart
+ * resumes after its last stored chunk. Queued jobs start in priority order on a fixed number of
+ * workers. Their searches run in a fork-join pool of the same size, parallel steps included, so
+ * jobs never take more processors than configured away from interactive requests.
+ */
+@Service
+public class JobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+
+    @Value("${truck-navigation.jobs.threads:1}")
+    private int threads;
+
+    @Value("${truck-navigation.jobs.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${truck-navigation.jobs.max-items:100000}")
+    private int maxItems;
+
+    @Value("${truck-navigation.jobs.chunk-size:50}")
+    private int chunkSize;
+
+    @Value("${truck-navigation.jobs.result-ttl:86400}")
+    private long resultTtlSeconds;
+
+    @Autowired
+    private JobStore jobStore;
+
+    @Autowired
+    private RouteCalculationService routeCalculationService;
+
+    @Autowired
+    private RouteBatchService routeBatchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ThreadPoolExecutor workers;
+    private ForkJoinPool searches;
+    private final Map<String, QueuedJob> active = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        threads = Math.max(1, threads);
+        AtomicInteger created = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                task -> {
+                    Thread worker = new Thread(task, "job-" + created.getAndIncrement());
+                    worker.setDaemon(true);
+                    return worker;
+                });
+        searches = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("job-search-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+
+        jobStore.deleteExpired(LocalDateTime.now());
+        List<JobDto> unfinished = jobStore.findUnfinished();
+        for (JobDto job : unfinished) {
+            jobStore.updateStatus(job.getId(), JobDto.Status.QUEUED, job.getStartedAt());
+            enqueue(job);
+        }
+        if (!unfinished.isEmpty()) {
+            logger.info("Resumed {} jobs interrupted by the last shutdown", unfinished.size());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Running jobs stay marked as running and resume after their last stored chunk on the next start
+        workers.shutdownNow();
+        searches.shutdownNow();
+    }
+
+    /**
+     * Queue a matrix job, one item per origin
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public JobDto submitMatrix(MatrixRequestDto matrixRequest, JobDto.Priority priority) {
+        return submit(JobDto.Type.MATRIX, matrixRequest, matrixRequest.getOrigins().size(), priority);
+    }
+
+    /**
+     * Queue a route batch job, one item per route request
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public JobDto submitRoutes(List<RouteRequestDto> routeRequests, JobDto.Priority priority) {
+        if (routeRequests == null || routeRequests.isEmpty()) {
+            throw new RuntimeException("At least one route request is required");
+        }
+        return submit(JobDto.Type.ROUTES, routeRequests, routeRequests.size(), priority);
+    }
+
+    private synchronized JobDto submit(JobDto.Type type, Object request, int items, JobDto.Priority priority) {
+        if (items > maxItems) {
+            throw new RuntimeException("At most " + maxItems + " items are allowed per job");
+        }
+        if (workers.getQueue().size() >= maxQueued) {
+            throw new RejectedExecutionException("Too many jobs queued, try again later");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jobStore.deleteExpired(now);
+
+        JobDto job = new JobDto();
+        job.setId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setStatus(JobDto.Status.QUEUED);
+        job.setPriority(priority != null ? priority : JobDto.Priority.NORMAL);
+        job.setOwnerId(getCurrentUser().getId());
+        job.setTotalItems(items);
+        job.setCreatedAt(now);
+        try {
+            jobStore.insert(job, objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not store the job request", e);
+        }
+        enqueue(job);
+        return job;
+    }
+
+    private void enqueue(JobDto job) {
+        QueuedJob queued = new QueuedJob(job.getId(), job.getPriority(), submitted.getAndIncrement());
+        active.put(job.getId(), queued);
+        workers.execute(queued);
+    }
+
+    public JobDto getJob(String id) {
+        return findOwnJob(id);
+    }
+
+    public List<JobDto> getJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        return jobStore.findByOwner(getCurrentUser().getId()).stream()
+                .filter(job -> job.getExpiresAt() == null || job.getExpiresAt().isAfter(now))
+                .toList();
+    }
+
+    public JobResultsDto getResults(String id, int offset, int limit) {
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            throw new RuntimeException("Offset must not be negative and limit must be between 1 and 1000");
+        }
+        JobDto job = findOwnJob(id);
+        List<JsonNode> items = new ArrayList<>();
+        try {
+            for (String result : jobStore.findResults(id, offset, limit)) {
+                items.add(objectMapper.readTree(result));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read results of job " + id, e);
+        }
+        JobResultsDto results = new JobResultsDto();
+        results.setJobId(id);
+        results.setStatus(job.getStatus());
+        results.setOffset(offset);
+        results.setTotalItems(job.getTotalItems());
+        results.setAvailableItems(job.getCompletedItems());
+        results.setItems(items);
+        return results;
+    }
+
+    /**
+     * Cancel a queued or running job, keeping the results of the chunks already completed, or
+     * delete a finished job and its results
+     *
+     * @return the job as it is now, or null if it was deleted
+     */
+    public JobDto cancelOrDelete(String id) {
+        JobDto job = findOwnJob(id);
+        if (job.getStatus().isFinished()) {
+            jobStore.delete(id);
+            return null;
+        }
+        QueuedJob queued = active.get(id);
+        if (queued != null) {
+            queued.cancelled = true;
+            if (workers.remove(queued)) {
+                active.remove(id);
+                finish(id, JobDto.Status.CANCELLED, null);
+            }
+        }
+        return jobStore.find(id);
+    }
+
+    private JobDto findOwnJob(String id) {
+        JobDto job = jobStore.find(id);
+        User user = getCurrentUser();
+        if (job == null || (job.getStatus().isFinished() && !job.getExpiresAt().isAfter(LocalDateTime.now()))
+                || (!job.getOwnerId().equals(user.getId()) && user.getRole() != User.Role.ADMIN)) {
+            throw new RuntimeException("Job not found");
+        }
+        return job;
+    }
+
+    private void run(QueuedJob queued) {
+        try {
+            JobDto job = jobStore.find(queued.id);
+            if (job == null || queued.cancelled) {
+                finish(queued.id, JobDto.Status.CANCELLED, null);
+                return;
+            }
+            jobStore.updateStatus(job.getId(), JobDto.Status.RUNNING,
+                    job.getStartedAt() != null ? job.getStartedAt() : LocalDateTime.now());
+            String request = jobStore.findRequest(job.getId());
+            if (job.getType() == JobDto.Type.MATRIX) {
+                runMatrix(job, objectMapper.readValue(request, MatrixRequestDto.class), queued);
+            } else {
+                runRoutes(job, objectMapper.readValue(request, new TypeReference<List<RouteRequestDto>>() {}), queued);
+            }
+            finish(job.getId(), queued.cancelled ? JobDto.Status.CANCELLED : JobDto.Status.COMPLETED, null);
+        } catch (Exception e) {
+            if (workers.isShutdown()) {
+                return;
+            }
+            logger.warn("Job {} failed: {}", queued.id, e.getMessage());
+            finish(queued.id, JobDto.Status.FAILED, e.getMessage() != null ? e.getMessage()
+                    : "An unexpected error occurred during the job");
+        } finally {
+            active.remove(queued.id);
+        }
+    }
+
+    /**
+     * Compute the matrix a chunk of origins at a time, storing one item per origin:
+     * {@code {"origin":i,"durations":[...],"distances":[...]}}, unreachable destinations -1
+     */
+    private void runMatrix(JobDto job, MatrixRequestDto matrixRequest, QueuedJob queued) throws Exception {
+        List<MatrixRequestDto.Location> origins = matrixRequest.getOrigins();
+        for (int from = job.getCompletedItems(); from < origins.size() && !queued.cancelled; from += chunkSize) {
+            int to = Math.min(origins.size(), from + chunkSize);
+            MatrixRequestDto chunk = new MatrixRequestDto();
+            chunk.setOrigins(origins.subList(from, to));
+            chunk.setDestinations(matrixRequest.getDestinations());
+            chunk.setTruckProfileId(matrixRequest.getTruckProfileId());
+            chunk.setOptimizationType(matrixRequest.getOptimizationType());
+            chunk.setAvoidTolls(matrixRequest.isAvoidTolls());
+            chunk.setAvoidHighways(matrixRequest.isAvoidHighways());
+            MatrixResponseDto matrix = search(() -> routeCalculationService.calculateMatrix(chunk));
+
+            int columns = matrix.getDestinationCount();
+            List<String> rows = new ArrayList<>(to - from);
+            for (int row = 0; row < to - from; row++) {
+                ObjectNode item = objectMapper.createObjectNode().put("origin", from + row);
+                item.set("durations", objectMapper.valueToTree(
+                        Arrays.copyOfRange(matrix.getDurations(), row * columns, (row + 1) * columns)));
+                item.set("distances", objectMapper.valueToTree(
+                        Arrays.copyOfRange(matrix.getDistances(), row * columns, (row + 1) * columns)));
+                rows.add(objectMapper.writeValueAsString(item));
+            }
+            jobStore.addResults(job.getId(), from, rows, 0);
+        }
+    }
+
+    /**
+     * Calculate the routes a chunk at a time, storing one item per request as the batch endpoint
+     * streams them
+     */
+    private void runRoutes(JobDto job, List<RouteRequestDto> routeRequests, QueuedJob queued) throws Exception {
+        Map<Long, TruckProfile> truckProfiles = new ConcurrentHashMap<>();
+        for (int from = job.getCompletedItems(); from < routeRequests.size() && !queued.cancelled; from += chunkSize) {
+            int first = from, to = Math.min(routeRequests.size(), from + chunkSize);
+            List<ObjectNode> results = search(() -> IntStream.range(first, to).parallel()
+                    .mapToObj(i -> routeBatchService.calculate(i, routeRequests.get(i), truckProfiles))
+                    .toList());
+            List<String> items = new ArrayList<>(results.size());
+            int failed = 0;
+            for (ObjectNode result : results) {
+                items.add(objectMapper.writeValueAsString(result));
+                if (result.has("error")) {
+                    failed++;
+                }
+            }
+            jobStore.addResults(job.getId(), from, items, failed);
+        }
+    }
+
+    /**
+     * Run a job's search in the job pool, so that its parallel steps stay there too
+     */
+    private <T> T search(Callable<T> search) throws Exception {
+        try {
+            return searches.submit(search).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void finish(String id, JobDto.Status status, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        jobStore.finish(id, status, error, now, now.plusSeconds(resultTtlSeconds));
+    }
+
+    private User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof User user)) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return user;
+    }
+
+    private final class QueuedJob implements Runnable, Comparable<QueuedJob> {
+
+        private final String id;
+        private final JobDto.Priority priority;
+        private final long sequence;
+        private volatile boolean cancelled;
+
+        private QueuedJob(String id, JobDto.Priority priority, long sequence) {
+            this.id = id;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            JobService.this.run(this);
+        }
+
+        @Override
+        public int compareTo(QueuedJob other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
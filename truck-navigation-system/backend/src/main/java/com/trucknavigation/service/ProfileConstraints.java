@@ -0,0 +1,70 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.TruckProfile;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A truck profile compiled for {@link RestrictionConstraints}: dimensions in whole centimetres and
+ * kilograms, rounded up, and the prohibitions that concern it as a bitmask
+ */
+public final class ProfileConstraints {
+
+    final int heightCm;
+    final int widthCm;
+    final int lengthCm;
+    final int weightKg;
+    final int axleLoadKg;
+    final int prohibitions;
+    private final LocalDateTime version;
+
+    private ProfileConstraints(TruckProfile truckProfile) {
+        heightCm = scale(truckProfile.getHeight(), 100);
+        widthCm = scale(truckProfile.getWidth(), 100);
+        lengthCm = scale(truckProfile.getLength(), 100);
+        weightKg = scale(truckProfile.getMaxWeight(), 1000);
+        axleLoadKg = scale(truckProfile.getMaxAxleLoad(), 1000);
+        prohibitions = RestrictionConstraints.TRUCKS
+                | (truckProfile.isHasHazmatPermit() ? RestrictionConstraints.HAZMAT : 0)
+                | (truckProfile.isHasOversizePermit() ? RestrictionConstraints.OVERSIZE : 0);
+        version = truckProfile.getUpdatedAt();
+    }
+
+    public static ProfileConstraints compile(TruckProfile truckProfile) {
+        return new ProfileConstraints(truckProfile);
+    }
+
+    /**
+     * Whether this was compiled from the current state of the profile
+     */
+    public boolean isCurrent(TruckProfile truckProfile) {
+        return version != null && version.equals(truckProfile.getUpdatedAt());
+    }
+
+    /**
+     * Profiles with equal constraints are restricted alike, whatever their update time
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProfileConstraints that)) return false;
+        return heightCm == that.heightCm && widthCm == that.widthCm && lengthCm == that.lengthCm
+                && weightKg == that.weightKg && axleLoadKg == that.axleLoadKg && prohibitions == that.prohibitions;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(heightCm, widthCm, lengthCm, weightKg, axleLoadKg, prohibitions);
+    }
+
+    private static int scale(BigDecimal value, int factor) {
+        if (value == null) {
+            return 0;
+        }
+        return value.multiply(BigDecimal.valueOf(factor)).setScale(0, RoundingMode.CEILING)
+                .min(BigDecimal.valueOf(Integer.MAX_VALUE)).intValue();
+    }
+}
@@ -0,0 +1,91 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.routing.WeeklySchedule;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A road restriction compiled into primitive limits, so that checking it against a
+ * {@link ProfileConstraints} is a handful of integer comparisons. Limits are whole centimetres and
+ * kilograms rounded down; for the two decimals the database stores, rounding the truck up and
+ * the limit down gives exactly the result of {@link RestrictionRules}.
+ */
+public final class RestrictionConstraints {
+
+    static final int TRUCKS = 1;
+    static final int HAZMAT = 1 << 1;
+    static final int OVERSIZE = 1 << 2;
+
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private final RoadRestriction restriction;
+    private final int maxHeightCm;
+    private final int maxWidthCm;
+    private final int maxLengthCm;
+    private final int maxWeightKg;
+    private final int maxAxleLoadKg;
+    private final int prohibitions;
+    private final WeeklySchedule schedule;
+
+    private RestrictionConstraints(RoadRestriction restriction) {
+        this.restriction = restriction;
+        maxHeightCm = limit(restriction.getMaxHeight(), 100);
+        maxWidthCm = limit(restriction.getMaxWidth(), 100);
+        maxLengthCm = limit(restriction.getMaxLength(), 100);
+        maxWeightKg = limit(restriction.getMaxWeight(), 1000);
+        maxAxleLoadKg = limit(restriction.getMaxAxleLoad(), 1000);
+        prohibitions = (restriction.isTrucksProhibited() ? TRUCKS : 0)
+                | (restriction.isHazmatProhibited() ? HAZMAT : 0)
+                | (restriction.isOversizeProhibited() ? OVERSIZE : 0);
+        schedule = RestrictionRules.schedule(restriction);
+    }
+
+    public static RestrictionConstraints compile(RoadRestriction restriction) {
+        return new RestrictionConstraints(restriction);
+    }
+
+    public RoadRestriction getRestriction() {
+        return restriction;
+    }
+
+    /**
+     * Same as {@link RestrictionRules#appliesPermanently}
+     */
+    public boolean appliesPermanently(ProfileConstraints truck) {
+        return truck.heightCm > maxHeightCm
+                || truck.widthCm > maxWidthCm
+                || truck.lengthCm > maxLengthCm
+                || truck.weightKg > maxWeightKg
+                || truck.axleLoadKg > maxAxleLoadKg
+                || (prohibitions & truck.prohibitions) != 0;
+    }
+
+    /**
+     * Whether the restriction applies to the truck at the given second of the week, either
+     * permanently or because its schedule is in force
+     */
+    public boolean appliesAt(ProfileConstraints truck, long secondOfWeek) {
+        return appliesPermanently(truck) || (schedule != null && schedule.isActive(secondOfWeek));
+    }
+
+    public boolean hasSchedule() {
+        return schedule != null;
+    }
+
+    /**
+     * Times of the week at which the restriction closes the road to every truck, or null
+     */
+    public WeeklySchedule getSchedule() {
+        return schedule;
+    }
+
+    private static int limit(BigDecimal value, int factor) {
+        if (value == null) {
+            return NO_LIMIT;
+        }
+        return value.multiply(BigDecimal.valueOf(factor)).setScale(0, RoundingMode.FLOOR)
+                .max(BigDecimal.ZERO).min(BigDecimal.valueOf(NO_LIMIT - 1)).intValue();
+    }
+}
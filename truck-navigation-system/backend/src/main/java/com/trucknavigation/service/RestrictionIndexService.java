@@ -0,0 +1,352 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.repository.RoadRestrictionRepository;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.IntArrayList;
+import com.trucknavigation.routing.PackedRTree;
+import com.trucknavigation.routing.RouteCorridor;
+import com.trucknavigation.routing.WeeklySchedule;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory spatial index of the active road restrictions, so area queries on the route path
+ * never go to the database.
+ * <p>
+ * The bulk of the restrictions sit in an immutable {@link PackedRTree}, each compiled into
+ * {@link RestrictionConstraints}. Writes land in a small overlay of changed and removed ids that
+ * queries merge in; once the overlay grows past an eighth of the tree the whole index is
+ * repacked. Every batch of writes publishes a new snapshot with a copy of the overlay and shares
+ * the tree, so readers never lock and never see a write half done: they work on whichever snapshot
+ * was current when they started.
+ */
+@Service
+public class RestrictionIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestrictionIndexService.class);
+
+    private static final int MIN_OVERLAY_SIZE = 256;
+
+    @Autowired
+    private RoadRestrictionRepository roadRestrictionRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    @PostConstruct
+    public void load() {
+        long started = System.currentTimeMillis();
+        List<RoadRestriction> active = roadRestrictionRepository.findByIsActiveTrue();
+        synchronized (this) {
+            snapshot = new Snapshot(active);
+        }
+        logger.info("Indexed {} active road restrictions in {} ms", snapshot.indexed.length,
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Active restrictions inside the box, bounds inclusive
+     */
+    public List<RoadRestriction> findInArea(BigDecimal minLat, BigDecimal maxLat, BigDecimal minLon, BigDecimal maxLon) {
+        return findInArea(GeoMath.toMicroDegrees(minLat.doubleValue()), GeoMath.toMicroDegrees(maxLat.doubleValue()),
+                GeoMath.toMicroDegrees(minLon.doubleValue()), GeoMath.toMicroDegrees(maxLon.doubleValue()));
+    }
+
+    /**
+     * Active restrictions inside the box given in micro-degrees, bounds inclusive
+     */
+    public List<RoadRestriction> findInArea(int minLat, int maxLat, int minLon, int maxLon) {
+        Snapshot current = snapshot;
+        IntArrayList hits = new IntArrayList();
+        current.tree.search(minLat, minLon, maxLat, maxLon, hits);
+        List<RoadRestriction> result = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            int item = hits.get(i);
+            if (!current.isHidden(item)) {
+                result.add(current.indexed[item].getRestriction());
+            }
+        }
+        for (Located located : current.changed.values()) {
+            if (located.latitude >= minLat && located.latitude <= maxLat
+                    && located.longitude >= minLon && located.longitude <= maxLon) {
+                result.add(located.constraints.getRestriction());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Active restrictions accepted by the filter within a route corridor. Each chunk of the
+     * corridor costs one tree query; candidates are then measured against the chunk's segments.
+     * The filter runs before the distance check, as it is the cheaper of the two. The overlay is
+     * narrowed down once to the restrictions within the corridor's bounds that pass the filter,
+     * and only those are checked per chunk.
+     *
+     * @param points the interleaved micro-degree latitude/longitude pairs the corridor was built from
+     */
+    public List<RoadRestriction> findAlongRoute(IntArrayList points, RouteCorridor corridor,
+                                                Predicate<RestrictionConstraints> filter) {
+        Snapshot current = snapshot;
+        List<RoadRestriction> result = new ArrayList<>();
+        long[] seen = new long[(current.indexed.length + 63) >>> 6];
+        List<Located> nearby = new ArrayList<>();
+        for (Located located : current.changed.values()) {
+            if (corridor.inBounds(located.latitude, located.longitude) && filter.test(located.constraints)) {
+                nearby.add(located);
+            }
+        }
+        boolean[] seenNearby = new boolean[nearby.size()];
+        IntArrayList hits = new IntArrayList();
+        for (int chunk = 0; chunk < corridor.chunkCount(); chunk++) {
+            hits.clear();
+            current.tree.search(corridor.minLatitude(chunk), corridor.minLongitude(chunk),
+                    corridor.maxLatitude(chunk), corridor.maxLongitude(chunk), hits);
+            for (int i = 0; i < hits.size(); i++) {
+                int item = hits.get(i);
+                long bit = 1L << item;
+                if ((seen[item >>> 6] & bit) != 0 || current.isHidden(item)) {
+                    continue;
+                }
+                RestrictionConstraints constraints = current.indexed[item];
+                if (!filter.test(constraints)) {
+                    // Rejected everywhere, so no need to measure it again for the next chunk
+                    seen[item >>> 6] |= bit;
+                } else if (corridor.withinChunk(points, chunk, current.latitudes[item], current.longitudes[item])) {
+                    seen[item >>> 6] |= bit;
+                    result.add(constraints.getRestriction());
+                }
+            }
+            for (int i = 0; i < nearby.size(); i++) {
+                Located located = nearby.get(i);
+                if (!seenNearby[i] && corridor.inBox(chunk, located.latitude, located.longitude)
+                        && corridor.withinChunk(points, chunk, located.latitude, located.longitude)) {
+                    seenNearby[i] = true;
+                    result.add(located.constraints.getRestriction());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Seconds from the given second of the week until the schedule of some active restriction
+     * next comes into or out of force, or -1 if no restriction has a schedule
+     */
+    public int secondsUntilWindowChange(int secondOfWeek) {
+        Snapshot current = snapshot;
+        int next = nextChange(current.windowChanges, secondOfWeek);
+        for (Located located : current.changed.values()) {
+            if (located.constraints.hasSchedule()) {
+                next = earliest(next, located.constraints.getSchedule().secondsUntilChange(secondOfWeek));
+            }
+        }
+        return next;
+    }
+
+    private static int nextChange(int[] changes, int secondOfWeek) {
+        if (changes.length == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(changes, secondOfWeek + 1);
+        index = index >= 0 ? index : -index - 1;
+        int change = changes[index < changes.length ? index : 0];
+        return change > secondOfWeek ? change - secondOfWeek : change + WeeklySchedule.SECONDS_PER_WEEK - secondOfWeek;
+    }
+
+    private static int earliest(int next, int candidate) {
+        return next < 0 || candidate < 0 ? Math.max(next, candidate) : Math.min(next, candidate);
+    }
+
+    /**
+     * Latitude and longitude in micro-degrees at which the restriction is indexed, or null
+     */
+    public int[] locate(Long id) {
+        Snapshot current = snapshot;
+        Located located = current.changed.get(id);
+        if (located != null) {
+            return new int[]{located.latitude, located.longitude};
+        }
+        Integer item = current.itemById.get(id);
+        if (item == null || current.isHidden(item)) {
+            return null;
+        }
+        return new int[]{current.latitudes[item], current.longitudes[item]};
+    }
+
+    /**
+     * Every active restriction
+     */
+    public List<RoadRestriction> findAll() {
+        return snapshot.restrictions();
+    }
+
+    /**
+     * Reflect a saved restriction; inactive or unlocated restrictions are dropped from the index
+     */
+    public void update(RoadRestriction restriction) {
+        apply(List.of(restriction), List.of());
+    }
+
+    public void remove(Long id) {
+        apply(List.of(), List.of(id));
+    }
+
+    /**
+     * Reflect a batch of writes, e.g. everything one transaction saved and removed, in a single new
+     * snapshot, so the overlay is copied once per batch rather than once per restriction
+     *
+     * @param saved   restrictions as saved; inactive or unlocated ones are dropped from the index
+     * @param removed ids of deleted restrictions, none of them among the saved ones
+     */
+    public synchronized void apply(Collection<RoadRestriction> saved, Collection<Long> removed) {
+        if (saved.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        Map<Long, Located> changed = new HashMap<>(current.changed);
+        List<Long> touched = new ArrayList<>(saved.size() + removed.size());
+        for (RoadRestriction restriction : saved) {
+            if (!restriction.isActive() || restriction.getLatitude() == null || restriction.getLongitude() == null) {
+                changed.remove(restriction.getId());
+            } else {
+                changed.put(restriction.getId(), new Located(restriction));
+            }
+            touched.add(restriction.getId());
+        }
+        for (Long id : removed) {
+            changed.remove(id);
+            touched.add(id);
+        }
+        publish(current.withOverlay(touched, changed));
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current.indexed.length - current.hiddenCount + current.changed.size();
+    }
+
+    /**
+     * Make the snapshot current, repacked first if its overlay has grown too large
+     */
+    private void publish(Snapshot next) {
+        if (next.changed.size() + next.hiddenCount > Math.max(MIN_OVERLAY_SIZE, next.indexed.length / 8)) {
+            next = new Snapshot(next.restrictions());
+        }
+        snapshot = next;
+    }
+
+    private record Located(RestrictionConstraints constraints, int latitude, int longitude) {
+
+        Located(RoadRestriction restriction) {
+            this(RestrictionConstraints.compile(restriction),
+                    GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue()),
+                    GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue()));
+        }
+    }
+
+    private static final class Snapshot {
+        final RestrictionConstraints[] indexed;
+        final int[] latitudes;
+        final int[] longitudes;
+        final PackedRTree tree;
+        final Map<Long, Integer> itemById;
+        // Sorted seconds of the week at which the schedule of some restriction comes into or out of force
+        final int[] windowChanges;
+        // Tree items superseded by the overlay, and the overlay itself; never modified once published
+        final long[] hidden;
+        final int hiddenCount;
+        final Map<Long, Located> changed;
+
+        Snapshot(Collection<RoadRestriction> restrictions) {
+            List<RoadRestriction> located = new ArrayList<>(restrictions.size());
+            for (RoadRestriction restriction : restrictions) {
+                if (restriction.getLatitude() != null && restriction.getLongitude() != null) {
+                    located.add(restriction);
+                }
+            }
+            indexed = new RestrictionConstraints[located.size()];
+            latitudes = new int[located.size()];
+            longitudes = new int[located.size()];
+            itemById = new HashMap<>(located.size() * 2);
+            for (int i = 0; i < located.size(); i++) {
+                RoadRestriction restriction = located.get(i);
+                indexed[i] = RestrictionConstraints.compile(restriction);
+                latitudes[i] = GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue());
+                longitudes[i] = GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue());
+                itemById.put(restriction.getId(), i);
+            }
+            tree = new PackedRTree(latitudes, longitudes);
+            windowChanges = Arrays.stream(indexed)
+                    .filter(RestrictionConstraints::hasSchedule)
+                    .flatMapToInt(constraints -> IntStream.of(constraints.getSchedule().changes()))
+                    .distinct()
+                    .sorted()
+                    .toArray();
+            hidden = new long[(located.size() + 63) >>> 6];
+            hiddenCount = 0;
+            changed = Map.of();
+        }
+
+        private Snapshot(Snapshot base, long[] hidden, int hiddenCount, Map<Long, Located> changed) {
+            indexed = base.indexed;
+            latitudes = base.latitudes;
+            longitudes = base.longitudes;
+            tree = base.tree;
+            itemById = base.itemById;
+            windowChanges = base.windowChanges;
+            this.hidden = hidden;
+            this.hiddenCount = hiddenCount;
+            this.changed = changed;
+        }
+
+        /**
+         * The same tree with the tree items of the given restrictions hidden and the given overlay
+         */
+        Snapshot withOverlay(Collection<Long> ids, Map<Long, Located> changed) {
+            long[] words = hidden;
+            int count = hiddenCount;
+            for (Long id : ids) {
+                Integer item = itemById.get(id);
+                if (item == null || (words[item >>> 6] & 1L << item) != 0) {
+                    continue;
+                }
+                if (words == hidden) {
+                    words = hidden.clone();
+                }
+                words[item >>> 6] |= 1L << item;
+                count++;
+            }
+            return new Snapshot(this, words, count, changed);
+        }
+
+        boolean isHidden(int item) {
+            return (hidden[item >>> 6] & 1L << item) != 0;
+        }
+
+        List<RoadRestriction> restrictions() {
+            List<RoadRestriction> result = new ArrayList<>(indexed.length + changed.size());
+            for (int item = 0; item < indexed.length; item++) {
+                if (!isHidden(item)) {
+                    result.add(indexed[item].getRestriction());
+                }
+            }
+            for (Located located : changed.values()) {
+                result.add(located.constraints.getRestriction());
+            }
+            return result;
+        }
+    }
+}
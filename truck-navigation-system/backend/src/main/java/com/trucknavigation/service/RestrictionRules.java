@@ -0,0 +1,100 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.model.TruckProfile;
+import com.trucknavigation.routing.WeeklySchedule;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Locale;
+
+/**
+ * Rules deciding whether a road restriction closes the road for a truck profile
+ */
+public final class RestrictionRules {
+
+    static final LocalTime NIGHT_START = LocalTime.of(22, 0);
+    static final LocalTime NIGHT_END = LocalTime.of(6, 0);
+
+    private RestrictionRules() {}
+
+    /**
+     * Check the physical and categorical parts of a restriction, which hold at any time of day
+     */
+    public static boolean appliesPermanently(RoadRestriction restriction, TruckProfile truckProfile) {
+        // Check physical restrictions
+        if (exceeds(truckProfile.getHeight(), restriction.getMaxHeight())
+                || exceeds(truckProfile.getWidth(), restriction.getMaxWidth())
+                || exceeds(truckProfile.getLength(), restriction.getMaxLength())
+                || exceeds(truckProfile.getMaxWeight(), restriction.getMaxWeight())
+                || exceeds(truckProfile.getMaxAxleLoad(), restriction.getMaxAxleLoad())) {
+            return true;
+        }
+
+        // Check categorical restrictions
+        if (restriction.isTrucksProhibited()) {
+            return true;
+        }
+        if (restriction.isHazmatProhibited() && truckProfile.isHasHazmatPermit()) {
+            return true;
+        }
+        return restriction.isOversizeProhibited() && truckProfile.isHasOversizePermit();
+    }
+
+    /**
+     * Whether the restriction only applies at certain times: within a daily window, at night or on
+     * certain days of the week
+     */
+    public static boolean isTimeBased(RoadRestriction restriction) {
+        return (restriction.getRestrictionStartTime() != null && restriction.getRestrictionEndTime() != null)
+                || restriction.isNightRestriction() || StringUtils.hasText(restriction.getRestrictedDays());
+    }
+
+    /**
+     * Times of the week at which a time-based restriction closes the road to every truck, or null
+     * for a restriction that is not time-based. The daily window defaults to the night for night
+     * restrictions and to the whole day otherwise; without restricted days it holds every day.
+     */
+    public static WeeklySchedule schedule(RoadRestriction restriction) {
+        if (!isTimeBased(restriction)) {
+            return null;
+        }
+        LocalTime start = LocalTime.MIDNIGHT;
+        int end = WeeklySchedule.SECONDS_PER_DAY;
+        if (restriction.getRestrictionStartTime() != null && restriction.getRestrictionEndTime() != null) {
+            // The end time itself is still inside the window
+            start = restriction.getRestrictionStartTime();
+            end = restriction.getRestrictionEndTime().toSecondOfDay() + 1;
+        } else if (restriction.isNightRestriction()) {
+            start = NIGHT_START;
+            end = NIGHT_END.toSecondOfDay();
+        }
+        return WeeklySchedule.daily(days(restriction.getRestrictedDays()), start.toSecondOfDay(), end);
+    }
+
+    /**
+     * Days of a comma-separated list such as {@code MON,TUE,WED} as a bitmask, Monday being bit 0.
+     * Days are matched on their first three letters; an empty or unreadable list means every day.
+     */
+    static int days(String restrictedDays) {
+        if (!StringUtils.hasText(restrictedDays)) {
+            return WeeklySchedule.EVERY_DAY;
+        }
+        int days = 0;
+        for (String day : restrictedDays.split(",")) {
+            String name = day.trim().toUpperCase(Locale.ROOT);
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                if (name.length() >= 3 && dayOfWeek.name().startsWith(name.substring(0, 3))) {
+                    days |= 1 << dayOfWeek.ordinal();
+                }
+            }
+        }
+        return days != 0 ? days : WeeklySchedule.EVERY_DAY;
+    }
+
+    private static boolean exceeds(BigDecimal value, BigDecimal limit) {
+        return limit != null && value != null && value.compareTo(limit) > 0;
+    }
+}
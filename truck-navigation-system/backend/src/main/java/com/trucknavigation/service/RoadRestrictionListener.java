@@ -0,0 +1,146 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the restriction index, the vehicle classes and the route cache in step with restriction
+ * writes. The writes of a transaction are collected and applied together once it commits, so a
+ * rolled back write never reaches routing and a bulk save costs one index update rather than one
+ * per restriction. Cached routes are dropped around both the old and the new locations.
+ * <p>
+ * Bulk loads bypass the listener altogether, see {@link #suspend()}.
+ */
+@Component
+public class RoadRestrictionListener {
+
+    // Lazy: Hibernate creates the listener while the entity manager these services need is still being built
+    @Autowired
+    @Lazy
+    private RestrictionIndexService restrictionIndexService;
+
+    @Autowired
+    @Lazy
+    private VehicleClassService vehicleClassService;
+
+    @Autowired
+    @Lazy
+    private RouteCacheService routeCacheService;
+
+    // Threads running a bulk load, whose writes are published all at once when it ends. Static, as
+    // Hibernate calls its own instance of the listener rather than the one other beans are given
+    private static final ThreadLocal<Boolean> suspended = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Ignore the writes of the calling thread until {@link #resume()}, which reloads the index and
+     * drops every vehicle class and cached route, so a bulk load is published once rather than
+     * batch by batch
+     */
+    public void suspend() {
+        suspended.set(true);
+    }
+
+    public void resume() {
+        suspended.remove();
+        restrictionIndexService.load();
+        vehicleClassService.refresh();
+        routeCacheService.clear();
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(RoadRestriction restriction) {
+        if (suspended.get()) {
+            return;
+        }
+        Batch batch = batch();
+        batch.removed.remove(restriction.getId());
+        batch.saved.put(restriction.getId(), restriction);
+        flushOutsideTransaction(batch);
+    }
+
+    @PostRemove
+    public void removed(RoadRestriction restriction) {
+        if (suspended.get()) {
+            return;
+        }
+        Batch batch = batch();
+        batch.saved.remove(restriction.getId());
+        batch.removed.add(restriction.getId());
+        flushOutsideTransaction(batch);
+    }
+
+    /**
+     * Writes of the current transaction, registered to be applied on commit by the first of them
+     */
+    private Batch batch() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Batch();
+        }
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(this);
+        if (batch == null) {
+            Batch created = new Batch();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RoadRestrictionListener.this);
+                }
+            });
+            batch = created;
+        }
+        return batch;
+    }
+
+    private void flushOutsideTransaction(Batch batch) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(batch);
+        }
+    }
+
+    private void apply(Batch batch) {
+        List<int[]> locations = new ArrayList<>(batch.saved.size() * 2 + batch.removed.size());
+        addLocations(batch.saved.keySet(), locations);
+        addLocations(batch.removed, locations);
+        restrictionIndexService.apply(batch.saved.values(), batch.removed);
+        addLocations(batch.saved.keySet(), locations);
+        routeCacheService.invalidate(locations);
+        vehicleClassService.refresh(batch.saved.values(), batch.removed);
+    }
+
+    private void addLocations(Set<Long> ids, List<int[]> locations) {
+        for (Long id : ids) {
+            int[] location = restrictionIndexService.locate(id);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+    }
+
+    /**
+     * Latest write per restriction: saved ones as they were last saved, and the ids of deleted ones
+     */
+    private static final class Batch {
+        final Map<Long, RoadRestriction> saved = new LinkedHashMap<>();
+        final Set<Long> removed = new LinkedHashSet<>();
+    }
+}
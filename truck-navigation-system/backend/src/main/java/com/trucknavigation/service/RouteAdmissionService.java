@@ -0,0 +1,219 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Adaptive limit on the route calculations running at once, so that an overloaded routing stage
+ * sheds load instead of queueing every request until latency explodes for everyone.
+ * <p>
+ * The limit follows the latency of the calculations like a gradient limiter: every window of
+ * completed calculations that ran a search compares their average latency with the long-term
+ * average. Cache hits and requests that waited for an identical calculation return in next to no
+ * time whatever the load, so they hold a permit but are left out of the latency. While they
+ * stay within the tolerance of it and the limit is in use the limit grows, when they get slower it
+ * shrinks in proportion. Drivers may fill the whole limit, fleet managers and administrators only
+ * a share of it and batch routes a smaller share, so that headroom is always left for drivers.
+ * Interactive requests over their share are rejected at once; batch routes wait for room instead.
+ */
+@Service
+public class RouteAdmissionService {
+
+    private static final int WINDOW = 10;
+    // Latency the limit tolerates relative to the long-term average before it shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_TERM_WEIGHT = 1.0 / 100;
+
+    public enum Priority {
+        INTERACTIVE, FLEET, BATCH
+    }
+
+    @Value("${truck-navigation.routing.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${truck-navigation.routing.admission.initial-limit:0}")
+    private int initialLimit;
+
+    @Value("${truck-navigation.routing.admission.min-limit:1}")
+    private int minLimit;
+
+    @Value("${truck-navigation.routing.admission.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${truck-navigation.routing.admission.fleet-share:0.75}")
+    private double fleetShare;
+
+    @Value("${truck-navigation.routing.admission.batch-share:0.5}")
+    private double batchShare;
+
+    @Value("${truck-navigation.routing.admission.retry-after:1}")
+    private int retryAfterSeconds;
+
+    private double limit;
+    private int inFlight;
+    private final int[] inFlightByPriority = new int[Priority.values().length];
+    private final long[] admitted = new long[Priority.values().length];
+    private final long[] rejected = new long[Priority.values().length];
+
+    // Latencies in nanoseconds: long-term average, and the sum over the current window
+    private double longRtt;
+    private double shortRtt;
+    private long windowRtt;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    @PostConstruct
+    public void start() {
+        int initial = initialLimit > 0 ? initialLimit : 2 * Runtime.getRuntime().availableProcessors();
+        limit = Math.max(minLimit, Math.min(maxLimit, initial));
+    }
+
+    /**
+     * Priority of the authenticated user's requests: drivers are interactive, everyone else fleet
+     */
+    public Priority currentPriority() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user
+                && user.getRole() == User.Role.DRIVER) {
+            return Priority.INTERACTIVE;
+        }
+        return Priority.FLEET;
+    }
+
+    /**
+     * Admit a calculation if its priority's share of the limit has room
+     *
+     * @return the permit, to be closed when the calculation is done, or null if the calculation
+     * is rejected
+     */
+    public synchronized Permit tryAcquire(Priority priority) {
+        if (enabled && inFlight >= capacity(priority)) {
+            rejected[priority.ordinal()]++;
+            return null;
+        }
+        return admit(priority);
+    }
+
+    /**
+     * Admit a calculation, waiting until its priority's share of the limit has room
+     */
+    public synchronized Permit acquire(Priority priority) throws InterruptedException {
+        while (enabled && inFlight >= capacity(priority)) {
+            wait();
+        }
+        return admit(priority);
+    }
+
+    /**
+     * Calculations the priority may have running at once, all priorities counted
+     */
+    private int capacity(Priority priority) {
+        double share = switch (priority) {
+            case INTERACTIVE -> 1.0;
+            case FLEET -> fleetShare;
+            case BATCH -> batchShare;
+        };
+        return Math.max(1, (int) (limit * share));
+    }
+
+    private Permit admit(Priority priority) {
+        inFlight++;
+        inFlightByPriority[priority.ordinal()]++;
+        admitted[priority.ordinal()]++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        return new Permit(priority, System.nanoTime());
+    }
+
+    private synchronized void release(Permit permit) {
+        inFlight--;
+        inFlightByPriority[permit.priority.ordinal()]--;
+        if (permit.searched) {
+            windowRtt += System.nanoTime() - permit.startNanos;
+            if (++windowSamples == WINDOW) {
+                updateLimit((double) windowRtt / windowSamples);
+                windowRtt = 0;
+                windowSamples = 0;
+                windowMaxInFlight = inFlight;
+            }
+        }
+        notifyAll();
+    }
+
+    private void updateLimit(double rtt) {
+        shortRtt = rtt;
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) * LONG_TERM_WEIGHT;
+        // Let the long-term average catch up quickly once an overload has passed
+        if (longRtt > 2 * rtt) {
+            longRtt *= 0.95;
+        }
+        // A limit that was never half used says nothing about whether it could be higher
+        if (windowMaxInFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("limit", (int) limit);
+        statistics.put("inFlight", inFlight);
+        statistics.put("latencyMillis", shortRtt / 1e6);
+        statistics.put("longTermLatencyMillis", longRtt / 1e6);
+        for (Priority priority : Priority.values()) {
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("capacity", capacity(priority));
+            counts.put("inFlight", inFlightByPriority[priority.ordinal()]);
+            counts.put("admitted", admitted[priority.ordinal()]);
+            counts.put("rejected", rejected[priority.ordinal()]);
+            statistics.put(priority.name().toLowerCase(), counts);
+        }
+        return statistics;
+    }
+
+    /**
+     * One admitted calculation; closing it makes room for the next, and feeds its latency to the
+     * limit if the calculation ran a search
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Priority priority;
+        private final long startNanos;
+        private boolean searched;
+        private boolean closed;
+
+        private Permit(Priority priority, long startNanos) {
+            this.priority = priority;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Mark the calculation as one that ran a search, so its latency counts towards the limit
+         */
+        public void searched() {
+            searched = true;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(this);
+            }
+        }
+    }
+}
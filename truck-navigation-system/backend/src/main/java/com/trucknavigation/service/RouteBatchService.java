@@ -0,0 +1,192 @@
+package com.trucknavigation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.trucknavigation.dto.RouteRequestDto;
+import com.trucknavigation.dto.RouteResponseDto;
+import com.trucknavigation.model.TruckProfile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Route calculation for batches of requests, such as a nightly plan of thousands of trips.
+ * <p>
+ * Requests are read one NDJSON line at a time and calculated on a worker pool shared by all
+ * batches. Each result is written as an NDJSON line as soon as it is done, so results come back in
+ * no particular order and carry the position of their request. At most {@code 2 * threads}
+ * requests of a batch are read ahead of the results written, so memory stays bounded no matter
+ * how large the batch is. A request that fails reports its error on its own line; the rest of the
+ * batch carries on.
+ */
+@Service
+public class RouteBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteBatchService.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    @Value("${truck-navigation.routing.batch.threads:0}")
+    private int threads;
+
+    @Autowired
+    private RouteCalculationService routeCalculationService;
+
+    @Autowired
+    private RouteAdmissionService routeAdmissionService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void start() {
+        threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger created = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread worker = new Thread(task, "route-batch-" + created.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Calculate the route of every request line of the input, writing one result line per request
+     * to the output: {@code {"index":n,"route":{...}}} or {@code {"index":n,"error":"..."}}, where
+     * {@code n} counts the non-blank request lines from 0
+     *
+     * @return the number of requests read
+     */
+    public int calculate(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        CompletionService<byte[]> results = new ExecutorCompletionService<>(workers);
+        Map<Long, TruckProfile> truckProfiles = new ConcurrentHashMap<>();
+        // Set once the client is gone, so queued requests are skipped rather than calculated
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int maxPending = threads * 2;
+        int pending = 0;
+        int index = 0;
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (pending == maxPending) {
+                    write(results.take(), output);
+                    pending--;
+                }
+                int position = index++;
+                String request = line;
+                results.submit(() -> abandoned.get() ? null : calculate(position, request, truckProfiles));
+                pending++;
+                // Write whatever is done already, without waiting
+                for (Future<byte[]> done = results.poll(); done != null; done = results.poll()) {
+                    write(done, output);
+                    pending--;
+                }
+                output.flush();
+            }
+            for (; pending > 0; pending--) {
+                write(results.take(), output);
+                output.flush();
+            }
+            return index;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calculating a route batch", e);
+        } finally {
+            if (pending > 0) {
+                abandoned.set(true);
+                logger.info("Route batch abandoned after {} requests, {} still pending", index, pending);
+            }
+        }
+    }
+
+    private byte[] calculate(int index, String line, Map<Long, TruckProfile> truckProfiles) throws JsonProcessingException {
+        RouteRequestDto routeRequest;
+        try {
+            routeRequest = objectMapper.readValue(line, RouteRequestDto.class);
+        } catch (JsonProcessingException e) {
+            return objectMapper.writeValueAsBytes(objectMapper.createObjectNode().put("index", index)
+                    .put("error", "Malformed route request: " + e.getOriginalMessage()));
+        }
+        return objectMapper.writeValueAsBytes(calculate(index, routeRequest, truckProfiles));
+    }
+
+    /**
+     * Result of one request of a batch, {@code {"index":n,"route":{...}}} or
+     * {@code {"index":n,"error":"..."}}
+     *
+     * @param truckProfiles profiles read so far for the batch, by id
+     */
+    ObjectNode calculate(int index, RouteRequestDto routeRequest, Map<Long, TruckProfile> truckProfiles) {
+        ObjectNode result = objectMapper.createObjectNode().put("index", index);
+        if (routeRequest == null) {
+            return result.put("error", "Route request is missing");
+        }
+        Set<ConstraintViolation<RouteRequestDto>> violations = validator.validate(routeRequest);
+        if (!violations.isEmpty()) {
+            return result.put("error", violations.stream()
+                    .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+        }
+        // Batch routes wait for room under the admission limit rather than crowding out drivers
+        RouteAdmissionService.Permit permit;
+        try {
+            permit = routeAdmissionService.acquire(RouteAdmissionService.Priority.BATCH);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result.put("error", "Route calculation was interrupted");
+        }
+        try (permit) {
+            RouteResponseDto response = routeCalculationService.calculateRoute(routeRequest, truckProfiles, permit);
+            return result.set("route", objectMapper.valueToTree(response));
+        } catch (RuntimeException e) {
+            return result.put("error", e.getMessage() != null ? e.getMessage()
+                    : "An unexpected error occurred during route calculation");
+        }
+    }
+
+    private static void write(Future<byte[]> done, OutputStream output) throws IOException, InterruptedException {
+        try {
+            output.write(done.get());
+            output.write(NEWLINE);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write a route batch result", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.dto.RouteRequestDto;
+import com.trucknavigation.dto.RouteResponseDto;
+import com.trucknavigation.model.Route;
+import com.trucknavigation.model.TruckProfile;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.RouteCorridor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of calculated routes, so the lanes driven every day are not searched again on
+ * every request.
+ * <p>
+ * Requests share an entry when their end points fall into the same cell of a small coordinate grid,
+ * they list the same intermediate waypoints, and their trucks compile to the same {@link ProfileConstraints} and truck type. Entries are
+ * evicted least recently used once the cache is full, and expire after the time to live or as soon
+ * as some restriction's daily window opens or closes, whichever is first. A restriction written
+ * inside the corridor of any of an entry's route options drops the entry.
+ * <p>
+ * Identical requests that miss the cache while the route is being calculated, such as a convoy
+ * leaving a depot, wait for that calculation and share its result instead of searching again.
+ */
+@Service
+public class RouteCacheService {
+
+    @Value("${truck-navigation.routing.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${truck-navigation.routing.cache.time-to-live:1800}")
+    private long timeToLiveSeconds;
+
+    @Value("${truck-navigation.routing.cache.coordinate-precision:100}")
+    private int coordinatePrecision;
+
+    @Value("${truck-navigation.routing.cache.coalesce:true}")
+    private boolean coalesce;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Calculations running for keys that missed the cache
+    private final Map<Key, CompletableFuture<RouteResponseDto>> inFlight = new HashMap<>();
+
+    // Bumped by every invalidation; a route calculated across one is not cached
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private long coalesced;
+
+    /**
+     * Cache key of a route request for the given truck
+     */
+    public Key key(RouteRequestDto routeRequest, TruckProfile truckProfile, ProfileConstraints truck) {
+        return new Key(snap(routeRequest.getStartLatitude()), snap(routeRequest.getStartLongitude()),
+                snap(routeRequest.getEndLatitude()), snap(routeRequest.getEndLongitude()),
+                routeRequest.getIntermediateWaypoints() == null ? List.of() : List.of(routeRequest.getIntermediateWaypoints()),
+                truck, truckProfile.getTruckType(), routeRequest.getOptimizationType(),
+                routeRequest.isAvoidTolls(), routeRequest.isAvoidHighways());
+    }
+
+    private int snap(BigDecimal degrees) {
+        return Math.floorDiv(GeoMath.toMicroDegrees(degrees.doubleValue()), coordinatePrecision);
+    }
+
+    /**
+     * The cached response, or null
+     */
+    public synchronized RouteResponseDto get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    /**
+     * Run the calculation of a route that missed the cache, or wait for the identical one already
+     * running and return its result. A failed calculation fails every request waiting for it.
+     *
+     * @return the route, and whether this request ran the calculation rather than waiting for it
+     */
+    public Calculated calculate(Key key, Supplier<RouteResponseDto> calculation) {
+        CompletableFuture<RouteResponseDto> own = new CompletableFuture<>();
+        CompletableFuture<RouteResponseDto> running = null;
+        synchronized (this) {
+            if (coalesce) {
+                running = inFlight.putIfAbsent(key, own);
+            }
+            if (running != null) {
+                coalesced++;
+            }
+        }
+        if (running != null) {
+            try {
+                return new Calculated(running.join(), false);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            RouteResponseDto response = calculation.get();
+            own.complete(response);
+            return new Calculated(response, true);
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                inFlight.remove(key, own);
+            }
+        }
+    }
+
+    /**
+     * Current generation, to be passed to {@link #put} for a route calculated from now on
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache a response unless a restriction has been written since the calculation started
+     *
+     * @param corridors     corridors of the response's route options
+     * @param maxAgeSeconds upper bound of the entry's lifetime below the time to live, or -1
+     */
+    public synchronized void put(Key key, RouteResponseDto response, List<RouteCorridor> corridors,
+                                 long maxAgeSeconds, long startGeneration) {
+        if (maxEntries <= 0 || startGeneration != generation) {
+            return;
+        }
+        long ageSeconds = maxAgeSeconds >= 0 ? Math.min(maxAgeSeconds, timeToLiveSeconds) : timeToLiveSeconds;
+        entries.put(key, new Entry(response, corridors, System.currentTimeMillis() + ageSeconds * 1000));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop every entry with a route option whose corridor may contain the point
+     *
+     * @param location latitude and longitude in micro-degrees, or null for nothing
+     */
+    public void invalidate(int[] location) {
+        if (location != null) {
+            invalidate(List.of(location));
+        }
+    }
+
+    /**
+     * Drop every entry with a route option whose corridor may contain any of the points, in one
+     * pass over the cache
+     *
+     * @param locations latitudes and longitudes in micro-degrees
+     */
+    public synchronized void invalidate(Collection<int[]> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        generation++;
+        // Requests from now on calculate afresh; those already waiting get the running result
+        inFlight.clear();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (mayContainAny(iterator.next().corridors, locations)) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    private static boolean mayContainAny(List<RouteCorridor> corridors, Collection<int[]> locations) {
+        for (RouteCorridor corridor : corridors) {
+            for (int[] location : locations) {
+                if (corridor.mayContain(location[0], location[1])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        inFlight.clear();
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        long requests = hits + misses;
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size", entries.size());
+        statistics.put("maxEntries", maxEntries);
+        statistics.put("timeToLiveSeconds", timeToLiveSeconds);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("hitRate", requests == 0 ? 0.0 : (double) hits / requests);
+        statistics.put("evictions", evictions);
+        statistics.put("expirations", expirations);
+        statistics.put("invalidations", invalidations);
+        statistics.put("inFlight", inFlight.size());
+        statistics.put("coalesced", coalesced);
+        return statistics;
+    }
+
+    public record Calculated(RouteResponseDto response, boolean ran) {
+    }
+
+    public record Key(int startLatitude, int startLongitude, int endLatitude, int endLongitude,
+                      List<String> waypoints, ProfileConstraints truck, TruckProfile.TruckType truckType,
+                      Route.OptimizationType optimizationType, boolean avoidTolls, boolean avoidHighways) {}
+
+    private record Entry(RouteResponseDto response, List<RouteCorridor> corridors, long expiresAt) {}
+}
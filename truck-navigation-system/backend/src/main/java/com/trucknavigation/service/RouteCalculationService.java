@@ -1,11 +1,32 @@
 package com.trucknavigation.service;
 
+import com.trucknavigation.dto.DepartureProfileRequestDto;
+import com.trucknavigation.dto.DepartureProfileResponseDto;
+import com.trucknavigation.dto.IsochroneResponseDto;
+import com.trucknavigation.dto.MatrixRequestDto;
+import com.trucknavigation.dto.MatrixResponseDto;
 import com.trucknavigation.dto.RouteRequestDto;
 import com.trucknavigation.dto.RouteResponseDto;
 import com.trucknavigation.model.*;
-import com.trucknavigation.repository.RoadRestrictionRepository;
 import com.trucknavigation.repository.RouteRepository;
 import com.trucknavigation.repository.TruckProfileRepository;
+import com.trucknavigation.routing.AlternativeCriteria;
+import com.trucknavigation.routing.DistanceMatrix;
+import com.trucknavigation.routing.EdgeClosures;
+import com.trucknavigation.routing.EdgeIndex;
+import com.trucknavigation.routing.EdgeSnap;
+import com.trucknavigation.routing.EdgeWeighting;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.IntArrayList;
+import com.trucknavigation.routing.Isochrone;
+import com.trucknavigation.routing.ParetoLimits;
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.routing.RouteCorridor;
+import com.trucknavigation.routing.RoutePath;
+import com.trucknavigation.routing.RoutingEngine;
+import com.trucknavigation.routing.TourOptimizer;
+import com.trucknavigation.routing.VehicleSpec;
+import com.trucknavigation.routing.WeeklySchedule;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -14,13 +35,20 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Route, matrix, isochrone and departure profile computation. Only {@link #saveRoute} runs in a
+ * transaction: the computations read the truck profile in a short transaction of its own and
+ * then search in memory, so a database connection is never held during the CPU-bound work.
+ */
 @Service
-@Transactional
 public class RouteCalculationService {
     
     @Autowired
@@ -30,11 +58,23 @@ public class RouteCalculationService {
     private TruckProfileRepository truckProfileRepository;
     
     @Autowired
-    private RoadRestrictionRepository roadRestrictionRepository;
+    private RestrictionIndexService restrictionIndexService;
     
     @Autowired
     private RestTemplate restTemplate;
     
+    @Autowired
+    private RoutingEngine routingEngine;
+    
+    @Autowired
+    private VehicleClassService vehicleClassService;
+    
+    @Autowired
+    private EdgeIndex edgeIndex;
+    
+    @Autowired
+    private RouteCacheService routeCacheService;
+    
     @Value("${truck-navigation.maps.api-url}")
     private String mapsApiUrl;
     
@@ -47,300 +87,729 @@ public class RouteCalculationService {
     @Value("${truck-navigation.routing.max-route-distance}")
     private int maxRouteDistance;
     
+    @Value("${truck-navigation.routing.restrictions.corridor-width:500}")
+    private double corridorWidth;
+    
+    @Value("${truck-navigation.routing.matrix.max-locations:1000}")
+    private int maxMatrixLocations;
+    
+    @Value("${truck-navigation.routing.isochrone.max-duration:720}")
+    private int maxIsochroneDuration;
+    
+    @Value("${truck-navigation.routing.snap.max-distance:25000}")
+    private double maxSnapDistance;
+    
+    @Value("${truck-navigation.routing.departure-profile.step:15}")
+    private int departureStepMinutes;
+    
+    @Value("${truck-navigation.routing.departure-profile.max-departures:96}")
+    private int maxDepartures;
+    
+    @Value("${truck-navigation.routing.waypoints.max-count:100}")
+    private int maxWaypoints;
+    
+    @Value("${truck-navigation.routing.waypoints.search-restarts:8}")
+    private int waypointSearchRestarts;
+    
+    @Value("${truck-navigation.routing.waypoints.search-time-limit:500}")
+    private long waypointSearchTimeLimit;
+    
+    @Value("${truck-navigation.routing.alternatives.max-count:3}")
+    private int maxAlternatives;
+    
+    @Value("${truck-navigation.routing.alternatives.max-stretch:0.25}")
+    private double alternativeMaxStretch;
+    
+    @Value("${truck-navigation.routing.alternatives.max-sharing:0.75}")
+    private double alternativeMaxSharing;
+    
+    @Value("${truck-navigation.routing.alternatives.local-optimality:0.25}")
+    private double alternativeLocalOptimality;
+    
+    @Value("${truck-navigation.routing.pareto.max-slack:0.2}")
+    private double paretoMaxSlack;
+    
+    @Value("${truck-navigation.routing.pareto.epsilon:0.01}")
+    private double paretoEpsilon;
+    
+    @Value("${truck-navigation.routing.pareto.max-labels-per-node:8}")
+    private int paretoMaxLabelsPerNode;
+    
+    @Value("${truck-navigation.routing.pareto.max-front-size:16}")
+    private int paretoMaxFrontSize;
+    
+    private static final List<Route.OptimizationType> FRONT_PICKS = List.of(Route.OptimizationType.FASTEST,
+            Route.OptimizationType.SHORTEST, Route.OptimizationType.FUEL_EFFICIENT,
+            Route.OptimizationType.AVOID_TOLLS, Route.OptimizationType.BALANCED);
+    
+    private final Map<Long, ProfileConstraints> profileConstraints = new ConcurrentHashMap<>();
+    
     /**
      * Calculate truck-optimized route between two points
      */
     public RouteResponseDto calculateRoute(RouteRequestDto routeRequest) {
+        return calculateRoute(routeRequest, null, null);
+    }
+    
+    /**
+     * Calculate truck-optimized route between two points, reading each truck profile only once for
+     * all routes sharing the map, such as the routes of one batch
+     *
+     * @param truckProfiles profiles read so far by id, or null to read the profile
+     * @param permit admission permit of the calculation, marked if it runs a search, or null
+     */
+    public RouteResponseDto calculateRoute(RouteRequestDto routeRequest, Map<Long, TruckProfile> truckProfiles,
+                                           RouteAdmissionService.Permit permit) {
         // Validate input
         validateRouteRequest(routeRequest);
+        List<Stop> waypoints = parseWaypoints(routeRequest);
         
         // Get truck profile
-        TruckProfile truckProfile = truckProfileRepository.findById(routeRequest.getTruckProfileId())
-                .orElseThrow(() -> new RuntimeException("Truck profile not found"));
-        
-        // Find applicable road restrictions
-        List<RoadRestriction> restrictions = findApplicableRestrictions(
-                routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
-                routeRequest.getEndLatitude(), routeRequest.getEndLongitude(),
-                truckProfile
-        );
-        
-        // Calculate multiple route options
+        TruckProfile truckProfile = truckProfiles == null ? loadTruckProfile(routeRequest.getTruckProfileId())
+                : truckProfiles.computeIfAbsent(routeRequest.getTruckProfileId(), this::loadTruckProfile);
+        
+        // Trucks restricted alike share cached routes between the same places
+        ProfileConstraints truck = getProfileConstraints(truckProfile);
+        RouteCacheService.Key cacheKey = routeCacheService.key(routeRequest, truckProfile, truck);
+        RouteResponseDto cached = routeCacheService.get(cacheKey);
+        if (cached != null) {
+            return forTruckProfile(cached, routeRequest.getTruckProfileId());
+        }
+        // Identical requests arriving meanwhile wait for this calculation instead of repeating it
+        RouteCacheService.Calculated calculated = routeCacheService.calculate(cacheKey,
+                () -> calculateUncachedRoute(routeRequest, truckProfile, truck, waypoints, cacheKey));
+        if (calculated.ran() && permit != null) {
+            permit.searched();
+        }
+        return forTruckProfile(calculated.response(), routeRequest.getTruckProfileId());
+    }
+    
+    private RouteResponseDto calculateUncachedRoute(RouteRequestDto routeRequest, TruckProfile truckProfile,
+                                                    ProfileConstraints truck, List<Stop> waypoints,
+                                                    RouteCacheService.Key cacheKey) {
+        long cacheGeneration = routeCacheService.generation();
+        
+        // Calculate multiple route options, each with the restrictions along its own corridor
+        LocalDateTime now = LocalDateTime.now();
+        RouteFindings findings = new RouteFindings(truck, vehicleClassService.closures(),
+                WeeklySchedule.secondOfWeek(now.getDayOfWeek().ordinal(), now.toLocalTime().toSecondOfDay()));
+        List<Stop> stops = sequenceStops(routeRequest, truckProfile, waypoints,
+                findings.departure % WeeklySchedule.SECONDS_PER_DAY);
         List<RouteResponseDto.RouteOption> routeOptions = calculateRouteOptions(
-                routeRequest, truckProfile, restrictions
+                routeRequest, truckProfile, stops, findings
         );
         
         // Create response
         RouteResponseDto response = new RouteResponseDto();
         response.setRouteOptions(routeOptions);
-        response.setRestrictionsFound(restrictions.size());
+        response.setRestrictionsFound(findings.restrictionIds.size());
         response.setTruckProfileUsed(routeRequest.getTruckProfileId());
         response.setCalculatedAt(LocalDateTime.now());
         
+        // The restrictions found are only valid until some restriction schedule changes, or until
+        // the truck would reach a time-restricted road in another slot of its schedule
+        findings.expireWithin(restrictionIndexService.secondsUntilWindowChange(findings.departure));
+        routeCacheService.put(cacheKey, response, findings.corridors, findings.validFor, cacheGeneration);
         return response;
     }
     
     /**
-     * Find road restrictions that affect the route
+     * A cached or shared response as answered to a request made with the given truck profile
      */
-    public List<RoadRestriction> findApplicableRestrictions(
-            BigDecimal startLat, BigDecimal startLon, 
-            BigDecimal endLat, BigDecimal endLon, 
-            TruckProfile truckProfile) {
-        
-        // Calculate bounding box for the route area (with some buffer)
-        BigDecimal minLat = startLat.min(endLat).subtract(BigDecimal.valueOf(0.1));
-        BigDecimal maxLat = startLat.max(endLat).add(BigDecimal.valueOf(0.1));
-        BigDecimal minLon = startLon.min(endLon).subtract(BigDecimal.valueOf(0.1));
-        BigDecimal maxLon = startLon.max(endLon).add(BigDecimal.valueOf(0.1));
-        
-        // Get all restrictions in the area
-        List<RoadRestriction> areaRestrictions = roadRestrictionRepository
-                .findRestrictionsInArea(minLat, maxLat, minLon, maxLon);
-        
-        // Filter restrictions that apply to this truck
-        return areaRestrictions.stream()
-                .filter(restriction -> isRestrictionApplicable(restriction, truckProfile))
-                .collect(Collectors.toList());
+    private RouteResponseDto forTruckProfile(RouteResponseDto calculated, Long truckProfileId) {
+        RouteResponseDto response = new RouteResponseDto();
+        response.setRouteOptions(calculated.getRouteOptions());
+        response.setRestrictionsFound(calculated.getRestrictionsFound());
+        response.setTruckProfileUsed(truckProfileId);
+        response.setCalculatedAt(calculated.getCalculatedAt());
+        return response;
     }
     
     /**
-     * Check if a road restriction applies to the given truck profile
+     * Find road restrictions within the corridor of a route that affect the truck, permanently or
+     * because their schedule is in force when the truck passes them
      */
-    private boolean isRestrictionApplicable(RoadRestriction restriction, TruckProfile truckProfile) {
-        // Check physical restrictions
-        if (restriction.getMaxHeight() != null && 
-            truckProfile.getHeight().compareTo(restriction.getMaxHeight()) > 0) {
-            return true;
+    private List<RoadRestriction> findApplicableRestrictions(RouteTrace trace, RouteCorridor corridor,
+                                                             TruckProfile truckProfile, RouteFindings findings) {
+        List<RoadRestriction> candidates = restrictionIndexService.findAlongRoute(trace.points, corridor,
+                restriction -> restriction.hasSchedule() || restriction.appliesPermanently(findings.truck));
+        List<RoadRestriction> restrictions = new ArrayList<>(candidates.size());
+        for (RoadRestriction restriction : candidates) {
+            if (RestrictionRules.appliesPermanently(restriction, truckProfile)) {
+                restrictions.add(restriction);
+                continue;
+            }
+            WeeklySchedule schedule = RestrictionRules.schedule(restriction);
+            long passed = findings.departure + trace.secondsAt(GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue()),
+                    GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue()));
+            findings.expireWithin(schedule.secondsUntilChange(passed));
+            if (schedule.isActive(passed)) {
+                restrictions.add(restriction);
+            }
         }
-        
-        if (restriction.getMaxWidth() != null && 
-            truckProfile.getWidth().compareTo(restriction.getMaxWidth()) > 0) {
-            return true;
+        return restrictions;
+    }
+    
+    /**
+     * Read the truck profile in a short read-only transaction of the repository's own. The
+     * profile is detached once read; computations only use its own columns.
+     */
+    private TruckProfile loadTruckProfile(Long truckProfileId) {
+        return truckProfileRepository.findById(truckProfileId)
+                .orElseThrow(() -> new RuntimeException("Truck profile not found"));
+    }
+    
+    /**
+     * Compiled constraints of the truck profile, recompiled whenever the profile has been updated
+     */
+    private ProfileConstraints getProfileConstraints(TruckProfile truckProfile) {
+        ProfileConstraints cached = profileConstraints.get(truckProfile.getId());
+        if (cached != null && cached.isCurrent(truckProfile)) {
+            return cached;
         }
-        
-        if (restriction.getMaxLength() != null && 
-            truckProfile.getLength().compareTo(restriction.getMaxLength()) > 0) {
-            return true;
+        ProfileConstraints compiled = ProfileConstraints.compile(truckProfile);
+        profileConstraints.put(truckProfile.getId(), compiled);
+        return compiled;
+    }
+    
+    /**
+     * Calculate the route for the requested optimization, the routes other optimizations pick from
+     * the same trade-off between time, fuel and tolls, and genuine alternatives to the requested
+     * route. Routes through waypoints are offered for the requested optimization only. Roads closed
+     * by a time-based restriction when the truck reaches them are waited for, or driven around by
+     * the recommended route if that arrives sooner.
+     */
+    private List<RouteResponseDto.RouteOption> calculateRouteOptions(
+            RouteRequestDto routeRequest, TruckProfile truckProfile, 
+            List<Stop> stops, RouteFindings findings) {
+        
+        // The speed cap only affects travel time, never which path wins, so restrictions can wait
+        Route.OptimizationType optimizationType = routeRequest.getOptimizationType();
+        VehicleSpec vehicle = VehicleSpec.of(truckProfile, calculateAverageSpeed(truckProfile, List.of()));
+        EdgeWeighting weighting = new EdgeWeighting(metricFor(optimizationType), vehicle,
+                routeRequest.isAvoidTolls() || optimizationType == Route.OptimizationType.AVOID_TOLLS,
+                routeRequest.isAvoidHighways(), vehicleClassService.classify(truckProfile));
+        
+        List<List<RoutePath>> routes = new ArrayList<>();
+        List<Route.OptimizationType> routeTypes = new ArrayList<>();
+        if (stops.size() == 2) {
+            int source = stops.get(0).node;
+            int target = stops.get(1).node;
+            
+            // Every optimization picks its route from one front, tolls are only avoided by the picks
+            EdgeWeighting frontWeighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, vehicle,
+                    routeRequest.isAvoidTolls(), routeRequest.isAvoidHighways(), weighting.getVehicleClass());
+            List<RoutePath> front = routingEngine.paretoFront(source, target, frontWeighting,
+                    new ParetoLimits(paretoMaxSlack, paretoEpsilon, paretoMaxLabelsPerNode, paretoMaxFrontSize));
+            RoutePath recommended = pickFromFront(front, optimizationType);
+            if (recommended != null && findings.closures.waitDeciseconds(
+                    routingEngine.getGraph(), weighting, recommended, findings.departure) != 0) {
+                recommended = routingEngine.routeDeparting(source, target, weighting, findings.closures, findings.departure);
+            }
+            if (recommended == null) {
+                throw new RuntimeException("No truck-accessible route found between the given points");
+            }
+            routes.add(List.of(recommended));
+            routeTypes.add(optimizationType);
+            for (Route.OptimizationType type : FRONT_PICKS) {
+                RoutePath path = pickFromFront(front, type);
+                if (path != null && !containsPath(routes, path) && isPassable(path, weighting, findings)) {
+                    routes.add(List.of(path));
+                    routeTypes.add(type);
+                }
+            }
+            
+            AlternativeCriteria criteria = new AlternativeCriteria(maxAlternatives, alternativeMaxStretch,
+                    alternativeMaxSharing, alternativeLocalOptimality);
+            for (RoutePath path : routingEngine.alternatives(source, target, weighting, criteria)) {
+                if (!containsPath(routes, path) && isPassable(path, weighting, findings)) {
+                    routes.add(List.of(path));
+                    routeTypes.add(optimizationType);
+                }
+            }
+        } else {
+            routes.add(findLegs(stops, weighting, findings));
+            routeTypes.add(optimizationType);
         }
         
-        if (restriction.getMaxWeight() != null && 
-            truckProfile.getMaxWeight().compareTo(restriction.getMaxWeight()) > 0) {
-            return true;
+        // Recommended route first, then the other picks, then alternatives under the requested optimization
+        List<RouteResponseDto.RouteOption> options = new ArrayList<>(routes.size());
+        int alternatives = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            Route.OptimizationType type = routeTypes.get(i);
+            RouteResponseDto.RouteOption option = new RouteResponseDto.RouteOption();
+            option.setOptimizationType(type);
+            List<RoadRestriction> restrictions = applyPath(option, stops, truckProfile, routes.get(i), findings);
+            
+            if (options.isEmpty()) {
+                option.setName("Recommended Route");
+                option.setDescription(describeOptimization(type));
+            } else if (type != optimizationType) {
+                option.setName(nameOptimization(type));
+                option.setDescription(describeOptimization(type));
+            } else {
+                RouteResponseDto.RouteOption recommended = options.get(0);
+                option.setName("Alternative Route " + ++alternatives);
+                option.setDescription(String.format("%+d min, %+.1f km compared to the recommended route",
+                        option.getEstimatedDuration() - recommended.getEstimatedDuration(),
+                        option.getTotalDistance().subtract(recommended.getTotalDistance()).doubleValue()));
+            }
+            option.setRestrictionsCount(restrictions.size());
+            option.setBypassesUsed(restrictions.size() > 0 ? 1 : 0);
+            option.setTrafficLevel("MEDIUM");
+            options.add(option);
         }
-        
-        if (restriction.getMaxAxleLoad() != null && 
-            truckProfile.getMaxAxleLoad().compareTo(restriction.getMaxAxleLoad()) > 0) {
-            return true;
+        return options;
+    }
+    
+    /**
+     * Route of the front that suits the optimization best. Balanced routes minimise the sum of
+     * time, fuel and tolls, each scaled to its range over the front.
+     *
+     * @return the route, or {@code null} if no route of the front suits it
+     */
+    private RoutePath pickFromFront(List<RoutePath> front, Route.OptimizationType optimizationType) {
+        switch (optimizationType) {
+            case SHORTEST:
+                return front.stream().min(Comparator.comparingLong(RoutePath::getDistanceMeters)).orElse(null);
+            case FUEL_EFFICIENT:
+                return front.stream().min(Comparator.comparingLong(RoutePath::getFuelWeightedMeters)).orElse(null);
+            case AVOID_TOLLS:
+                return front.stream().filter(path -> path.getTollMeters() == 0)
+                        .min(Comparator.comparingLong(RoutePath::getDurationDeciseconds)).orElse(null);
+            case BALANCED:
+                LongSummaryStatistics time = front.stream().mapToLong(RoutePath::getDurationDeciseconds).summaryStatistics();
+                LongSummaryStatistics fuel = front.stream().mapToLong(RoutePath::getFuelWeightedMeters).summaryStatistics();
+                LongSummaryStatistics toll = front.stream().mapToLong(RoutePath::getTollMeters).summaryStatistics();
+                return front.stream().min(Comparator.comparingDouble(path ->
+                        scaled(path.getDurationDeciseconds(), time) + scaled(path.getFuelWeightedMeters(), fuel)
+                                + scaled(path.getTollMeters(), toll))).orElse(null);
+            default:
+                return front.stream().min(Comparator.comparingLong(RoutePath::getDurationDeciseconds)).orElse(null);
         }
-        
-        // Check categorical restrictions
-        if (restriction.isTrucksProhibited()) {
-            return true;
+    }
+    
+    private static double scaled(long value, LongSummaryStatistics range) {
+        return range.getMax() == range.getMin() ? 0 : (double) (value - range.getMin()) / (range.getMax() - range.getMin());
+    }
+    
+    /**
+     * Whether every road of the path that is closed at times has opened when the truck gets there
+     */
+    private boolean isPassable(RoutePath path, EdgeWeighting weighting, RouteFindings findings) {
+        return findings.closures.waitDeciseconds(routingEngine.getGraph(), weighting, path, findings.departure) >= 0;
+    }
+    
+    private static boolean containsPath(List<List<RoutePath>> routes, RoutePath path) {
+        return routes.stream().anyMatch(legs -> Arrays.equals(legs.get(0).getEdges(), path.getEdges()));
+    }
+    
+    private EdgeWeighting.Metric metricFor(Route.OptimizationType optimizationType) {
+        return optimizationType == Route.OptimizationType.SHORTEST ? EdgeWeighting.Metric.SHORTEST
+                : optimizationType == Route.OptimizationType.FUEL_EFFICIENT ? EdgeWeighting.Metric.FUEL_EFFICIENT
+                : EdgeWeighting.Metric.FASTEST;
+    }
+    
+    private String describeOptimization(Route.OptimizationType optimizationType) {
+        switch (optimizationType) {
+            case SHORTEST:
+                return "Optimized for minimum distance";
+            case FUEL_EFFICIENT:
+                return "Optimized for minimum fuel consumption";
+            case AVOID_TOLLS:
+                return "Avoids toll roads";
+            case BALANCED:
+                return "Balances travel time, fuel consumption and tolls";
+            default:
+                return "Optimized for minimum travel time";
         }
-        
-        if (restriction.isHazmatProhibited() && truckProfile.isHasHazmatPermit()) {
-            return true;
+    }
+    
+    private String nameOptimization(Route.OptimizationType optimizationType) {
+        switch (optimizationType) {
+            case SHORTEST:
+                return "Shortest Route";
+            case FUEL_EFFICIENT:
+                return "Fuel Efficient Route";
+            case AVOID_TOLLS:
+                return "Toll-Free Route";
+            case BALANCED:
+                return "Balanced Route";
+            default:
+                return "Fastest Route";
         }
-        
-        if (restriction.isOversizeProhibited() && truckProfile.isHasOversizePermit()) {
-            return true;
+    }
+    
+    /**
+     * Snap start, waypoints and end to the road graph, and put the waypoints in the order that
+     * reaches the end soonest, waiting for their windows included
+     *
+     * @param departure second of the day the truck leaves the start
+     */
+    private List<Stop> sequenceStops(RouteRequestDto routeRequest, TruckProfile truckProfile,
+                                     List<Stop> waypoints, int departure) {
+        List<Stop> stops = new ArrayList<>(waypoints.size() + 2);
+        stops.add(new Stop(routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
+                RouteWaypoint.WaypointType.START, -1));
+        stops.addAll(waypoints);
+        stops.add(new Stop(routeRequest.getEndLatitude(), routeRequest.getEndLongitude(),
+                RouteWaypoint.WaypointType.END, -1));
+        
+        // Only roads the truck may drive count when snapping, so the route is never cut off at a stop
+        int avgSpeed = calculateAverageSpeed(truckProfile, List.of());
+        EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, VehicleSpec.of(truckProfile, avgSpeed),
+                routeRequest.isAvoidTolls() || routeRequest.getOptimizationType() == Route.OptimizationType.AVOID_TOLLS,
+                routeRequest.isAvoidHighways(), vehicleClassService.classify(truckProfile));
+        EdgeSnap snap = new EdgeSnap();
+        for (Stop stop : stops) {
+            snapToRoad(stop.latitude, stop.longitude, weighting, snap);
+            stop.node = snap.getNode();
+            stop.accessMeters = snap.getAccessMeters();
+            stop.snapDistance = snap.getDistanceMeters();
+            stop.snapLatitude = snap.getLatitude();
+            stop.snapLongitude = snap.getLongitude();
+        }
+        if (waypoints.size() < 2) {
+            return stops;
         }
         
-        // Check time-based restrictions
-        if (restriction.getRestrictionStartTime() != null && restriction.getRestrictionEndTime() != null) {
-            LocalTime currentTime = LocalTime.now();
-            if (isTimeInRestrictionPeriod(currentTime, restriction.getRestrictionStartTime(), 
-                                        restriction.getRestrictionEndTime())) {
-                return true;
+        // Driving times between all stops, each including the straight legs to and from the road
+        int count = stops.size();
+        int[] nodes = new int[count];
+        int[] windowOpens = new int[count];
+        int[] windowCloses = new int[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = stops.get(i).node;
+            windowOpens[i] = stops.get(i).windowOpens;
+            windowCloses[i] = stops.get(i).windowCloses;
+        }
+        DistanceMatrix matrix = routingEngine.matrix(nodes, nodes, weighting);
+        for (int i = 1; i < count - 1; i++) {
+            if (matrix.duration(0, i) == DistanceMatrix.UNREACHABLE
+                    || matrix.duration(i, count - 1) == DistanceMatrix.UNREACHABLE) {
+                throw new RuntimeException("No truck-accessible route found through waypoint " + stops.get(i).latitude
+                        + "," + stops.get(i).longitude);
+            }
+        }
+        int[] durations = new int[count * count];
+        double accessMetersPerSecond = avgSpeed / 3.6;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                durations[i * count + j] = matrix.duration(i, j) == DistanceMatrix.UNREACHABLE ? -1
+                        : (int) Math.round(matrix.duration(i, j) / 10.0
+                                + (stops.get(i).accessMeters + stops.get(j).accessMeters) / accessMetersPerSecond);
             }
         }
         
-        return false;
+        int[] order = new TourOptimizer(durations, windowOpens, windowCloses, departure)
+                .optimize(waypointSearchRestarts, waypointSearchTimeLimit);
+        List<Stop> ordered = new ArrayList<>(count);
+        for (int stop : order) {
+            ordered.add(stops.get(stop));
+        }
+        return ordered;
     }
     
     /**
-     * Calculate multiple route options considering different optimization criteria
+     * Search a path for the truck between every two consecutive stops, each leg leaving when the
+     * previous one has arrived and the stop's delivery window has opened
      */
-    private List<RouteResponseDto.RouteOption> calculateRouteOptions(
-            RouteRequestDto routeRequest, TruckProfile truckProfile, 
-            List<RoadRestriction> restrictions) {
-        
-        List<RouteResponseDto.RouteOption> options = new ArrayList<>();
-        
-        // Calculate different route options
-        options.add(calculateFastestRoute(routeRequest, truckProfile, restrictions));
-        options.add(calculateShortestRoute(routeRequest, truckProfile, restrictions));
-        options.add(calculateFuelEfficientRoute(routeRequest, truckProfile, restrictions));
-        
-        if (routeRequest.getOptimizationType() == Route.OptimizationType.AVOID_TOLLS) {
-            options.add(calculateTollFreeRoute(routeRequest, truckProfile, restrictions));
+    private List<RoutePath> findLegs(List<Stop> stops, EdgeWeighting weighting, RouteFindings findings) {
+        List<RoutePath> legs = new ArrayList<>(stops.size() - 1);
+        long time = findings.departure;
+        for (int k = 0; k + 1 < stops.size(); k++) {
+            RoutePath path = routingEngine.routeDeparting(stops.get(k).node, stops.get(k + 1).node, weighting,
+                    findings.closures, (int) (time % WeeklySchedule.SECONDS_PER_WEEK));
+            if (path == null) {
+                throw new RuntimeException("No truck-accessible route found between the given points");
+            }
+            legs.add(path);
+            time += (path.getDurationDeciseconds() + Math.max(0, findings.closures.waitDeciseconds(
+                    routingEngine.getGraph(), weighting, path, (int) (time % WeeklySchedule.SECONDS_PER_WEEK)))) / 10;
+            time += TourOptimizer.waitSeconds(time, stops.get(k + 1).windowOpens, stops.get(k + 1).windowCloses);
         }
-        
-        // Remove duplicate routes and sort by preference
-        return options.stream()
-                .distinct()
-                .sorted(Comparator.comparing(RouteResponseDto.RouteOption::getEstimatedDuration))
-                .collect(Collectors.toList());
+        return legs;
     }
     
     /**
-     * Calculate fastest route considering truck restrictions
+     * Fill distance, duration, costs, geometry and stops of a route option from the paths between
+     * its stops. The straight legs between the stop coordinates and the snapped nodes are included,
+     * and so is the time spent waiting for closed roads to open.
+     *
+     * @return the restrictions along the paths that apply to the truck
      */
-    private RouteResponseDto.RouteOption calculateFastestRoute(
-            RouteRequestDto routeRequest, TruckProfile truckProfile, 
-            List<RoadRestriction> restrictions) {
-        
-        RouteResponseDto.RouteOption option = new RouteResponseDto.RouteOption();
-        option.setName("Fastest Route");
-        option.setDescription("Optimized for minimum travel time");
-        option.setOptimizationType(Route.OptimizationType.FASTEST);
-        
-        // Simulate route calculation (in real implementation, call external routing API)
-        double distance = calculateHaversineDistance(
-                routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
-                routeRequest.getEndLatitude(), routeRequest.getEndLongitude()
-        );
-        
-        // Add buffer for actual road distance (typically 1.3x of straight-line distance)
-        distance *= 1.3;
-        
-        // Calculate duration considering truck speed limitations
+    private List<RoadRestriction> applyPath(RouteResponseDto.RouteOption option, List<Stop> stops,
+                                            TruckProfile truckProfile, List<RoutePath> legs, RouteFindings findings) {
+        RouteTrace trace = traceRoute(stops, legs, calculateAverageSpeed(truckProfile, List.of()), findings);
+        RouteCorridor corridor = RouteCorridor.along(trace.points, corridorWidth);
+        List<RoadRestriction> restrictions = findApplicableRestrictions(trace, corridor, truckProfile, findings);
+        restrictions.forEach(restriction -> findings.restrictionIds.add(restriction.getId()));
+        findings.corridors.add(corridor);
         int avgSpeed = calculateAverageSpeed(truckProfile, restrictions);
-        int duration = (int) ((distance / avgSpeed) * 60); // Convert to minutes
-        
-        // Estimate costs
-        BigDecimal fuelCost = calculateFuelCost(distance, truckProfile);
-        BigDecimal tollCost = calculateTollCost(distance);
-        
-        option.setTotalDistance(BigDecimal.valueOf(distance));
-        option.setEstimatedDuration(duration);
-        option.setEstimatedFuelCost(fuelCost);
-        option.setEstimatedTollCost(tollCost);
-        option.setRestrictionsCount(restrictions.size());
-        option.setBypassesUsed(restrictions.size() > 0 ? 1 : 0);
-        option.setTrafficLevel("MEDIUM");
         
-        // Generate sample route geometry (in real implementation, get from routing API)
-        option.setRouteGeometry(generateSampleRouteGeometry(routeRequest));
+        List<RouteResponseDto.RouteStop> routeStops = new ArrayList<>(stops.size());
+        routeStops.add(toRouteStop(stops.get(0), 1, 0, 0, 0));
+        double distance = 0;
+        double duration = 0;
+        double fuelKm = 0;
+        double tollKm = 0;
+        long time = findings.departure;
+        long closedSeconds = 0;
+        for (int k = 0; k < legs.size(); k++) {
+            RoutePath leg = legs.get(k);
+            Stop next = stops.get(k + 1);
+            double accessKm = (stops.get(k).accessMeters + next.accessMeters) / 1000;
+            double legKm = leg.getDistanceMeters() / 1000.0 + accessKm;
+            double legMinutes = durationDeciseconds(leg, avgSpeed) / 600.0 + (accessKm / avgSpeed) * 60
+                    + trace.closedSeconds[k] / 60.0;
+            closedSeconds += trace.closedSeconds[k];
+            distance += legKm;
+            duration += legMinutes;
+            fuelKm += leg.getFuelWeightedMeters() / 1000.0 + accessKm;
+            tollKm += leg.getTollMeters() / 1000.0;
+            
+            time += Math.round(legMinutes * 60);
+            int wait = TourOptimizer.waitSeconds(time, next.windowOpens, next.windowCloses);
+            time += wait;
+            routeStops.add(toRouteStop(next, k + 2, legKm, legMinutes, wait));
+        }
         
-        return option;
+        option.setTotalDistance(BigDecimal.valueOf(distance).setScale(2, RoundingMode.HALF_UP));
+        option.setEstimatedDuration((int) duration);
+        option.setEstimatedFuelCost(calculateFuelCost(fuelKm, truckProfile));
+        option.setEstimatedTollCost(calculateTollCost(tollKm));
+        option.setRouteGeometry(buildRouteGeometry(trace.points));
+        option.setStops(routeStops);
+        if (closedSeconds > 0) {
+            option.setWarnings(List.of(String.format("Waits %d min for time-restricted roads to open",
+                    Math.round(closedSeconds / 60.0))));
+        }
+        return restrictions;
+    }
+    
+    private RouteResponseDto.RouteStop toRouteStop(Stop stop, int sequenceOrder, double legKm, double legMinutes,
+                                                   int waitSeconds) {
+        RouteResponseDto.RouteStop routeStop = new RouteResponseDto.RouteStop();
+        routeStop.setSequenceOrder(sequenceOrder);
+        routeStop.setLatitude(stop.latitude);
+        routeStop.setLongitude(stop.longitude);
+        routeStop.setWaypointType(stop.type);
+        routeStop.setWaypointIndex(stop.waypointIndex >= 0 ? stop.waypointIndex : null);
+        routeStop.setDistanceFromPrevious(BigDecimal.valueOf(legKm).setScale(2, RoundingMode.HALF_UP));
+        routeStop.setDurationFromPrevious((int) Math.round(legMinutes));
+        routeStop.setWaitingTime(Math.round(waitSeconds / 60f));
+        routeStop.setSnapDistance((int) Math.round(stop.snapDistance));
+        return routeStop;
     }
     
     /**
-     * Calculate shortest route
+     * Travel time along the path with the truck's speed capped at the given average speed
      */
-    private RouteResponseDto.RouteOption calculateShortestRoute(
-            RouteRequestDto routeRequest, TruckProfile truckProfile, 
-            List<RoadRestriction> restrictions) {
-        
-        RouteResponseDto.RouteOption option = new RouteResponseDto.RouteOption();
-        option.setName("Shortest Route");
-        option.setDescription("Optimized for minimum distance");
-        option.setOptimizationType(Route.OptimizationType.SHORTEST);
-        
-        double distance = calculateHaversineDistance(
-                routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
-                routeRequest.getEndLatitude(), routeRequest.getEndLongitude()
-        );
-        
-        distance *= 1.15; // Shorter multiplier for shortest route
-        
-        int avgSpeed = calculateAverageSpeed(truckProfile, restrictions) - 5; // Slower on shorter routes
-        int duration = (int) ((distance / avgSpeed) * 60);
-        
-        BigDecimal fuelCost = calculateFuelCost(distance, truckProfile);
-        BigDecimal tollCost = calculateTollCost(distance);
-        
-        option.setTotalDistance(BigDecimal.valueOf(distance));
-        option.setEstimatedDuration(duration);
-        option.setEstimatedFuelCost(fuelCost);
-        option.setEstimatedTollCost(tollCost);
-        option.setRestrictionsCount(restrictions.size());
-        option.setBypassesUsed(0);
-        option.setTrafficLevel("LOW");
-        option.setRouteGeometry(generateSampleRouteGeometry(routeRequest));
-        
-        return option;
+    private long durationDeciseconds(RoutePath path, int maxSpeed) {
+        RoadGraph graph = routingEngine.getGraph();
+        long duration = 0;
+        for (int edge : path.getEdges()) {
+            duration += (long) graph.length(edge) * 36 / Math.min(graph.speed(edge), maxSpeed);
+        }
+        return duration;
     }
     
     /**
-     * Calculate fuel-efficient route
+     * Calculate driving times and distances from every origin to every destination for the truck.
+     * Like route options, each entry includes the straight legs to and from the road network.
      */
-    private RouteResponseDto.RouteOption calculateFuelEfficientRoute(
-            RouteRequestDto routeRequest, TruckProfile truckProfile, 
-            List<RoadRestriction> restrictions) {
-        
-        RouteResponseDto.RouteOption option = new RouteResponseDto.RouteOption();
-        option.setName("Fuel Efficient Route");
-        option.setDescription("Optimized for minimum fuel consumption");
-        option.setOptimizationType(Route.OptimizationType.FUEL_EFFICIENT);
-        
-        double distance = calculateHaversineDistance(
-                routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
-                routeRequest.getEndLatitude(), routeRequest.getEndLongitude()
-        );
-        
-        distance *= 1.4; // Longer route but more efficient
-        
-        int avgSpeed = calculateAverageSpeed(truckProfile, restrictions) + 5; // Higher speed on highways
-        int duration = (int) ((distance / avgSpeed) * 60);
-        
-        BigDecimal fuelCost = calculateFuelCost(distance, truckProfile).multiply(BigDecimal.valueOf(0.85)); // 15% savings
-        BigDecimal tollCost = calculateTollCost(distance);
-        
-        option.setTotalDistance(BigDecimal.valueOf(distance));
-        option.setEstimatedDuration(duration);
-        option.setEstimatedFuelCost(fuelCost);
-        option.setEstimatedTollCost(tollCost);
-        option.setRestrictionsCount(restrictions.size());
-        option.setBypassesUsed(2);
-        option.setTrafficLevel("LOW");
-        option.setRouteGeometry(generateSampleRouteGeometry(routeRequest));
+    public MatrixResponseDto calculateMatrix(MatrixRequestDto matrixRequest) {
+        validateMatrixRequest(matrixRequest);
+        
+        TruckProfile truckProfile = loadTruckProfile(matrixRequest.getTruckProfileId());
+        
+        List<MatrixRequestDto.Location> origins = matrixRequest.getOrigins();
+        List<MatrixRequestDto.Location> destinations = matrixRequest.getDestinations();
+        int[] sources = new int[origins.size()];
+        int[] targets = new int[destinations.size()];
+        int avgSpeed = calculateAverageSpeed(truckProfile, List.of());
+        Route.OptimizationType optimizationType = matrixRequest.getOptimizationType();
+        EdgeWeighting weighting = new EdgeWeighting(metricFor(optimizationType), VehicleSpec.of(truckProfile, avgSpeed),
+                matrixRequest.isAvoidTolls() || optimizationType == Route.OptimizationType.AVOID_TOLLS,
+                matrixRequest.isAvoidHighways(), vehicleClassService.classify(truckProfile));
+        double[] originAccess = snapLocations(origins, weighting, sources);
+        double[] destinationAccess = snapLocations(destinations, weighting, targets);
+        
+        DistanceMatrix matrix = routingEngine.matrix(sources, targets, weighting);
+        
+        int[] durations = new int[sources.length * targets.length];
+        int[] distances = new int[sources.length * targets.length];
+        int unreachable = 0;
+        double accessMetersPerSecond = avgSpeed / 3.6;
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                int index = i * targets.length + j;
+                if (matrix.distance(i, j) == DistanceMatrix.UNREACHABLE) {
+                    durations[index] = DistanceMatrix.UNREACHABLE;
+                    distances[index] = DistanceMatrix.UNREACHABLE;
+                    unreachable++;
+                    continue;
+                }
+                double access = originAccess[i] + destinationAccess[j];
+                durations[index] = (int) Math.round(matrix.duration(i, j) / 10.0 + access / accessMetersPerSecond);
+                distances[index] = (int) Math.round(matrix.distance(i, j) + access);
+            }
+        }
         
-        return option;
+        MatrixResponseDto response = new MatrixResponseDto();
+        response.setOriginCount(sources.length);
+        response.setDestinationCount(targets.length);
+        response.setDurations(durations);
+        response.setDistances(distances);
+        response.setUnreachableCount(unreachable);
+        response.setTruckProfileUsed(matrixRequest.getTruckProfileId());
+        response.setCalculatedAt(LocalDateTime.now());
+        return response;
     }
     
     /**
-     * Calculate toll-free route
+     * Snap each location onto the closest road the truck may use
+     *
+     * @return the distance in metres from each location to its node, along the road from the snapped point
      */
-    private RouteResponseDto.RouteOption calculateTollFreeRoute(
-            RouteRequestDto routeRequest, TruckProfile truckProfile, 
-            List<RoadRestriction> restrictions) {
-        
-        RouteResponseDto.RouteOption option = new RouteResponseDto.RouteOption();
-        option.setName("Toll-Free Route");
-        option.setDescription("Avoids toll roads and highways");
-        option.setOptimizationType(Route.OptimizationType.AVOID_TOLLS);
-        
-        double distance = calculateHaversineDistance(
-                routeRequest.getStartLatitude(), routeRequest.getStartLongitude(),
-                routeRequest.getEndLatitude(), routeRequest.getEndLongitude()
-        );
-        
-        distance *= 1.6; // Much longer route avoiding tolls
+    private double[] snapLocations(List<MatrixRequestDto.Location> locations, EdgeWeighting weighting, int[] nodes) {
+        EdgeSnap snap = new EdgeSnap();
+        double[] access = new double[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            snapToRoad(locations.get(i).getLatitude(), locations.get(i).getLongitude(), weighting, snap);
+            nodes[i] = snap.getNode();
+            access[i] = snap.getAccessMeters();
+        }
+        return access;
+    }
+    
+    /**
+     * Snap a coordinate onto the closest road the weighting allows, never further than the snap distance
+     */
+    private void snapToRoad(BigDecimal latitude, BigDecimal longitude, EdgeWeighting weighting, EdgeSnap snap) {
+        if (routingEngine.getGraph().getEdgeCount() == 0) {
+            throw new RuntimeException("No road network loaded for route calculation");
+        }
+        if (!edgeIndex.snap(GeoMath.toMicroDegrees(latitude.doubleValue()), GeoMath.toMicroDegrees(longitude.doubleValue()),
+                maxSnapDistance, weighting, snap)) {
+            throw new RuntimeException("No truck-accessible road within " + Math.round(maxSnapDistance) + " m of "
+                    + latitude + "," + longitude);
+        }
+    }
+    
+    /**
+     * Calculate the area the truck reaches from a point within the given driving time
+     *
+     * @param maxDuration driving time in minutes, including the straight leg to the road network
+     */
+    public IsochroneResponseDto calculateIsochrone(BigDecimal latitude, BigDecimal longitude, Long truckProfileId,
+                                                   int maxDuration, boolean avoidTolls, boolean avoidHighways) {
+        if (maxDuration <= 0 || maxDuration > maxIsochroneDuration) {
+            throw new RuntimeException("Maximum duration must be between 1 and " + maxIsochroneDuration + " minutes");
+        }
         
-        int avgSpeed = calculateAverageSpeed(truckProfile, restrictions) - 10; // Slower on local roads
-        int duration = (int) ((distance / avgSpeed) * 60);
+        TruckProfile truckProfile = loadTruckProfile(truckProfileId);
+        
+        RoadGraph graph = routingEngine.getGraph();
+        int avgSpeed = calculateAverageSpeed(truckProfile, List.of());
+        EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, VehicleSpec.of(truckProfile, avgSpeed),
+                avoidTolls, avoidHighways, vehicleClassService.classify(truckProfile));
+        int[] source = new int[1];
+        double access = snapLocations(List.of(new MatrixRequestDto.Location(latitude, longitude)), weighting, source)[0];
+        int budget = (int) (maxDuration * 600L - Math.round(access / (avgSpeed / 3.6) * 10));
+        
+        IsochroneResponseDto response = new IsochroneResponseDto();
+        response.setLatitude(latitude);
+        response.setLongitude(longitude);
+        response.setMaxDuration(maxDuration);
+        response.setTruckProfileUsed(truckProfileId);
+        response.setCalculatedAt(LocalDateTime.now());
+        if (budget < 0) {
+            // Too far from any road to get onto it in time
+            response.setGeometry("POLYGON EMPTY");
+            return response;
+        }
+        routingEngine.travelTimes(source[0], budget, weighting, travelTimes -> {
+            IntArrayList ring = Isochrone.outline(graph, weighting, source[0], travelTimes, budget);
+            response.setGeometry(buildPolygonGeometry(ring));
+            response.setReachableNodes((int) Arrays.stream(travelTimes).filter(time -> time != DistanceMatrix.UNREACHABLE).count());
+            return response;
+        });
+        return response;
+    }
+    
+    /**
+     * Calculate the trip duration for every departure slot of a window, waiting at time-restricted
+     * roads included, from one profile search over all departures
+     */
+    public DepartureProfileResponseDto calculateDepartureProfile(DepartureProfileRequestDto request) {
+        TruckProfile truckProfile = loadTruckProfile(request.getTruckProfileId());
+        
+        LocalDate date = request.getDepartureDate() != null ? request.getDepartureDate() : LocalDate.now();
+        LocalDateTime earliest = date.atTime(request.getEarliestDeparture());
+        LocalDateTime latest = date.atTime(request.getLatestDeparture());
+        if (latest.isBefore(earliest)) {
+            latest = latest.plusDays(1);
+        }
+        int count = (int) (Duration.between(earliest, latest).toMinutes() / departureStepMinutes) + 1;
+        if (count > maxDepartures) {
+            throw new RuntimeException("Departure window must not exceed "
+                    + (maxDepartures - 1) * departureStepMinutes + " minutes");
+        }
         
-        BigDecimal fuelCost = calculateFuelCost(distance, truckProfile);
-        BigDecimal tollCost = BigDecimal.ZERO; // No tolls
+        int avgSpeed = calculateAverageSpeed(truckProfile, List.of());
+        EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, VehicleSpec.of(truckProfile, avgSpeed),
+                request.isAvoidTolls(), request.isAvoidHighways(), vehicleClassService.classify(truckProfile));
+        int[] nodes = new int[2];
+        double[] access = snapLocations(List.of(
+                new MatrixRequestDto.Location(request.getStartLatitude(), request.getStartLongitude()),
+                new MatrixRequestDto.Location(request.getEndLatitude(), request.getEndLongitude())), weighting, nodes);
+        RoutePath freeFlow = routingEngine.route(nodes[0], nodes[1], weighting);
+        if (freeFlow == null) {
+            throw new RuntimeException("No truck-accessible route found between the given points");
+        }
         
-        option.setTotalDistance(BigDecimal.valueOf(distance));
-        option.setEstimatedDuration(duration);
-        option.setEstimatedFuelCost(fuelCost);
-        option.setEstimatedTollCost(tollCost);
-        option.setRestrictionsCount(restrictions.size() + 2); // More restrictions on local roads
-        option.setBypassesUsed(3);
-        option.setTrafficLevel("HIGH");
-        option.setRouteGeometry(generateSampleRouteGeometry(routeRequest));
+        // The truck reaches the road network after the straight leg from the start
+        double accessMetersPerSecond = avgSpeed / 3.6;
+        long accessSeconds = Math.round(access[0] / accessMetersPerSecond);
+        long egressSeconds = Math.round(access[1] / accessMetersPerSecond);
+        int firstDeparture = (int) ((WeeklySchedule.secondOfWeek(earliest.getDayOfWeek().ordinal(),
+                earliest.toLocalTime().toSecondOfDay()) + accessSeconds) % WeeklySchedule.SECONDS_PER_WEEK);
+        int[] times = routingEngine.departureProfile(nodes[0], nodes[1], weighting, vehicleClassService.closures(),
+                firstDeparture, departureStepMinutes * 60, count);
+        
+        int freeFlowMinutes = (int) Math.round((freeFlow.getDurationDeciseconds() / 10.0 + accessSeconds + egressSeconds) / 60);
+        List<DepartureProfileResponseDto.Departure> departures = new ArrayList<>(count);
+        DepartureProfileResponseDto response = new DepartureProfileResponseDto();
+        for (int k = 0; k < count; k++) {
+            DepartureProfileResponseDto.Departure departure = new DepartureProfileResponseDto.Departure();
+            departure.setDepartureTime(earliest.plusMinutes((long) k * departureStepMinutes));
+            if (times[k] != DistanceMatrix.UNREACHABLE) {
+                long seconds = times[k] / 10 + accessSeconds + egressSeconds;
+                int minutes = (int) Math.round(seconds / 60.0);
+                departure.setArrivalTime(departure.getDepartureTime().plusSeconds(seconds));
+                departure.setDuration(minutes);
+                departure.setDelay(Math.max(0, minutes - freeFlowMinutes));
+                if (response.getBestDuration() == null || minutes < response.getBestDuration()) {
+                    response.setBestDuration(minutes);
+                    response.setBestDeparture(departure.getDepartureTime());
+                }
+            }
+            departures.add(departure);
+        }
         
-        return option;
+        response.setFreeFlowDuration(freeFlowMinutes);
+        response.setSlotMinutes(departureStepMinutes);
+        response.setDepartures(departures);
+        response.setTruckProfileUsed(request.getTruckProfileId());
+        response.setCalculatedAt(LocalDateTime.now());
+        return response;
     }
     
     /**
      * Save a calculated route for the user
      */
+    @Transactional
     public Route saveRoute(RouteRequestDto routeRequest, RouteResponseDto.RouteOption selectedOption, User user) {
         TruckProfile truckProfile = truckProfileRepository.findById(routeRequest.getTruckProfileId())
                 .orElseThrow(() -> new RuntimeException("Truck profile not found"));
@@ -367,6 +836,23 @@ public class RouteCalculationService {
         route.setBypassesUsed(selectedOption.getBypassesUsed());
         route.setTrafficLevel(selectedOption.getTrafficLevel());
         
+        if (selectedOption.getStops() != null) {
+            List<RouteWaypoint> waypoints = new ArrayList<>();
+            for (RouteResponseDto.RouteStop stop : selectedOption.getStops()) {
+                RouteWaypoint waypoint = new RouteWaypoint(route, stop.getSequenceOrder(),
+                        stop.getLatitude(), stop.getLongitude(), stop.getWaypointType());
+                waypoint.setDistanceFromPrevious(stop.getDistanceFromPrevious());
+                waypoint.setDurationFromPrevious(stop.getDurationFromPrevious());
+                if (stop.getWaypointType() == RouteWaypoint.WaypointType.START) {
+                    waypoint.setAddress(routeRequest.getStartAddress());
+                } else if (stop.getWaypointType() == RouteWaypoint.WaypointType.END) {
+                    waypoint.setAddress(routeRequest.getEndAddress());
+                }
+                waypoints.add(waypoint);
+            }
+            route.setWaypoints(waypoints);
+        }
+        
         return routeRepository.save(route);
     }
     
@@ -450,26 +936,145 @@ public class RouteCalculationService {
     }
     
     /**
-     * Check if current time falls within restriction period
+     * Follow the truck along the route from its departure: the points it passes, with the seconds
+     * it takes to get to each, waiting for roads that are closed when it reaches them and for the
+     * delivery window of every stop
+     *
+     * @param maxSpeed speed cap of the truck in km/h
      */
-    private boolean isTimeInRestrictionPeriod(LocalTime currentTime, LocalTime startTime, LocalTime endTime) {
-        if (startTime.isBefore(endTime)) {
-            // Same day restriction
-            return !currentTime.isBefore(startTime) && !currentTime.isAfter(endTime);
-        } else {
-            // Overnight restriction
-            return !currentTime.isBefore(startTime) || !currentTime.isAfter(endTime);
+    private RouteTrace traceRoute(List<Stop> stops, List<RoutePath> legs, int maxSpeed, RouteFindings findings) {
+        RoadGraph graph = routingEngine.getGraph();
+        RouteTrace trace = new RouteTrace(legs.size());
+        double accessMetersPerSecond = maxSpeed / 3.6;
+        long time = 0;
+        trace.add(GeoMath.toMicroDegrees(stops.get(0).latitude.doubleValue()),
+                GeoMath.toMicroDegrees(stops.get(0).longitude.doubleValue()), time);
+        for (int k = 0; k < legs.size(); k++) {
+            RoutePath path = legs.get(k);
+            Stop stop = stops.get(k);
+            Stop next = stops.get(k + 1);
+            trace.add(stop.snapLatitude, stop.snapLongitude, time + Math.round(stop.snapDistance / accessMetersPerSecond));
+            time += Math.round(stop.accessMeters / accessMetersPerSecond);
+            trace.add(graph.latitude(path.getSource()), graph.longitude(path.getSource()), time);
+            long deciseconds = time * 10;
+            for (int edge : path.getEdges()) {
+                if (findings.closures.isScheduled(edge)) {
+                    long secondOfWeek = findings.departure + deciseconds / 10;
+                    int wait = Math.max(0, findings.closures.secondsUntilOpen(edge, secondOfWeek));
+                    findings.expireWithin(findings.closures.secondsUntilChange(edge, secondOfWeek));
+                    trace.closedSeconds[k] += wait;
+                    deciseconds += wait * 10L;
+                }
+                for (int i = 0; i < graph.pillarCount(edge); i++) {
+                    trace.add(graph.pillarLatitude(edge, i), graph.pillarLongitude(edge, i), deciseconds / 10);
+                }
+                deciseconds += (long) graph.length(edge) * 36 / Math.min(graph.speed(edge), maxSpeed);
+                trace.add(graph.latitude(graph.target(edge)), graph.longitude(graph.target(edge)), deciseconds / 10);
+            }
+            trace.add(next.snapLatitude, next.snapLongitude,
+                    deciseconds / 10 + Math.round((next.accessMeters - next.snapDistance) / accessMetersPerSecond));
+            time = deciseconds / 10 + Math.round(next.accessMeters / accessMetersPerSecond);
+            trace.add(GeoMath.toMicroDegrees(next.latitude.doubleValue()),
+                    GeoMath.toMicroDegrees(next.longitude.doubleValue()), time);
+            time += TourOptimizer.waitSeconds(findings.departure + time, next.windowOpens, next.windowCloses);
         }
+        return trace;
+    }
+    
+    /**
+     * Build the WKT LINESTRING of route points
+     */
+    private String buildRouteGeometry(IntArrayList points) {
+        return appendCoordinates(new StringBuilder("LINESTRING("), points).append(')').toString();
     }
     
     /**
-     * Generate sample route geometry (in real implementation, get from routing API)
+     * Build the WKT POLYGON of a closed ring
      */
-    private String generateSampleRouteGeometry(RouteRequestDto routeRequest) {
-        // This is a simplified example - in real implementation, this would come from the routing API
-        return String.format("LINESTRING(%s %s, %s %s)", 
-                routeRequest.getStartLongitude(), routeRequest.getStartLatitude(),
-                routeRequest.getEndLongitude(), routeRequest.getEndLatitude());
+    private String buildPolygonGeometry(IntArrayList ring) {
+        return appendCoordinates(new StringBuilder("POLYGON(("), ring).append("))").toString();
+    }
+    
+    private StringBuilder appendCoordinates(StringBuilder wkt, IntArrayList points) {
+        for (int i = 0; i < points.size(); i += 2) {
+            if (i > 0) {
+                wkt.append(", ");
+            }
+            wkt.append(GeoMath.toDegrees(points.get(i + 1))).append(' ').append(GeoMath.toDegrees(points.get(i)));
+        }
+        return wkt;
+    }
+    
+    /**
+     * Validate matrix request parameters
+     */
+    private void validateMatrixRequest(MatrixRequestDto matrixRequest) {
+        if (matrixRequest.getOrigins() == null || matrixRequest.getOrigins().isEmpty()
+                || matrixRequest.getDestinations() == null || matrixRequest.getDestinations().isEmpty()) {
+            throw new RuntimeException("Origins and destinations are required");
+        }
+        
+        if (matrixRequest.getOrigins().size() > maxMatrixLocations
+                || matrixRequest.getDestinations().size() > maxMatrixLocations) {
+            throw new RuntimeException("At most " + maxMatrixLocations + " origins and destinations are allowed");
+        }
+        
+        if (matrixRequest.getTruckProfileId() == null) {
+            throw new RuntimeException("Truck profile ID is required");
+        }
+        
+        for (List<MatrixRequestDto.Location> locations : List.of(matrixRequest.getOrigins(), matrixRequest.getDestinations())) {
+            for (MatrixRequestDto.Location location : locations) {
+                if (location == null || location.getLatitude() == null || location.getLongitude() == null) {
+                    throw new RuntimeException("Every origin and destination needs a latitude and longitude");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Parse the intermediate waypoints of a route request, each "latitude,longitude" optionally
+     * followed by ",HH:mm-HH:mm", the daily window the stop can be served in
+     */
+    private List<Stop> parseWaypoints(RouteRequestDto routeRequest) {
+        String[] waypoints = routeRequest.getIntermediateWaypoints();
+        if (waypoints == null || waypoints.length == 0) {
+            return List.of();
+        }
+        
+        if (waypoints.length > maxWaypoints) {
+            throw new RuntimeException("At most " + maxWaypoints + " intermediate waypoints are allowed");
+        }
+        
+        List<Stop> stops = new ArrayList<>(waypoints.length);
+        for (int i = 0; i < waypoints.length; i++) {
+            String waypoint = waypoints[i];
+            try {
+                String[] parts = waypoint.split(",");
+                if (parts.length != 2 && parts.length != 3) {
+                    throw new IllegalArgumentException(waypoint);
+                }
+                BigDecimal latitude = new BigDecimal(parts[0].trim());
+                BigDecimal longitude = new BigDecimal(parts[1].trim());
+                if (latitude.abs().compareTo(BigDecimal.valueOf(90)) > 0
+                        || longitude.abs().compareTo(BigDecimal.valueOf(180)) > 0) {
+                    throw new IllegalArgumentException(waypoint);
+                }
+                Stop stop = new Stop(latitude, longitude, RouteWaypoint.WaypointType.INTERMEDIATE, i);
+                if (parts.length == 3) {
+                    String[] window = parts[2].split("-");
+                    if (window.length != 2) {
+                        throw new IllegalArgumentException(waypoint);
+                    }
+                    stop.windowOpens = LocalTime.parse(window[0].trim()).toSecondOfDay();
+                    stop.windowCloses = LocalTime.parse(window[1].trim()).toSecondOfDay();
+                }
+                stops.add(stop);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid waypoint '" + waypoint + "', expected latitude,longitude[,HH:mm-HH:mm]");
+            }
+        }
+        return stops;
     }
     
     /**
@@ -495,4 +1100,97 @@ public class RouteCalculationService {
             throw new RuntimeException("Route distance exceeds maximum limit of " + maxRouteDistance + " km");
         }
     }
+    
+    /**
+     * A place a route passes, snapped onto the closest road the truck may use
+     */
+    private static final class Stop {
+        final BigDecimal latitude;
+        final BigDecimal longitude;
+        final RouteWaypoint.WaypointType type;
+        // Index into the request's intermediate waypoints, -1 for start and end
+        final int waypointIndex;
+        // Daily window in seconds of the day, -1 if the stop is always open
+        int windowOpens = -1;
+        int windowCloses = -1;
+        int node;
+        // Straight distance to the snapped point on the road, and on along the road to the node
+        double snapDistance;
+        double accessMeters;
+        int snapLatitude;
+        int snapLongitude;
+        
+        Stop(BigDecimal latitude, BigDecimal longitude, RouteWaypoint.WaypointType type, int waypointIndex) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.type = type;
+            this.waypointIndex = waypointIndex;
+        }
+    }
+    
+    /**
+     * What the route options of one calculation found: the restrictions along them, counted once
+     * across options, the corridors they were looked up in, and for how long the times the truck
+     * reaches time-restricted roads leave the result unchanged
+     */
+    private static final class RouteFindings {
+        final ProfileConstraints truck;
+        final EdgeClosures closures;
+        // Second of the week the truck leaves the start
+        final int departure;
+        final Set<Long> restrictionIds = new HashSet<>();
+        final List<RouteCorridor> corridors = new ArrayList<>();
+        int validFor = -1;
+        
+        RouteFindings(ProfileConstraints truck, EdgeClosures closures, int departure) {
+            this.truck = truck;
+            this.closures = closures;
+            this.departure = departure;
+        }
+        
+        /**
+         * Limit the validity to the given seconds, -1 meaning no limit
+         */
+        void expireWithin(int seconds) {
+            if (seconds >= 0) {
+                validFor = validFor < 0 ? seconds : Math.min(validFor, seconds);
+            }
+        }
+    }
+    
+    /**
+     * Points of a route in micro-degrees, interleaved latitude and longitude, with the seconds after
+     * departure at which the truck passes each and the seconds it waits at closed roads per leg
+     */
+    private static final class RouteTrace {
+        final IntArrayList points = new IntArrayList();
+        final IntArrayList seconds = new IntArrayList();
+        final long[] closedSeconds;
+        
+        RouteTrace(int legCount) {
+            closedSeconds = new long[legCount];
+        }
+        
+        void add(int latitude, int longitude, long second) {
+            points.add(latitude);
+            points.add(longitude);
+            seconds.add((int) second);
+        }
+        
+        /**
+         * Seconds after departure at which the truck passes closest to the point
+         */
+        int secondsAt(int latitude, int longitude) {
+            int closest = 0;
+            double closestMeters = Double.MAX_VALUE;
+            for (int i = 0; i < seconds.size(); i++) {
+                double meters = GeoMath.approximateMeters(latitude, longitude, points.get(2 * i), points.get(2 * i + 1));
+                if (meters < closestMeters) {
+                    closestMeters = meters;
+                    closest = i;
+                }
+            }
+            return seconds.get(closest);
+        }
+    }
 }
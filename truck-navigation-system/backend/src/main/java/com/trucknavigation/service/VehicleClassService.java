@@ -0,0 +1,388 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.model.TruckProfile;
+import com.trucknavigation.routing.CustomizableRoutingEngine;
+import com.trucknavigation.routing.EdgeClosures;
+import com.trucknavigation.routing.EdgeIndex;
+import com.trucknavigation.routing.EdgeSnap;
+import com.trucknavigation.routing.EdgeWeighting;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.IntArrayList;
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.routing.VehicleClass;
+import com.trucknavigation.routing.VehicleSpec;
+import com.trucknavigation.routing.WeeklySchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Groups truck profiles into vehicle classes that are closed out of exactly the same roads.
+ * <p>
+ * Permanent road restrictions are snapped onto graph edges once. A profile's class is the position
+ * of each of its dimensions among the distinct restriction and edge limits, plus its permit flags,
+ * so e.g. every truck between the 4.2 m and 4.5 m height limits lands in the same class and shares
+ * one customization of the routing metric. Time-based restrictions do not belong to any class:
+ * they close their edges to every truck on a weekly schedule, see {@link #closures()}.
+ */
+@Service
+public class VehicleClassService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleClassService.class);
+
+    // Restrictions snap onto any road a truck could be on at all
+    private static final EdgeWeighting SNAP_WEIGHTING = EdgeWeighting.unrestricted(EdgeWeighting.Metric.SHORTEST);
+
+    @Autowired
+    private RestrictionIndexService restrictionIndexService;
+
+    @Autowired
+    private RoadGraph roadGraph;
+
+    @Autowired
+    private EdgeIndex edgeIndex;
+
+    @Autowired
+    private CustomizableRoutingEngine customizableRoutingEngine;
+
+    @Value("${truck-navigation.routing.restrictions.snap-radius:250}")
+    private double snapRadius;
+
+    private volatile Snapshot snapshot;
+    private int version;
+
+    /**
+     * Vehicle class of the truck profile, built on first use
+     */
+    public VehicleClass classify(TruckProfile truckProfile) {
+        Snapshot current = snapshot();
+        return current.classes.computeIfAbsent(ranks(current, truckProfile), ranks -> {
+            String key = "r" + current.version + ":" + ranks;
+            long[] blocked = VehicleClass.newEdgeSet(roadGraph.getEdgeCount());
+            for (SnappedRestriction snapped : current.restrictions) {
+                if (RestrictionRules.appliesPermanently(snapped.restriction, truckProfile)) {
+                    for (int edge : snapped.edges) {
+                        VehicleClass.addEdge(blocked, edge);
+                    }
+                }
+            }
+            VehicleClass vehicleClass = new VehicleClass(key, blocked);
+            logger.info("Created vehicle class {} with {} restricted edges", key, vehicleClass.getBlockedCount());
+            return new Classified(vehicleClass, dimensionsOf(truckProfile));
+        }).vehicleClass;
+    }
+
+    /**
+     * Edges closed to every truck while the schedule of a time-based restriction on them is in force
+     */
+    public EdgeClosures closures() {
+        return snapshot().closures;
+    }
+
+    /**
+     * Reload restrictions and drop every class and customization derived from the old data
+     */
+    public synchronized void refresh() {
+        snapshot = null;
+        customizableRoutingEngine.clearCustomizations();
+    }
+
+    /**
+     * Follow a batch of restriction writes. Only the changed restrictions are snapped again, and a
+     * class is only replaced if they close or open one of its edges; its customizations are then
+     * redone just for the cells holding those edges.
+     *
+     * @param saved   restrictions as saved, including deactivated ones
+     * @param removed ids of deleted restrictions
+     */
+    public synchronized void refresh(Collection<RoadRestriction> saved, Collection<Long> removed) {
+        Snapshot previous = snapshot;
+        if (previous == null) {
+            // Nothing derived yet; the first classification loads the changed data
+            return;
+        }
+        Set<Long> changedIds = new HashSet<>(removed);
+        saved.forEach(restriction -> changedIds.add(restriction.getId()));
+        long[] touched = VehicleClass.newEdgeSet(roadGraph.getEdgeCount());
+        List<SnappedRestriction> restrictions = new ArrayList<>(previous.restrictions.size() + saved.size());
+        for (SnappedRestriction snapped : previous.restrictions) {
+            if (changedIds.contains(snapped.restriction.getId())) {
+                addEdges(touched, snapped.edges);
+            } else {
+                restrictions.add(snapped);
+            }
+        }
+        EdgeSnap snap = new EdgeSnap();
+        for (RoadRestriction restriction : saved) {
+            if (!restriction.isActive() || restriction.getLatitude() == null || restriction.getLongitude() == null) {
+                continue;
+            }
+            int[] edges = snapToEdges(GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue()),
+                    GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue()), snap);
+            if (edges.length > 0) {
+                restrictions.add(new SnappedRestriction(restriction, edges));
+                addEdges(touched, edges);
+            }
+        }
+        Snapshot next = newSnapshot(restrictions, previous.edgeHeights, previous.edgeWidths, previous.edgeWeights);
+
+        // Restrictions on the touched edges, the only edges on which a class can have changed
+        Map<Integer, List<SnappedRestriction>> onTouched = new HashMap<>();
+        for (SnappedRestriction snapped : restrictions) {
+            for (int edge : snapped.edges) {
+                if (isSet(touched, edge)) {
+                    onTouched.computeIfAbsent(edge, e -> new ArrayList<>()).add(snapped);
+                }
+            }
+        }
+        int kept = 0;
+        int replaced = 0;
+        for (Classified classified : previous.classes.values()) {
+            String ranks = ranks(next, classified.dimensions);
+            if (next.classes.containsKey(ranks)) {
+                continue;
+            }
+            IntArrayList flipped = new IntArrayList();
+            for (int edge = nextSet(touched, 0); edge >= 0; edge = nextSet(touched, edge + 1)) {
+                boolean blocked = onTouched.getOrDefault(edge, List.of()).stream()
+                        .anyMatch(snapped -> RestrictionRules.appliesPermanently(snapped.restriction, classified.dimensions));
+                if (blocked != classified.vehicleClass.isBlocked(edge)) {
+                    flipped.add(edge);
+                }
+            }
+            if (flipped.size() == 0) {
+                next.classes.put(ranks, classified);
+                kept++;
+                continue;
+            }
+            VehicleClass vehicleClass = classified.vehicleClass.toggled("r" + next.version + ":" + ranks, flipped.toArray());
+            customizableRoutingEngine.recustomize(classified.vehicleClass, vehicleClass, flipped.toArray());
+            next.classes.put(ranks, new Classified(vehicleClass, classified.dimensions));
+            replaced++;
+        }
+        snapshot = next;
+        logger.info("Applied {} road restriction changes to the vehicle classes ({} kept, {} replaced)",
+                changedIds.size(), kept, replaced);
+    }
+
+    public int getClassCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.classes.size();
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = loadSnapshot();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot loadSnapshot() {
+        List<SnappedRestriction> snapped = new ArrayList<>();
+        EdgeSnap snap = new EdgeSnap();
+        int unmatched = 0;
+        for (RoadRestriction restriction : restrictionIndexService.findAll()) {
+            if (restriction.getLatitude() == null || restriction.getLongitude() == null) {
+                continue;
+            }
+            int[] edges = snapToEdges(GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue()),
+                    GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue()), snap);
+            if (edges.length == 0) {
+                unmatched++;
+                continue;
+            }
+            snapped.add(new SnappedRestriction(restriction, edges));
+        }
+
+        Snapshot loaded = newSnapshot(snapped, distinctEdgeLimits(roadGraph::maxHeight),
+                distinctEdgeLimits(roadGraph::maxWidth), distinctEdgeLimits(roadGraph::maxWeight));
+        logger.info("Mapped {} road restrictions onto the road graph ({} outside the {} m snap radius, {} edges closed at times)",
+                snapped.size(), unmatched, snapRadius, loaded.closures.size());
+        return loaded;
+    }
+
+    private Snapshot newSnapshot(List<SnappedRestriction> snapped, int[] edgeHeights, int[] edgeWidths, int[] edgeWeights) {
+        Map<Integer, WeeklySchedule> schedules = new HashMap<>();
+        for (SnappedRestriction restriction : snapped) {
+            WeeklySchedule schedule = RestrictionRules.schedule(restriction.restriction);
+            if (schedule != null) {
+                for (int edge : restriction.edges) {
+                    schedules.merge(edge, schedule, WeeklySchedule::or);
+                }
+            }
+        }
+        EdgeClosures closures = new EdgeClosures(roadGraph.getEdgeCount(), schedules);
+
+        return new Snapshot(++version, snapped,
+                thresholds(snapped, RoadRestriction::getMaxHeight), thresholds(snapped, RoadRestriction::getMaxWidth),
+                thresholds(snapped, RoadRestriction::getMaxLength), thresholds(snapped, RoadRestriction::getMaxWeight),
+                thresholds(snapped, RoadRestriction::getMaxAxleLoad), edgeHeights, edgeWidths, edgeWeights, closures,
+                new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Position of each of the profile's dimensions among the distinct restriction and edge limits,
+     * plus its permit flags: profiles with equal ranks are closed out of exactly the same roads
+     */
+    private static String ranks(Snapshot current, TruckProfile truckProfile) {
+        VehicleSpec spec = VehicleSpec.of(truckProfile, 0);
+        return rank(current.heights, truckProfile.getHeight())
+                + "/" + rank(current.widths, truckProfile.getWidth())
+                + "/" + rank(current.lengths, truckProfile.getLength())
+                + "/" + rank(current.weights, truckProfile.getMaxWeight())
+                + "/" + rank(current.axleLoads, truckProfile.getMaxAxleLoad())
+                + (truckProfile.isHasHazmatPermit() ? "/hazmat" : "")
+                + (truckProfile.isHasOversizePermit() ? "/oversize" : "")
+                + ":" + rank(current.edgeHeights, spec.getHeightCm())
+                + "/" + rank(current.edgeWidths, spec.getWidthCm())
+                + "/" + rank(current.edgeWeights, spec.getWeight100Kg());
+    }
+
+    /**
+     * Detached copy of what classifying the profile looks at, kept to classify its class again
+     * after a change without depending on later edits of the profile
+     */
+    private static TruckProfile dimensionsOf(TruckProfile truckProfile) {
+        TruckProfile dimensions = new TruckProfile();
+        dimensions.setHeight(truckProfile.getHeight());
+        dimensions.setWidth(truckProfile.getWidth());
+        dimensions.setLength(truckProfile.getLength());
+        dimensions.setMaxWeight(truckProfile.getMaxWeight());
+        dimensions.setMaxAxleLoad(truckProfile.getMaxAxleLoad());
+        dimensions.setHasHazmatPermit(truckProfile.isHasHazmatPermit());
+        dimensions.setHasOversizePermit(truckProfile.isHasOversizePermit());
+        return dimensions;
+    }
+
+    private static void addEdges(long[] edgeSet, int[] edges) {
+        for (int edge : edges) {
+            VehicleClass.addEdge(edgeSet, edge);
+        }
+    }
+
+    private static boolean isSet(long[] edgeSet, int edge) {
+        return (edgeSet[edge >>> 6] & 1L << edge) != 0;
+    }
+
+    private static int nextSet(long[] edgeSet, int from) {
+        int word = from >>> 6;
+        if (word >= edgeSet.length) {
+            return -1;
+        }
+        long bits = edgeSet[word] & -1L << from;
+        while (bits == 0) {
+            if (++word == edgeSet.length) {
+                return -1;
+            }
+            bits = edgeSet[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Edges of the road closest to the point along its geometry, in both directions, or none if it
+     * is too far away
+     */
+    private int[] snapToEdges(int latitude, int longitude, EdgeSnap snap) {
+        if (!edgeIndex.snap(latitude, longitude, snapRadius, SNAP_WEIGHTING, snap)) {
+            return new int[0];
+        }
+        int bestEdge = snap.getEdge();
+        int from = roadGraph.source(bestEdge), to = roadGraph.target(bestEdge);
+        IntArrayList edges = new IntArrayList();
+        for (int edge = roadGraph.edgeStart(from); edge < roadGraph.edgeEnd(from); edge++) {
+            if (roadGraph.target(edge) == to) {
+                edges.add(edge);
+            }
+        }
+        for (int edge = roadGraph.edgeStart(to); edge < roadGraph.edgeEnd(to); edge++) {
+            if (roadGraph.target(edge) == from) {
+                edges.add(edge);
+            }
+        }
+        return edges.toArray();
+    }
+
+    private int[] distinctEdgeLimits(EdgeLimit limit) {
+        TreeSet<Integer> values = new TreeSet<>();
+        for (int edge = 0; edge < roadGraph.getEdgeCount(); edge++) {
+            int value = limit.get(edge);
+            if (value > 0) {
+                values.add(value);
+            }
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static BigDecimal[] thresholds(Collection<SnappedRestriction> restrictions,
+                                           Function<RoadRestriction, BigDecimal> limit) {
+        TreeSet<BigDecimal> values = new TreeSet<>();
+        restrictions.stream()
+                .map(snapped -> limit.apply(snapped.restriction))
+                .filter(Objects::nonNull)
+                .forEach(values::add);
+        return values.toArray(new BigDecimal[0]);
+    }
+
+    /**
+     * Number of limits the value exceeds
+     */
+    private static int rank(BigDecimal[] limits, BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        int count = 0;
+        while (count < limits.length && value.compareTo(limits[count]) > 0) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int rank(int[] limits, int value) {
+        int index = Arrays.binarySearch(limits, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @FunctionalInterface
+    private interface EdgeLimit {
+        int get(int edge);
+    }
+
+    private record SnappedRestriction(RoadRestriction restriction, int[] edges) {}
+
+    /**
+     * A class with the dimensions of the profile it was first built for
+     */
+    private record Classified(VehicleClass vehicleClass, TruckProfile dimensions) {}
+
+    // Classes by the ranks of their profiles against this snapshot's limits
+    private record Snapshot(int version, List<SnappedRestriction> restrictions,
+                            BigDecimal[] heights, BigDecimal[] widths, BigDecimal[] lengths,
+                            BigDecimal[] weights, BigDecimal[] axleLoads,
+                            int[] edgeHeights, int[] edgeWidths, int[] edgeWeights, EdgeClosures closures,
+                            Map<String, Classified> classes) {}
+}
@@ -0,0 +1,264 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContractionHierarchyTest {
+
+    private static final VehicleSpec TRUCK = new VehicleSpec(380, 250, 250, false, 80);
+
+    @Test
+    void matchesDijkstraOnSampleNetwork() {
+        RoadGraph graph = SampleRoadNetwork.build();
+        for (EdgeWeighting.Metric metric : EdgeWeighting.Metric.values()) {
+            assertMatchesDijkstra(graph, metric, new EdgeWeighting(metric, TRUCK, false, false), 300, 1);
+        }
+    }
+
+    @Test
+    void matchesDijkstraOnRandomGraphsWithZeroWeightEdges() {
+        for (long seed = 1; seed <= 5; seed++) {
+            RoadGraph graph = randomGraph(new Random(seed), 400);
+            for (EdgeWeighting.Metric metric : EdgeWeighting.Metric.values()) {
+                assertMatchesDijkstra(graph, metric, new EdgeWeighting(metric, TRUCK, false, false), 400, seed);
+            }
+        }
+    }
+
+    @Test
+    void keepsPathsThroughNodesWhoseOnlyOutArcsWeighNothing() {
+        // 1 m at 100 km/h rounds to 0 deciseconds, so every arc leaving node 1 is free on the fastest metric
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 10);
+        int c = builder.addNode(0, 20);
+        int d = builder.addNode(10, 10);
+        builder.addEdge(a, b, 1000, 50, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(b, c, 1, 100, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(b, d, 1, 100, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(a, c, 5000, 50, RoadClass.PRIMARY, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+        EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, TRUCK, false, false);
+
+        ContractionHierarchyRoutingEngine engine = engine(graph, EdgeWeighting.Metric.FASTEST);
+        DijkstraRoutingEngine dijkstra = new DijkstraRoutingEngine(graph);
+        for (int source = 0; source < graph.getNodeCount(); source++) {
+            for (int target = 0; target < graph.getNodeCount(); target++) {
+                RoutePath expected = dijkstra.route(source, target, weighting);
+                RoutePath actual = engine.route(source, target, weighting);
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertNotNull(actual, source + "->" + target);
+                    assertEquals(expected.getWeight(), actual.getWeight(), source + "->" + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fallsBackWhenThePathUsesAnEdgeBlockedForTheTruck() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 10_000);
+        int c = builder.addNode(0, 20_000);
+        int d = builder.addNode(5_000, 10_000);
+        builder.addRoad(a, b, 1000, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        // Low bridge on the short way round
+        builder.addRoad(b, c, 1000, 60, RoadClass.PRIMARY, RoadGraph.FLAG_BRIDGE, 350, 0, 0);
+        builder.addRoad(b, d, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addRoad(d, c, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+
+        for (EdgeWeighting.Metric metric : EdgeWeighting.Metric.values()) {
+            ContractionHierarchyRoutingEngine engine = engine(graph, metric);
+            EdgeWeighting low = new EdgeWeighting(metric, new VehicleSpec(300, 250, 250, false, 80), false, false);
+            EdgeWeighting tall = new EdgeWeighting(metric, TRUCK, false, false);
+
+            RoutePath direct = engine.route(a, c, low);
+            assertEquals(2, direct.getEdges().length);
+            assertEquals(2000, direct.getDistanceMeters());
+
+            RoutePath detour = engine.route(a, c, tall);
+            assertNotNull(detour);
+            assertEquals(4000, detour.getDistanceMeters());
+            assertEquals(new DijkstraRoutingEngine(graph).route(a, c, tall).getWeight(), detour.getWeight());
+            assertValidPath(graph, tall, detour, a, c);
+        }
+    }
+
+    @Test
+    void alternativesStartWithTheCheapestPathAndMeetTheCriteria() {
+        AlternativeCriteria criteria = new AlternativeCriteria(3, 0.4, 0.8, 0.25);
+        int withAlternatives = 0;
+        for (long seed = 1; seed <= 3; seed++) {
+            RoadGraph graph = randomGraph(new Random(seed), 400);
+            for (EdgeWeighting.Metric metric : EdgeWeighting.Metric.values()) {
+                EdgeWeighting weighting = new EdgeWeighting(metric, TRUCK, false, false);
+                ContractionHierarchyRoutingEngine engine = engine(graph, metric);
+                DijkstraRoutingEngine dijkstra = new DijkstraRoutingEngine(graph);
+                Random random = new Random(seed * 31 + metric.ordinal());
+                for (int i = 0; i < 100; i++) {
+                    int source = random.nextInt(graph.getNodeCount());
+                    int target = random.nextInt(graph.getNodeCount());
+                    RoutePath expected = dijkstra.route(source, target, weighting);
+                    List<RoutePath> paths = engine.alternatives(source, target, weighting, criteria);
+                    String query = metric + " " + source + "->" + target;
+                    if (expected == null) {
+                        assertTrue(paths.isEmpty(), query);
+                        continue;
+                    }
+                    assertFalse(paths.isEmpty(), query);
+                    assertTrue(paths.size() <= criteria.getMaxCount() + 1, query);
+                    RoutePath best = paths.get(0);
+                    assertEquals(expected.getWeight(), best.getWeight(), query);
+                    assertValidPath(graph, weighting, best, source, target);
+                    for (int k = 1; k < paths.size(); k++) {
+                        assertAdmissibleAlternative(graph, weighting, criteria, paths, k, query);
+                    }
+                    if (paths.size() > 1) {
+                        withAlternatives++;
+                    }
+                }
+            }
+        }
+        assertTrue(withAlternatives > 0);
+    }
+
+    /**
+     * The alternative must be a simple path that shares little with every path before it and whose
+     * detour from the cheapest path is not much costlier than the part it replaces
+     */
+    private static void assertAdmissibleAlternative(RoadGraph graph, EdgeWeighting weighting,
+                                                    AlternativeCriteria criteria, List<RoutePath> paths, int k,
+                                                    String query) {
+        RoutePath best = paths.get(0);
+        RoutePath path = paths.get(k);
+        assertValidPath(graph, weighting, path, best.getSource(), best.getTarget());
+        Set<Integer> nodes = new HashSet<>();
+        nodes.add(path.getSource());
+        for (int edge : path.getEdges()) {
+            assertTrue(nodes.add(graph.target(edge)), query + " passes a node twice");
+        }
+        assertTrue(path.getWeight() <= best.getWeight() * (1 + criteria.getMaxStretch()), query);
+
+        for (int j = 0; j < k; j++) {
+            Set<Integer> earlier = new HashSet<>();
+            for (int edge : paths.get(j).getEdges()) {
+                earlier.add(edge);
+            }
+            long shared = 0;
+            for (int edge : path.getEdges()) {
+                if (earlier.contains(edge)) {
+                    shared += weighting.weight(graph, edge);
+                }
+            }
+            assertTrue(shared <= best.getWeight() * criteria.getMaxSharing(), query + " shares too much");
+        }
+
+        int[] edges = path.getEdges();
+        int[] bestEdges = best.getEdges();
+        int prefix = 0;
+        while (prefix < edges.length && prefix < bestEdges.length && edges[prefix] == bestEdges[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < edges.length - prefix && suffix < bestEdges.length - prefix
+                && edges[edges.length - 1 - suffix] == bestEdges[bestEdges.length - 1 - suffix]) {
+            suffix++;
+        }
+        long common = 0;
+        for (int i = 0; i < prefix; i++) {
+            common += weighting.weight(graph, edges[i]);
+        }
+        for (int i = edges.length - suffix; i < edges.length; i++) {
+            common += weighting.weight(graph, edges[i]);
+        }
+        long detour = path.getWeight() - common;
+        long replaced = best.getWeight() - common;
+        assertTrue(detour <= replaced * (1 + criteria.getMaxStretch()), query + " stretches too far");
+    }
+
+    private static void assertMatchesDijkstra(RoadGraph graph, EdgeWeighting.Metric metric, EdgeWeighting weighting,
+                                              int queries, long seed) {
+        ContractionHierarchyRoutingEngine engine = engine(graph, metric);
+        DijkstraRoutingEngine dijkstra = new DijkstraRoutingEngine(graph);
+        Random random = new Random(seed * 31 + metric.ordinal());
+        for (int i = 0; i < queries; i++) {
+            int source = random.nextInt(graph.getNodeCount());
+            int target = random.nextInt(graph.getNodeCount());
+            RoutePath expected = dijkstra.route(source, target, weighting);
+            RoutePath actual = engine.route(source, target, weighting);
+            String query = metric + " " + source + "->" + target;
+            if (expected == null) {
+                assertNull(actual, query);
+                continue;
+            }
+            assertNotNull(actual, query);
+            assertEquals(expected.getWeight(), actual.getWeight(), query);
+            assertValidPath(graph, weighting, actual, source, target);
+        }
+    }
+
+    /**
+     * The edges must chain from source to target and add up to the reported weight
+     */
+    private static void assertValidPath(RoadGraph graph, EdgeWeighting weighting, RoutePath path, int source, int target) {
+        int node = source;
+        long weight = 0;
+        for (int edge : path.getEdges()) {
+            assertEquals(node, graph.source(edge));
+            assertTrue(weighting.isAccessible(graph, edge));
+            weight += weighting.weight(graph, edge);
+            node = graph.target(edge);
+        }
+        assertEquals(target, node);
+        assertEquals(path.getWeight(), weight);
+    }
+
+    private static ContractionHierarchyRoutingEngine engine(RoadGraph graph, EdgeWeighting.Metric metric) {
+        Map<EdgeWeighting.Metric, ContractionHierarchy> hierarchies = new EnumMap<>(EdgeWeighting.Metric.class);
+        hierarchies.put(metric, new ContractionHierarchyBuilder(graph, metric).build());
+        return new ContractionHierarchyRoutingEngine(graph, hierarchies, new DijkstraRoutingEngine(graph));
+    }
+
+    /**
+     * Nodes on a grid-like plane joined to a few near neighbours, with one-way streets, very short
+     * fast links that weigh nothing on the fastest metric, and some roads closed to trucks
+     */
+    private static RoadGraph randomGraph(Random random, int nodeCount) {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int node = 0; node < nodeCount; node++) {
+            builder.addNode(random.nextInt(1_000_000), random.nextInt(1_000_000));
+        }
+        RoadClass[] roadClasses = RoadClass.values();
+        for (int node = 0; node < nodeCount; node++) {
+            for (int k = 0; k < 3; k++) {
+                int other = Math.floorMod(node + 1 + random.nextInt(20), nodeCount);
+                boolean tiny = random.nextInt(4) == 0;
+                int length = tiny ? 1 + random.nextInt(2) : 50 + random.nextInt(5000);
+                int speed = tiny ? 90 + random.nextInt(40) : 20 + random.nextInt(80);
+                RoadClass roadClass = roadClasses[random.nextInt(roadClasses.length)];
+                int flags = random.nextInt(30) == 0 ? RoadGraph.FLAG_NO_HGV : 0;
+                if (random.nextBoolean()) {
+                    builder.addRoad(node, other, length, speed, roadClass, flags, 0, 0, 0);
+                } else {
+                    builder.addEdge(node, other, length, speed, roadClass, flags, 0, 0, 0);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DepartureProfileSearchTest {
+
+    private static final VehicleSpec TRUCK = new VehicleSpec(380, 250, 250, false, 80);
+    private static final EdgeWeighting FASTEST = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, TRUCK, false, false);
+    // Monday 07:00
+    private static final int SEVEN_AM = WeeklySchedule.secondOfWeek(0, 7 * 3600);
+
+    @Test
+    void waitsOutAWindowOnlyForTheDeparturesThatRunIntoIt() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 10_000);
+        int c = builder.addNode(0, 20_000);
+        builder.addEdge(a, b, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(b, c, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+        // b->c closed 08:00 to 09:00; the truck needs 90 s to reach b and 90 s more to c
+        EdgeClosures closures = new EdgeClosures(graph.getEdgeCount(), Map.of(TimeDependentSearchTest.edge(graph, b, c),
+                WeeklySchedule.daily(WeeklySchedule.EVERY_DAY, 8 * 3600, 9 * 3600)));
+
+        // Departures every 30 minutes from 07:00 to 09:30
+        int[] profile = new DijkstraRoutingEngine(graph).departureProfile(a, c, FASTEST, closures, SEVEN_AM, 1800, 6);
+        assertArrayEquals(new int[]{1800, 1800, 36900, 18900, 1800, 1800}, profile);
+    }
+
+    @Test
+    void profileMatchesRouteDepartingForEveryDeparture() {
+        int varying = 0;
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            RoadGraph graph = TimeDependentSearchTest.randomGraph(random, 30);
+            EdgeClosures closures = TimeDependentSearchTest.randomClosures(random, graph);
+            DijkstraRoutingEngine engine = new DijkstraRoutingEngine(graph);
+            for (int i = 0; i < 10; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                int first = SEVEN_AM + random.nextInt(3 * 3600);
+                int step = 60 + random.nextInt(900);
+                int count = 1 + random.nextInt(24);
+                int[] profile = engine.departureProfile(source, target, FASTEST, closures, first, step, count);
+                assertEquals(count, profile.length);
+                for (int k = 0; k < count; k++) {
+                    int departure = first + k * step;
+                    String query = seed + ": " + source + "->" + target + " at " + departure;
+                    RoutePath path = engine.routeDeparting(source, target, FASTEST, closures, departure);
+                    long expected = path == null ? DistanceMatrix.UNREACHABLE
+                            : path.getDurationDeciseconds() + closures.waitDeciseconds(graph, FASTEST, path, departure);
+                    assertEquals(expected, profile[k], query);
+                }
+                if (profile[0] != profile[count - 1]) {
+                    varying++;
+                }
+            }
+        }
+        assertTrue(varying > 10);
+    }
+}
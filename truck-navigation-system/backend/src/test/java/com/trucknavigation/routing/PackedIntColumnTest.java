@@ -0,0 +1,178 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedIntColumnTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsNarrowColumnsWithExceptions() {
+        Random random = new Random(3);
+        // Sizes around the block size leave the last block partly filled or exactly full
+        for (int size : new int[] {0, 1, 63, 64, 65, 127, 128, 129, 10_000}) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = 1_000_000 + i * 3 + random.nextInt(16);
+                // A value in a hundred far outside its block takes the exception path
+                if (random.nextInt(100) == 0) {
+                    values[i] += 1 << 28;
+                }
+            }
+            assertRoundTrips(values);
+        }
+    }
+
+    @Test
+    void roundTripsExtremeValues() {
+        Random random = new Random(5);
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = switch (random.nextInt(6)) {
+                case 0 -> Integer.MIN_VALUE;
+                case 1 -> Integer.MAX_VALUE;
+                case 2 -> -1;
+                case 3 -> 0;
+                case 4 -> -random.nextInt(1000);
+                default -> random.nextInt();
+            };
+        }
+        assertRoundTrips(values);
+        assertRoundTrips(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE});
+        assertRoundTrips(new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE - 1, Integer.MAX_VALUE});
+        assertRoundTrips(new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MIN_VALUE});
+    }
+
+    @Test
+    void roundTripsConstantBlocksAndDeltasOfAllOnes() {
+        int[] values = new int[300];
+        for (int i = 0; i < values.length; i++) {
+            // Within each block the deltas are 0 and 2^k - 1, which is exactly the exception marker
+            // for a column packed k bits wide
+            values[i] = (i >>> 6) * 1000 + (i % 5 == 0 ? 7 : 0);
+        }
+        assertRoundTrips(values);
+        assertRoundTrips(new int[200]);
+    }
+
+    @Test
+    void opensAWrittenColumn() throws IOException {
+        Random random = new Random(9);
+        int[] values = new int[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(50) == 0 ? random.nextInt() : i + random.nextInt(100);
+        }
+        PackedIntColumn packed = PackedIntColumn.pack(IntColumn.of(IntBuffer.wrap(values)));
+        BinaryFile.Writer writer = new BinaryFile.Writer("test");
+        packed.addTo(writer, "values");
+        Path file = directory.resolve("values.bin");
+        writer.write(file);
+
+        BinaryFile read = BinaryFile.open(file, "test");
+        assertTrue(PackedIntColumn.isPacked(read, "values"));
+        assertValues(values, PackedIntColumn.open(read, "values", values.length));
+    }
+
+    @Test
+    void opensAWrittenCompressedGraph() throws IOException {
+        RoadGraph graph = randomGraph(new Random(13), 500).withSource("test");
+        RoadGraph compressed = graph.withCompression(true);
+        assertTrue(compressed.isCompressed());
+        assertSameGraph(graph, compressed);
+
+        Path file = directory.resolve("graph.bin");
+        compressed.writeTo(file);
+        RoadGraph opened = RoadGraph.open(file);
+        opened.verifyChecksums();
+        assertTrue(opened.isCompressed());
+        assertTrue(opened.isOffHeap());
+        assertEquals("test", opened.getSource());
+        assertEquals(compressed.getFingerprint(), opened.getFingerprint());
+        assertSameGraph(graph, opened);
+        assertSameGraph(graph, opened.withCompression(false));
+
+        RoadGraph sample = SampleRoadNetwork.build();
+        Path sampleFile = directory.resolve("sample.bin");
+        sample.withCompression(true).writeTo(sampleFile);
+        assertSameGraph(sample, RoadGraph.open(sampleFile));
+    }
+
+    private static void assertRoundTrips(int[] values) {
+        PackedIntColumn packed = PackedIntColumn.pack(IntColumn.of(IntBuffer.wrap(values)));
+        assertValues(values, packed);
+    }
+
+    private static void assertValues(int[] expected, IntColumn column) {
+        assertEquals(expected.length, column.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], column.get(i), "value " + i + " of " + expected.length);
+        }
+    }
+
+    private static void assertSameGraph(RoadGraph expected, RoadGraph actual) {
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        for (int node = 0; node < expected.getNodeCount(); node++) {
+            assertEquals(expected.latitude(node), actual.latitude(node));
+            assertEquals(expected.longitude(node), actual.longitude(node));
+            assertEquals(expected.edgeStart(node), actual.edgeStart(node));
+            assertEquals(expected.edgeEnd(node), actual.edgeEnd(node));
+            assertEquals(expected.inEdgeStart(node), actual.inEdgeStart(node));
+            assertEquals(expected.inEdgeEnd(node), actual.inEdgeEnd(node));
+        }
+        for (int edge = 0; edge < expected.getEdgeCount(); edge++) {
+            assertEquals(expected.inEdge(edge), actual.inEdge(edge));
+            assertEquals(expected.source(edge), actual.source(edge));
+            assertEquals(expected.target(edge), actual.target(edge));
+            assertEquals(expected.length(edge), actual.length(edge));
+            assertEquals(expected.speed(edge), actual.speed(edge));
+            assertEquals(expected.roadClass(edge), actual.roadClass(edge));
+            assertEquals(expected.flags(edge), actual.flags(edge));
+            assertEquals(expected.maxHeight(edge), actual.maxHeight(edge));
+            assertEquals(expected.maxWidth(edge), actual.maxWidth(edge));
+            assertEquals(expected.maxWeight(edge), actual.maxWeight(edge));
+            assertEquals(expected.pillarCount(edge), actual.pillarCount(edge));
+            for (int i = 0; i < expected.pillarCount(edge); i++) {
+                assertEquals(expected.pillarLatitude(edge, i), actual.pillarLatitude(edge, i));
+                assertEquals(expected.pillarLongitude(edge, i), actual.pillarLongitude(edge, i));
+            }
+        }
+    }
+
+    /**
+     * Roads with pillar points between random nearby nodes; a few carry limits, so those columns
+     * are stored sparse while the rest are bit-packed
+     */
+    private static RoadGraph randomGraph(Random random, int nodeCount) {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int i = 0; i < nodeCount; i++) {
+            builder.addNode(18_500_000 + random.nextInt(200_000), 73_800_000 + random.nextInt(200_000));
+        }
+        RoadClass[] classes = RoadClass.values();
+        for (int from = 0; from < nodeCount; from++) {
+            for (int road = 0; road < 2; road++) {
+                int to = (from + 1 + random.nextInt(20)) % nodeCount;
+                int[] pillars = new int[2 * random.nextInt(4)];
+                for (int i = 0; i < pillars.length; i += 2) {
+                    pillars[i] = builder.getLatitude(from) + random.nextInt(2001) - 1000;
+                    pillars[i + 1] = builder.getLongitude(from) + random.nextInt(2001) - 1000;
+                }
+                int maxHeight = random.nextInt(50) == 0 ? 350 + random.nextInt(100) : 0;
+                int flags = random.nextInt(30) == 0 ? RoadGraph.FLAG_BRIDGE : 0;
+                builder.addRoad(from, to, 50 + random.nextInt(5000), 20 + random.nextInt(80),
+                        classes[random.nextInt(classes.length)], flags, maxHeight, 0, 0, pillars);
+            }
+        }
+        return builder.build();
+    }
+}
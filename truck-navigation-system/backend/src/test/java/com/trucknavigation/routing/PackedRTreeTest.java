@@ -0,0 +1,66 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PackedRTreeTest {
+
+    @Test
+    void findsWhatABruteForceScanFinds() {
+        Random random = new Random(7);
+        // Sizes around the node size and its powers exercise partly filled nodes and levels
+        for (int size : new int[] {0, 1, 15, 16, 17, 255, 256, 257, 5000}) {
+            int[] latitudes = new int[size];
+            int[] longitudes = new int[size];
+            for (int i = 0; i < size; i++) {
+                latitudes[i] = 8_000_000 + random.nextInt(28_000_000);
+                longitudes[i] = 68_000_000 + random.nextInt(29_000_000);
+            }
+            PackedRTree tree = new PackedRTree(latitudes, longitudes);
+            assertEquals(size, tree.size());
+            for (int query = 0; query < 200; query++) {
+                int minLat = 8_000_000 + random.nextInt(28_000_000);
+                int minLon = 68_000_000 + random.nextInt(29_000_000);
+                int maxLat = minLat + random.nextInt(3_000_000);
+                int maxLon = minLon + random.nextInt(3_000_000);
+                assertArrayEquals(bruteForce(latitudes, longitudes, minLat, minLon, maxLat, maxLon),
+                        search(tree, minLat, minLon, maxLat, maxLon), "size " + size + ", query " + query);
+            }
+        }
+    }
+
+    @Test
+    void includesPointsOnTheBoundsAndDuplicates() {
+        int[] latitudes = {100, 100, 100, 200, 300, 300};
+        int[] longitudes = {100, 100, 150, 200, 300, 301};
+        PackedRTree tree = new PackedRTree(latitudes, longitudes);
+        assertArrayEquals(new int[] {0, 1, 2, 3}, search(tree, 100, 100, 200, 200));
+        assertArrayEquals(new int[] {4}, search(tree, 300, 300, 300, 300));
+        assertArrayEquals(new int[] {}, search(tree, 101, 0, 199, 1000));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, search(tree, Integer.MIN_VALUE, Integer.MIN_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    private static int[] search(PackedRTree tree, int minLat, int minLon, int maxLat, int maxLon) {
+        IntArrayList hits = new IntArrayList();
+        tree.search(minLat, minLon, maxLat, maxLon, hits);
+        int[] items = hits.toArray();
+        Arrays.sort(items);
+        return items;
+    }
+
+    private static int[] bruteForce(int[] latitudes, int[] longitudes, int minLat, int minLon, int maxLat, int maxLon) {
+        IntArrayList hits = new IntArrayList();
+        for (int i = 0; i < latitudes.length; i++) {
+            if (latitudes[i] >= minLat && latitudes[i] <= maxLat && longitudes[i] >= minLon && longitudes[i] <= maxLon) {
+                hits.add(i);
+            }
+        }
+        return hits.toArray();
+    }
+}
@@ -0,0 +1,203 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParetoSearchTest {
+
+    private static final VehicleSpec TRUCK = new VehicleSpec(380, 250, 250, false, 80);
+    // Limits loose enough that the front is exact
+    private static final ParetoLimits EXACT = new ParetoLimits(100, 0, 1000, 1000);
+
+    @Test
+    void frontMatchesBruteForceOnSmallRandomGraphs() {
+        int withSeveralPaths = 0;
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            RoadGraph graph = randomGraph(random, 9);
+            EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, TRUCK, false, false);
+            DijkstraRoutingEngine engine = new DijkstraRoutingEngine(graph);
+            for (int i = 0; i < 10; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                if (source == target) {
+                    continue;
+                }
+                String query = seed + ": " + source + "->" + target;
+                List<RoutePath> all = simplePaths(graph, weighting, source, target);
+                List<RoutePath> front = engine.paretoFront(source, target, weighting, EXACT);
+                if (all.isEmpty()) {
+                    assertTrue(front.isEmpty(), query);
+                    continue;
+                }
+                assertFrontIsValid(graph, weighting, front, source, target, query);
+
+                // The seeds are on the front unless another path on it beats them
+                RoutePath fastest = engine.route(source, target, weighting.withMetric(EdgeWeighting.Metric.FASTEST));
+                RoutePath economical = engine.route(source, target,
+                        weighting.withMetric(EdgeWeighting.Metric.FUEL_EFFICIENT));
+                assertOnFrontOrBeaten(front, fastest, query);
+                assertOnFrontOrBeaten(front, economical, query);
+                assertEquals(all.stream().mapToLong(RoutePath::getDurationDeciseconds).min().getAsLong(),
+                        front.get(0).getDurationDeciseconds(), query);
+                assertEquals(all.stream().mapToLong(RoutePath::getFuelWeightedMeters).min().getAsLong(),
+                        front.stream().mapToLong(RoutePath::getFuelWeightedMeters).min().getAsLong(), query);
+
+                // Every trade-off among all simple paths is found
+                assertEquals(costs(paretoOptimal(all)), costs(front), query);
+                if (front.size() > 1) {
+                    withSeveralPaths++;
+                }
+            }
+        }
+        assertTrue(withSeveralPaths > 10);
+    }
+
+    @Test
+    void keepsEachTradeOffOnceWhenSeedsRepeat() {
+        // Two ways from a to c: a fast tolled motorway and a slow free road that burns more fuel
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 20_000);
+        int c = builder.addNode(0, 40_000);
+        int d = builder.addNode(10_000, 20_000);
+        builder.addRoad(a, b, 3000, 100, RoadClass.MOTORWAY, RoadGraph.FLAG_TOLL, 0, 0, 0);
+        builder.addRoad(b, c, 3000, 100, RoadClass.MOTORWAY, RoadGraph.FLAG_TOLL, 0, 0, 0);
+        builder.addRoad(a, d, 3500, 50, RoadClass.RESIDENTIAL, 0, 0, 0, 0);
+        builder.addRoad(d, c, 3500, 50, RoadClass.RESIDENTIAL, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+        EdgeWeighting weighting = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, TRUCK, false, false);
+
+        List<RoutePath> all = simplePaths(graph, weighting, a, c);
+        RoutePath motorway = all.stream().filter(path -> path.getTollMeters() > 0).findFirst().orElseThrow();
+        RoutePath free = all.stream().filter(path -> path.getTollMeters() == 0).findFirst().orElseThrow();
+        List<RoutePath> front = new ParetoSearch(graph, weighting, EXACT, new SearchWorkspacePool(graph.getNodeCount(), 1))
+                .run(a, c, List.of(free, free, motorway));
+        assertEquals(2, front.size());
+        assertFrontIsValid(graph, weighting, front, a, c, "a->c");
+        assertTrue(front.get(0).getTollMeters() > 0);
+        assertEquals(0, front.get(1).getTollMeters());
+    }
+
+    private static void assertFrontIsValid(RoadGraph graph, EdgeWeighting weighting, List<RoutePath> front,
+                                           int source, int target, String query) {
+        assertFalse(front.isEmpty(), query);
+        for (int i = 0; i < front.size(); i++) {
+            RoutePath path = front.get(i);
+            int node = source;
+            for (int edge : path.getEdges()) {
+                assertEquals(node, graph.source(edge), query);
+                assertTrue(weighting.isAccessible(graph, edge), query);
+                node = graph.target(edge);
+            }
+            assertEquals(target, node, query);
+            if (i > 0) {
+                assertTrue(front.get(i - 1).getDurationDeciseconds() <= path.getDurationDeciseconds(), query);
+            }
+            for (RoutePath other : front) {
+                assertFalse(other != path && dominates(other, path), query + " returned a dominated path");
+            }
+        }
+    }
+
+    private static void assertOnFrontOrBeaten(List<RoutePath> front, RoutePath seed, String query) {
+        boolean onFront = front.stream().anyMatch(path -> Arrays.equals(path.getEdges(), seed.getEdges()));
+        boolean beaten = front.stream().anyMatch(path -> dominates(path, seed));
+        assertTrue(onFront || beaten, query + " lost a seed");
+    }
+
+    private static boolean dominates(RoutePath path, RoutePath other) {
+        return path.getDurationDeciseconds() <= other.getDurationDeciseconds()
+                && path.getFuelWeightedMeters() <= other.getFuelWeightedMeters()
+                && path.getTollMeters() <= other.getTollMeters()
+                && (path.getDurationDeciseconds() < other.getDurationDeciseconds()
+                        || path.getFuelWeightedMeters() < other.getFuelWeightedMeters()
+                        || path.getTollMeters() < other.getTollMeters());
+    }
+
+    private static List<RoutePath> paretoOptimal(List<RoutePath> paths) {
+        List<RoutePath> optimal = new ArrayList<>();
+        for (RoutePath path : paths) {
+            if (paths.stream().noneMatch(other -> dominates(other, path))) {
+                optimal.add(path);
+            }
+        }
+        return optimal;
+    }
+
+    private static Set<String> costs(List<RoutePath> paths) {
+        Set<String> costs = new TreeSet<>();
+        for (RoutePath path : paths) {
+            costs.add(path.getDurationDeciseconds() + "/" + path.getFuelWeightedMeters() + "/" + path.getTollMeters());
+        }
+        return costs;
+    }
+
+    /**
+     * Every path from source to target that passes no node twice, by depth-first search
+     */
+    private static List<RoutePath> simplePaths(RoadGraph graph, EdgeWeighting weighting, int source, int target) {
+        List<RoutePath> paths = new ArrayList<>();
+        collect(graph, weighting, source, source, target, new boolean[graph.getNodeCount()], new ArrayList<>(), paths);
+        return paths;
+    }
+
+    private static void collect(RoadGraph graph, EdgeWeighting weighting, int source, int node, int target,
+                                boolean[] onPath, List<Integer> edges, List<RoutePath> paths) {
+        if (node == target) {
+            int[] pathEdges = edges.stream().mapToInt(Integer::intValue).toArray();
+            long weight = Arrays.stream(pathEdges).mapToLong(edge -> weighting.weight(graph, edge)).sum();
+            paths.add(RoutePath.of(graph, weighting, source, target, pathEdges, weight));
+            return;
+        }
+        onPath[node] = true;
+        for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+            int next = graph.target(edge);
+            if (!onPath[next] && weighting.isAccessible(graph, edge)) {
+                edges.add(edge);
+                collect(graph, weighting, source, next, target, onPath, edges, paths);
+                edges.remove(edges.size() - 1);
+            }
+        }
+        onPath[node] = false;
+    }
+
+    /**
+     * Random roads no shorter than the straight line between their ends, so the search's
+     * straight-line bounds hold
+     */
+    private static RoadGraph randomGraph(Random random, int nodeCount) {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int node = 0; node < nodeCount; node++) {
+            builder.addNode(random.nextInt(50_000), random.nextInt(50_000));
+        }
+        RoadClass[] roadClasses = RoadClass.values();
+        for (int node = 0; node < nodeCount; node++) {
+            for (int k = 0; k < 3; k++) {
+                int other = Math.floorMod(node + 1 + random.nextInt(nodeCount - 1), nodeCount);
+                double straight = GeoMath.haversineMeters(builder.getLatitude(node), builder.getLongitude(node),
+                        builder.getLatitude(other), builder.getLongitude(other));
+                int length = (int) (straight * (1.2 + random.nextDouble())) + 100;
+                int speed = 30 + random.nextInt(90);
+                RoadClass roadClass = roadClasses[random.nextInt(roadClasses.length)];
+                int flags = random.nextInt(3) == 0 ? RoadGraph.FLAG_TOLL : 0;
+                if (random.nextBoolean()) {
+                    builder.addRoad(node, other, length, speed, roadClass, flags, 0, 0, 0);
+                } else {
+                    builder.addEdge(node, other, length, speed, roadClass, flags, 0, 0, 0);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
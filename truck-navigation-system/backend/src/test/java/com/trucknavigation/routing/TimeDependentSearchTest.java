@@ -0,0 +1,201 @@
+package com.trucknavigation.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeDependentSearchTest {
+
+    private static final VehicleSpec TRUCK = new VehicleSpec(380, 250, 250, false, 80);
+    private static final EdgeWeighting FASTEST = new EdgeWeighting(EdgeWeighting.Metric.FASTEST, TRUCK, false, false);
+    // Monday 08:00
+    private static final int EIGHT_AM = WeeklySchedule.secondOfWeek(0, 8 * 3600);
+
+    @Test
+    void waitsAtAnEdgeClosedOnArrivalWhenThereIsNoOtherWay() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 10_000);
+        int c = builder.addNode(0, 20_000);
+        builder.addEdge(a, b, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(b, c, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+        int closed = edge(graph, b, c);
+        // Closed 08:00 to 09:00 every day; the truck leaves a at 07:59 and reaches b at 08:00:30
+        EdgeClosures closures = new EdgeClosures(graph.getEdgeCount(),
+                Map.of(closed, WeeklySchedule.daily(WeeklySchedule.EVERY_DAY, 8 * 3600, 9 * 3600)));
+        int departure = EIGHT_AM - 60;
+
+        RoutePath path = new DijkstraRoutingEngine(graph).routeDeparting(a, c, FASTEST, closures, departure);
+        assertNotNull(path);
+        assertEquals(2, path.getEdges().length);
+        long wait = closures.waitDeciseconds(graph, FASTEST, path, departure);
+        assertEquals((3600 - 30) * 10L, wait);
+    }
+
+    @Test
+    void detoursAroundAnEdgeClosedOnArrival() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int a = builder.addNode(0, 0);
+        int b = builder.addNode(0, 10_000);
+        int c = builder.addNode(0, 20_000);
+        int d = builder.addNode(10_000, 10_000);
+        builder.addEdge(a, b, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(b, c, 1500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(a, d, 2500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        builder.addEdge(d, c, 2500, 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+        RoadGraph graph = builder.build();
+        int closed = edge(graph, b, c);
+        EdgeClosures closures = new EdgeClosures(graph.getEdgeCount(),
+                Map.of(closed, WeeklySchedule.daily(WeeklySchedule.EVERY_DAY, 8 * 3600, 9 * 3600)));
+        DijkstraRoutingEngine engine = new DijkstraRoutingEngine(graph);
+
+        // Before the window the short way is open all along
+        RoutePath early = engine.routeDeparting(a, c, FASTEST, closures, EIGHT_AM - 3600);
+        assertArrayEquals(engine.route(a, c, FASTEST).getEdges(), early.getEdges());
+
+        // During the window the truck takes the longer way rather than wait most of an hour
+        RoutePath detour = engine.routeDeparting(a, c, FASTEST, closures, EIGHT_AM);
+        assertEquals(5000, detour.getDistanceMeters());
+        assertEquals(0, closures.waitDeciseconds(graph, FASTEST, detour, EIGHT_AM));
+
+        // Just before it reopens, waiting a little on the short way is quicker
+        RoutePath wait = engine.routeDeparting(a, c, FASTEST, closures, EIGHT_AM + 3600 - 120);
+        assertEquals(3000, wait.getDistanceMeters());
+        assertTrue(closures.waitDeciseconds(graph, FASTEST, wait, EIGHT_AM + 3600 - 120) > 0);
+    }
+
+    @Test
+    void earliestArrivalMatchesBruteForceOnSmallRandomGraphs() {
+        int delayed = 0;
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            RoadGraph graph = randomGraph(random, 9);
+            EdgeClosures closures = randomClosures(random, graph);
+            DijkstraRoutingEngine engine = new DijkstraRoutingEngine(graph);
+            for (int i = 0; i < 20; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                int departure = EIGHT_AM + random.nextInt(4 * 3600);
+                String query = seed + ": " + source + "->" + target + " at " + departure;
+                long expected = earliestArrival(graph, closures, source, target, departure);
+                RoutePath path = engine.routeDeparting(source, target, FASTEST, closures, departure);
+                if (expected < 0) {
+                    assertNull(path, query);
+                    continue;
+                }
+                assertNotNull(path, query);
+                long wait = closures.waitDeciseconds(graph, FASTEST, path, departure);
+                assertTrue(wait >= 0, query);
+                assertEquals(expected, path.getDurationDeciseconds() + wait, query);
+                if (expected > engine.route(source, target, FASTEST).getDurationDeciseconds()) {
+                    delayed++;
+                }
+            }
+        }
+        assertTrue(delayed > 10);
+    }
+
+    static int edge(RoadGraph graph, int from, int to) {
+        for (int edge = graph.edgeStart(from), end = graph.edgeEnd(from); edge < end; edge++) {
+            if (graph.target(edge) == to) {
+                return edge;
+            }
+        }
+        throw new IllegalArgumentException(from + "->" + to);
+    }
+
+    /**
+     * Earliest arrival in deciseconds after departure over every path that passes no node twice,
+     * waiting at closed edges, or -1 if no path opens
+     */
+    static long earliestArrival(RoadGraph graph, EdgeClosures closures, int source, int target, int departure) {
+        long best = -1;
+        for (int[] edges : simplePaths(graph, source, target)) {
+            RoutePath path = RoutePath.of(graph, FASTEST, source, target, edges, 0);
+            long wait = closures.waitDeciseconds(graph, FASTEST, path, departure);
+            if (wait >= 0 && (best < 0 || path.getDurationDeciseconds() + wait < best)) {
+                best = path.getDurationDeciseconds() + wait;
+            }
+        }
+        return best;
+    }
+
+    private static List<int[]> simplePaths(RoadGraph graph, int source, int target) {
+        List<int[]> paths = new ArrayList<>();
+        collect(graph, source, target, new boolean[graph.getNodeCount()], new ArrayList<>(), paths);
+        return paths;
+    }
+
+    private static void collect(RoadGraph graph, int node, int target, boolean[] onPath, List<Integer> edges,
+                                List<int[]> paths) {
+        if (node == target) {
+            paths.add(edges.stream().mapToInt(Integer::intValue).toArray());
+            return;
+        }
+        onPath[node] = true;
+        for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+            if (!onPath[graph.target(edge)] && FASTEST.isAccessible(graph, edge)) {
+                edges.add(edge);
+                collect(graph, graph.target(edge), target, onPath, edges, paths);
+                edges.remove(edges.size() - 1);
+            }
+        }
+        onPath[node] = false;
+    }
+
+    /**
+     * Daily windows of up to three hours on about a third of the edges, around the morning hours
+     * the queries depart in
+     */
+    static EdgeClosures randomClosures(Random random, RoadGraph graph) {
+        Map<Integer, WeeklySchedule> schedules = new HashMap<>();
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            if (random.nextInt(3) == 0) {
+                int start = 7 * 3600 + random.nextInt(4 * 3600);
+                schedules.put(edge, WeeklySchedule.daily(WeeklySchedule.EVERY_DAY, start,
+                        start + 900 + random.nextInt(3 * 3600)));
+            }
+        }
+        return new EdgeClosures(graph.getEdgeCount(), schedules);
+    }
+
+    /**
+     * Random roads no shorter than the straight line between their ends, so the search's
+     * straight-line bounds hold, and no faster than the truck, so the fastest path's weight is
+     * its travel time
+     */
+    static RoadGraph randomGraph(Random random, int nodeCount) {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int node = 0; node < nodeCount; node++) {
+            builder.addNode(random.nextInt(200_000), random.nextInt(200_000));
+        }
+        RoadClass[] roadClasses = RoadClass.values();
+        for (int node = 0; node < nodeCount; node++) {
+            for (int k = 0; k < 3; k++) {
+                int other = Math.floorMod(node + 1 + random.nextInt(nodeCount - 1), nodeCount);
+                double straight = GeoMath.haversineMeters(builder.getLatitude(node), builder.getLongitude(node),
+                        builder.getLatitude(other), builder.getLongitude(other));
+                int length = (int) (straight * (1.2 + random.nextDouble())) + 100;
+                int speed = 30 + random.nextInt(TRUCK.getMaxSpeedKmh() - 29);
+                RoadClass roadClass = roadClasses[random.nextInt(roadClasses.length)];
+                if (random.nextBoolean()) {
+                    builder.addRoad(node, other, length, speed, roadClass, 0, 0, 0, 0);
+                } else {
+                    builder.addEdge(node, other, length, speed, roadClass, 0, 0, 0, 0);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
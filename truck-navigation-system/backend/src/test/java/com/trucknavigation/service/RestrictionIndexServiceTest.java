@@ -0,0 +1,230 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.repository.RoadRestrictionRepository;
+import com.trucknavigation.routing.GeoMath;
+import com.trucknavigation.routing.IntArrayList;
+import com.trucknavigation.routing.RouteCorridor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestrictionIndexServiceTest {
+
+    // Restrictions spread over a box of about 100 km around Pune
+    private static final int MIN_LATITUDE = 18_000_000;
+    private static final int MIN_LONGITUDE = 73_500_000;
+    private static final int SPAN = 1_000_000;
+
+    private static final Predicate<RestrictionConstraints> EVERY_OTHER =
+            constraints -> constraints.getRestriction().getId() % 2 == 0;
+
+    private final Random random = new Random(11);
+    private final Map<Long, RoadRestriction> expected = new TreeMap<>();
+    private RestrictionIndexService service;
+
+    @BeforeEach
+    void load() {
+        List<RoadRestriction> active = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            RoadRestriction restriction = restriction(id);
+            active.add(restriction);
+            expected.put(id, restriction);
+        }
+        RoadRestrictionRepository repository = Mockito.mock(RoadRestrictionRepository.class);
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(active);
+        service = new RestrictionIndexService();
+        ReflectionTestUtils.setField(service, "roadRestrictionRepository", repository);
+        service.load();
+    }
+
+    @Test
+    void findsWhatABruteForceScanFinds() {
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    void reflectsUpdatesAndRemovalsBeforeAndAfterARepack() {
+        // Moves, deactivations, removals and new restrictions, all small enough to stay in the overlay
+        for (int i = 0; i < 100; i++) {
+            write(i);
+        }
+        assertTrue(overlaySize() > 0);
+        assertMatchesBruteForce();
+
+        // Enough further writes that the overlay outgrows its limit and the tree is repacked
+        int writes = 100;
+        while (overlaySize() > 0) {
+            write(writes++);
+        }
+        assertTrue(writes < 1000, "the overlay was never repacked");
+        assertMatchesBruteForce();
+
+        for (int i = 0; i < 50; i++) {
+            write(writes++);
+        }
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    void appliesABatchOfWritesAsOneSnapshot() {
+        for (int batch = 0; batch < 20; batch++) {
+            Map<Long, RoadRestriction> saved = new TreeMap<>();
+            SortedSet<Long> removed = new TreeSet<>();
+            // Batches of up to a few hundred, so some stay in the overlay and some repack the tree
+            int size = 1 + random.nextInt(batch % 2 == 0 ? 50 : 400);
+            for (int i = 0; i < size; i++) {
+                long id = 1 + random.nextInt(2100);
+                saved.remove(id);
+                removed.remove(id);
+                if (random.nextInt(3) == 0) {
+                    removed.add(id);
+                    expected.remove(id);
+                } else {
+                    RoadRestriction restriction = restriction(id);
+                    restriction.setActive(random.nextInt(4) != 0);
+                    saved.put(id, restriction);
+                    if (restriction.isActive()) {
+                        expected.put(id, restriction);
+                    } else {
+                        expected.remove(id);
+                    }
+                }
+            }
+            Object before = ReflectionTestUtils.getField(service, "snapshot");
+            service.apply(saved.values(), removed);
+            assertTrue(before != ReflectionTestUtils.getField(service, "snapshot"));
+            assertMatchesBruteForce();
+        }
+    }
+
+    private void write(int step) {
+        long id = 1 + random.nextInt(2100);
+        switch (step % 4) {
+            case 0, 1 -> {
+                RoadRestriction restriction = restriction(id);
+                service.update(restriction);
+                expected.put(id, restriction);
+            }
+            case 2 -> {
+                RoadRestriction restriction = restriction(id);
+                restriction.setActive(false);
+                service.update(restriction);
+                expected.remove(id);
+            }
+            default -> {
+                service.remove(id);
+                expected.remove(id);
+            }
+        }
+    }
+
+    private void assertMatchesBruteForce() {
+        assertEquals(expected.size(), service.size());
+        assertEquals(expected.keySet(), ids(service.findAll()));
+        for (int query = 0; query < 50; query++) {
+            int minLat = MIN_LATITUDE + random.nextInt(SPAN);
+            int minLon = MIN_LONGITUDE + random.nextInt(SPAN);
+            int maxLat = minLat + random.nextInt(SPAN / 4);
+            int maxLon = minLon + random.nextInt(SPAN / 4);
+            List<Long> inArea = new ArrayList<>();
+            for (RoadRestriction restriction : expected.values()) {
+                int lat = latitude(restriction);
+                int lon = longitude(restriction);
+                if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                    inArea.add(restriction.getId());
+                }
+            }
+            assertEquals(inArea, List.copyOf(ids(service.findInArea(minLat, maxLat, minLon, maxLon))));
+
+            IntArrayList points = route();
+            double width = 500 + random.nextInt(3000);
+            RouteCorridor corridor = RouteCorridor.along(points, width);
+            List<Long> alongRoute = new ArrayList<>();
+            for (RoadRestriction restriction : expected.values()) {
+                if (EVERY_OTHER.test(RestrictionConstraints.compile(restriction))
+                        && distanceMeters(points, latitude(restriction), longitude(restriction)) <= width) {
+                    alongRoute.add(restriction.getId());
+                }
+            }
+            List<RoadRestriction> found = service.findAlongRoute(points, corridor, EVERY_OTHER);
+            assertEquals(found.size(), ids(found).size(), "a restriction was reported twice");
+            assertEquals(alongRoute, List.copyOf(ids(found)));
+        }
+    }
+
+    /**
+     * A wandering polyline of up to a few hundred points, long enough to span several corridor chunks
+     */
+    private IntArrayList route() {
+        IntArrayList points = new IntArrayList();
+        int lat = MIN_LATITUDE + random.nextInt(SPAN);
+        int lon = MIN_LONGITUDE + random.nextInt(SPAN);
+        int count = 2 + random.nextInt(300);
+        for (int i = 0; i < count; i++) {
+            points.add(lat);
+            points.add(lon);
+            lat += random.nextInt(8001) - 4000;
+            lon += random.nextInt(8001) - 4000;
+        }
+        return points;
+    }
+
+    private static double distanceMeters(IntArrayList points, int lat, int lon) {
+        double nearest = Double.MAX_VALUE;
+        for (int i = 0; i + 3 < points.size(); i += 2) {
+            nearest = Math.min(nearest, GeoMath.pointToSegmentMeters(lat, lon, points.get(i), points.get(i + 1),
+                    points.get(i + 2), points.get(i + 3)));
+        }
+        return nearest;
+    }
+
+    private RoadRestriction restriction(long id) {
+        RoadRestriction restriction = new RoadRestriction("Restriction " + id,
+                BigDecimal.valueOf(MIN_LATITUDE + random.nextInt(SPAN), 6),
+                BigDecimal.valueOf(MIN_LONGITUDE + random.nextInt(SPAN), 6),
+                RoadRestriction.RestrictionType.BRIDGE_HEIGHT);
+        restriction.setId(id);
+        restriction.setMaxHeight(BigDecimal.valueOf(35 + random.nextInt(15), 1));
+        return restriction;
+    }
+
+    /**
+     * Changed plus hidden items of the current snapshot, zero right after a repack
+     */
+    private int overlaySize() {
+        Object snapshot = ReflectionTestUtils.getField(service, "snapshot");
+        return ((Map<?, ?>) ReflectionTestUtils.getField(snapshot, "changed")).size()
+                + (int) ReflectionTestUtils.getField(snapshot, "hiddenCount");
+    }
+
+    private static int latitude(RoadRestriction restriction) {
+        return GeoMath.toMicroDegrees(restriction.getLatitude().doubleValue());
+    }
+
+    private static int longitude(RoadRestriction restriction) {
+        return GeoMath.toMicroDegrees(restriction.getLongitude().doubleValue());
+    }
+
+    private static SortedSet<Long> ids(List<RoadRestriction> restrictions) {
+        SortedSet<Long> ids = new TreeSet<>();
+        for (RoadRestriction restriction : restrictions) {
+            ids.add(restriction.getId());
+        }
+        return ids;
+    }
+}
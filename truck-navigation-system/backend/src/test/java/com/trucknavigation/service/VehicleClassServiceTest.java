@@ -0,0 +1,174 @@
+package com.trucknavigation.service;
+
+import com.trucknavigation.model.RoadRestriction;
+import com.trucknavigation.model.TruckProfile;
+import com.trucknavigation.routing.CustomizableRoutingEngine;
+import com.trucknavigation.routing.EdgeIndex;
+import com.trucknavigation.routing.EdgeWeighting;
+import com.trucknavigation.routing.GraphPartition;
+import com.trucknavigation.routing.RoadClass;
+import com.trucknavigation.routing.RoadGraph;
+import com.trucknavigation.routing.RoadGraphBuilder;
+import com.trucknavigation.routing.VehicleClass;
+import com.trucknavigation.routing.VehicleSpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VehicleClassServiceTest {
+
+    // A grid of 15 by 15 junctions about a kilometre apart
+    private static final int SIDE = 15;
+    private static final int SPACING = 10_000;
+
+    private final Random random = new Random(5);
+    private final Map<Long, RoadRestriction> active = new TreeMap<>();
+    private final List<TruckProfile> profiles = new ArrayList<>();
+    private RoadGraph graph;
+    private EdgeIndex edgeIndex;
+    private GraphPartition partition;
+
+    @BeforeEach
+    void build() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                builder.addNode(18_000_000 + row * SPACING, 73_500_000 + column * SPACING);
+            }
+        }
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                int node = row * SIDE + column;
+                if (column + 1 < SIDE) {
+                    builder.addRoad(node, node + 1, 1100 + random.nextInt(400), 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+                }
+                if (row + 1 < SIDE) {
+                    builder.addRoad(node, node + SIDE, 1100 + random.nextInt(400), 60, RoadClass.PRIMARY, 0, 0, 0, 0);
+                }
+            }
+        }
+        graph = builder.build();
+        edgeIndex = new EdgeIndex(graph);
+        partition = GraphPartition.build(graph, 24);
+        for (long id = 1; id <= 150; id++) {
+            active.put(id, restriction(id));
+        }
+        for (int i = 0; i < 8; i++) {
+            TruckProfile profile = new TruckProfile();
+            profile.setHeight(BigDecimal.valueOf(36 + i * 2, 1));
+            profile.setWidth(BigDecimal.valueOf(25, 1));
+            profile.setMaxWeight(BigDecimal.valueOf(20 + i * 4));
+            profile.setHasHazmatPermit(i % 3 == 0);
+            profiles.add(profile);
+        }
+    }
+
+    @Test
+    void followsRestrictionChangesLikeAFullRebuild() {
+        CustomizableRoutingEngine engine = new CustomizableRoutingEngine(partition);
+        VehicleClassService service = service(engine);
+        int kept = 0;
+        int replaced = 0;
+        for (int batch = 0; batch < 12; batch++) {
+            List<VehicleClass> before = new ArrayList<>();
+            for (TruckProfile profile : profiles) {
+                VehicleClass vehicleClass = service.classify(profile);
+                engine.customize(weighting(profile, vehicleClass));
+                before.add(vehicleClass);
+            }
+
+            // A few moves, limit changes, deactivations, removals and new restrictions in one transaction
+            Map<Long, RoadRestriction> saved = new TreeMap<>();
+            Set<Long> removed = new TreeSet<>();
+            for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                long id = 1 + random.nextInt(170);
+                saved.remove(id);
+                removed.remove(id);
+                if (random.nextInt(4) == 0) {
+                    removed.add(id);
+                    active.remove(id);
+                } else {
+                    RoadRestriction restriction = restriction(id);
+                    restriction.setActive(random.nextInt(5) != 0);
+                    saved.put(id, restriction);
+                    if (restriction.isActive()) {
+                        active.put(id, restriction);
+                    } else {
+                        active.remove(id);
+                    }
+                }
+            }
+            service.refresh(saved.values(), removed);
+
+            CustomizableRoutingEngine freshEngine = new CustomizableRoutingEngine(partition);
+            VehicleClassService fresh = service(freshEngine);
+            for (int i = 0; i < profiles.size(); i++) {
+                TruckProfile profile = profiles.get(i);
+                VehicleClass vehicleClass = service.classify(profile);
+                VehicleClass expected = fresh.classify(profile);
+                for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+                    assertEquals(expected.isBlocked(edge), vehicleClass.isBlocked(edge), "batch " + batch + " edge " + edge);
+                }
+                assertArrayEquals(freshEngine.customize(weighting(profile, expected)),
+                        engine.customize(weighting(profile, vehicleClass)), "batch " + batch);
+                if (vehicleClass == before.get(i)) {
+                    kept++;
+                } else {
+                    replaced++;
+                }
+            }
+            assertEquals(fresh.closures().size(), service.closures().size());
+        }
+        // Both classes the batch left alone and classes it closed or opened a road for
+        assertTrue(kept > 0 && replaced > 0, kept + " kept, " + replaced + " replaced");
+    }
+
+    private VehicleClassService service(CustomizableRoutingEngine engine) {
+        RestrictionIndexService index = Mockito.mock(RestrictionIndexService.class);
+        Mockito.when(index.findAll()).thenAnswer(invocation -> new ArrayList<>(active.values()));
+        VehicleClassService service = new VehicleClassService();
+        ReflectionTestUtils.setField(service, "restrictionIndexService", index);
+        ReflectionTestUtils.setField(service, "roadGraph", graph);
+        ReflectionTestUtils.setField(service, "edgeIndex", edgeIndex);
+        ReflectionTestUtils.setField(service, "customizableRoutingEngine", engine);
+        ReflectionTestUtils.setField(service, "snapRadius", 250.0);
+        return service;
+    }
+
+    private static EdgeWeighting weighting(TruckProfile profile, VehicleClass vehicleClass) {
+        return new EdgeWeighting(EdgeWeighting.Metric.FASTEST, VehicleSpec.of(profile, 80), false, false, vehicleClass);
+    }
+
+    /**
+     * A height or weight limit, or now and then a truck ban, next to a random road of the grid
+     */
+    private RoadRestriction restriction(long id) {
+        int row = random.nextInt(SIDE);
+        int column = random.nextInt(SIDE - 1);
+        RoadRestriction restriction = new RoadRestriction("Restriction " + id,
+                BigDecimal.valueOf(18_000_000 + row * SPACING + random.nextInt(500), 6),
+                BigDecimal.valueOf(73_500_000 + column * SPACING + random.nextInt(SPACING), 6),
+                RoadRestriction.RestrictionType.BRIDGE_HEIGHT);
+        restriction.setId(id);
+        switch (random.nextInt(5)) {
+            case 0 -> restriction.setTrucksProhibited(true);
+            case 1, 2 -> restriction.setMaxWeight(BigDecimal.valueOf(18 + random.nextInt(30)));
+            default -> restriction.setMaxHeight(BigDecimal.valueOf(35 + random.nextInt(15), 1));
+        }
+        return restriction;
+    }
+}